@@ -23,77 +23,791 @@
  */
 package org.prolog4j;
 
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.OutputStream;
+import java.io.Reader;
 import java.io.Serializable;
-//import java.lang.ref.Reference;
-//import java.lang.ref.ReferenceQueue;
-//import java.util.HashMap;
-//import java.util.LinkedList;
-//import java.util.List;
-//import java.util.Map;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.function.Function;
 
 /**
  * Serves as base class for prover implementation.
  */
 public abstract class AbstractProver implements Prover, Serializable {
 
-//	/**
-//	 * Weak facts refers to Java objects by weak references.
-//	 */
-//	private Map<Reference, List<Query>> weakFacts = new HashMap<Reference, List<Query>>();
-//	
-//	/**
-//	 * Reference queue for the objects referred by weak facts.
-//	 */
-//	private ReferenceQueue<Object> obsoleteObjects = new ReferenceQueue<Object>();
-	
 	/** Class version for serialization. */
 	private static final long serialVersionUID = 1L;
 
+	/** The number of characters of the theories added at once by {@link #loadClauses(Reader)}. */
+	protected static final int THEORY_CHUNK_SIZE = 1 << 20;
+
+	/** The number of the clauses of the compiled theories added at once. */
+	private static final int COMPILED_BATCH_SIZE = 10000;
+
+	/** Stores the queries prepared by {@link #solve(String, Object...)}. */
+	private transient QueryCache queryCache;
+
+	/** Knows the predicates called by the rules of the knowledge base. */
+	private transient DependencyGraph dependencies;
+
+	/** Stores the solutions of the goals if it is enabled. */
+	private transient AnswerCache answerCache;
+
+	/** The tables of the tabled predicates. */
+	private transient Tables tables;
+
+	/** The goals whose answers are maintained for their subscribers. */
+	private transient Subscriptions subscriptions;
+
+	/** Matches the forward-chaining rules of the prover. */
+	private transient RuleNetwork rules;
+
+	/** The facts retracted when their referent is reclaimed. */
+	private transient WeakFacts weakFacts;
+
+	/** 
+	 * The executor of the asynchronous operations used by default. It is 
+	 * created at the first time when it is needed.
+	 */
+	private static volatile Executor defaultExecutor;
+
+	/** Runs the asynchronous operations of the prover one by one. */
+	private transient volatile SerialExecutor executor;
+
+	/** True while a checkpoint is being restored. */
+	private transient volatile boolean restoring;
+
+	/**
+	 * Creates a prover with an empty state.
+	 */
+	protected AbstractProver() {
+		initState();
+	}
+
+	/**
+	 * Creates the state of the prover that is not serialized. It is created
+	 * again when the prover is deserialized.
+	 */
+	private void initState() {
+		queryCache = new QueryCache();
+		dependencies = new DependencyGraph();
+		answerCache = new AnswerCache(dependencies);
+		tables = new Tables(this, dependencies);
+		subscriptions = new Subscriptions(this, dependencies);
+		rules = new RuleNetwork(this, dependencies);
+		weakFacts = new WeakFacts(this);
+	}
+
+	/**
+	 * Reads the prover and creates the state that is not serialized.
+	 * 
+	 * @param in the stream to read from
+	 * @throws IOException if the prover cannot be read
+	 * @throws ClassNotFoundException if a class of the prover is not found
+	 */
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		initState();
+	}
+
 	@Override
 	public final <A> Solution<A> solve(String goal, Object... actualArgs) {
-//		reclaimObsoleteFacts();
-		return query(goal).solve(actualArgs);
-	}
-
-//	/**
-//	 * Retracts weak rules that refer to objects reclaimed by the garbage 
-//	 * collector.
-//	 */
-//	public void reclaimObsoleteFacts() {
-//		Reference ref = obsoleteObjects.poll();
-//		while (ref != null) {
-//			List<Query> rules = weakFacts.get(ref);
-//			for (Query rule: rules) {
-//				rule.retract();
-//			}
-//			ref = obsoleteObjects.poll();
-//		}
-//	}
+		tables.complete();
+		Query query = prepareGoal(goal);
+		Solution<A> solution = answerCache.isEnabled()
+				? answerCache.<A>solve(query, goal, actualArgs, getConversionPolicy())
+				: query.<A>solve(actualArgs);
+		solution.setExecutor(getExecutor());
+		return solution;
+	}
+
+	@Override
+	public final <A> CompletableFuture<Solution<A>> solveAsync(String goal, 
+			final Object... actualArgs) {
+		if (answerCache.isEnabled() || tables.isIncomplete()) {
+			return CompletableFuture.supplyAsync(() -> this.<A>solve(goal, actualArgs), 
+					getExecutor());
+		}
+		return prepareGoal(goal).solveAsync(actualArgs);
+	}
+
+	@Override
+	public CompletableFuture<Query> queryAsync(final String goal) {
+		return CompletableFuture.supplyAsync(() -> prepare(goal), getExecutor());
+	}
+
+	@Override
+	public Executor getExecutor() {
+		SerialExecutor serialExecutor = executor;
+		if (serialExecutor == null) {
+			synchronized (this) {
+				serialExecutor = executor;
+				if (serialExecutor == null) {
+					serialExecutor = new SerialExecutor(getDefaultExecutor());
+					executor = serialExecutor;
+				}
+			}
+		}
+		return serialExecutor;
+	}
+
+	@Override
+	public synchronized void setExecutor(Executor executor) {
+		if (executor == null) {
+			throw new NullPointerException("executor");
+		}
+		this.executor = new SerialExecutor(executor);
+	}
+
+	/**
+	 * Returns the executor that is used by default for the asynchronous 
+	 * operations. It creates a new virtual thread for each task on JDK 21 and
+	 * later. On earlier platforms it is a shared pool of daemon threads.
+	 * 
+	 * @return the default executor
+	 */
+	public static Executor getDefaultExecutor() {
+		Executor result = defaultExecutor;
+		if (result == null) {
+			synchronized (AbstractProver.class) {
+				result = defaultExecutor;
+				if (result == null) {
+					result = createDefaultExecutor();
+					defaultExecutor = result;
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Creates the default executor of the asynchronous operations.
+	 * 
+	 * @return a virtual thread per task executor if the platform supports it,
+	 * 		otherwise a cached pool of daemon threads
+	 */
+	private static Executor createDefaultExecutor() {
+		try {
+			// The API level of the project does not have virtual threads.
+			Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) factory.invoke(null);
+		} catch (Exception e) {
+			final ThreadFactory threadFactory = Executors.defaultThreadFactory();
+			return Executors.newCachedThreadPool(task -> {
+				Thread thread = threadFactory.newThread(task);
+				thread.setName("prolog4j-" + thread.getName());
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+	}
+
+	/**
+	 * Returns a prepared query for the goal. The query is taken from the query
+	 * cache of the prover if it has already been prepared, otherwise it is 
+	 * created by {@link #query(String)} and put into the cache.
+	 * 
+	 * @param goal the Prolog goal
+	 * @return a query object for the goal
+	 */
+	protected final Query prepare(String goal) {
+		Query query = queryCache.get(goal);
+		if (query == null) {
+			query = query(goal);
+			queryCache.put(goal, query);
+		}
+		return query;
+	}
+
+	/**
+	 * Returns the cache that stores the queries prepared by 
+	 * {@link #solve(String, Object...)}.
+	 * 
+	 * @return the query cache of the prover
+	 */
+	public QueryCache getQueryCache() {
+		return queryCache;
+	}
+
+	/**
+	 * Returns the cache that stores the solutions of the goals solved by 
+	 * {@link #solve(String, Object...)}. The cache is disabled until its 
+	 * capacity is set.
+	 * 
+	 * @return the answer cache of the prover
+	 */
+	public AnswerCache getAnswerCache() {
+		return answerCache;
+	}
+
+	/**
+	 * Notifies the prover that clauses have been added to or removed from its
+	 * knowledge base. The implementations have to call it after each 
+	 * modification of the knowledge base, except the ones made by 
+	 * {@link #assertz(String, Object...)} and {@link #retract(String)} of this
+	 * class.
+	 * 
+	 * @param clauses the text of the clauses, or <code>null</code> if it is 
+	 * 		not known
+	 */
+	protected final void clausesChanged(String clauses) {
+		Set<String> heads = invalidate(dependencies.update(clauses));
+		subscriptions.update(heads);
+		rules.update(heads);
+	}
+
+	/**
+	 * Notifies the prover that a fact or rule has been asserted or retracted
+	 * by {@link #assertz(String, Object...)} or {@link #retract(String)}. The
+	 * changes of the subscribed goals and the matches of the forward-chaining
+	 * rules are derived from the fact if possible.
+	 * 
+	 * @param fact the text of the fact
+	 * @param args the arguments of the fact
+	 * @param asserted <code>true</code> if the fact has been asserted, 
+	 * 		<code>false</code> if it has been retracted
+	 */
+	final void factChanged(String fact, Object[] args, boolean asserted) {
+		Set<String> heads = invalidate(dependencies.update(fact));
+		subscriptions.update(heads, fact, args, asserted);
+		rules.update(heads, fact, args, asserted);
+	}
+
+	/**
+	 * Removes the answers and clears the tables that depend on modified
+	 * predicates.
+	 * 
+	 * @param heads the names of the modified predicates, or <code>null</code>
+	 * 		if they are not known
+	 * @return the names of the modified predicates
+	 */
+	private Set<String> invalidate(Set<String> heads) {
+		answerCache.invalidate(heads);
+		tables.invalidate(heads);
+		invalidateEngineTables(heads);
+		return heads;
+	}
+
+	/**
+	 * Clears the tables of the engine that depend on modified predicates. It
+	 * is called after every modification of the knowledge base, and it serves
+	 * the bindings that table the predicates by the engine, see 
+	 * {@link #table(String)}. The default implementation does nothing.
+	 * 
+	 * @param heads the names of the modified predicates, or <code>null</code>
+	 * 		if they are not known
+	 */
+	protected void invalidateEngineTables(Set<String> heads) {
+	}
+
+	/**
+	 * Returns whether the modification of some predicates affects the answers
+	 * of other predicates, i.e. whether the latter call the former, directly
+	 * or transitively.
+	 * 
+	 * @param heads the names of the modified predicates, or <code>null</code>
+	 * 		if they are not known
+	 * @param names the names of the predicates whose answers are in question
+	 * @return <code>true</code> if the answers may have changed
+	 */
+	protected final boolean dependsOn(Set<String> heads, Collection<String> names) {
+		return heads == null 
+				|| !Collections.disjoint(heads, dependencies.closure(names));
+	}
+
+	/**
+	 * Prepares the text of clauses for being added to the knowledge base. The
+	 * implementations have to call it before adding clauses, except the ones 
+	 * added by {@link #assertz(String, Object...)} of this class. The 
+	 * predicates declared by <code>table</code> directives are tabled by 
+	 * {@link #table(String)}, and the directives are removed. The clauses of 
+	 * the tabled predicates are renamed.
+	 * 
+	 * @param clauses the text of the clauses
+	 * @return the text to be added to the knowledge base
+	 */
+	protected final String prepareClauses(String clauses) {
+		return tables.rewrite(clauses);
+	}
+
+	/**
+	 * Splits the text of clauses into single clauses, for the engines that 
+	 * add the clauses one by one. The clauses keep their end token.
+	 * 
+	 * @param clauses the text of the clauses
+	 * @return the clauses
+	 */
+	protected static List<String> splitClauses(String clauses) {
+		return ClauseScanner.split(clauses);
+	}
+
+	/**
+	 * Notifies the prover that compiled clauses have been added to its 
+	 * knowledge base, like {@link #clausesChanged(String)}.
+	 * 
+	 * @param clauses the clauses in the form of {@link ClauseImage}
+	 */
+	protected final void compiledClausesChanged(List<Object> clauses) {
+		Set<String> heads = invalidate(dependencies.update(clauses));
+		subscriptions.update(heads);
+		rules.update(heads);
+	}
+
+	/**
+	 * Prepares compiled clauses for being added to the knowledge base, like
+	 * {@link #prepareClauses(String)}.
+	 * 
+	 * @param clauses the clauses in the form of {@link ClauseImage}
+	 * @return the clauses to be added to the knowledge base
+	 */
+	protected final List<Object> prepareCompiledClauses(List<Object> clauses) {
+		// The clauses of a checkpoint have been renamed when they were added.
+		return restoring ? clauses : tables.rewrite(clauses);
+	}
+
+	/**
+	 * Completes the tables of the prover.
+	 */
+	final void completeTables() {
+		tables.complete();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * This implementation stores the answers of the predicate in the 
+	 * knowledge base, and computes them by a fixpoint iteration of its rules
+	 * with unbound arguments. The tables are completed by 
+	 * {@link #solve(String, Object...)}, the prepared queries see them as 
+	 * they have been completed last time. The engines that support tabling 
+	 * should override it.
+	 */
+	@Override
+	public void table(String predicate) {
+		tables.add(predicate);
+	}
+
+	@Override
+	public Subscription subscribe(String goal, Subscription.Listener listener) {
+		return subscriptions.add(goal, listener);
+	}
+
+	@Override
+	public void addRule(Rule rule) {
+		rules.add(rule);
+	}
+
+	@Override
+	public void removeRule(Rule rule) {
+		rules.remove(rule);
+	}
+
+	/**
+	 * Retracts the weak facts whose referent has been reclaimed by the 
+	 * garbage collector, without waiting for the executor of the prover.
+	 */
+	public void reclaimObsoleteFacts() {
+		weakFacts.retractObsolete();
+	}
+
+	/**
+	 * Returns the number of the weak facts that have not been retracted yet.
+	 * 
+	 * @return the number of the weak facts
+	 */
+	public int getWeakFactCount() {
+		return weakFacts.size();
+	}
 
 	@Override
 	public void assertz(String fact, Object... args) {
-		Query q = query("assertz(" + fact.substring(0, fact.lastIndexOf('.')) + ").");
-		q.solve(args);
-//		for (Reference ref: q.getWeakReferences()) {
-//			List<Query> rules = weakFacts.get(ref);
-//			if (rules == null) {
-//				rules = new LinkedList<Query>();
-//				weakFacts.put(ref, rules);
-//			}
-//			rules.add(q);
-//		}
+		String clause = tables.rewriteClause(fact);
+		Query q = prepareGoal("assertz(" + clause.substring(0, clause.lastIndexOf('.')) + ").");
+		try (Solution<?> solution = q.solve(args)) {
+			if (solution.isSuccess()) {
+				factChanged(fact, args, true);
+			}
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The fact is retracted by {@link #retract(String, Object...)} on the
+	 * executor of the prover, in a batch with the other facts whose referent
+	 * has been reclaimed meanwhile.
+	 */
+	@Override
+	public void assertWeak(Object referent, String fact, Object... args) {
+		if (referent == null) {
+			throw new NullPointerException("referent");
+		}
+		assertz(fact, args);
+		weakFacts.add(referent, fact, args.clone());
 	}
 
 	@Override
 	public void retract(String fact) {
-		int lastDot = fact.lastIndexOf('.');
-		int length = fact.length();
-		if (lastDot == -1 || fact.substring(lastDot, length).trim().length() > 1) {
+		String clause = tables.rewriteClause(fact);
+		int lastDot = clause.lastIndexOf('.');
+		int length = clause.length();
+		if (lastDot == -1 || clause.substring(lastDot, length).trim().length() > 1) {
 			lastDot = length;
 		}
-		query("retract(" + fact.substring(0, lastDot) + ").").solve();
+		Query q = query("retract(" + clause.substring(0, lastDot) + ").");
+		try (Solution<?> solution = q.solve()) {
+			if (solution.isSuccess()) {
+				factChanged(fact, new Object[0], false);
+			}
+		}
+	}
+
+	@Override
+	public void retract(String fact, Object... args) {
+		String clause = tables.rewriteClause(fact);
+		Query q = prepareGoal("retract(" + clause.substring(0, clause.lastIndexOf('.')) + ").");
+		try (Solution<?> solution = q.solve(args)) {
+			if (solution.isSuccess()) {
+				factChanged(fact, args, false);
+			}
+		}
 	}
 	
+	/**
+	 * Returns a prepared query for a goal solved, asserted or retracted by the
+	 * prover. The goals with placeholders are taken from the query cache, 
+	 * since they are solved repeatedly with different arguments. The literal 
+	 * goals are rarely repeated, so they are not cached, otherwise they would
+	 * evict the queries of the other goals.
+	 * 
+	 * @param goal the Prolog goal
+	 * @return a query object for the goal
+	 */
+	final Query prepareGoal(String goal) {
+		return goal.indexOf('?') == -1 ? query(goal) : prepare(goal);
+	}
+
+	@Override
+	public void assertAll(String functor, Iterable<Object[]> rows) {
+		try (FactLoader loader = factLoader(functor)) {
+			loader.addAll(rows);
+		}
+	}
+
+	@Override
+	public FactLoader factLoader(String functor) {
+		return new FactLoader(this, functor, FactLoader.DEFAULT_BATCH_SIZE);
+	}
+
+	/**
+	 * Adds a batch of facts to the knowledge base, and notifies the prover of
+	 * the change. It serves for the fact loaders.
+	 * 
+	 * @param name the name of the predicate
+	 * @param arity the arity of the predicate
+	 * @param facts the arguments of each fact
+	 */
+	final void loadFacts(String name, int arity, List<Object[]> facts) {
+		assertFacts(tables.clauseName(name, arity), facts);
+		clausesChanged(fact(name, arity));
+	}
+
+	/**
+	 * Returns the text of a fact of a predicate with unbound arguments. It
+	 * stands for the predicate when the prover is notified of a change.
+	 * 
+	 * @param name the name of the predicate
+	 * @param arity the arity of the predicate
+	 * @return the text of the fact
+	 */
+	private static String fact(String name, int arity) {
+		StringBuilder head = new StringBuilder(ClauseScanner.quote(name));
+		for (int i = 0; i < arity; ++i) {
+			head.append(i == 0 ? "(" : ", ").append('_');
+		}
+		if (arity > 0) {
+			head.append(')');
+		}
+		return head.append('.').toString();
+	}
+
+	@Override
+	public void registerPredicate(String name, Relation relation) {
+		addRelation(name, relation);
+		relation.registered(this, name);
+		clausesChanged(fact(name, relation.getArity()));
+	}
+
+	@Override
+	public void registerPredicate(String name, int arity, Iterable<?> rows) {
+		registerPredicate(name, Relation.of(arity, rows));
+	}
+
+	@Override
+	public void registerPredicate(String name, int arity, Map<?, ?> map) {
+		registerPredicate(name, Relation.of(arity, map));
+	}
+
+	@Override
+	public void registerPredicate(String name, int arity, 
+			Function<Object, ? extends Iterable<?>> lookup) {
+		registerPredicate(name, Relation.lookup(arity, lookup));
+	}
+
+	/**
+	 * Defines a predicate by a relation for 
+	 * {@link #registerPredicate(String, Relation)}. The engines that can call
+	 * Java code from their goals should override it, this implementation 
+	 * throws {@link UnsupportedOperationException}.
+	 * 
+	 * @param name the name of the predicate
+	 * @param relation the relation
+	 */
+	protected void addRelation(String name, Relation relation) {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Notifies the prover that the rows of a relation registered on it have
+	 * changed.
+	 * 
+	 * @param name the name of the predicate of the relation
+	 * @param arity the arity of the predicate
+	 */
+	final void relationChanged(String name, int arity) {
+		clausesChanged(fact(name, arity));
+	}
+
+	/**
+	 * Adds facts of a predicate to the knowledge base. The implementations 
+	 * should override it to create the clauses directly from the converted
+	 * arguments and to add them at once. This implementation adds the 
+	 * {@link #factsToText(String, List) text} of the facts as a theory.
+	 * 
+	 * @param name the name of the predicate
+	 * @param facts the arguments of each fact
+	 */
+	protected void assertFacts(String name, List<Object[]> facts) {
+		addTheory(factsToText(name, facts));
+	}
+
+	/**
+	 * Returns the text of facts of a predicate. The arguments are converted by
+	 * the conversion policy of the prover, and they are written as the terms
+	 * of the engine print themselves. The unbound arguments are 
+	 * <code>null</code>.
+	 * 
+	 * @param name the name of the predicate
+	 * @param facts the arguments of each fact
+	 * @return the text of the facts
+	 */
+	protected final String factsToText(String name, List<Object[]> facts) {
+		ConversionPolicy cp = getConversionPolicy();
+		String functor = ClauseScanner.quote(name);
+		StringBuilder sb = new StringBuilder();
+		for (Object[] args: facts) {
+			sb.append(functor);
+			for (int i = 0; i < args.length; ++i) {
+				Object term = cp.convertObject(args[i]);
+				sb.append(i == 0 ? "(" : ", ").append(term == null ? "_" : term);
+			}
+			if (args.length > 0) {
+				sb.append(')');
+			}
+			sb.append(".\n");
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * This implementation maps the image into memory, and decodes and adds 
+	 * the clauses in batches by {@link #addCompiledClauses(List)}.
+	 */
+	@Override
+	public void loadCompiledTheory(Path image) throws IOException {
+		try (FileChannel channel = FileChannel.open(image, StandardOpenOption.READ)) {
+			loadCompiledTheory(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * This implementation reads the image into memory, and decodes and adds 
+	 * the clauses in batches by {@link #addCompiledClauses(List)}.
+	 */
+	@Override
+	public void loadCompiledTheory(InputStream image) throws IOException {
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		byte[] bytes = new byte[4096];
+		for (int read = image.read(bytes); read != -1; read = image.read(bytes)) {
+			buffer.write(bytes, 0, read);
+		}
+		loadCompiledTheory(ByteBuffer.wrap(buffer.toByteArray()));
+	}
+
+	/**
+	 * Decodes and adds the clauses of an image in batches.
+	 * 
+	 * @param image the image
+	 * @throws IOException if the image is invalid
+	 */
+	private void loadCompiledTheory(ByteBuffer image) throws IOException {
+		Iterator<Object> clauses = ClauseImage.read(image);
+		List<Object> batch = new ArrayList<Object>();
+		while (clauses.hasNext()) {
+			batch.add(clauses.next());
+			if (batch.size() == COMPILED_BATCH_SIZE) {
+				addCompiledClauses(batch);
+				batch = new ArrayList<Object>();
+			}
+		}
+		if (!batch.isEmpty()) {
+			addCompiledClauses(batch);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * This implementation writes the clauses returned by {@link #clauses()}
+	 * through a file channel. The state kept by the prover outside the 
+	 * engine, like the declarations of the tabled predicates and the answer
+	 * cache, is not written.
+	 */
+	@Override
+	public void checkpoint(Path file) throws IOException {
+		Iterable<Object> clauses = clauses();
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16);
+			ClauseImage.write(clauses, out);
+			out.flush();
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * This implementation removes the clauses by {@link #clearClauses()}, and
+	 * loads the checkpoint by {@link #loadCompiledTheory(Path)}. The clauses
+	 * of the tabled predicates are not renamed again, and the tables are 
+	 * completed again before the next goal is solved.
+	 */
+	@Override
+	public void restore(Path file) throws IOException {
+		clearClauses();
+		tables.reset();
+		clausesChanged(null);
+		restoring = true;
+		try {
+			loadCompiledTheory(file);
+		} finally {
+			restoring = false;
+		}
+	}
+
+	/**
+	 * Returns the clauses of the knowledge base for {@link #checkpoint(Path)}.
+	 * The engines that can enumerate their clauses should override it, this
+	 * implementation throws {@link UnsupportedOperationException}.
+	 * 
+	 * @return the clauses in the form of {@link ClauseImage}
+	 */
+	protected Iterable<Object> clauses() {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Removes every clause from the knowledge base for 
+	 * {@link #restore(Path)}. The libraries are kept. The engines that can 
+	 * remove their clauses should override it, this implementation throws 
+	 * {@link UnsupportedOperationException}.
+	 */
+	protected void clearClauses() {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Adds the clauses of a compiled theory to the knowledge base. This 
+	 * implementation adds the canonical text of the clauses by 
+	 * {@link #addTheory(String...)}. The engines that can build their clauses 
+	 * directly should override it, and call 
+	 * {@link #prepareCompiledClauses(List)} before adding the clauses and 
+	 * {@link #compiledClausesChanged(List)} after it.
+	 * 
+	 * @param clauses the clauses in the form of {@link ClauseImage}
+	 */
+	protected void addCompiledClauses(List<Object> clauses) {
+		String[] theory = new String[clauses.size()];
+		for (int i = 0; i < theory.length; ++i) {
+			theory[i] = ClauseImage.toText(clauses.get(i));
+		}
+		addTheory(theory);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * This implementation maps the file into memory and loads it by
+	 * {@link #loadClauses(Reader)}.
+	 */
+	@Override
+	public void loadTheory(Path file) throws IOException {
+		try (Reader reader = new MappedFileReader(file, Charset.defaultCharset())) {
+			loadClauses(reader);
+		}
+	}
+
+	/**
+	 * Loads a Prolog theory clause by clause. The clauses are added by 
+	 * {@link #addTheory(String)} in chunks of about {@value #THEORY_CHUNK_SIZE}
+	 * characters, so the theory is never held in memory at once. The 
+	 * directives are executed by the engine when their chunk is added, so 
+	 * the operators that they define apply to the next chunks.
+	 * 
+	 * @param reader the input of the theory
+	 * @throws IOException if the input cannot be read
+	 */
+	protected final void loadClauses(Reader reader) throws IOException {
+		ClauseReader clauses = new ClauseReader(reader);
+		StringBuilder chunk = new StringBuilder();
+		for (String clause = clauses.next(); clause != null; clause = clauses.next()) {
+			chunk.append(clause).append('\n');
+			if (chunk.length() >= THEORY_CHUNK_SIZE) {
+				addTheory(chunk.toString());
+				chunk.setLength(0);
+			}
+		}
+		if (chunk.length() > 0) {
+			addTheory(chunk.toString());
+		}
+	}
+
 	/** The default conversion policy used by the current implementation. */
 	private static final ConversionPolicy GLOBAL_POLICY = ProverFactory.getConversionPolicy();
 
@@ -108,6 +822,10 @@ public abstract class AbstractProver implements Prover, Serializable {
 	@Override
 	public void setConversionPolicy(ConversionPolicy conversionPolicy) {
 		this.conversionPolicy = conversionPolicy;
+		// The prepared queries use the conversion policy they were created with.
+		queryCache.clear();
+		// The cached values have been converted by the old policy.
+		answerCache.clear();
 	}
 	
 	/** 
@@ -182,6 +900,10 @@ public abstract class AbstractProver implements Prover, Serializable {
 			return delegate.intValue(term);
 		}
 		@Override
+		public long longValue(Object term) {
+			return delegate.longValue(term);
+		}
+		@Override
 		public double doubleValue(Object term) {
 			return delegate.doubleValue(term);
 		}
@@ -197,6 +919,18 @@ public abstract class AbstractProver implements Prover, Serializable {
 		protected Object getArg(Object compound, int index) {
 			return delegate.getArg(compound, index);
 		}
+		@Override
+		protected boolean isListCell(Object term) {
+			return delegate.isListCell(term);
+		}
+		@Override
+		protected Object getHead(Object cell) {
+			return delegate.getHead(cell);
+		}
+		@Override
+		protected Object getTail(Object cell) {
+			return delegate.getTail(cell);
+		}
 
 		@Override
 		public boolean isAtom(Object term) {
@@ -58,5 +58,10 @@ public abstract class AbstractProverFactory implements IProverFactory {
 	public ConversionPolicy getConversionPolicy() {
 		return conversionPolicy;
 	}
+
+	@Override
+	public boolean isReplicable() {
+		return true;
+	}
 	
 }
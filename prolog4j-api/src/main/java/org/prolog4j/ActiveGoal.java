@@ -0,0 +1,111 @@
+/* 
+ * Copyright (c) 2010 Miklos Espak
+ * All rights reserved.
+ * 
+ * Permission is hereby granted, free  of charge, to any person obtaining
+ * a  copy  of this  software  and  associated  documentation files  (the
+ * "Software"), to  deal in  the Software without  restriction, including
+ * without limitation  the rights to  use, copy, modify,  merge, publish,
+ * distribute,  sublicense, and/or sell  copies of  the Software,  and to
+ * permit persons to whom the Software  is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The  above  copyright  notice  and  this permission  notice  shall  be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE  SOFTWARE IS  PROVIDED  "AS  IS", WITHOUT  WARRANTY  OF ANY  KIND,
+ * EXPRESS OR  IMPLIED, INCLUDING  BUT NOT LIMITED  TO THE  WARRANTIES OF
+ * MERCHANTABILITY,    FITNESS    FOR    A   PARTICULAR    PURPOSE    AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE,  ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.prolog4j;
+
+/**
+ * Keeps track of the goal whose alternatives are kept by an engine. The
+ * engines can search for the alternatives of only one goal at a time, so a
+ * new goal replaces the previous one. The search for the alternatives of a
+ * goal is ended when its solutions are closed or reclaimed, unless a later
+ * goal has already replaced it.
+ * <p>
+ * Every access to the active goal has to be synchronized on the engine.
+ */
+public final class ActiveGoal {
+
+	/** The engine that the goals are solved by, also used as lock. */
+	private final Object engine;
+
+	/** Ends the search of the engine for the alternatives of the goal. */
+	private final Runnable endSearch;
+
+	/** 
+	 * Identifies the goal whose alternatives are kept by the engine, or 
+	 * <code>null</code> if there is no such goal.
+	 */
+	private Object goal;
+
+	/**
+	 * Creates the tracker of the active goal of an engine.
+	 * 
+	 * @param engine the engine
+	 * @param endSearch ends the search of the engine for the alternatives of
+	 * 		the active goal, e.g. by calling <code>solveEnd</code>
+	 */
+	public ActiveGoal(Object engine, Runnable endSearch) {
+		this.engine = engine;
+		this.endSearch = endSearch;
+	}
+
+	/**
+	 * Makes the goal that the engine has just started solving the active goal.
+	 * The caller has to hold the lock of the engine. The returned action 
+	 * ends the search for the alternatives of the goal, and it should be 
+	 * registered by {@link Solution#releaseOnClose(Runnable)}.
+	 * 
+	 * @return the release action of the goal
+	 */
+	public Runnable replace() {
+		Object token = new Object();
+		goal = token;
+		return new Release(this, token);
+	}
+
+	/**
+	 * Ends the search of the engine for the alternatives of a goal, unless a
+	 * later goal has replaced it. It does not refer to the solution, so it
+	 * can be run after the solution has been reclaimed.
+	 */
+	private static final class Release implements Runnable {
+
+		/** The active goal of the engine. */
+		private final ActiveGoal active;
+
+		/** Identifies the goal whose search has to be ended. */
+		private final Object goal;
+
+		/**
+		 * Creates the release action of a goal.
+		 * 
+		 * @param active the active goal of the engine
+		 * @param goal identifies the goal
+		 */
+		Release(ActiveGoal active, Object goal) {
+			this.active = active;
+			this.goal = goal;
+		}
+
+		@Override
+		public void run() {
+			synchronized (active.engine) {
+				if (active.goal == goal) {
+					active.goal = null;
+					active.endSearch.run();
+				}
+			}
+		}
+
+	}
+
+}
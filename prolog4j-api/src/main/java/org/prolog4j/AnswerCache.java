@@ -0,0 +1,651 @@
+/* 
+ * Copyright (c) 2010 Miklos Espak
+ * All rights reserved.
+ * 
+ * Permission is hereby granted, free  of charge, to any person obtaining
+ * a  copy  of this  software  and  associated  documentation files  (the
+ * "Software"), to  deal in  the Software without  restriction, including
+ * without limitation  the rights to  use, copy, modify,  merge, publish,
+ * distribute,  sublicense, and/or sell  copies of  the Software,  and to
+ * permit persons to whom the Software  is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The  above  copyright  notice  and  this permission  notice  shall  be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE  SOFTWARE IS  PROVIDED  "AS  IS", WITHOUT  WARRANTY  OF ANY  KIND,
+ * EXPRESS OR  IMPLIED, INCLUDING  BUT NOT LIMITED  TO THE  WARRANTIES OF
+ * MERCHANTABILITY,    FITNESS    FOR    A   PARTICULAR    PURPOSE    AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE,  ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.prolog4j;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An opt-in cache of the solutions of goals, keyed by the goal and the 
+ * converted values of its arguments. If it is enabled, 
+ * {@link AbstractProver#solve(String, Object...)} looks up the answer here
+ * first. When the goal is solved for the first time, all of its solutions are
+ * collected and stored, and they are replayed by the later calls.
+ * <p>
+ * A stored answer is removed only when the knowledge base of the prover is
+ * modified at a predicate that the goal depends on. The goal depends on the
+ * predicates that it calls, and on the predicates called by the rules of
+ * these predicates, transitively. The cache learns the rules from the clauses
+ * added by the prover, and identifies the predicates by their name only, so
+ * that meta-calls adding further arguments are covered as well. A clause 
+ * whose predicate cannot be determined (a directive, for instance) and the
+ * loading of a library remove every answer.
+ * <p>
+ * The cache is meant for goals whose solutions depend only on the knowledge
+ * base. Goals that modify the knowledge base by themselves (by 
+ * <code>assert</code> or <code>retract</code>, for instance) are not cached,
+ * and solving them removes every answer. The knowledge base must not be 
+ * modified by other means than the prover, e.g. by a prepared query, while 
+ * answers are cached. The values of the cached solutions are converted when 
+ * the answer is stored, and they are shared by the later calls, so they must
+ * not be modified.
+ * <p>
+ * The cache is disabled by default, its capacity is zero. It stores at most
+ * {@link #getCapacity()} answers whose total weight is at most 
+ * {@link #getMaxWeight()}. The weight of an answer is the number of its 
+ * solutions times the number of variables of the goal, plus one. When the
+ * cache is full, the least recently used answers are evicted. The goals that 
+ * have too many solutions to be stored are solved again without caching; the
+ * goals that have infinitely many solutions must not be solved while the 
+ * cache is enabled.
+ * <p>
+ * The cache can be used from several threads at the same time.
+ */
+public final class AnswerCache {
+
+	/** The default maximal total weight of the stored answers. */
+	public static final long DEFAULT_MAX_WEIGHT = 1 << 20;
+
+	/** The predicates that modify the knowledge base. */
+	private static final Set<String> MODIFYING_PREDICATES = new HashSet<String>(
+			Arrays.asList("assert", "asserta", "assertz", "retract", "retractall",
+					"abolish", "consult", "reconsult", "ensure_loaded", 
+					"load_files", "recorda", "recordz", "erase"));
+
+	/** Marks the variables that have no binding in a solution. */
+	private static final Object UNKNOWN = new Object();
+
+	/** The maximal number of answers stored by the cache. */
+	private volatile int capacity;
+
+	/** The maximal total weight of the stored answers. */
+	private long maxWeight = DEFAULT_MAX_WEIGHT;
+
+	/** The total weight of the stored answers. */
+	private long weight;
+
+	/** Stores the answers assigned to their key, in access order. */
+	private final LinkedHashMap<List<String>, Answer> answers = 
+		new LinkedHashMap<List<String>, Answer>(16, 0.75f, true);
+
+	/** Stores the keys of the answers that depend on a predicate. */
+	private final Map<String, Set<List<String>>> dependents = 
+		new HashMap<String, Set<List<String>>>();
+
+	/** Knows the predicates called by the rules of the knowledge base. */
+	private final DependencyGraph graph;
+
+	/** 
+	 * Counts the modifications of the knowledge base. The answers collected
+	 * during a modification are not stored.
+	 */
+	private long generation;
+
+	/** The number of lookups that have found an answer. */
+	private final AtomicLong hits = new AtomicLong();
+
+	/** The number of lookups that have not found an answer. */
+	private final AtomicLong misses = new AtomicLong();
+
+	/** The number of answers removed because the cache was full. */
+	private final AtomicLong evictions = new AtomicLong();
+
+	/** The number of answers removed because the knowledge base changed. */
+	private final AtomicLong invalidations = new AtomicLong();
+
+	/**
+	 * Creates a disabled answer cache.
+	 * 
+	 * @param graph knows the predicates called by the rules of the knowledge
+	 * 		base
+	 */
+	AnswerCache(DependencyGraph graph) {
+		this.graph = graph;
+	}
+
+	/**
+	 * Returns whether the cache is enabled, that is, its capacity is not zero.
+	 * 
+	 * @return <code>true</code> if the cache is enabled
+	 */
+	boolean isEnabled() {
+		return capacity > 0;
+	}
+
+	/**
+	 * Returns the solutions of a prepared goal. They are replayed from the 
+	 * cache if they have been stored, otherwise the goal is solved and its
+	 * solutions are stored if possible.
+	 * 
+	 * @param <A> the type of the values of the variable that is of special 
+	 * 		interest
+	 * @param query the query prepared for the goal
+	 * @param goal the goal that the query has been prepared for
+	 * @param actualArgs the actual arguments of the goal
+	 * @param cp the conversion policy of the prover
+	 * @return the solutions of the goal
+	 */
+	<A> Solution<A> solve(Query query, String goal, Object[] actualArgs, 
+			ConversionPolicy cp) {
+		Object[] values = query.getPlaceholderValues(actualArgs);
+		List<String> key = new ArrayList<String>(values.length + 1);
+		key.add(goal);
+		for (Object value: values) {
+			key.add(value == null ? null : String.valueOf(cp.convertObject(value)));
+		}
+		Answer answer;
+		long startGeneration;
+		synchronized (answers) {
+			answer = answers.get(key);
+			startGeneration = generation;
+		}
+		if (answer != null) {
+			hits.incrementAndGet();
+			return new CachedSolution<A>(answer, cp);
+		}
+		misses.incrementAndGet();
+		Set<String> dependencies = dependencies(goal);
+		if (dependencies == null) {
+			clear();
+			return query.solve(actualArgs);
+		}
+		answer = collect(query, actualArgs, dependencies);
+		if (answer == null) {
+			return query.solve(actualArgs);
+		}
+		synchronized (answers) {
+			if (generation == startGeneration) {
+				store(key, answer);
+			}
+		}
+		return new CachedSolution<A>(answer, cp);
+	}
+
+	/**
+	 * Returns the names of the predicates that a goal depends on.
+	 * 
+	 * @param goal the Prolog goal
+	 * @return the names of the predicates, or <code>null</code> if the goal
+	 * 		may modify the knowledge base
+	 */
+	private Set<String> dependencies(String goal) {
+		Set<String> names = graph.closure(ClauseScanner.names(goal));
+		for (String name: names) {
+			if (MODIFYING_PREDICATES.contains(name)) {
+				return null;
+			}
+		}
+		return names;
+	}
+
+	/**
+	 * Solves a goal and collects all of its solutions.
+	 * 
+	 * @param query the query prepared for the goal
+	 * @param actualArgs the actual arguments of the goal
+	 * @param dependencies the names of the predicates that the goal depends on
+	 * @return the answer, or <code>null</code> if it would be heavier than the
+	 * 		maximal weight
+	 */
+	private Answer collect(Query query, Object[] actualArgs, Set<String> dependencies) {
+		long limit;
+		synchronized (answers) {
+			limit = maxWeight;
+		}
+		List<String> variables = query.getVariables();
+		int width = variables.size();
+		List<Object[]> rows = new ArrayList<Object[]>();
+		long answerWeight = 1;
+		Solution<Object> solution = query.solve(actualArgs);
+		try {
+			if (solution.isSuccess()) {
+				do {
+					answerWeight += Math.max(width, 1);
+					if (answerWeight > limit) {
+						return null;
+					}
+					Object[] row = new Object[width];
+					for (int i = 0; i < width; ++i) {
+						try {
+							row[i] = solution.get(i);
+						} catch (UnknownVariableException e) {
+							row[i] = UNKNOWN;
+						}
+					}
+					rows.add(row);
+				} while (solution.fetch());
+			}
+			return new Answer(variables.toArray(new String[width]), rows, 
+					solution.getDefaultOutputVariable(), answerWeight, dependencies);
+		} finally {
+			solution.close();
+		}
+	}
+
+	/**
+	 * Stores an answer and evicts the least recently used answers if the 
+	 * cache is full. The caller must hold the lock of the answers.
+	 * 
+	 * @param key the key of the answer
+	 * @param answer the answer
+	 */
+	private void store(List<String> key, Answer answer) {
+		Answer old = answers.put(key, answer);
+		if (old != null) {
+			unlink(key, old);
+		}
+		weight += answer.weight;
+		for (String name: answer.dependencies) {
+			Set<List<String>> keys = dependents.get(name);
+			if (keys == null) {
+				keys = new HashSet<List<String>>();
+				dependents.put(name, keys);
+			}
+			keys.add(key);
+		}
+		evict();
+	}
+
+	/**
+	 * Evicts the least recently used answers until the cache is not full. The
+	 * caller must hold the lock of the answers.
+	 */
+	private void evict() {
+		Iterator<Map.Entry<List<String>, Answer>> it = answers.entrySet().iterator();
+		while (it.hasNext() && (answers.size() > capacity || weight > maxWeight)) {
+			Map.Entry<List<String>, Answer> eldest = it.next();
+			it.remove();
+			unlink(eldest.getKey(), eldest.getValue());
+			evictions.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Forgets the weight and the dependencies of a removed answer. The caller
+	 * must hold the lock of the answers.
+	 * 
+	 * @param key the key of the answer
+	 * @param answer the removed answer
+	 */
+	private void unlink(List<String> key, Answer answer) {
+		weight -= answer.weight;
+		for (String name: answer.dependencies) {
+			Set<List<String>> keys = dependents.get(name);
+			if (keys != null) {
+				keys.remove(key);
+				if (keys.isEmpty()) {
+					dependents.remove(name);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Removes the answers that depend on modified predicates.
+	 * 
+	 * @param heads the names of the modified predicates, or <code>null</code>
+	 * 		if they are not known
+	 */
+	void invalidate(Set<String> heads) {
+		if (heads == null) {
+			clear();
+			return;
+		}
+		synchronized (answers) {
+			++generation;
+			for (String head: heads) {
+				Set<List<String>> keys = dependents.remove(head);
+				if (keys == null) {
+					continue;
+				}
+				for (List<String> key: keys) {
+					Answer answer = answers.remove(key);
+					if (answer != null) {
+						unlink(key, answer);
+						invalidations.incrementAndGet();
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Removes every answer from the cache. The counters are not reset.
+	 */
+	public void clear() {
+		synchronized (answers) {
+			++generation;
+			answers.clear();
+			dependents.clear();
+			weight = 0;
+		}
+	}
+
+	/**
+	 * Returns the maximal number of answers stored by the cache.
+	 * 
+	 * @return the capacity of the cache
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Changes the maximal number of answers stored by the cache. If there are
+	 * more answers in the cache, the least recently used ones are evicted.
+	 * Zero capacity disables caching.
+	 * 
+	 * @param capacity the new capacity
+	 */
+	public void setCapacity(int capacity) {
+		if (capacity < 0) {
+			throw new IllegalArgumentException("Negative capacity: " + capacity);
+		}
+		synchronized (answers) {
+			this.capacity = capacity;
+			evict();
+		}
+	}
+
+	/**
+	 * Returns the maximal total weight of the answers stored by the cache.
+	 * 
+	 * @return the maximal weight
+	 */
+	public long getMaxWeight() {
+		synchronized (answers) {
+			return maxWeight;
+		}
+	}
+
+	/**
+	 * Changes the maximal total weight of the answers stored by the cache. If
+	 * the stored answers are heavier, the least recently used ones are 
+	 * evicted.
+	 * 
+	 * @param maxWeight the new maximal weight
+	 */
+	public void setMaxWeight(long maxWeight) {
+		if (maxWeight < 1) {
+			throw new IllegalArgumentException("Non-positive weight: " + maxWeight);
+		}
+		synchronized (answers) {
+			this.maxWeight = maxWeight;
+			evict();
+		}
+	}
+
+	/**
+	 * Returns the number of answers currently stored by the cache.
+	 * 
+	 * @return the number of answers in the cache
+	 */
+	public int size() {
+		synchronized (answers) {
+			return answers.size();
+		}
+	}
+
+	/**
+	 * Returns the total weight of the answers currently stored by the cache.
+	 * 
+	 * @return the weight of the answers in the cache
+	 */
+	public long getWeight() {
+		synchronized (answers) {
+			return weight;
+		}
+	}
+
+	/**
+	 * Returns the number of lookups that have found an answer.
+	 * 
+	 * @return the number of hits
+	 */
+	public long getHitCount() {
+		return hits.get();
+	}
+
+	/**
+	 * Returns the number of lookups that have not found an answer.
+	 * 
+	 * @return the number of misses
+	 */
+	public long getMissCount() {
+		return misses.get();
+	}
+
+	/**
+	 * Returns the number of answers that have been removed because the cache
+	 * was full.
+	 * 
+	 * @return the number of evictions
+	 */
+	public long getEvictionCount() {
+		return evictions.get();
+	}
+
+	/**
+	 * Returns the number of answers that have been removed because a 
+	 * predicate that they depend on has been modified.
+	 * 
+	 * @return the number of invalidations
+	 */
+	public long getInvalidationCount() {
+		return invalidations.get();
+	}
+
+	/**
+	 * The stored solutions of a goal.
+	 */
+	private static final class Answer {
+
+		/** The names of the variables of the goal. */
+		private final String[] variables;
+
+		/** The values of the variables in each solution. */
+		private final List<Object[]> rows;
+
+		/** The name of the variable that is of special interest. */
+		private final String defaultVariable;
+
+		/** The weight of the answer. */
+		private final long weight;
+
+		/** The names of the predicates that the goal depends on. */
+		private final Set<String> dependencies;
+
+		/**
+		 * Creates an answer.
+		 * 
+		 * @param variables the names of the variables of the goal
+		 * @param rows the values of the variables in each solution
+		 * @param defaultVariable the name of the variable that is of special
+		 * 		interest
+		 * @param weight the weight of the answer
+		 * @param dependencies the names of the predicates that the goal 
+		 * 		depends on
+		 */
+		Answer(String[] variables, List<Object[]> rows, String defaultVariable,
+				long weight, Set<String> dependencies) {
+			this.variables = variables;
+			this.rows = Collections.unmodifiableList(rows);
+			this.defaultVariable = defaultVariable;
+			this.weight = weight;
+			this.dependencies = dependencies;
+		}
+
+	}
+
+	/**
+	 * Replays the stored solutions of a goal.
+	 * 
+	 * @param <S> the type of the values of the variable that is of special
+	 *            interest
+	 */
+	private static final class CachedSolution<S> extends Solution<S> {
+
+		/** The replayed answer. */
+		private final Answer answer;
+
+		/** Converts the values to the requested types. */
+		private final ConversionPolicy cp;
+
+		/** The index of the current solution. */
+		private int index;
+
+		/**
+		 * Creates a solution that replays an answer.
+		 * 
+		 * @param answer the answer
+		 * @param cp the conversion policy of the prover
+		 */
+		CachedSolution(Answer answer, ConversionPolicy cp) {
+			this.answer = answer;
+			this.cp = cp;
+			on(answer.defaultVariable);
+			setVariables(Arrays.asList(answer.variables));
+		}
+
+		@Override
+		public boolean isSuccess() {
+			return !answer.rows.isEmpty();
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public <A> A get(String variable) {
+			if (clazz != null) {
+				return (A) get(variable, clazz);
+			}
+			return (A) value(variable);
+		}
+
+		@Override
+		public <A> A get(String variable, Class<A> type) {
+			return convert(value(variable), type);
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public <A> A get(int slot) {
+			if (clazz != null && isDefaultSlot(slot)) {
+				return (A) convert(value(slot), clazz);
+			}
+			return (A) value(slot);
+		}
+
+		/**
+		 * Converts a stored value to the requested type.
+		 * 
+		 * @param <A> the type of the value
+		 * @param value the stored value
+		 * @param type the requested type
+		 * @return the converted value
+		 */
+		@SuppressWarnings("unchecked")
+		private <A> A convert(Object value, Class<A> type) {
+			if (value == null || type.isInstance(value)) {
+				return (A) value;
+			}
+			return cp.convertTerm(cp.convertObject(value), type);
+		}
+
+		/**
+		 * Returns the value of a variable in the current solution.
+		 * 
+		 * @param variable the name of the variable
+		 * @return the value of the variable
+		 * @throws UnknownVariableException if the goal has no such variable
+		 */
+		private Object value(String variable) {
+			String[] variables = answer.variables;
+			for (int i = 0; i < variables.length; ++i) {
+				if (variables[i].equals(variable)) {
+					return value(i);
+				}
+			}
+			throw new UnknownVariableException(variable);
+		}
+
+		/**
+		 * Returns the value of the variable of a slot in the current solution.
+		 * 
+		 * @param slot the slot of the variable
+		 * @return the value of the variable
+		 * @throws UnknownVariableException if the variable was not bound by
+		 * 		the engine
+		 */
+		private Object value(int slot) {
+			Object value = answer.rows.get(index)[slot];
+			if (value == UNKNOWN) {
+				throw new UnknownVariableException(answer.variables[slot]);
+			}
+			return value;
+		}
+
+		@Override
+		protected boolean fetch() {
+			if (index + 1 < answer.rows.size()) {
+				++index;
+				return true;
+			}
+			return false;
+		}
+
+		@SuppressWarnings({"rawtypes", "unchecked"})
+		@Override
+		public void collect(Collection... collections) {
+			SolutionIterator<S> it = iterator();
+			while (it.hasNext()) {
+				it.next();
+				for (int i = 0; i < collections.length; ++i) {
+					collections[i].add(it.get(answer.variables[i]));
+				}
+			}
+		}
+
+		@Override
+		public List<?>[] toLists() {
+			List<?>[] lists = new List<?>[answer.variables.length];
+			for (int i = 0; i < lists.length; ++i) {
+				lists[i] = new ArrayList<Object>();
+			}
+			collect(lists);
+			return lists;
+		}
+
+	}
+
+}
@@ -0,0 +1,50 @@
+/* 
+ * Copyright (c) 2010 Miklos Espak
+ * All rights reserved.
+ * 
+ * Permission is hereby granted, free  of charge, to any person obtaining
+ * a  copy  of this  software  and  associated  documentation files  (the
+ * "Software"), to  deal in  the Software without  restriction, including
+ * without limitation  the rights to  use, copy, modify,  merge, publish,
+ * distribute,  sublicense, and/or sell  copies of  the Software,  and to
+ * permit persons to whom the Software  is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The  above  copyright  notice  and  this permission  notice  shall  be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE  SOFTWARE IS  PROVIDED  "AS  IS", WITHOUT  WARRANTY  OF ANY  KIND,
+ * EXPRESS OR  IMPLIED, INCLUDING  BUT NOT LIMITED  TO THE  WARRANTIES OF
+ * MERCHANTABILITY,    FITNESS    FOR    A   PARTICULAR    PURPOSE    AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE,  ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.prolog4j;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A {@link SolutionIterator} that can search for the next solution without
+ * blocking the calling thread. The search is performed on the executor of
+ * the prover, see {@link Prover#getExecutor()}.
+ * <p>
+ * When the future returned by {@link #hasNextAsync()} has completed, 
+ * {@link #hasNext()} and {@link #next()} return immediately.
+ * 
+ * @param <S>
+ *            the type of the values of the variable that is of special interest
+ */
+public interface AsyncSolutionIterator<S> extends SolutionIterator<S> {
+
+	/**
+	 * Searches for the next solution asynchronously, unless it has already 
+	 * been found. The returned future completes with <tt>true</tt> if there
+	 * is a next solution, otherwise with <tt>false</tt>.
+	 * 
+	 * @return a future telling whether there is a next solution
+	 */
+	CompletableFuture<Boolean> hasNextAsync();
+
+}
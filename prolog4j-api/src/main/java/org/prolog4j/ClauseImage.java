@@ -0,0 +1,625 @@
+/* 
+ * Copyright (c) 2010 Miklos Espak
+ * All rights reserved.
+ * 
+ * Permission is hereby granted, free  of charge, to any person obtaining
+ * a  copy  of this  software  and  associated  documentation files  (the
+ * "Software"), to  deal in  the Software without  restriction, including
+ * without limitation  the rights to  use, copy, modify,  merge, publish,
+ * distribute,  sublicense, and/or sell  copies of  the Software,  and to
+ * permit persons to whom the Software  is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The  above  copyright  notice  and  this permission  notice  shall  be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE  SOFTWARE IS  PROVIDED  "AS  IS", WITHOUT  WARRANTY  OF ANY  KIND,
+ * EXPRESS OR  IMPLIED, INCLUDING  BUT NOT LIMITED  TO THE  WARRANTIES OF
+ * MERCHANTABILITY,    FITNESS    FOR    A   PARTICULAR    PURPOSE    AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE,  ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.prolog4j;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Reads and writes clause images, the binary form of the parsed clauses of a
+ * theory. The images are produced at build time, and they are loaded by 
+ * {@link Prover#loadCompiledTheory(java.nio.file.Path)} without parsing the
+ * text of the theory.
+ * <p>
+ * The clauses are represented as trees. The atoms are {@link String} 
+ * objects, the numbers are {@link Integer}, {@link Long}, {@link Float} and 
+ * {@link Double} objects, the compound terms are {@link Compound} objects and
+ * the variables are {@link Variable} objects, numbered from <tt>0</tt> in 
+ * each clause. The lists are compound terms with the functor <tt>.</tt>.
+ * <p>
+ * An image starts with a header, and it is followed by the clauses, each of
+ * them with the number of its variables. The terms are written in prefix 
+ * order, with a tag byte before each of them. The names of the atoms and 
+ * the functors are referred to by their index, and they are written in 
+ * place when they occur first. The clauses are followed by an end mark and
+ * the number of the clauses, so an image can be written in one pass, while
+ * the clauses are enumerated. (The images of the first version start with 
+ * the table of the names and the number of the clauses. They can still be
+ * read.)
+ */
+public final class ClauseImage {
+
+	/** The first four bytes of the images. */
+	private static final int MAGIC = 0x50344A49;
+
+	/** The version of the format of the images. */
+	private static final int VERSION = 2;
+
+	/** The version of the images that start with the table of the names. */
+	private static final int VERSION_TABLE = 1;
+
+	/** Stands in place of the number of variables after the last clause. */
+	private static final int END = -1;
+
+	/** The tag of the variables. */
+	private static final byte VARIABLE = 0;
+
+	/** The tag of the atoms. */
+	private static final byte ATOM = 1;
+
+	/** The tag of the integers. */
+	private static final byte INT = 2;
+
+	/** The tag of the long integers. */
+	private static final byte LONG = 3;
+
+	/** The tag of the floats. */
+	private static final byte FLOAT = 4;
+
+	/** The tag of the doubles. */
+	private static final byte DOUBLE = 5;
+
+	/** The tag of the compound terms. */
+	private static final byte COMPOUND = 6;
+
+	/** The encoding of the names. */
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	/**
+	 * Represents a variable of a clause.
+	 */
+	public static final class Variable implements Serializable {
+
+		/** Class version for serialization. */
+		private static final long serialVersionUID = 1L;
+
+		/** The number of the variable in its clause. */
+		private final int index;
+
+		/**
+		 * Creates a variable.
+		 * 
+		 * @param index the number of the variable in its clause
+		 */
+		public Variable(int index) {
+			if (index < 0) {
+				throw new IllegalArgumentException("index: " + index);
+			}
+			this.index = index;
+		}
+
+		/**
+		 * Returns the number of the variable in its clause.
+		 * 
+		 * @return the number of the variable
+		 */
+		public int getIndex() {
+			return index;
+		}
+
+		@Override
+		public int hashCode() {
+			return index;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof Variable && ((Variable) obj).index == index;
+		}
+
+		@Override
+		public String toString() {
+			return "V" + index;
+		}
+
+	}
+
+	/**
+	 * This class is not instantiable.
+	 */
+	private ClauseImage() {
+	}
+
+	/**
+	 * Writes the image of clauses.
+	 * 
+	 * @param clauses the clauses
+	 * @param out the stream to write to, which is not closed
+	 * @throws IOException if the image cannot be written
+	 * @throws IllegalArgumentException if a clause contains an object that is
+	 * 		not a term
+	 */
+	public static void write(Iterable<?> clauses, OutputStream out) throws IOException {
+		Map<String, Integer> names = new HashMap<String, Integer>();
+		DataOutputStream dataOut = new DataOutputStream(out);
+		dataOut.writeInt(MAGIC);
+		dataOut.writeInt(VERSION);
+		int count = 0;
+		for (Object clause: clauses) {
+			dataOut.writeInt(variableCount(clause));
+			writeTerm(clause, dataOut, names);
+			++count;
+		}
+		dataOut.writeInt(END);
+		dataOut.writeInt(count);
+		dataOut.flush();
+	}
+
+	/**
+	 * Returns the number of the variables of a clause.
+	 * 
+	 * @param term the clause or one of its subterms
+	 * @return the greatest number of its variables plus one
+	 */
+	private static int variableCount(Object term) {
+		int count = 0;
+		// The last arguments are followed by iteration, so long lists are fine.
+		while (term instanceof Compound) {
+			Object[] args = ((Compound) term).getArgs();
+			for (int i = 0; i < args.length - 1; ++i) {
+				count = Math.max(count, variableCount(args[i]));
+			}
+			term = args[args.length - 1];
+		}
+		if (term instanceof Variable) {
+			count = Math.max(count, ((Variable) term).index + 1);
+		}
+		return count;
+	}
+
+	/**
+	 * Writes a term.
+	 * 
+	 * @param term the term
+	 * @param out the stream to write to
+	 * @param names the indices of the names written so far
+	 * @throws IOException if the term cannot be written
+	 */
+	private static void writeTerm(Object term, DataOutputStream out, 
+			Map<String, Integer> names) throws IOException {
+		while (term instanceof Compound) {
+			Compound compound = (Compound) term;
+			out.writeByte(COMPOUND);
+			writeName(compound.getFunctor(), out, names);
+			out.writeInt(compound.getArity());
+			for (int i = 0; i < compound.getArity() - 1; ++i) {
+				writeTerm(compound.getArg(i), out, names);
+			}
+			term = compound.getArg(compound.getArity() - 1);
+		}
+		if (term instanceof Variable) {
+			out.writeByte(VARIABLE);
+			out.writeInt(((Variable) term).index);
+		} else if (term instanceof String) {
+			out.writeByte(ATOM);
+			writeName((String) term, out, names);
+		} else if (term instanceof Integer) {
+			out.writeByte(INT);
+			out.writeInt((Integer) term);
+		} else if (term instanceof Long) {
+			out.writeByte(LONG);
+			out.writeLong((Long) term);
+		} else if (term instanceof Float) {
+			out.writeByte(FLOAT);
+			out.writeFloat((Float) term);
+		} else if (term instanceof Double) {
+			out.writeByte(DOUBLE);
+			out.writeDouble((Double) term);
+		} else {
+			throw new IllegalArgumentException("Not a term: " + term);
+		}
+	}
+
+	/**
+	 * Writes the index of a name. The name itself is written after its index
+	 * when it occurs first.
+	 * 
+	 * @param name the name
+	 * @param out the stream to write to
+	 * @param names the indices of the names written so far
+	 * @throws IOException if the name cannot be written
+	 */
+	private static void writeName(String name, DataOutputStream out, 
+			Map<String, Integer> names) throws IOException {
+		Integer index = names.get(name);
+		if (index != null) {
+			out.writeInt(index);
+			return;
+		}
+		out.writeInt(names.size());
+		names.put(name, names.size());
+		byte[] bytes = name.getBytes(UTF8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	/**
+	 * Reads the clauses of an image. The clauses are decoded one by one, as 
+	 * the iterator proceeds.
+	 * 
+	 * @param image the image, from its current position
+	 * @return the iterator of the clauses
+	 * @throws IOException if the image is invalid
+	 */
+	public static Iterator<Object> read(final ByteBuffer image) throws IOException {
+		if (image.remaining() < 8 || image.getInt() != MAGIC) {
+			throw new IOException("Not a clause image.");
+		}
+		int version = image.getInt();
+		if (version != VERSION && version != VERSION_TABLE) {
+			throw new IOException("Unsupported clause image version: " + version);
+		}
+		final List<String> table = new ArrayList<String>();
+		final int count;
+		if (version == VERSION_TABLE) {
+			for (int i = image.getInt(); i > 0; --i) {
+				table.add(readName(image));
+			}
+			count = image.getInt();
+		} else {
+			count = -1;
+		}
+		return new Iterator<Object>() {
+
+			/** The number of the clauses read. */
+			private int read;
+
+			/** The number of variables of the next clause, if it is read. */
+			private Integer next;
+
+			@Override
+			public boolean hasNext() {
+				if (count >= 0) {
+					return read < count;
+				}
+				if (next == null) {
+					next = image.getInt();
+					if (next == END && image.getInt() != read) {
+						throw new IllegalStateException("Truncated clause image.");
+					}
+				}
+				return next != END;
+			}
+
+			@Override
+			public Object next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				++read;
+				if (next == null) {
+					image.getInt();
+				}
+				next = null;
+				return readTerm(image, table);
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+
+		};
+	}
+
+	/**
+	 * Reads a name, preceded by the number of its bytes.
+	 * 
+	 * @param image the image
+	 * @return the name
+	 */
+	private static String readName(ByteBuffer image) {
+		byte[] bytes = new byte[image.getInt()];
+		image.get(bytes);
+		return new String(bytes, UTF8);
+	}
+
+	/**
+	 * Reads the index of a name, and the name too if it occurs first.
+	 * 
+	 * @param image the image
+	 * @param table the names read so far
+	 * @return the name
+	 */
+	private static String readName(ByteBuffer image, List<String> table) {
+		int index = image.getInt();
+		if (index == table.size()) {
+			table.add(readName(image));
+		}
+		return table.get(index);
+	}
+
+	/**
+	 * Reads a term. The last arguments of the compound terms are read by 
+	 * iteration, so long lists do not exhaust the stack.
+	 * 
+	 * @param image the image
+	 * @param table the names read so far
+	 * @return the term
+	 */
+	private static Object readTerm(ByteBuffer image, List<String> table) {
+		Object root = null;
+		Object[] parent = null;
+		while (true) {
+			Object term;
+			Object[] args = null;
+			byte tag = image.get();
+			switch (tag) {
+			case VARIABLE:
+				term = new Variable(image.getInt());
+				break;
+			case ATOM:
+				term = readName(image, table);
+				break;
+			case INT:
+				term = image.getInt();
+				break;
+			case LONG:
+				term = image.getLong();
+				break;
+			case FLOAT:
+				term = image.getFloat();
+				break;
+			case DOUBLE:
+				term = image.getDouble();
+				break;
+			case COMPOUND:
+				String functor = readName(image, table);
+				args = new Object[image.getInt()];
+				for (int i = 0; i < args.length - 1; ++i) {
+					args[i] = readTerm(image, table);
+				}
+				term = new Compound(functor, args);
+				break;
+			default:
+				throw new IllegalStateException("Invalid tag in clause image: " + tag);
+			}
+			if (parent == null) {
+				root = term;
+			} else {
+				parent[parent.length - 1] = term;
+			}
+			if (args == null || args.length == 0) {
+				return root;
+			}
+			parent = args;
+		}
+	}
+
+	/**
+	 * Returns the head of a clause.
+	 * 
+	 * @param clause the clause
+	 * @return the head of the clause, or <code>null</code> if the clause is a
+	 * 		directive or its head is not an atom or a compound term
+	 */
+	static Object head(Object clause) {
+		if (clause instanceof Compound) {
+			Compound compound = (Compound) clause;
+			String functor = compound.getFunctor();
+			if (functor.equals(":-") || functor.equals("?-")) {
+				return compound.getArity() == 2 && functor.equals(":-") 
+						? head(compound.getArg(0)) : null;
+			}
+			return clause;
+		}
+		return clause instanceof String ? clause : null;
+	}
+
+	/**
+	 * Returns the name of a head.
+	 * 
+	 * @param head an atom or a compound term
+	 * @return the name of the head
+	 */
+	static String name(Object head) {
+		return head instanceof Compound ? ((Compound) head).getFunctor() : (String) head;
+	}
+
+	/**
+	 * Returns the arity of a head.
+	 * 
+	 * @param head an atom or a compound term
+	 * @return the arity of the head
+	 */
+	static int arity(Object head) {
+		return head instanceof Compound ? ((Compound) head).getArity() : 0;
+	}
+
+	/**
+	 * Renames the head of a clause.
+	 * 
+	 * @param clause the clause, which is not a directive
+	 * @param name the new name of its head
+	 * @return the renamed clause
+	 */
+	static Object rename(Object clause, String name) {
+		if (clause instanceof Compound) {
+			Compound compound = (Compound) clause;
+			if (compound.getFunctor().equals(":-") && compound.getArity() == 2) {
+				return new Compound(":-", rename(compound.getArg(0), name), compound.getArg(1));
+			}
+			return new Compound(name, compound.getArgs());
+		}
+		return name;
+	}
+
+	/**
+	 * Returns the names in the body of a rule, like 
+	 * {@link ClauseScanner#bodyNames(String)}.
+	 * 
+	 * @param clause the clause
+	 * @return the names in the body of the clause
+	 */
+	static Set<String> bodyNames(Object clause) {
+		Set<String> names = new HashSet<String>();
+		if (clause instanceof Compound && ((Compound) clause).getArity() == 2) {
+			Compound compound = (Compound) clause;
+			if (compound.getFunctor().equals(":-") || compound.getFunctor().equals("-->")) {
+				collectNames(compound.getArg(1), names);
+			}
+		}
+		return names;
+	}
+
+	/**
+	 * Collects the names of the atoms and the functors of a term.
+	 * 
+	 * @param term the term
+	 * @param names the set to add the names to
+	 */
+	private static void collectNames(Object term, Set<String> names) {
+		while (term instanceof Compound) {
+			Compound compound = (Compound) term;
+			names.add(compound.getFunctor());
+			for (int i = 0; i < compound.getArity() - 1; ++i) {
+				collectNames(compound.getArg(i), names);
+			}
+			term = compound.getArg(compound.getArity() - 1);
+		}
+		if (term instanceof String) {
+			names.add((String) term);
+		}
+	}
+
+	/**
+	 * Returns the predicates declared by a <code>table</code> directive, like
+	 * {@link ClauseScanner#tableDirective(String)}.
+	 * 
+	 * @param clause the clause
+	 * @return the indicators in canonical form, or <code>null</code> if the 
+	 * 		clause is not a <code>table</code> directive
+	 */
+	static List<String> tableDirective(Object clause) {
+		if (!(clause instanceof Compound)) {
+			return null;
+		}
+		Compound directive = (Compound) clause;
+		if (!directive.getFunctor().equals(":-") || directive.getArity() != 1
+				|| !(directive.getArg(0) instanceof Compound)) {
+			return null;
+		}
+		Compound table = (Compound) directive.getArg(0);
+		if (!table.getFunctor().equals("table") || table.getArity() != 1) {
+			return null;
+		}
+		List<String> indicators = new ArrayList<String>();
+		Object spec = table.getArg(0);
+		while (true) {
+			Object indicator = spec;
+			if (spec instanceof Compound && ((Compound) spec).getFunctor().equals(",")
+					&& ((Compound) spec).getArity() == 2) {
+				indicator = ((Compound) spec).getArg(0);
+			}
+			if (!(indicator instanceof Compound)) {
+				return null;
+			}
+			Compound pair = (Compound) indicator;
+			if (!pair.getFunctor().equals("/") || pair.getArity() != 2 
+					|| !(pair.getArg(0) instanceof String) 
+					|| !(pair.getArg(1) instanceof Integer)) {
+				return null;
+			}
+			indicators.add(ClauseScanner.indicator((String) pair.getArg(0), (Integer) pair.getArg(1)));
+			if (indicator == spec) {
+				return indicators;
+			}
+			spec = ((Compound) spec).getArg(1);
+		}
+	}
+
+	/**
+	 * Returns the text of a clause in canonical form, that is, with the 
+	 * compound terms in functional notation and the atoms quoted.
+	 * 
+	 * @param clause the clause
+	 * @return the text of the clause with its end token
+	 */
+	public static String toText(Object clause) {
+		StringBuilder sb = new StringBuilder();
+		appendTerm(sb, clause);
+		return sb.append(" .").toString();
+	}
+
+	/**
+	 * Appends the canonical text of a term.
+	 * 
+	 * @param sb the text to append to
+	 * @param term the term
+	 */
+	private static void appendTerm(StringBuilder sb, Object term) {
+		if (term instanceof String) {
+			String atom = (String) term;
+			sb.append(atom.equals("[]") || atom.equals("{}") ? atom : ClauseScanner.quote(atom));
+		} else if (isList(term)) {
+			// The lists are written by iteration, so long lists are fine.
+			sb.append('[');
+			appendTerm(sb, ((Compound) term).getArg(0));
+			for (term = ((Compound) term).getArg(1); isList(term); term = ((Compound) term).getArg(1)) {
+				sb.append(", ");
+				appendTerm(sb, ((Compound) term).getArg(0));
+			}
+			if (!"[]".equals(term)) {
+				sb.append('|');
+				appendTerm(sb, term);
+			}
+			sb.append(']');
+		} else if (term instanceof Compound) {
+			Compound compound = (Compound) term;
+			sb.append(ClauseScanner.quote(compound.getFunctor()));
+			for (int i = 0; i < compound.getArity(); ++i) {
+				sb.append(i == 0 ? "(" : ", ");
+				appendTerm(sb, compound.getArg(i));
+			}
+			sb.append(')');
+		} else {
+			sb.append(term);
+		}
+	}
+
+	/**
+	 * Tells whether a term is a list cell.
+	 * 
+	 * @param term the term
+	 * @return <code>true</code> if the term is a compound term with the
+	 * 		functor <tt>./2</tt>
+	 */
+	private static boolean isList(Object term) {
+		return term instanceof Compound && ((Compound) term).getArity() == 2
+				&& ((Compound) term).getFunctor().equals(".");
+	}
+
+}
@@ -0,0 +1,111 @@
+/* 
+ * Copyright (c) 2010 Miklos Espak
+ * All rights reserved.
+ * 
+ * Permission is hereby granted, free  of charge, to any person obtaining
+ * a  copy  of this  software  and  associated  documentation files  (the
+ * "Software"), to  deal in  the Software without  restriction, including
+ * without limitation  the rights to  use, copy, modify,  merge, publish,
+ * distribute,  sublicense, and/or sell  copies of  the Software,  and to
+ * permit persons to whom the Software  is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The  above  copyright  notice  and  this permission  notice  shall  be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE  SOFTWARE IS  PROVIDED  "AS  IS", WITHOUT  WARRANTY  OF ANY  KIND,
+ * EXPRESS OR  IMPLIED, INCLUDING  BUT NOT LIMITED  TO THE  WARRANTIES OF
+ * MERCHANTABILITY,    FITNESS    FOR    A   PARTICULAR    PURPOSE    AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE,  ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.prolog4j;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayDeque;
+import java.util.Queue;
+
+/**
+ * Reads the clauses of a theory one by one. The input is read in chunks, and
+ * only the text of the clauses that have not been returned yet is kept, so
+ * the memory needed does not depend on the length of the theory.
+ */
+final class ClauseReader {
+
+	/** The number of characters read at once. */
+	private static final int CHUNK_SIZE = 1 << 16;
+
+	/** The input of the theory. */
+	private final Reader reader;
+
+	/** The chunk read last time. */
+	private final char[] chunk = new char[CHUNK_SIZE];
+
+	/** The text read but not split into clauses yet. */
+	private final StringBuilder buffer = new StringBuilder();
+
+	/** The clauses split but not returned yet. */
+	private final Queue<String> clauses = new ArrayDeque<String>();
+
+	/** True if the end of the input has been reached. */
+	private boolean eof;
+
+	/**
+	 * Creates a clause reader.
+	 * 
+	 * @param reader the input of the theory
+	 */
+	ClauseReader(Reader reader) {
+		this.reader = reader;
+	}
+
+	/**
+	 * Returns the next clause of the theory. The clauses keep their end token.
+	 * 
+	 * @return the next clause, or <code>null</code> at the end of the theory
+	 * @throws IOException if the input cannot be read
+	 */
+	String next() throws IOException {
+		while (clauses.isEmpty() && !eof) {
+			read();
+		}
+		return clauses.poll();
+	}
+
+	/**
+	 * Reads the next chunk of the input, and splits the clauses that it 
+	 * completes.
+	 * 
+	 * @throws IOException if the input cannot be read
+	 */
+	private void read() throws IOException {
+		int read = reader.read(chunk);
+		if (read == -1) {
+			eof = true;
+			clauses.addAll(ClauseScanner.split(buffer.toString()));
+			buffer.setLength(0);
+			return;
+		}
+		buffer.append(chunk, 0, read);
+		String text = buffer.toString();
+		ClauseScanner scanner = new ClauseScanner(text);
+		int clauseStart = -1;
+		int consumed = 0;
+		for (int kind = scanner.next(); kind != ClauseScanner.EOF; kind = scanner.next()) {
+			if (clauseStart == -1) {
+				clauseStart = scanner.start();
+			}
+			// A dot at the end of the chunk may be followed by a symbol char.
+			if (kind == ClauseScanner.END && scanner.end() < text.length()) {
+				clauses.add(text.substring(clauseStart, scanner.end()));
+				clauseStart = -1;
+				consumed = scanner.end();
+			}
+		}
+		buffer.delete(0, consumed);
+	}
+
+}
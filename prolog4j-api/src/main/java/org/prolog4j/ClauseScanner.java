@@ -0,0 +1,789 @@
+/* 
+ * Copyright (c) 2010 Miklos Espak
+ * All rights reserved.
+ * 
+ * Permission is hereby granted, free  of charge, to any person obtaining
+ * a  copy  of this  software  and  associated  documentation files  (the
+ * "Software"), to  deal in  the Software without  restriction, including
+ * without limitation  the rights to  use, copy, modify,  merge, publish,
+ * distribute,  sublicense, and/or sell  copies of  the Software,  and to
+ * permit persons to whom the Software  is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The  above  copyright  notice  and  this permission  notice  shall  be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE  SOFTWARE IS  PROVIDED  "AS  IS", WITHOUT  WARRANTY  OF ANY  KIND,
+ * EXPRESS OR  IMPLIED, INCLUDING  BUT NOT LIMITED  TO THE  WARRANTIES OF
+ * MERCHANTABILITY,    FITNESS    FOR    A   PARTICULAR    PURPOSE    AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE,  ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.prolog4j;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Reads the tokens of Prolog text without parsing it. It serves for finding
+ * the clauses of a theory and the predicates that they define and refer to,
+ * independently of the engine.
+ * <p>
+ * The scanner knows only the lexical structure of the standard syntax. It
+ * does not know the operators, so it reports every atom as a name, and the 
+ * names of the predicates are not distinguished from the other atoms.
+ */
+final class ClauseScanner {
+
+	/** The kind of the token at the end of the text. */
+	static final int EOF = 0;
+
+	/** The kind of the atoms. */
+	static final int NAME = 1;
+
+	/** The kind of the variables. */
+	static final int VARIABLE = 2;
+
+	/** The kind of the atoms consisting of symbol characters. */
+	static final int SYMBOL = 3;
+
+	/** The kind of the punctuation characters. */
+	static final int PUNCTUATION = 4;
+
+	/** The kind of the numbers and the strings. */
+	static final int LITERAL = 5;
+
+	/** The kind of the end token of a clause. */
+	static final int END = 6;
+
+	/** The kind of the parentheses that group goals. */
+	private static final int GROUPING = 0;
+
+	/** The kind of the parentheses that enclose the arguments of a call. */
+	private static final int CALL = 1;
+
+	/** The kind of the other brackets. */
+	private static final int OTHER = 2;
+
+	/** The characters that symbol atoms consist of. */
+	private static final String SYMBOL_CHARS = "+-*/\\^<>=~:.?@#&$";
+
+	/** The scanned text. */
+	private final String text;
+
+	/** The position of the next character to read. */
+	private int pos;
+
+	/** The position where the last token starts. */
+	private int start;
+
+	/** The kind of the last token. */
+	private int kind;
+
+	/** The text of the last token, unquoted if it is a quoted atom. */
+	private String token;
+
+	/**
+	 * Creates a scanner.
+	 * 
+	 * @param text the Prolog text to scan
+	 */
+	ClauseScanner(String text) {
+		this.text = text;
+	}
+
+	/**
+	 * Reads the next token.
+	 * 
+	 * @return the kind of the token
+	 */
+	int next() {
+		skipLayout();
+		start = pos;
+		if (pos >= text.length()) {
+			token = null;
+			return kind = EOF;
+		}
+		char c = text.charAt(pos);
+		if (Character.isLetter(c) && !Character.isUpperCase(c)) {
+			pos = skipAlphanumerics(pos + 1);
+			token = text.substring(start, pos);
+			return kind = NAME;
+		}
+		if (Character.isUpperCase(c) || c == '_') {
+			pos = skipAlphanumerics(pos + 1);
+			token = text.substring(start, pos);
+			return kind = VARIABLE;
+		}
+		if (Character.isDigit(c)) {
+			skipNumber();
+			token = text.substring(start, pos);
+			return kind = LITERAL;
+		}
+		if (c == '\'') {
+			token = readQuoted(c);
+			return kind = NAME;
+		}
+		if (c == '"' || c == '`') {
+			token = readQuoted(c);
+			return kind = LITERAL;
+		}
+		if (SYMBOL_CHARS.indexOf(c) != -1) {
+			do {
+				++pos;
+			} while (pos < text.length() && SYMBOL_CHARS.indexOf(text.charAt(pos)) != -1);
+			token = text.substring(start, pos);
+			if (token.equals(".") && (pos == text.length() 
+					|| Character.isWhitespace(text.charAt(pos))
+					|| text.charAt(pos) == '%')) {
+				return kind = END;
+			}
+			return kind = SYMBOL;
+		}
+		++pos;
+		token = String.valueOf(c);
+		return kind = PUNCTUATION;
+	}
+
+	/**
+	 * Returns the kind of the last token.
+	 * 
+	 * @return the kind of the token
+	 */
+	int kind() {
+		return kind;
+	}
+
+	/**
+	 * Returns the text of the last token. Quoted atoms are returned without
+	 * the quotes.
+	 * 
+	 * @return the text of the token
+	 */
+	String token() {
+		return token;
+	}
+
+	/**
+	 * Returns the position in the text where the last token starts.
+	 * 
+	 * @return the start of the token
+	 */
+	int start() {
+		return start;
+	}
+
+	/**
+	 * Returns the position in the text after the last token.
+	 * 
+	 * @return the end of the token
+	 */
+	int end() {
+		return pos;
+	}
+
+	/**
+	 * Skips the white spaces and the comments.
+	 */
+	private void skipLayout() {
+		int length = text.length();
+		while (pos < length) {
+			char c = text.charAt(pos);
+			if (Character.isWhitespace(c)) {
+				++pos;
+			} else if (c == '%') {
+				while (pos < length && text.charAt(pos) != '\n') {
+					++pos;
+				}
+			} else if (c == '/' && pos + 1 < length && text.charAt(pos + 1) == '*') {
+				int close = text.indexOf("*/", pos + 2);
+				pos = close == -1 ? length : close + 2;
+			} else {
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Returns the position of the first character from the given position
+	 * that is neither a letter, nor a digit, nor an underscore.
+	 * 
+	 * @param from the position to start from
+	 * @return the position after the alphanumeric characters
+	 */
+	private int skipAlphanumerics(int from) {
+		int i = from;
+		while (i < text.length() 
+				&& (Character.isLetterOrDigit(text.charAt(i)) || text.charAt(i) == '_')) {
+			++i;
+		}
+		return i;
+	}
+
+	/**
+	 * Skips a number, including the character codes and the numbers with a
+	 * radix.
+	 */
+	private void skipNumber() {
+		int length = text.length();
+		if (text.charAt(pos) == '0' && pos + 1 < length) {
+			char c = text.charAt(pos + 1);
+			if (c == '\'') {
+				// Character code, e.g. 0'a, 0'\n or 0'''.
+				pos += 2;
+				if (pos < length && (text.charAt(pos) == '\\' || text.charAt(pos) == '\'')) {
+					++pos;
+				}
+				pos = Math.min(pos + 1, length);
+				return;
+			}
+			if (c == 'x' || c == 'o' || c == 'b') {
+				pos = skipAlphanumerics(pos + 2);
+				return;
+			}
+		}
+		pos = skipDigits(pos);
+		if (pos + 1 < length && text.charAt(pos) == '.' 
+				&& Character.isDigit(text.charAt(pos + 1))) {
+			pos = skipDigits(pos + 1);
+			if (pos < length && (text.charAt(pos) == 'e' || text.charAt(pos) == 'E')) {
+				int exponent = pos + 1;
+				if (exponent < length 
+						&& (text.charAt(exponent) == '+' || text.charAt(exponent) == '-')) {
+					++exponent;
+				}
+				if (exponent < length && Character.isDigit(text.charAt(exponent))) {
+					pos = skipDigits(exponent);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the position of the first character from the given position
+	 * that is not a digit.
+	 * 
+	 * @param from the position to start from
+	 * @return the position after the digits
+	 */
+	private int skipDigits(int from) {
+		int i = from;
+		while (i < text.length() 
+				&& (Character.isDigit(text.charAt(i)) || text.charAt(i) == '_')) {
+			++i;
+		}
+		return i;
+	}
+
+	/**
+	 * Reads a quoted atom or string. The escape sequences are not 
+	 * interpreted, only the escaped characters are kept.
+	 * 
+	 * @param quote the quote character
+	 * @return the text between the quotes
+	 */
+	private String readQuoted(char quote) {
+		StringBuilder sb = new StringBuilder();
+		int length = text.length();
+		++pos;
+		while (pos < length) {
+			char c = text.charAt(pos++);
+			if (c == quote) {
+				if (pos < length && text.charAt(pos) == quote) {
+					sb.append(quote);
+					++pos;
+				} else {
+					break;
+				}
+			} else if (c == '\\' && pos < length) {
+				sb.append(text.charAt(pos++));
+			} else {
+				sb.append(c);
+			}
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Splits a theory into clauses. The clauses keep their end token. The
+	 * text after the last end token is returned as the last clause unless it
+	 * contains only white spaces and comments.
+	 * 
+	 * @param theory the Prolog text
+	 * @return the clauses of the theory
+	 */
+	static List<String> split(String theory) {
+		List<String> clauses = new ArrayList<String>();
+		ClauseScanner scanner = new ClauseScanner(theory);
+		int clauseStart = -1;
+		for (int kind = scanner.next(); kind != EOF; kind = scanner.next()) {
+			if (clauseStart == -1) {
+				clauseStart = scanner.start();
+			}
+			if (kind == END) {
+				clauses.add(theory.substring(clauseStart, scanner.end()));
+				clauseStart = -1;
+			}
+		}
+		if (clauseStart != -1) {
+			clauses.add(theory.substring(clauseStart));
+		}
+		return clauses;
+	}
+
+	/**
+	 * Returns the head of a clause. The clause can be enclosed in parentheses.
+	 * 
+	 * @param clause a Prolog clause
+	 * @return the head of the clause, or <code>null</code> if the clause is a
+	 * 		directive or its head is not an atom or a compound term
+	 */
+	static Head head(String clause) {
+		ClauseScanner scanner = new ClauseScanner(clause);
+		int kind = scanner.next();
+		while (kind == PUNCTUATION && scanner.token().equals("(")) {
+			kind = scanner.next();
+		}
+		if (kind != NAME) {
+			return null;
+		}
+		String name = scanner.token();
+		int start = scanner.start();
+		int end = scanner.end();
+		int arity = 0;
+		if (scanner.next() == PUNCTUATION && scanner.token().equals("(") 
+				&& scanner.start() == end) {
+			arity = 1;
+			int depth = 1;
+			for (kind = scanner.next(); kind != EOF && depth > 0; kind = scanner.next()) {
+				if (kind != PUNCTUATION) {
+					continue;
+				}
+				String p = scanner.token();
+				if (p.equals("(") || p.equals("[") || p.equals("{")) {
+					++depth;
+				} else if (p.equals(")") || p.equals("]") || p.equals("}")) {
+					--depth;
+				} else if (depth == 1 && p.equals(",")) {
+					++arity;
+				}
+			}
+		}
+		return new Head(name, arity, start, end);
+	}
+
+	/**
+	 * Returns the predicates declared by a <code>table</code> directive, like
+	 * <code>:- table path/2, edge/2.</code>
+	 * 
+	 * @param clause a Prolog clause
+	 * @return the indicators of the predicates, or <code>null</code> if the
+	 * 		clause is not a <code>table</code> directive
+	 */
+	static List<String> tableDirective(String clause) {
+		ClauseScanner scanner = new ClauseScanner(clause);
+		if (scanner.next() != SYMBOL || !scanner.token().equals(":-")
+				|| scanner.next() != NAME || !scanner.token().equals("table")) {
+			return null;
+		}
+		return scanner.readIndicators();
+	}
+
+	/**
+	 * Tells whether a clause is a directive, which is executed when it is 
+	 * added.
+	 * 
+	 * @param clause the clause
+	 * @return <code>true</code> if the clause is a directive
+	 */
+	static boolean isDirective(String clause) {
+		ClauseScanner scanner = new ClauseScanner(clause);
+		return scanner.next() == SYMBOL 
+				&& (scanner.token().equals(":-") || scanner.token().equals("?-"));
+	}
+
+	/**
+	 * Parses a comma separated list of predicate indicators, like 
+	 * <code>path/2, edge/2</code>.
+	 * 
+	 * @param text the Prolog text
+	 * @return the indicators in canonical form, or <code>null</code> if the
+	 * 		text is not a list of predicate indicators
+	 */
+	static List<String> indicators(String text) {
+		return new ClauseScanner(text).readIndicators();
+	}
+
+	/**
+	 * Reads a comma separated list of predicate indicators, up to the end of
+	 * the text or the end token.
+	 * 
+	 * @return the indicators in canonical form, or <code>null</code> if the
+	 * 		remaining text is not a list of predicate indicators
+	 */
+	private List<String> readIndicators() {
+		List<String> indicators = new ArrayList<String>();
+		do {
+			if (next() != NAME) {
+				return null;
+			}
+			String name = token();
+			if (next() != SYMBOL || !token().equals("/") || next() != LITERAL) {
+				return null;
+			}
+			int arity;
+			try {
+				arity = Integer.parseInt(token());
+			} catch (NumberFormatException e) {
+				return null;
+			}
+			indicators.add(indicator(name, arity));
+			next();
+		} while (kind == PUNCTUATION && token.equals(","));
+		return kind == EOF || kind == END ? indicators : null;
+	}
+
+	/**
+	 * Returns the canonical indicator of a predicate.
+	 * 
+	 * @param name the name of the predicate
+	 * @param arity the arity of the predicate
+	 * @return the indicator, <tt>name/arity</tt>
+	 */
+	static String indicator(String name, int arity) {
+		return name + '/' + arity;
+	}
+
+	/**
+	 * Returns an atom as a quoted Prolog text.
+	 * 
+	 * @param name the name of the atom
+	 * @return the quoted atom
+	 */
+	static String quote(String name) {
+		return '\'' + name.replace("\\", "\\\\").replace("'", "''") + '\'';
+	}
+
+	/**
+	 * Returns the names in the body of a rule. They are the names of the 
+	 * predicates that the rule may call, and of the other atoms of the body.
+	 * The clauses without a body do not refer to any name.
+	 * 
+	 * @param clause a Prolog clause
+	 * @return the names in the body of the clause
+	 */
+	static Set<String> bodyNames(String clause) {
+		Set<String> names = new LinkedHashSet<String>();
+		ClauseScanner scanner = new ClauseScanner(clause);
+		int depth = 0;
+		int kind = scanner.next();
+		while (kind == PUNCTUATION && scanner.token().equals("(")) {
+			++depth;
+			kind = scanner.next();
+		}
+		int neck = depth;
+		for (; kind != EOF && kind != END; kind = scanner.next()) {
+			if (kind == PUNCTUATION) {
+				String p = scanner.token();
+				if (p.equals("(") || p.equals("[") || p.equals("{")) {
+					++depth;
+				} else if (p.equals(")") || p.equals("]") || p.equals("}")) {
+					--depth;
+				}
+			} else if (kind == SYMBOL && depth == neck 
+					&& (scanner.token().equals(":-") || scanner.token().equals("-->"))) {
+				collectNames(scanner, names);
+				break;
+			}
+		}
+		return names;
+	}
+
+	/**
+	 * Returns the position where the body of a rule starts, after the neck.
+	 *
+	 * @param clause a Prolog clause
+	 * @return the position after the <tt>:-</tt> token, or -1 if the clause
+	 * 		is not a rule
+	 */
+	static int neck(String clause) {
+		ClauseScanner scanner = new ClauseScanner(clause);
+		int depth = 0;
+		int kind = scanner.next();
+		while (kind == PUNCTUATION && scanner.token().equals("(")) {
+			++depth;
+			kind = scanner.next();
+		}
+		int neck = depth;
+		for (; kind != EOF && kind != END; kind = scanner.next()) {
+			if (kind == PUNCTUATION) {
+				String p = scanner.token();
+				if (p.equals("(") || p.equals("[") || p.equals("{")) {
+					++depth;
+				} else if (p.equals(")") || p.equals("]") || p.equals("}")) {
+					--depth;
+				}
+			} else if (kind == SYMBOL && depth == neck && scanner.token().equals(":-")) {
+				return scanner.end();
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the position after a token.
+	 *
+	 * @param text the Prolog text
+	 * @param start the position where the token starts
+	 * @return the position where the token ends
+	 */
+	static int tokenEnd(String text, int start) {
+		ClauseScanner scanner = new ClauseScanner(text.substring(start));
+		scanner.next();
+		return start + scanner.end();
+	}
+
+	/**
+	 * Returns the names in a Prolog text.
+	 * 
+	 * @param text the Prolog text
+	 * @return the names in the text
+	 */
+	static Set<String> names(String text) {
+		Set<String> names = new LinkedHashSet<String>();
+		collectNames(new ClauseScanner(text), names);
+		return names;
+	}
+
+	/**
+	 * Collects the names from the remaining part of the text of a scanner.
+	 * 
+	 * @param scanner the scanner
+	 * @param names the set to add the names to
+	 */
+	private static void collectNames(ClauseScanner scanner, Set<String> names) {
+		for (int kind = scanner.next(); kind != EOF; kind = scanner.next()) {
+			if (kind == NAME) {
+				names.add(scanner.token());
+			}
+		}
+	}
+
+	/**
+	 * Returns the names of the variables in a Prolog text, in the order of 
+	 * their first occurrence. The anonymous variables are omitted.
+	 * 
+	 * @param text the Prolog text
+	 * @return the names of the variables
+	 */
+	static List<String> variables(String text) {
+		Set<String> variables = new LinkedHashSet<String>();
+		ClauseScanner scanner = new ClauseScanner(text);
+		for (int kind = scanner.next(); kind != EOF; kind = scanner.next()) {
+			if (kind == VARIABLE && !scanner.token().equals("_")) {
+				variables.add(scanner.token());
+			}
+		}
+		return new ArrayList<String>(variables);
+	}
+
+	/**
+	 * Returns the position of the end token of a clause.
+	 *
+	 * @param clause a Prolog clause
+	 * @return the position where the end token starts, or the length of the
+	 * 		text if the clause has no end token
+	 */
+	static int end(String clause) {
+		ClauseScanner scanner = new ClauseScanner(clause);
+		for (int kind = scanner.next(); kind != EOF; kind = scanner.next()) {
+			if (kind == END) {
+				return scanner.start();
+			}
+		}
+		return clause.length();
+	}
+
+	/**
+	 * Returns the term of a clause that is a fact without variables. The
+	 * placeholders are allowed, except the named ones.
+	 *
+	 * @param clause a Prolog clause
+	 * @return the text of the fact without the end token, or
+	 * 		<code>null</code> if the clause is not a fact, or it has variables
+	 */
+	static String fact(String clause) {
+		ClauseScanner scanner = new ClauseScanner(clause);
+		if (scanner.next() != NAME) {
+			return null;
+		}
+		int end = scanner.end();
+		int kind = scanner.next();
+		if (kind == PUNCTUATION && scanner.token().equals("(")
+				&& scanner.start() == end) {
+			for (int depth = 1; depth > 0; ) {
+				kind = scanner.next();
+				if (kind == EOF || kind == END || kind == VARIABLE) {
+					return null;
+				}
+				if (kind == PUNCTUATION) {
+					String p = scanner.token();
+					if (p.equals("(") || p.equals("[") || p.equals("{")) {
+						++depth;
+					} else if (p.equals(")") || p.equals("]") || p.equals("}")) {
+						--depth;
+					}
+				}
+			}
+			end = scanner.end();
+			kind = scanner.next();
+		}
+		return kind == EOF || kind == END ? clause.substring(0, end) : null;
+	}
+
+	/**
+	 * Finds the calls of a predicate in a goal that are connected to the goal
+	 * by conjunctions and disjunctions only. The goal must not refer to the
+	 * name of the predicate otherwise, and it must not have cuts,
+	 * if-then-else constructs and calls of variables outside of the arguments
+	 * of the other predicates.
+	 *
+	 * @param goal the Prolog goal
+	 * @param name the name of the predicate
+	 * @param arity the arity of the predicate
+	 * @return the start and the end position of each call, or
+	 * 		<code>null</code> if the goal does not meet the conditions
+	 */
+	static List<int[]> calls(String goal, String name, int arity) {
+		List<int[]> calls = new ArrayList<int[]>();
+		ClauseScanner scanner = new ClauseScanner(goal);
+		// The kind of each open bracket, the start of the call whose 
+		// arguments it encloses, and the number of commas in it.
+		List<int[]> brackets = new ArrayList<int[]>();
+		boolean goalPosition = true;
+		int callStart = -1;
+		boolean variableCall = false;
+		int lastKind = EOF;
+		int lastEnd = 0;
+		for (int kind = scanner.next(); ; kind = scanner.next()) {
+			String token = scanner.token();
+			if (variableCall && (kind == EOF || kind == END || kind == PUNCTUATION 
+					&& (token.equals(",") || token.equals(";") || token.equals(")")))) {
+				return null;
+			}
+			variableCall = false;
+			boolean arguments = kind == PUNCTUATION && token.equals("(")
+					&& lastKind == NAME && scanner.start() == lastEnd;
+			if (callStart != -1 && !arguments) {
+				if (arity == 0) {
+					calls.add(new int[] {callStart, lastEnd});
+				}
+				callStart = -1;
+			}
+			if (kind == EOF || kind == END) {
+				return brackets.isEmpty() ? calls : null;
+			}
+			int[] top = brackets.isEmpty() ? null : brackets.get(brackets.size() - 1);
+			boolean inGoal = top == null || top[0] == GROUPING;
+			boolean atGoal = goalPosition && inGoal;
+			goalPosition = false;
+			if (kind == PUNCTUATION) {
+				if (token.equals("(") || token.equals("[") || token.equals("{")) {
+					int start = -1;
+					int bracket = OTHER;
+					if (arguments) {
+						start = callStart;
+						bracket = start == -1 ? OTHER : CALL;
+						callStart = -1;
+					} else if (atGoal && token.equals("(")) {
+						bracket = GROUPING;
+						goalPosition = true;
+					}
+					brackets.add(new int[] {bracket, start, 0});
+				} else if (token.equals(")") || token.equals("]") || token.equals("}")) {
+					if (top == null) {
+						return null;
+					}
+					brackets.remove(brackets.size() - 1);
+					if (top[0] == CALL && top[2] + 1 == arity) {
+						calls.add(new int[] {top[1], scanner.end()});
+					}
+				} else if (token.equals(",")) {
+					if (inGoal) {
+						goalPosition = true;
+					} else {
+						++top[2];
+					}
+				} else if (token.equals(";")) {
+					goalPosition = inGoal;
+				} else if (token.equals("!") && inGoal) {
+					return null;
+				}
+			} else if (kind == SYMBOL) {
+				if (inGoal && (token.equals("->") || token.equals("*->"))) {
+					return null;
+				}
+			} else if (kind == NAME) {
+				if (token.equals(name)) {
+					if (!atGoal) {
+						return null;
+					}
+					callStart = scanner.start();
+				}
+			} else if (kind == VARIABLE) {
+				// It is a call unless it is an operand.
+				variableCall = atGoal;
+			}
+			lastKind = kind;
+			lastEnd = scanner.end();
+		}
+	}
+
+	/**
+	 * The head of a clause.
+	 */
+	static final class Head {
+
+		/** The name of the predicate. */
+		final String name;
+
+		/** The arity of the predicate. */
+		final int arity;
+
+		/** The position in the clause where the name starts. */
+		final int start;
+
+		/** The position in the clause after the name. */
+		final int end;
+
+		/**
+		 * Creates a head.
+		 * 
+		 * @param name the name of the predicate
+		 * @param arity the arity of the predicate
+		 * @param start the position where the name starts
+		 * @param end the position after the name
+		 */
+		Head(String name, int arity, int start, int end) {
+			this.name = name;
+			this.arity = arity;
+			this.start = start;
+			this.end = end;
+		}
+
+		/**
+		 * Returns the indicator of the predicate.
+		 * 
+		 * @return the indicator, <tt>name/arity</tt>
+		 */
+		String indicator() {
+			return ClauseScanner.indicator(name, arity);
+		}
+
+	}
+
+}
@@ -0,0 +1,322 @@
+/* 
+ * Copyright (c) 2010 Miklos Espak
+ * All rights reserved.
+ * 
+ * Permission is hereby granted, free  of charge, to any person obtaining
+ * a  copy  of this  software  and  associated  documentation files  (the
+ * "Software"), to  deal in  the Software without  restriction, including
+ * without limitation  the rights to  use, copy, modify,  merge, publish,
+ * distribute,  sublicense, and/or sell  copies of  the Software,  and to
+ * permit persons to whom the Software  is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The  above  copyright  notice  and  this permission  notice  shall  be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE  SOFTWARE IS  PROVIDED  "AS  IS", WITHOUT  WARRANTY  OF ANY  KIND,
+ * EXPRESS OR  IMPLIED, INCLUDING  BUT NOT LIMITED  TO THE  WARRANTIES OF
+ * MERCHANTABILITY,    FITNESS    FOR    A   PARTICULAR    PURPOSE    AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE,  ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.prolog4j;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * The relations that expose Java collections as predicates, created by the
+ * factory methods of {@link Relation}. A row is given by an element: for a
+ * single column the element is the value itself, otherwise it is an array 
+ * or a list of the values. The rows are read from the collections when the
+ * predicate is called, they are not copied.
+ * <p>
+ * The values of the bound arguments of a call are matched against the 
+ * strings and numbers of the rows by their value. Objects of other types 
+ * match only equal values, so values converted to atoms or numbers by custom
+ * converters are not found by a bound argument.
+ */
+final class CollectionRelations {
+
+	/** Not instantiable. */
+	private CollectionRelations() {
+	}
+
+	/**
+	 * Returns a value of a row.
+	 * 
+	 * @param row the element giving the row
+	 * @param width the number of values of the row
+	 * @param column the index of the value
+	 * @return the value
+	 * @throws IllegalArgumentException if the element does not give a row of
+	 * 		the expected width
+	 */
+	static Object value(Object row, int width, int column) {
+		if (width == 1) {
+			return row;
+		}
+		if (row instanceof Object[] && ((Object[]) row).length == width) {
+			return ((Object[]) row)[column];
+		}
+		if (row instanceof List<?> && ((List<?>) row).size() == width) {
+			return ((List<?>) row).get(column);
+		}
+		throw new IllegalArgumentException("Not a row of " + width + " values: " + row);
+	}
+
+	/**
+	 * Decides whether a value of a row matches the value of a bound argument.
+	 * Integers match integers of any type with the same value, and floating
+	 * point numbers match likewise.
+	 * 
+	 * @param pattern the value of the argument
+	 * @param value the value of the row
+	 * @return <code>true</code> if they match
+	 */
+	static boolean matches(Object pattern, Object value) {
+		if (pattern.equals(value)) {
+			return true;
+		}
+		if (pattern instanceof Number && value instanceof Number) {
+			boolean integral = isIntegral(pattern);
+			if (integral != isIntegral(value)) {
+				return false;
+			}
+			return integral 
+					? ((Number) pattern).longValue() == ((Number) value).longValue()
+					: ((Number) pattern).doubleValue() == ((Number) value).doubleValue();
+		}
+		return false;
+	}
+
+	/**
+	 * Decides whether a number is integral.
+	 * 
+	 * @param number the number
+	 * @return <code>true</code> for integers, longs, shorts and bytes
+	 */
+	private static boolean isIntegral(Object number) {
+		return number instanceof Integer || number instanceof Long 
+				|| number instanceof Short || number instanceof Byte;
+	}
+
+	/**
+	 * A cursor over the rows given by the elements of an iterator. It skips
+	 * the rows that do not match the bound arguments.
+	 */
+	private static class RowCursor extends Relation.Cursor {
+
+		/** The elements giving the rows. */
+		private final Iterator<?> elements;
+
+		/** The values of the bound arguments. */
+		private final Object[] pattern;
+
+		/** The first column given by the elements. */
+		private final int first;
+
+		/** The element giving the current row. */
+		private Object row;
+
+		/**
+		 * Creates a cursor.
+		 * 
+		 * @param elements the elements giving the rows
+		 * @param pattern the values of the bound arguments
+		 * @param first the first column given by the elements
+		 */
+		RowCursor(Iterator<?> elements, Object[] pattern, int first) {
+			this.elements = elements;
+			this.pattern = pattern;
+			this.first = first;
+		}
+
+		@Override
+		public boolean next() {
+			while (elements.hasNext()) {
+				row = elements.next();
+				if (matches()) {
+					return true;
+				}
+			}
+			row = null;
+			return false;
+		}
+
+		/**
+		 * Decides whether the current row matches the bound arguments.
+		 * 
+		 * @return <code>true</code> if the row matches
+		 */
+		private boolean matches() {
+			for (int i = first; i < pattern.length; ++i) {
+				if (pattern[i] != null) {
+					Object value = get(i);
+					if (value == null || !CollectionRelations.matches(pattern[i], value)) {
+						return false;
+					}
+				}
+			}
+			return true;
+		}
+
+		@Override
+		public Object get(int column) {
+			return value(row, pattern.length - first, column - first);
+		}
+
+	}
+
+	/**
+	 * A relation whose rows are the elements of an iterable. The elements are
+	 * scanned on every call.
+	 */
+	static final class IterableRelation extends Relation {
+
+		/** The elements giving the rows. */
+		private final Iterable<?> rows;
+
+		/**
+		 * Creates a relation.
+		 * 
+		 * @param arity the number of columns
+		 * @param rows the elements giving the rows
+		 */
+		IterableRelation(int arity, Iterable<?> rows) {
+			super(arity);
+			this.rows = rows;
+		}
+
+		@Override
+		public Cursor select(Object[] pattern) {
+			return new RowCursor(rows.iterator(), pattern, 0);
+		}
+
+	}
+
+	/**
+	 * A relation whose rows are the entries of a map. The first column is the
+	 * key, the other columns are given by the value. A call with a bound key
+	 * looks it up in the map.
+	 */
+	static final class MapRelation extends Relation {
+
+		/** The map. */
+		private final Map<?, ?> map;
+
+		/**
+		 * Creates a relation.
+		 * 
+		 * @param arity the number of columns, at least two
+		 * @param map the map
+		 */
+		MapRelation(int arity, Map<?, ?> map) {
+			super(arity);
+			if (arity < 2) {
+				throw new IllegalArgumentException("The arity of a map is at least 2: " + arity);
+			}
+			this.map = map;
+		}
+
+		@Override
+		public Cursor select(Object[] pattern) {
+			final Iterator<? extends Map.Entry<?, ?>> entries;
+			if (pattern[0] != null) {
+				Object value = map.get(pattern[0]);
+				if (value == null) {
+					return Relation.cursor(Collections.<Object[]>emptyIterator());
+				}
+				entries = Collections.singletonMap(pattern[0], value).entrySet().iterator();
+			} else {
+				entries = map.entrySet().iterator();
+			}
+			return new Cursor() {
+
+				/** The current entry. */
+				private Map.Entry<?, ?> entry;
+
+				/** The value of the current entry as a row of the other columns. */
+				private final RowCursor values = new RowCursor(
+						Collections.emptyIterator(), pattern, 1) {
+					@Override
+					public Object get(int column) {
+						return value(entry.getValue(), pattern.length - 1, column - 1);
+					}
+				};
+
+				@Override
+				public boolean next() {
+					while (entries.hasNext()) {
+						entry = entries.next();
+						if (values.matches() && (pattern[0] == null 
+								|| matches(pattern[0], entry.getKey()))) {
+							return true;
+						}
+					}
+					entry = null;
+					return false;
+				}
+
+				@Override
+				public Object get(int column) {
+					return column == 0 ? entry.getKey() : values.get(column);
+				}
+
+			};
+		}
+
+	}
+
+	/**
+	 * A relation computed by a lookup function from the value of its first
+	 * column. The function returns the elements giving the values of the
+	 * other columns. A call whose first argument is not an atom or a number
+	 * has no solutions.
+	 */
+	static final class LookupRelation extends Relation {
+
+		/** The lookup function. */
+		private final Function<Object, ? extends Iterable<?>> lookup;
+
+		/**
+		 * Creates a relation.
+		 * 
+		 * @param arity the number of columns, at least one
+		 * @param lookup the lookup function
+		 */
+		LookupRelation(int arity, Function<Object, ? extends Iterable<?>> lookup) {
+			super(arity);
+			if (arity < 1) {
+				throw new IllegalArgumentException("The arity of a lookup is at least 1: " + arity);
+			}
+			this.lookup = lookup;
+		}
+
+		@Override
+		public Cursor select(final Object[] pattern) {
+			Iterable<?> rows = pattern[0] == null ? null : lookup.apply(pattern[0]);
+			if (rows == null) {
+				return Relation.cursor(Collections.<Object[]>emptyIterator());
+			}
+			if (pattern.length == 1) {
+				return Relation.cursor(rows.iterator().hasNext() 
+						? Collections.singleton(pattern).iterator()
+						: Collections.<Object[]>emptyIterator());
+			}
+			return new RowCursor(rows.iterator(), pattern, 1) {
+				@Override
+				public Object get(int column) {
+					return column == 0 ? pattern[0] : super.get(column);
+				}
+			};
+		}
+
+	}
+
+}
@@ -64,6 +64,10 @@ import java.util.Map;
  * to its superclasses and the implemented interfaces are looked for, 
  * recursively. If none found and there is no default way of conversion, then
  * an exception is thrown.
+ * <p>
+ * The converters applicable to a class are looked up once, and they are 
+ * cached until a converter is registered by class. The classes without an
+ * applicable converter are cached as well.
  * 
  * @see Converter
  */
@@ -74,8 +78,7 @@ public abstract class ConversionPolicy {
 	 * of the map are the patterns. If a pattern matches a term then its 
 	 * converter can be applied.
 	 */
-	@SuppressWarnings("unchecked")
-	private HashMap<Object, Converter> termConverters;
+	private HashMap<Class<?>, Converter<Object>> termConverters;
 	
 	/**
 	 * Represents the reverse insertion order of the keys to 
@@ -91,17 +94,51 @@ public abstract class ConversionPolicy {
 	 * of the map are the patterns. If a pattern matches an object then its 
 	 * converter can be applied.
 	 */
-	@SuppressWarnings("unchecked")
-	private HashMap<Class, Converter> objectConverters;
+	private HashMap<Class<?>, Converter<Object>> objectConverters;
+
+	/** 
+	 * Caches the term converters applicable to each class of terms, in the 
+	 * order of their lookup. It is replaced when a term converter is 
+	 * registered by class.
+	 */
+	private volatile ClassValue<List<Converter<Object>>> resolvedTermConverters = 
+			newTermResolution();
+
+	/** 
+	 * Caches the object converter applicable to each class, or 
+	 * {@link #NO_CONVERTER} if there is none. It is replaced when an object
+	 * converter is registered.
+	 */
+	private volatile ClassValue<Converter<Object>> resolvedObjectConverters = 
+			newObjectResolution();
+
+	/** Marks the classes of objects that have no applicable converter. */
+	private static final Converter<Object> NO_CONVERTER = new Converter<Object>() {
+		@Override
+		public Object convert(Object object) {
+			return null;
+		}
+	};
 	
 	/**
 	 * Constructs an empty <code>ConversionPolicy</code>.
 	 */
-	@SuppressWarnings("unchecked")
 	protected ConversionPolicy() {
-		termConverters = new HashMap<Object, Converter>();
+		termConverters = new HashMap<Class<?>, Converter<Object>>();
 		termPatterns = new HashMap<String, Converter<Object>>();
-		objectConverters = new HashMap<Class, Converter>();
+		objectConverters = new HashMap<Class<?>, Converter<Object>>();
+	}
+
+	/**
+	 * Returns a converter registered by class as a converter of any object.
+	 * 
+	 * @param converter the converter
+	 * @return the same converter
+	 */
+	@SuppressWarnings("unchecked")
+	private static Converter<Object> anyObject(Converter<?> converter) {
+		// It is safe, the converters are only applied to instances of their class.
+		return (Converter<Object>) converter;
 	}
 	
 	/**
@@ -115,7 +152,8 @@ public abstract class ConversionPolicy {
 	 * @param converter the converter
 	 */
 	protected <T> void addTermConverter(Class<T> class_, Converter<T> converter) {
-		termConverters.put(class_, converter);
+		termConverters.put(class_, anyObject(converter));
+		resolvedTermConverters = newTermResolution();
 	}
 	
 	/**
@@ -142,7 +180,64 @@ public abstract class ConversionPolicy {
 	 * @param converter the converter
 	 */
 	public <T> void addObjectConverter(Class<T> class_, Converter<T> converter) {
-		objectConverters.put(class_, converter);
+		objectConverters.put(class_, anyObject(converter));
+		resolvedObjectConverters = newObjectResolution();
+	}
+
+	/**
+	 * Creates an empty cache of the term converters applicable to the 
+	 * classes of terms. The converters of a class are the ones registered to
+	 * the class and to its superclasses.
+	 * 
+	 * @return the cache
+	 */
+	private ClassValue<List<Converter<Object>>> newTermResolution() {
+		return new ClassValue<List<Converter<Object>>>() {
+			@Override
+			protected List<Converter<Object>> computeValue(Class<?> termClass) {
+				List<Converter<Object>> converters = new ArrayList<Converter<Object>>();
+				for (Class<?> c = termClass; c != null; c = c.getSuperclass()) {
+					Converter<Object> converter = termConverters.get(c);
+					if (converter != null) {
+						converters.add(converter);
+					}
+				}
+				return converters;
+			}
+		};
+	}
+
+	/**
+	 * Creates an empty cache of the object converters applicable to the 
+	 * classes of objects. The converter of a class is the one registered to
+	 * the class, to its directly implemented interfaces, or to its 
+	 * superclasses, recursively.
+	 * 
+	 * @return the cache
+	 */
+	private ClassValue<Converter<Object>> newObjectResolution() {
+		return new ClassValue<Converter<Object>>() {
+			@Override
+			protected Converter<Object> computeValue(Class<?> objectClass) {
+				if (objectClass.isArray()) {
+					Converter<Object> converter = objectConverters.get(Object[].class);
+					return converter != null ? converter : NO_CONVERTER;
+				}
+				for (Class<?> c = objectClass; c != null; c = c.getSuperclass()) {
+					Converter<Object> converter = objectConverters.get(c);
+					if (converter != null) {
+						return converter;
+					}
+					for (Class<?> interf: c.getInterfaces()) {
+						converter = objectConverters.get(interf);
+						if (converter != null) {
+							return converter;
+						}
+					}
+				}
+				return NO_CONVERTER;
+			}
+		};
 	}
 	
 	/**
@@ -162,13 +257,12 @@ public abstract class ConversionPolicy {
 	 * @param term the term to convert
 	 * @return the result of the conversion
 	 */
-	@SuppressWarnings("unchecked")
 	public Object convertTerm(Object term) {
 		if (term == null) {
 			return null;
 		}
 		if (isCompound(term)) {
-			Converter converter = termPatterns.get(getName(term));
+			Converter<Object> converter = termPatterns.get(getName(term));
 			if (converter != null) {
 				Object result = converter.convert(term);
 				if (result != null) {
@@ -176,17 +270,12 @@ public abstract class ConversionPolicy {
 				}
 			}
 		}
-		Class termClass = term.getClass();
-		do {
-			Converter converter = termConverters.get(termClass);
-			if (converter != null) {
-				Object result = converter.convert(term);
-				if (result != null) {
-					return result;
-				}
+		for (Converter<Object> converter: resolvedTermConverters.get(term.getClass())) {
+			Object result = converter.convert(term);
+			if (result != null) {
+				return result;
 			}
-			termClass = termClass.getSuperclass();
-		} while (termClass != null);
+		}
 		throw new RuntimeException("No suitable converter found for " + term);
 	}
 
@@ -209,25 +298,14 @@ public abstract class ConversionPolicy {
 	 * @param type the type to convert to
 	 * @return the result of the conversion
 	 */
-	@SuppressWarnings("unchecked")
 	public <T> T convertTerm(Object term, Class<T> type) {
 		if (term == null) {
 			return null;
 		}
-		Class termClass = term.getClass();
-		do {
-			Converter converter = termConverters.get(termClass);
-			if (converter != null) {
-				return (T) converter.convert(term, type);
-			}
-//			for (Class interf: termClass.getInterfaces()) {
-//				converter = termConverters.get(interf);
-//				if (converter != null) {
-//					return converter.convert(term);
-//				}
-//			}
-			termClass = termClass.getSuperclass();
-		} while (termClass != null);
+		List<Converter<Object>> converters = resolvedTermConverters.get(term.getClass());
+		if (!converters.isEmpty()) {
+			return converters.get(0).convert(term, type);
+		}
 		throw new RuntimeException("No suitable converter found for " + term);
 	}
 	
@@ -249,39 +327,13 @@ public abstract class ConversionPolicy {
 	 * @param object the object to convert
 	 * @return the result of the conversion
 	 */
-	@SuppressWarnings("unchecked")
 	public Object convertObject(Object object) {
 		if (object == null) {
 			return null;
 		}
-		Class objectClass = object.getClass();
-		if (objectClass.isArray()) {
-			Converter converter = objectConverters.get(Object[].class);
+		Converter<Object> converter = resolvedObjectConverters.get(object.getClass());
+		if (converter != NO_CONVERTER) {
 			return converter.convert(object);
-		} else {
-			do {
-				Converter converter = objectConverters.get(objectClass);
-				if (converter != null) {
-					return converter.convert(object);
-				}
-				if (!objectClass.isArray()) {
-					for (Class interf: objectClass.getInterfaces()) {
-						converter = objectConverters.get(interf);
-						if (converter != null) {
-							return converter.convert(object);
-						}
-					}	
-					objectClass = objectClass.getSuperclass();
-				} else {
-					// TODO It does not handle interfaces and dimensions correctly.
-//					Class componentType = objectClass.getComponentType();
-//					componentType = componentType.getSuperclass();
-//					if (componentType == null) {
-//						break;
-//					}
-//					objectClass = Array.newInstance(componentType, new int[]{0}).getClass();
-				}
-			} while (objectClass != null);
 		}
 		throw new RuntimeException("No suitable converter found for " + object);
 	}
@@ -442,7 +494,14 @@ public abstract class ConversionPolicy {
 	 * @return the int value of the term
 	 */
 	public abstract int intValue(Object term);
-//	public abstract long longValue(Object term);
+
+	/**
+	 * Converts an integer term to a long value.
+	 * 
+	 * @param term a term representing an integer value
+	 * @return the long value of the term
+	 */
+	public abstract long longValue(Object term);
 //	public abstract float floatValue(Object term);
 	/**
 	 * Converts a floating point term to a double value.
@@ -477,4 +536,100 @@ public abstract class ConversionPolicy {
 	 */
 	protected abstract Object getArg(Object compound, int index);
 
+	/**
+	 * Determines whether a term is a list cell, that is, a list that is not
+	 * empty.
+	 * 
+	 * @param term the term
+	 * @return <code>true</code> if the term has a head and a tail, otherwise
+	 * 		<code>false</code>
+	 */
+	protected abstract boolean isListCell(Object term);
+
+	/**
+	 * Returns the head of a list cell, without converting it.
+	 * 
+	 * @param cell the list cell
+	 * @return the first element of the list
+	 */
+	protected abstract Object getHead(Object cell);
+
+	/**
+	 * Returns the tail of a list cell, without converting it.
+	 * 
+	 * @param cell the list cell
+	 * @return the list of the rest of the elements
+	 */
+	protected abstract Object getTail(Object cell);
+
+	/**
+	 * Returns the number of the elements of a list term.
+	 * 
+	 * @param list the list term
+	 * @return the length of the list
+	 */
+	private int listLength(Object list) {
+		int length = 0;
+		for (; isListCell(list); list = getTail(list)) {
+			++length;
+		}
+		return length;
+	}
+
+	/**
+	 * Converts a list of integer terms to an int array, without converting 
+	 * the elements to objects.
+	 * 
+	 * @param list the list term
+	 * @return the int values of the elements
+	 */
+	public int[] toIntArray(Object list) {
+		int[] values = new int[listLength(list)];
+		for (int i = 0; i < values.length; ++i, list = getTail(list)) {
+			values[i] = intValue(getHead(list));
+		}
+		return values;
+	}
+
+	/**
+	 * Converts a list of integer terms to a long array, without converting 
+	 * the elements to objects.
+	 * 
+	 * @param list the list term
+	 * @return the long values of the elements
+	 */
+	public long[] toLongArray(Object list) {
+		long[] values = new long[listLength(list)];
+		for (int i = 0; i < values.length; ++i, list = getTail(list)) {
+			values[i] = longValue(getHead(list));
+		}
+		return values;
+	}
+
+	/**
+	 * Converts a list of number terms to a double array, without converting 
+	 * the elements to objects.
+	 * 
+	 * @param list the list term
+	 * @return the double values of the elements
+	 */
+	public double[] toDoubleArray(Object list) {
+		double[] values = new double[listLength(list)];
+		for (int i = 0; i < values.length; ++i, list = getTail(list)) {
+			values[i] = numberValue(getHead(list));
+		}
+		return values;
+	}
+
+	/**
+	 * Converts a number term to a double value. Unlike 
+	 * {@link #doubleValue(Object)}, it accepts integer terms as well.
+	 * 
+	 * @param term a term representing a number
+	 * @return the double value of the term
+	 */
+	public double numberValue(Object term) {
+		return isInteger(term) ? longValue(term) : doubleValue(term);
+	}
+
 }
@@ -0,0 +1,164 @@
+/* 
+ * Copyright (c) 2010 Miklos Espak
+ * All rights reserved.
+ * 
+ * Permission is hereby granted, free  of charge, to any person obtaining
+ * a  copy  of this  software  and  associated  documentation files  (the
+ * "Software"), to  deal in  the Software without  restriction, including
+ * without limitation  the rights to  use, copy, modify,  merge, publish,
+ * distribute,  sublicense, and/or sell  copies of  the Software,  and to
+ * permit persons to whom the Software  is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The  above  copyright  notice  and  this permission  notice  shall  be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE  SOFTWARE IS  PROVIDED  "AS  IS", WITHOUT  WARRANTY  OF ANY  KIND,
+ * EXPRESS OR  IMPLIED, INCLUDING  BUT NOT LIMITED  TO THE  WARRANTIES OF
+ * MERCHANTABILITY,    FITNESS    FOR    A   PARTICULAR    PURPOSE    AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE,  ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.prolog4j;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Records which predicates the rules of a knowledge base call. It learns the
+ * rules from the text of the clauses added to the knowledge base, by the 
+ * {@link ClauseScanner}, so it does not depend on the engine. The predicates
+ * are identified by their name only, so that meta-calls adding further 
+ * arguments are covered as well. The recorded calls are never forgotten, so
+ * they may include calls of rules that have been removed.
+ */
+final class DependencyGraph {
+
+	/** Stores the names in the bodies of the rules of a predicate. */
+	private final Map<String, Set<String>> calls = new HashMap<String, Set<String>>();
+
+	/** The indicators of the predicates that have clauses. */
+	private final Set<String> defined = new HashSet<String>();
+
+	/**
+	 * Records the clauses added to or removed from the knowledge base.
+	 * 
+	 * @param clauses the text of the clauses, or <code>null</code> if it is
+	 * 		not known
+	 * @return the names of the predicates of the clauses, or <code>null</code>
+	 * 		if any of them cannot be determined
+	 */
+	synchronized Set<String> update(String clauses) {
+		if (clauses == null) {
+			return null;
+		}
+		Set<String> heads = new HashSet<String>();
+		boolean unknown = false;
+		for (String clause: ClauseScanner.split(clauses)) {
+			ClauseScanner.Head head = ClauseScanner.head(clause);
+			if (head == null) {
+				unknown = true;
+				continue;
+			}
+			heads.add(head.name);
+			record(head.name, head.indicator(), ClauseScanner.bodyNames(clause));
+		}
+		return unknown ? null : heads;
+	}
+
+	/**
+	 * Records the compiled clauses added to the knowledge base.
+	 * 
+	 * @param clauses the clauses in the form of {@link ClauseImage}
+	 * @return the names of the predicates of the clauses, or <code>null</code>
+	 * 		if any of them cannot be determined
+	 */
+	synchronized Set<String> update(List<Object> clauses) {
+		Set<String> heads = new HashSet<String>();
+		boolean unknown = false;
+		for (Object clause: clauses) {
+			Object head = ClauseImage.head(clause);
+			if (head == null) {
+				unknown = true;
+				continue;
+			}
+			String name = ClauseImage.name(head);
+			heads.add(name);
+			record(name, ClauseScanner.indicator(name, ClauseImage.arity(head)), 
+					ClauseImage.bodyNames(clause));
+		}
+		return unknown ? null : heads;
+	}
+
+	/**
+	 * Records a clause.
+	 * 
+	 * @param name the name of its predicate
+	 * @param indicator the indicator of its predicate
+	 * @param body the names in its body
+	 */
+	private void record(String name, String indicator, Set<String> body) {
+		defined.add(indicator);
+		if (!body.isEmpty()) {
+			Set<String> called = calls.get(name);
+			if (called == null) {
+				called = new HashSet<String>();
+				calls.put(name, called);
+			}
+			called.addAll(body);
+		}
+	}
+
+	/**
+	 * Returns the names that can be reached from the given names through the
+	 * recorded calls, including the given names.
+	 * 
+	 * @param names the names to start from
+	 * @return the reachable names
+	 */
+	synchronized Set<String> closure(Collection<String> names) {
+		Set<String> reached = new HashSet<String>(names);
+		Deque<String> pending = new ArrayDeque<String>(names);
+		while (!pending.isEmpty()) {
+			Set<String> called = calls.get(pending.pop());
+			if (called != null) {
+				for (String name: called) {
+					if (reached.add(name)) {
+						pending.push(name);
+					}
+				}
+			}
+		}
+		return reached;
+	}
+
+	/**
+	 * Returns the names in the bodies of the rules of a predicate.
+	 *
+	 * @param name the name of the predicate
+	 * @return the names called by the rules of the predicate
+	 */
+	synchronized Set<String> calls(String name) {
+		Set<String> called = calls.get(name);
+		return called == null ? new HashSet<String>() : new HashSet<String>(called);
+	}
+
+	/**
+	 * Returns whether clauses have been added to a predicate.
+	 * 
+	 * @param indicator the indicator of the predicate, <tt>name/arity</tt>
+	 * @return <code>true</code> if the predicate has clauses
+	 */
+	synchronized boolean isDefined(String indicator) {
+		return defined.contains(indicator);
+	}
+
+}
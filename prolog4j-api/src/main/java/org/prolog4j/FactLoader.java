@@ -0,0 +1,143 @@
+/* 
+ * Copyright (c) 2010 Miklos Espak
+ * All rights reserved.
+ * 
+ * Permission is hereby granted, free  of charge, to any person obtaining
+ * a  copy  of this  software  and  associated  documentation files  (the
+ * "Software"), to  deal in  the Software without  restriction, including
+ * without limitation  the rights to  use, copy, modify,  merge, publish,
+ * distribute,  sublicense, and/or sell  copies of  the Software,  and to
+ * permit persons to whom the Software  is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The  above  copyright  notice  and  this permission  notice  shall  be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE  SOFTWARE IS  PROVIDED  "AS  IS", WITHOUT  WARRANTY  OF ANY  KIND,
+ * EXPRESS OR  IMPLIED, INCLUDING  BUT NOT LIMITED  TO THE  WARRANTIES OF
+ * MERCHANTABILITY,    FITNESS    FOR    A   PARTICULAR    PURPOSE    AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE,  ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.prolog4j;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Adds facts of a predicate to the knowledge base of a prover in batches. 
+ * The facts are given by the values of their arguments, which are converted
+ * by the conversion policy of the prover, so they are not parsed one by one
+ * and no goal is solved for them. The facts are added when a batch is full,
+ * and when the loader is flushed or closed.
+ * <p>
+ * A loader is created by {@link Prover#factLoader(String)}. It is not thread
+ * safe.
+ */
+public final class FactLoader implements AutoCloseable {
+
+	/** The default number of facts added at once. */
+	public static final int DEFAULT_BATCH_SIZE = 10000;
+
+	/** The prover whose knowledge base the facts are added to. */
+	private final AbstractProver prover;
+
+	/** The name of the predicate. */
+	private final String name;
+
+	/** The arity of the predicate, or -1 if it is not known yet. */
+	private int arity;
+
+	/** The number of facts added at once. */
+	private final int batchSize;
+
+	/** The arguments of the facts that have not been added yet. */
+	private List<Object[]> batch;
+
+	/**
+	 * Creates a fact loader.
+	 * 
+	 * @param prover the prover whose knowledge base the facts are added to
+	 * @param functor the name of the predicate, or its indicator, 
+	 * 		<tt>name/arity</tt>
+	 * @param batchSize the number of facts added at once
+	 */
+	FactLoader(AbstractProver prover, String functor, int batchSize) {
+		if (batchSize < 1) {
+			throw new IllegalArgumentException("Non-positive batch size: " + batchSize);
+		}
+		this.prover = prover;
+		this.batchSize = batchSize;
+		List<String> indicators = ClauseScanner.indicators(functor);
+		if (indicators != null && indicators.size() == 1) {
+			String indicator = indicators.get(0);
+			int slash = indicator.lastIndexOf('/');
+			this.name = indicator.substring(0, slash);
+			this.arity = Integer.parseInt(indicator.substring(slash + 1));
+		} else {
+			this.name = functor;
+			this.arity = -1;
+		}
+		this.batch = new ArrayList<Object[]>(Math.min(batchSize, 1024));
+	}
+
+	/**
+	 * Adds a fact. The array of the arguments is copied.
+	 * 
+	 * @param args the arguments of the fact
+	 * @return this loader
+	 * @throws IllegalArgumentException if the number of the arguments differs
+	 * 		from the arity of the predicate
+	 */
+	public FactLoader add(Object... args) {
+		if (arity == -1) {
+			arity = args.length;
+		} else if (args.length != arity) {
+			throw new IllegalArgumentException("The arity of " + name + " is " 
+					+ arity + ", not " + args.length);
+		}
+		batch.add(args.clone());
+		if (batch.size() >= batchSize) {
+			flush();
+		}
+		return this;
+	}
+
+	/**
+	 * Adds facts.
+	 * 
+	 * @param rows the arguments of each fact
+	 * @return this loader
+	 * @throws IllegalArgumentException if the number of the arguments of a 
+	 * 		fact differs from the arity of the predicate
+	 */
+	public FactLoader addAll(Iterable<Object[]> rows) {
+		for (Object[] args: rows) {
+			add(args);
+		}
+		return this;
+	}
+
+	/**
+	 * Adds the pending facts to the knowledge base.
+	 */
+	public void flush() {
+		if (batch.isEmpty()) {
+			return;
+		}
+		List<Object[]> facts = batch;
+		batch = new ArrayList<Object[]>(Math.min(batchSize, 1024));
+		prover.loadFacts(name, arity, facts);
+	}
+
+	/**
+	 * Adds the pending facts to the knowledge base.
+	 */
+	@Override
+	public void close() {
+		flush();
+	}
+
+}
@@ -0,0 +1,619 @@
+/* 
+ * Copyright (c) 2010 Miklos Espak
+ * All rights reserved.
+ * 
+ * Permission is hereby granted, free  of charge, to any person obtaining
+ * a  copy  of this  software  and  associated  documentation files  (the
+ * "Software"), to  deal in  the Software without  restriction, including
+ * without limitation  the rights to  use, copy, modify,  merge, publish,
+ * distribute,  sublicense, and/or sell  copies of  the Software,  and to
+ * permit persons to whom the Software  is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The  above  copyright  notice  and  this permission  notice  shall  be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE  SOFTWARE IS  PROVIDED  "AS  IS", WITHOUT  WARRANTY  OF ANY  KIND,
+ * EXPRESS OR  IMPLIED, INCLUDING  BUT NOT LIMITED  TO THE  WARRANTIES OF
+ * MERCHANTABILITY,    FITNESS    FOR    A   PARTICULAR    PURPOSE    AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE,  ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.prolog4j;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A relation of ground facts stored by columns in primitive arrays. The atoms
+ * are encoded by a dictionary as integers, so a fact takes four or eight 
+ * bytes per argument, instead of a clause of several objects in the 
+ * knowledge base. The table is registered on a prover by 
+ * {@link Prover#registerPredicate(String, Relation)}.
+ * <p>
+ * The columns given to {@link #index(int)} have a hash index. A call whose
+ * argument is bound in an indexed column reads only the rows with that value,
+ * the other calls scan the rows in the order of their addition.
+ * <p>
+ * The rows can be added while the table is queried. A query sees the rows
+ * that had been added when its predicate was called.
+ */
+public class FactTable extends Relation {
+
+	/** The types of the columns. */
+	public enum Type {
+		/** Integers that fit into an <tt>int</tt>. */
+		INTEGER,
+		/** Integers that fit into a <tt>long</tt>. */
+		LONG,
+		/** Floating point numbers. */
+		DOUBLE,
+		/** Atoms, encoded by the dictionary of the table. */
+		ATOM
+	}
+
+	/** The initial number of rows that the arrays can hold. */
+	private static final int INITIAL_CAPACITY = 16;
+
+	/** The types of the columns. */
+	private final Type[] types;
+
+	/** 
+	 * The values of the columns of integers and atoms, or <code>null</code> 
+	 * for the other columns.
+	 */
+	private int[][] ints;
+
+	/** The values of the columns of longs, or <code>null</code> for the other columns. */
+	private long[][] longs;
+
+	/** The values of the columns of doubles, or <code>null</code> for the other columns. */
+	private double[][] doubles;
+
+	/** The number of the rows. */
+	private int size;
+
+	/** The number of rows that the arrays can hold. */
+	private int capacity;
+
+	/** The atoms by their code. */
+	private final List<String> atoms = new ArrayList<String>();
+
+	/** The codes of the atoms. */
+	private final Map<String, Integer> codes = new HashMap<String, Integer>();
+
+	/** The hash indexes of the columns, or <code>null</code> for the columns without index. */
+	private final Index[] indexes;
+
+	/**
+	 * Creates an empty table.
+	 * 
+	 * @param types the types of the columns
+	 */
+	public FactTable(Type... types) {
+		super(types.length);
+		this.types = types.clone();
+		this.ints = new int[types.length][];
+		this.longs = new long[types.length][];
+		this.doubles = new double[types.length][];
+		this.indexes = new Index[types.length];
+		allocate(INITIAL_CAPACITY);
+	}
+
+	/**
+	 * Allocates the arrays of the columns, and copies the rows into them.
+	 * 
+	 * @param capacity the number of rows that the arrays can hold
+	 */
+	private void allocate(int capacity) {
+		for (int i = 0; i < types.length; ++i) {
+			switch (types[i]) {
+			case LONG:
+				longs[i] = longs[i] == null ? new long[capacity] : Arrays.copyOf(longs[i], capacity);
+				break;
+			case DOUBLE:
+				doubles[i] = doubles[i] == null ? new double[capacity] : Arrays.copyOf(doubles[i], capacity);
+				break;
+			default:
+				ints[i] = ints[i] == null ? new int[capacity] : Arrays.copyOf(ints[i], capacity);
+			}
+		}
+		this.capacity = capacity;
+	}
+
+	/**
+	 * Returns the type of a column.
+	 * 
+	 * @param column the index of the column, starting from zero
+	 * @return the type of the column
+	 */
+	public Type getType(int column) {
+		return types[column];
+	}
+
+	/**
+	 * Returns the number of rows.
+	 * 
+	 * @return the number of rows
+	 */
+	public synchronized int size() {
+		return size;
+	}
+
+	/**
+	 * Adds a row. The provers of the table are notified of the change.
+	 * 
+	 * @param row the values of the row
+	 * @return this table
+	 * @throws IllegalArgumentException if a value does not fit the type of its 
+	 * 		column
+	 */
+	public FactTable add(Object... row) {
+		synchronized (this) {
+			append(row);
+		}
+		changed();
+		return this;
+	}
+
+	/**
+	 * Adds rows. The provers of the table are notified of the change once.
+	 * 
+	 * @param rows the values of each row
+	 * @return this table
+	 * @throws IllegalArgumentException if a value does not fit the type of its
+	 * 		column
+	 */
+	public FactTable addAll(Iterable<Object[]> rows) {
+		synchronized (this) {
+			for (Object[] row: rows) {
+				append(row);
+			}
+		}
+		changed();
+		return this;
+	}
+
+	/**
+	 * Appends a row to the columns and to the indexes.
+	 * 
+	 * @param row the values of the row
+	 */
+	private void append(Object[] row) {
+		if (row.length != types.length) {
+			throw new IllegalArgumentException("The arity of the table is " 
+					+ types.length + ", not " + row.length);
+		}
+		long[] keys = new long[row.length];
+		for (int i = 0; i < row.length; ++i) {
+			keys[i] = encode(i, row[i]);
+		}
+		if (size == capacity) {
+			allocate(size * 2);
+		}
+		for (int i = 0; i < keys.length; ++i) {
+			switch (types[i]) {
+			case LONG:
+				longs[i][size] = keys[i];
+				break;
+			case DOUBLE:
+				doubles[i][size] = Double.longBitsToDouble(keys[i]);
+				break;
+			default:
+				ints[i][size] = (int) keys[i];
+			}
+		}
+		for (int i = 0; i < indexes.length; ++i) {
+			if (indexes[i] != null) {
+				indexes[i].add(keys[i], size);
+			}
+		}
+		++size;
+	}
+
+	/**
+	 * Returns the key of a value to be added to a column. The atoms that are
+	 * not in the dictionary yet are added to it.
+	 * 
+	 * @param column the index of the column
+	 * @param value the value
+	 * @return the key of the value
+	 * @throws IllegalArgumentException if the value does not fit the type of
+	 * 		the column
+	 */
+	private long encode(int column, Object value) {
+		if (types[column] == Type.ATOM && value instanceof String) {
+			Integer code = codes.get(value);
+			if (code == null) {
+				code = atoms.size();
+				atoms.add((String) value);
+				codes.put((String) value, code);
+			}
+			return code;
+		}
+		Long key = key(column, value);
+		if (key == null) {
+			throw new IllegalArgumentException("Not a value of type " 
+					+ types[column] + ": " + value);
+		}
+		return key;
+	}
+
+	/**
+	 * Returns the key of a value in a column. The keys of the atoms are their
+	 * code, see {@link #numberKey(Type, Object)} for the numbers.
+	 * 
+	 * @param column the index of the column
+	 * @param value the value
+	 * @return the key of the value, or <code>null</code> if the value cannot
+	 * 		occur in the column
+	 */
+	private Long key(int column, Object value) {
+		if (types[column] != Type.ATOM) {
+			return numberKey(types[column], value);
+		}
+		Integer code = value instanceof String ? codes.get(value) : null;
+		return code != null ? (long) code : null;
+	}
+
+	/**
+	 * Returns the key of a value in a column of numbers. The keys of the 
+	 * integers and longs are their value, the keys of the doubles are their
+	 * bits.
+	 * 
+	 * @param type the type of the column
+	 * @param value the value
+	 * @return the key of the value, or <code>null</code> if the value cannot
+	 * 		occur in the column
+	 */
+	static Long numberKey(Type type, Object value) {
+		switch (type) {
+		case INTEGER:
+			if (isIntegral(value) && ((Number) value).longValue() == ((Number) value).intValue()) {
+				return ((Number) value).longValue();
+			}
+			return null;
+		case LONG:
+			return isIntegral(value) ? ((Number) value).longValue() : null;
+		case DOUBLE:
+			if (value instanceof Double || value instanceof Float) {
+				return Double.doubleToLongBits(((Number) value).doubleValue());
+			}
+			return null;
+		default:
+			return null;
+		}
+	}
+
+	/**
+	 * Decides whether a value is an integral number.
+	 * 
+	 * @param value the value
+	 * @return <code>true</code> for integers, longs, shorts and bytes
+	 */
+	private static boolean isIntegral(Object value) {
+		return value instanceof Integer || value instanceof Long 
+				|| value instanceof Short || value instanceof Byte;
+	}
+
+	/**
+	 * Creates a hash index on a column. The index is maintained when rows are
+	 * added.
+	 * 
+	 * @param column the index of the column, starting from zero
+	 * @return this table
+	 */
+	public synchronized FactTable index(int column) {
+		if (indexes[column] == null) {
+			Index index = new Index();
+			for (int row = 0; row < size; ++row) {
+				index.add(keyAt(column, row), row);
+			}
+			indexes[column] = index;
+		}
+		return this;
+	}
+
+	/**
+	 * Removes every row. The dictionary of the atoms is kept.
+	 */
+	public void clear() {
+		synchronized (this) {
+			size = 0;
+			Arrays.fill(ints, null);
+			Arrays.fill(longs, null);
+			Arrays.fill(doubles, null);
+			allocate(INITIAL_CAPACITY);
+			for (int i = 0; i < indexes.length; ++i) {
+				if (indexes[i] != null) {
+					indexes[i] = new Index();
+				}
+			}
+		}
+		changed();
+	}
+
+	/**
+	 * Returns the key of the value of a row in a column.
+	 * 
+	 * @param column the index of the column
+	 * @param row the index of the row
+	 * @return the key of the value
+	 */
+	private long keyAt(int column, int row) {
+		switch (types[column]) {
+		case LONG:
+			return longs[column][row];
+		case DOUBLE:
+			return Double.doubleToLongBits(doubles[column][row]);
+		default:
+			return ints[column][row];
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The rows are read through the index of a bound column if there is one,
+	 * otherwise every row is scanned.
+	 */
+	@Override
+	public synchronized Cursor select(Object[] pattern) {
+		int arity = types.length;
+		boolean[] bound = new boolean[arity];
+		long[] keys = new long[arity];
+		int indexed = -1;
+		for (int i = 0; i < arity; ++i) {
+			if (pattern[i] == null) {
+				continue;
+			}
+			Long key = key(i, pattern[i]);
+			if (key == null) {
+				return Relation.cursor(Collections.<Object[]>emptyIterator());
+			}
+			bound[i] = true;
+			keys[i] = key;
+			if (indexed == -1 && indexes[i] != null) {
+				indexed = i;
+			}
+		}
+		return new TableCursor(bound, keys, indexed);
+	}
+
+	/**
+	 * A hash index of a column. The rows of a bucket are chained in the order
+	 * of their addition.
+	 */
+	private static final class Index {
+
+		/** The first row of each bucket, or -1. */
+		private int[] heads;
+
+		/** The last row of each bucket, or -1. */
+		private int[] tails;
+
+		/** The next row in the bucket of each row, or -1. */
+		private int[] next;
+
+		/** The keys of the rows, only used for rehashing. */
+		private long[] keys;
+
+		/** The number of the rows in the index. */
+		private int size;
+
+		/** Creates an empty index. */
+		Index() {
+			allocate(INITIAL_CAPACITY);
+		}
+
+		/**
+		 * Allocates the buckets and rehashes the rows.
+		 * 
+		 * @param capacity the number of buckets, a power of two
+		 */
+		private void allocate(int capacity) {
+			heads = new int[capacity];
+			tails = new int[capacity];
+			Arrays.fill(heads, -1);
+			next = new int[capacity];
+			keys = keys == null ? new long[capacity] : Arrays.copyOf(keys, capacity);
+			int rows = size;
+			size = 0;
+			for (int row = 0; row < rows; ++row) {
+				add(keys[row], row);
+			}
+		}
+
+		/**
+		 * Returns the bucket of a key.
+		 * 
+		 * @param key the key
+		 * @return the index of the bucket
+		 */
+		int bucket(long key) {
+			int hash = (int) (key ^ (key >>> 32));
+			hash ^= (hash >>> 16);
+			return (hash * 0x9E3779B9) & (heads.length - 1);
+		}
+
+		/**
+		 * Adds the next row to the index.
+		 * 
+		 * @param key the key of the row in the indexed column
+		 * @param row the index of the row
+		 */
+		void add(long key, int row) {
+			if (row == heads.length) {
+				allocate(heads.length * 2);
+			}
+			keys[row] = key;
+			next[row] = -1;
+			int bucket = bucket(key);
+			if (heads[bucket] == -1) {
+				heads[bucket] = row;
+			} else {
+				next[tails[bucket]] = row;
+			}
+			tails[bucket] = row;
+			size = row + 1;
+		}
+
+	}
+
+	/**
+	 * A cursor over the rows matching the bound arguments of a call. It reads
+	 * the rows that the table had when it was created.
+	 */
+	private final class TableCursor extends Cursor {
+
+		/** Whether the columns are bound. */
+		private final boolean[] bound;
+
+		/** The keys of the values of the bound columns. */
+		private final long[] keys;
+
+		/** The number of rows when the cursor was created. */
+		private final int limit;
+
+		/** The values of the columns of integers and atoms when the cursor was created. */
+		private final int[][] intColumns;
+
+		/** The values of the columns of longs when the cursor was created. */
+		private final long[][] longColumns;
+
+		/** The values of the columns of doubles when the cursor was created. */
+		private final double[][] doubleColumns;
+
+		/** The next rows in the buckets of the index, or <code>null</code> for scanning. */
+		private final int[] chain;
+
+		/** The current row, -1 before the first one. */
+		private int row = -1;
+
+		/** The next row to be examined, or -1 if there is none. */
+		private int candidate;
+
+		/**
+		 * Creates a cursor. It is called while the table is locked.
+		 * 
+		 * @param bound whether the columns are bound
+		 * @param keys the keys of the values of the bound columns
+		 * @param indexed the bound column whose index is read, or -1 if the
+		 * 		rows are scanned
+		 */
+		TableCursor(boolean[] bound, long[] keys, int indexed) {
+			this.bound = bound;
+			this.keys = keys;
+			this.limit = size;
+			this.intColumns = ints.clone();
+			this.longColumns = longs.clone();
+			this.doubleColumns = doubles.clone();
+			if (indexed == -1) {
+				chain = null;
+				candidate = limit > 0 ? 0 : -1;
+			} else {
+				Index index = indexes[indexed];
+				chain = index.next;
+				candidate = index.heads[index.bucket(keys[indexed])];
+			}
+		}
+
+		@Override
+		public boolean next() {
+			while (candidate != -1 && candidate < limit) {
+				int current = candidate;
+				if (chain == null) {
+					candidate = current + 1 < limit ? current + 1 : -1;
+				} else {
+					candidate = chain[current];
+				}
+				if (matches(current)) {
+					row = current;
+					return true;
+				}
+			}
+			candidate = -1;
+			row = -1;
+			return false;
+		}
+
+		/**
+		 * Decides whether a row has the values of the bound columns.
+		 * 
+		 * @param current the index of the row
+		 * @return <code>true</code> if the row matches
+		 */
+		private boolean matches(int current) {
+			for (int i = 0; i < bound.length; ++i) {
+				if (!bound[i]) {
+					continue;
+				}
+				long key;
+				switch (types[i]) {
+				case LONG:
+					key = longColumns[i][current];
+					break;
+				case DOUBLE:
+					key = Double.doubleToLongBits(doubleColumns[i][current]);
+					break;
+				default:
+					key = intColumns[i][current];
+				}
+				if (key != keys[i]) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		@Override
+		public Object get(int column) {
+			switch (types[column]) {
+			case INTEGER:
+				return intColumns[column][row];
+			case LONG:
+				return longColumns[column][row];
+			case DOUBLE:
+				return doubleColumns[column][row];
+			default:
+				return atom(intColumns[column][row]);
+			}
+		}
+
+		/**
+		 * {@inheritDoc}
+		 * <p>
+		 * The integers and the doubles are built by the term constructors of
+		 * the policy, without boxing them.
+		 */
+		@Override
+		public Object term(int column, ConversionPolicy cp) {
+			switch (types[column]) {
+			case INTEGER:
+				return cp.term(intColumns[column][row]);
+			case DOUBLE:
+				return cp.term(doubleColumns[column][row]);
+			default:
+				return cp.convertObject(get(column));
+			}
+		}
+
+	}
+
+	/**
+	 * Returns the atom of a code.
+	 * 
+	 * @param code the code of the atom
+	 * @return the atom
+	 */
+	private synchronized String atom(int code) {
+		return atoms.get(code);
+	}
+
+}
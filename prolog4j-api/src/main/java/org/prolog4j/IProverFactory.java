@@ -70,5 +70,14 @@ public interface IProverFactory {
 	 * @return the created conversion policy
 	 */
 	ConversionPolicy createConversionPolicy();
+
+	/**
+	 * Returns whether the provers created by the factory have separate
+	 * knowledge bases, so that several of them can serve as the replicas of a
+	 * {@link ProverPool}.
+	 * 
+	 * @return <code>false</code> if the provers share a single engine
+	 */
+	boolean isReplicable();
 	
 }
@@ -0,0 +1,70 @@
+/* 
+ * Copyright (c) 2010 Miklos Espak
+ * All rights reserved.
+ * 
+ * Permission is hereby granted, free  of charge, to any person obtaining
+ * a  copy  of this  software  and  associated  documentation files  (the
+ * "Software"), to  deal in  the Software without  restriction, including
+ * without limitation  the rights to  use, copy, modify,  merge, publish,
+ * distribute,  sublicense, and/or sell  copies of  the Software,  and to
+ * permit persons to whom the Software  is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The  above  copyright  notice  and  this permission  notice  shall  be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE  SOFTWARE IS  PROVIDED  "AS  IS", WITHOUT  WARRANTY  OF ANY  KIND,
+ * EXPRESS OR  IMPLIED, INCLUDING  BUT NOT LIMITED  TO THE  WARRANTIES OF
+ * MERCHANTABILITY,    FITNESS    FOR    A   PARTICULAR    PURPOSE    AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE,  ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.prolog4j;
+
+/**
+ * This exception is thrown when the search for a solution of a query 
+ * exceeds one of its {@link Limits}, or when the thread searching for the 
+ * solution is interrupted. The engine has been halted when the exception is
+ * thrown, and the prover can be used again. The interrupted status of the
+ * thread is not cleared.
+ */
+public class LimitExceededException extends RuntimeException {
+
+	/** Class version for serialization. */
+	private static final long serialVersionUID = 1L;
+
+	/** The reasons for halting the search. */
+	public static enum Reason {
+		/** The time allowed for the search has elapsed. */
+		TIMEOUT,
+		/** The search has made more inferences than allowed. */
+		INFERENCES,
+		/** The thread searching for the solution has been interrupted. */
+		INTERRUPTED
+	}
+
+	/** The reason for halting the search. */
+	private final Reason reason;
+
+	/**
+	 * Constructs a LimitExceededException.
+	 * 
+	 * @param reason the reason for halting the search
+	 */
+	public LimitExceededException(Reason reason) {
+		super(String.format("The search for a solution has been halted: %s.", reason));
+		this.reason = reason;
+	}
+
+	/**
+	 * Returns the reason for halting the search.
+	 * 
+	 * @return the reason
+	 */
+	public Reason getReason() {
+		return reason;
+	}
+
+}
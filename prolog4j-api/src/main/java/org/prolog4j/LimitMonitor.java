@@ -0,0 +1,191 @@
+/* 
+ * Copyright (c) 2010 Miklos Espak
+ * All rights reserved.
+ * 
+ * Permission is hereby granted, free  of charge, to any person obtaining
+ * a  copy  of this  software  and  associated  documentation files  (the
+ * "Software"), to  deal in  the Software without  restriction, including
+ * without limitation  the rights to  use, copy, modify,  merge, publish,
+ * distribute,  sublicense, and/or sell  copies of  the Software,  and to
+ * permit persons to whom the Software  is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The  above  copyright  notice  and  this permission  notice  shall  be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE  SOFTWARE IS  PROVIDED  "AS  IS", WITHOUT  WARRANTY  OF ANY  KIND,
+ * EXPRESS OR  IMPLIED, INCLUDING  BUT NOT LIMITED  TO THE  WARRANTIES OF
+ * MERCHANTABILITY,    FITNESS    FOR    A   PARTICULAR    PURPOSE    AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE,  ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.prolog4j;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.prolog4j.LimitExceededException.Reason;
+
+/**
+ * Enforces the {@link Limits} of a query on the searches for its solutions.
+ * It serves for the implementation of the bindings.
+ * <p>
+ * The engines that report their inferences to a listener call 
+ * {@link #inference()} for every inference, and halt the search when it 
+ * returns <code>false</code>. The other engines are halted from a background
+ * thread by {@link #watch(Runnable)}, when the time allowed for the search
+ * has elapsed or the searching thread has been interrupted. After the search
+ * {@link #throwIfExceeded()} reports the exceeded limit.
+ */
+public final class LimitMonitor {
+
+	/** The period of checking the searches watched in the background. */
+	private static final long WATCH_PERIOD_MILLIS = 10;
+
+	/** The number of inferences between two checks of the clock. */
+	private static final int CLOCK_CHECK_INTERVAL = 64;
+
+	/** Checks the searches watched in the background. */
+	private static final ScheduledExecutorService WATCHDOG = 
+		Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable task) {
+				Thread thread = new Thread(task, "prolog4j-limit-watchdog");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+
+	/** The limits to enforce. */
+	private final Limits limits;
+
+	/** The thread of the current search. */
+	private volatile Thread thread;
+
+	/** The time when the current search has to be halted, in nanoseconds. */
+	private volatile long deadline;
+
+	/** The number of inferences made by the current search. */
+	private long inferences;
+
+	/** The limit exceeded by the current search, or <code>null</code>. */
+	private volatile Reason exceeded;
+
+	/**
+	 * Creates a monitor.
+	 * 
+	 * @param limits the limits to enforce
+	 */
+	public LimitMonitor(Limits limits) {
+		this.limits = limits;
+	}
+
+	/**
+	 * Returns the limits enforced by the monitor.
+	 * 
+	 * @return the limits
+	 */
+	public Limits getLimits() {
+		return limits;
+	}
+
+	/**
+	 * Starts monitoring a search in the current thread.
+	 */
+	public void start() {
+		thread = Thread.currentThread();
+		deadline = System.nanoTime() + limits.getTimeout(TimeUnit.NANOSECONDS);
+		inferences = 0;
+		exceeded = null;
+	}
+
+	/**
+	 * Counts an inference of the current search, and checks the limits.
+	 * 
+	 * @return <code>false</code> if the search has to be halted, otherwise
+	 * 		<code>true</code>
+	 */
+	public boolean inference() {
+		if (exceeded != null) {
+			return false;
+		}
+		++inferences;
+		long maxInferences = limits.getMaxInferences();
+		if (maxInferences > 0 && inferences > maxInferences) {
+			exceeded = Reason.INFERENCES;
+			return false;
+		}
+		return inferences % CLOCK_CHECK_INTERVAL != 0 || check();
+	}
+
+	/**
+	 * Checks the time allowed for the current search and the interrupted 
+	 * status of its thread. It can be called from any thread.
+	 * 
+	 * @return <code>false</code> if the search has to be halted, otherwise
+	 * 		<code>true</code>
+	 */
+	public boolean check() {
+		if (exceeded != null) {
+			return false;
+		}
+		if (limits.getTimeout(TimeUnit.NANOSECONDS) > 0 
+				&& System.nanoTime() - deadline >= 0) {
+			exceeded = Reason.TIMEOUT;
+			return false;
+		}
+		if (limits.isInterruptible() && thread.isInterrupted()) {
+			exceeded = Reason.INTERRUPTED;
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Checks the current search periodically in the background, and halts it
+	 * when the time allowed for it has elapsed or its thread has been 
+	 * interrupted. The returned future has to be cancelled when the search
+	 * has finished.
+	 * 
+	 * @param halt halts the search of the engine
+	 * @return the future of the periodic check
+	 */
+	public ScheduledFuture<?> watch(final Runnable halt) {
+		return WATCHDOG.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				if (exceeded == null && !check()) {
+					halt.run();
+				}
+			}
+		}, WATCH_PERIOD_MILLIS, WATCH_PERIOD_MILLIS, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Returns whether the current search has exceeded a limit.
+	 * 
+	 * @return <code>true</code> if a limit has been exceeded, otherwise 
+	 * 		<code>false</code>
+	 */
+	public boolean isExceeded() {
+		return exceeded != null;
+	}
+
+	/**
+	 * Throws an exception if the current search has exceeded a limit.
+	 * 
+	 * @throws LimitExceededException if a limit has been exceeded
+	 */
+	public void throwIfExceeded() {
+		Reason reason = exceeded;
+		if (reason != null) {
+			throw new LimitExceededException(reason);
+		}
+	}
+
+}
@@ -0,0 +1,155 @@
+/* 
+ * Copyright (c) 2010 Miklos Espak
+ * All rights reserved.
+ * 
+ * Permission is hereby granted, free  of charge, to any person obtaining
+ * a  copy  of this  software  and  associated  documentation files  (the
+ * "Software"), to  deal in  the Software without  restriction, including
+ * without limitation  the rights to  use, copy, modify,  merge, publish,
+ * distribute,  sublicense, and/or sell  copies of  the Software,  and to
+ * permit persons to whom the Software  is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The  above  copyright  notice  and  this permission  notice  shall  be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE  SOFTWARE IS  PROVIDED  "AS  IS", WITHOUT  WARRANTY  OF ANY  KIND,
+ * EXPRESS OR  IMPLIED, INCLUDING  BUT NOT LIMITED  TO THE  WARRANTIES OF
+ * MERCHANTABILITY,    FITNESS    FOR    A   PARTICULAR    PURPOSE    AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE,  ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.prolog4j;
+
+import java.io.Serializable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The limits of the search for the solutions of a query. The limits apply to
+ * every search for a solution separately, i.e. to the search for the first
+ * solution and to the search for each further solution. When a limit is 
+ * exceeded, the engine is halted and a {@link LimitExceededException} is 
+ * thrown. The solutions cannot be traversed further afterwards, but the 
+ * prover can be used again immediately.
+ * <p>
+ * Limits are immutable. They can be assigned to a query by 
+ * {@link Query#withLimits(Limits)}. The queries that have limits also honour
+ * the interruption of the thread that searches for the solutions.
+ * <p>
+ * Not every binding supports every kind of limit. If a binding cannot 
+ * enforce a limit, it throws an {@link UnsupportedOperationException} when 
+ * the query is solved.
+ */
+public final class Limits implements Serializable {
+
+	/** Class version for serialization. */
+	private static final long serialVersionUID = 1L;
+
+	/** No limits. The search cannot be interrupted. */
+	public static final Limits NONE = new Limits(0, 0, false);
+
+	/** No limits, but the search can be interrupted. */
+	public static final Limits INTERRUPTIBLE = new Limits(0, 0, true);
+
+	/** The time allowed for a search in nanoseconds, or 0 for no limit. */
+	private final long timeout;
+
+	/** The number of inferences allowed for a search, or 0 for no limit. */
+	private final long maxInferences;
+
+	/** True if the search stops when its thread is interrupted. */
+	private final boolean interruptible;
+
+	/**
+	 * Creates limits.
+	 * 
+	 * @param timeout the time allowed for a search in nanoseconds, or 0
+	 * @param maxInferences the number of inferences allowed for a search, or 0
+	 * @param interruptible whether the search stops when its thread is 
+	 * 		interrupted
+	 */
+	private Limits(long timeout, long maxInferences, boolean interruptible) {
+		this.timeout = timeout;
+		this.maxInferences = maxInferences;
+		this.interruptible = interruptible;
+	}
+
+	/**
+	 * Returns limits that allow the specified time for a search, and that keep
+	 * the other limits of these limits.
+	 * 
+	 * @param duration the time allowed for a search
+	 * @param unit the unit of the duration
+	 * @return the new limits
+	 */
+	public Limits withTimeout(long duration, TimeUnit unit) {
+		if (duration <= 0) {
+			throw new IllegalArgumentException("Invalid timeout: " + duration);
+		}
+		return new Limits(unit.toNanos(duration), maxInferences, true);
+	}
+
+	/**
+	 * Returns limits that allow the specified number of inferences for a 
+	 * search, and that keep the other limits of these limits. The engines
+	 * count the inferences in different ways, so the same budget can allow
+	 * a different amount of work on different bindings.
+	 * 
+	 * @param inferences the number of inferences allowed for a search
+	 * @return the new limits
+	 */
+	public Limits withMaxInferences(long inferences) {
+		if (inferences <= 0) {
+			throw new IllegalArgumentException("Invalid number of inferences: " + inferences);
+		}
+		return new Limits(timeout, inferences, true);
+	}
+
+	/**
+	 * Returns the time allowed for a search.
+	 * 
+	 * @param unit the unit of the returned value
+	 * @return the time allowed for a search, or 0 if it is not limited
+	 */
+	public long getTimeout(TimeUnit unit) {
+		return unit.convert(timeout, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Returns the number of inferences allowed for a search.
+	 * 
+	 * @return the number of inferences, or 0 if it is not limited
+	 */
+	public long getMaxInferences() {
+		return maxInferences;
+	}
+
+	/**
+	 * Returns whether the search stops when its thread is interrupted.
+	 * 
+	 * @return <tt>true</tt> if the search can be interrupted, otherwise
+	 *         <tt>false</tt>
+	 */
+	public boolean isInterruptible() {
+		return interruptible;
+	}
+
+	/**
+	 * Returns whether the search has to be monitored at all.
+	 * 
+	 * @return <tt>true</tt> if there are no limits and the search cannot be 
+	 *         interrupted, otherwise <tt>false</tt>
+	 */
+	public boolean isNone() {
+		return timeout == 0 && maxInferences == 0 && !interruptible;
+	}
+
+	@Override
+	public String toString() {
+		return "Limits[timeout=" + timeout + "ns, maxInferences=" + maxInferences
+				+ ", interruptible=" + interruptible + "]";
+	}
+
+}
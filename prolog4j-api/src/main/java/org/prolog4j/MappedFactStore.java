@@ -0,0 +1,908 @@
+/* 
+ * Copyright (c) 2010 Miklos Espak
+ * All rights reserved.
+ * 
+ * Permission is hereby granted, free  of charge, to any person obtaining
+ * a  copy  of this  software  and  associated  documentation files  (the
+ * "Software"), to  deal in  the Software without  restriction, including
+ * without limitation  the rights to  use, copy, modify,  merge, publish,
+ * distribute,  sublicense, and/or sell  copies of  the Software,  and to
+ * permit persons to whom the Software  is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The  above  copyright  notice  and  this permission  notice  shall  be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE  SOFTWARE IS  PROVIDED  "AS  IS", WITHOUT  WARRANTY  OF ANY  KIND,
+ * EXPRESS OR  IMPLIED, INCLUDING  BUT NOT LIMITED  TO THE  WARRANTIES OF
+ * MERCHANTABILITY,    FITNESS    FOR    A   PARTICULAR    PURPOSE    AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE,  ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.prolog4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.prolog4j.FactTable.Type;
+
+/**
+ * A relation of ground facts stored in a file that is mapped into memory, so
+ * that relations larger than the heap can be queried. The store is 
+ * registered on a prover by {@link Prover#registerPredicate(String, Relation)}.
+ * <p>
+ * The rows have a fixed width, the columns have the types of 
+ * {@link FactTable}, and the atoms are encoded by a sorted dictionary. The
+ * columns given to {@link Writer#index(int)} have an index in the file, whose
+ * entries are sorted by the value of the column. A call whose argument is 
+ * bound in an indexed column reads only the matching entries, the other 
+ * calls scan the rows. The values are read directly from the mapped file, 
+ * and they are converted to terms only when they are bound to an argument.
+ * <p>
+ * A store is written by a {@link Writer} created by 
+ * {@link #create(Path, Type...)}, and opened by {@link #open(Path)}. It can
+ * be read by several threads at the same time.
+ * <p>
+ * The file starts with a header:
+ * <pre>
+ * magic: int, version: int, arity: int, number of indexes: int,
+ * number of rows: long, number of atoms: long,
+ * offset of the rows: long, offset of the atom offsets: long, 
+ * offset of the atoms: long,
+ * for each index (column: int, 0: int, offset: long),
+ * for each column (type: byte)
+ * </pre>
+ * The atoms are encoded in UTF-8, their offsets are relative to the offset of
+ * the atoms, and the offset after the last atom closes the list. An entry of
+ * an index is the key of the value and the number of the row, two longs. The
+ * keys are the same as in {@link FactTable}.
+ */
+public final class MappedFactStore extends Relation implements Closeable {
+
+	/** The first four bytes of a store: "P4JF". */
+	private static final int MAGIC = 0x50344A46;
+
+	/** The version of the format. */
+	private static final int VERSION = 1;
+
+	/** The size of the fixed part of the header. */
+	private static final int HEADER_SIZE = 56;
+
+	/** The size of an entry of an index. */
+	private static final int ENTRY_SIZE = 16;
+
+	/** The maximal size of the regions mapped at once. */
+	private static final long SEGMENT_SIZE = 1 << 30;
+
+	/** The encoding of the atoms. */
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	/** The channel of the file. */
+	private final FileChannel channel;
+
+	/** The types of the columns. */
+	private final Type[] types;
+
+	/** The offsets of the columns in a row. */
+	private final int[] offsets;
+
+	/** The width of a row. */
+	private final int width;
+
+	/** The number of rows. */
+	private final long rowCount;
+
+	/** The number of atoms. */
+	private final long atomCount;
+
+	/** The rows. */
+	private final Region rows;
+
+	/** The offsets of the atoms. */
+	private final Region atomOffsets;
+
+	/** The atoms. */
+	private final Region atoms;
+
+	/** The indexes of the columns, or <code>null</code> for the columns without index. */
+	private final Region[] indexes;
+
+	/**
+	 * Opens a store.
+	 * 
+	 * @param file the file of the store
+	 * @return the store
+	 * @throws IOException if the file cannot be read or it is not a store
+	 */
+	public static MappedFactStore open(Path file) throws IOException {
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+		try {
+			return new MappedFactStore(channel);
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		} catch (RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Creates a writer of a store.
+	 * 
+	 * @param file the file of the store, it is overwritten
+	 * @param types the types of the columns
+	 * @return the writer
+	 * @throws IOException if the temporary file of the rows cannot be created
+	 */
+	public static Writer create(Path file, Type... types) throws IOException {
+		return new Writer(file, types);
+	}
+
+	/**
+	 * Reads the header of a store and maps its sections.
+	 * 
+	 * @param channel the channel of the file
+	 * @throws IOException if the file cannot be read or it is not a store
+	 */
+	private MappedFactStore(FileChannel channel) throws IOException {
+		super(arity(channel));
+		this.channel = channel;
+		int arity = getArity();
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		read(channel, header, 0);
+		header.getInt();
+		header.getInt();
+		header.getInt();
+		int indexCount = header.getInt();
+		rowCount = header.getLong();
+		atomCount = header.getLong();
+		long rowsOffset = header.getLong();
+		long atomOffsetsOffset = header.getLong();
+		long atomsOffset = header.getLong();
+		ByteBuffer tail = ByteBuffer.allocate(indexCount * 16 + arity);
+		read(channel, tail, HEADER_SIZE);
+		int[] indexColumns = new int[indexCount];
+		long[] indexOffsets = new long[indexCount];
+		for (int i = 0; i < indexCount; ++i) {
+			indexColumns[i] = tail.getInt();
+			tail.getInt();
+			indexOffsets[i] = tail.getLong();
+		}
+		types = new Type[arity];
+		offsets = new int[arity];
+		int offset = 0;
+		for (int i = 0; i < arity; ++i) {
+			types[i] = Type.values()[tail.get()];
+			offsets[i] = offset;
+			offset += width(types[i]);
+		}
+		width = offset;
+		rows = new Region(channel, rowsOffset, rowCount * width, Math.max(width, 1));
+		atomOffsets = new Region(channel, atomOffsetsOffset, (atomCount + 1) * 8, 8);
+		atoms = new Region(channel, atomsOffset, 
+				atomOffsets.getLong(atomCount * 8), 1);
+		indexes = new Region[arity];
+		for (int i = 0; i < indexCount; ++i) {
+			indexes[indexColumns[i]] = new Region(channel, indexOffsets[i], 
+					rowCount * ENTRY_SIZE, ENTRY_SIZE);
+		}
+	}
+
+	/**
+	 * Checks the magic and the version of a store, and returns its arity.
+	 * 
+	 * @param channel the channel of the file
+	 * @return the arity of the store
+	 * @throws IOException if the file cannot be read or it is not a store
+	 */
+	private static int arity(FileChannel channel) throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(12);
+		read(channel, header, 0);
+		if (header.getInt() != MAGIC) {
+			throw new IOException("Not a fact store");
+		}
+		int version = header.getInt();
+		if (version != VERSION) {
+			throw new IOException("Unsupported fact store version: " + version);
+		}
+		return header.getInt();
+	}
+
+	/**
+	 * Fills a buffer from a channel, and flips it.
+	 * 
+	 * @param channel the channel
+	 * @param buffer the buffer
+	 * @param position the position of the bytes in the channel
+	 * @throws IOException if the bytes cannot be read
+	 */
+	private static void read(FileChannel channel, ByteBuffer buffer, long position) 
+			throws IOException {
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, position + buffer.position()) == -1) {
+				throw new IOException("Truncated fact store");
+			}
+		}
+		buffer.flip();
+	}
+
+	/**
+	 * Returns the width of a value of a type.
+	 * 
+	 * @param type the type
+	 * @return the width in bytes
+	 */
+	private static int width(Type type) {
+		return type == Type.LONG || type == Type.DOUBLE ? 8 : 4;
+	}
+
+	/**
+	 * Returns the type of a column.
+	 * 
+	 * @param column the index of the column, starting from zero
+	 * @return the type of the column
+	 */
+	public Type getType(int column) {
+		return types[column];
+	}
+
+	/**
+	 * Returns the number of rows.
+	 * 
+	 * @return the number of rows
+	 */
+	public long size() {
+		return rowCount;
+	}
+
+	/**
+	 * Closes the file. The mapped regions are released when they are 
+	 * reclaimed by the garbage collector, the store must not be queried
+	 * afterwards.
+	 */
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	/**
+	 * Returns the atom of a code.
+	 * 
+	 * @param code the code of the atom
+	 * @return the atom
+	 */
+	private String atom(long code) {
+		long start = atomOffsets.getLong(code * 8);
+		long end = atomOffsets.getLong(code * 8 + 8);
+		return atoms.getString(start, (int) (end - start));
+	}
+
+	/**
+	 * Looks up the code of an atom in the sorted dictionary.
+	 * 
+	 * @param atom the atom
+	 * @return the code of the atom, or -1 if it does not occur in the store
+	 */
+	private long code(String atom) {
+		long low = 0;
+		long high = atomCount - 1;
+		while (low <= high) {
+			long middle = (low + high) >>> 1;
+			int comparison = atom(middle).compareTo(atom);
+			if (comparison < 0) {
+				low = middle + 1;
+			} else if (comparison > 0) {
+				high = middle - 1;
+			} else {
+				return middle;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the key of the value of a row in a column.
+	 * 
+	 * @param row the number of the row
+	 * @param column the index of the column
+	 * @return the key of the value
+	 */
+	private long keyAt(long row, int column) {
+		long position = row * width + offsets[column];
+		return width(types[column]) == 8 ? rows.getLong(position) : rows.getInt(position);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The rows are read through the index of a bound column if there is one,
+	 * otherwise every row is scanned.
+	 */
+	@Override
+	public Cursor select(Object[] pattern) {
+		int arity = types.length;
+		boolean[] bound = new boolean[arity];
+		long[] keys = new long[arity];
+		int indexed = -1;
+		for (int i = 0; i < arity; ++i) {
+			if (pattern[i] == null) {
+				continue;
+			}
+			Long key;
+			if (types[i] == Type.ATOM) {
+				long code = pattern[i] instanceof String ? code((String) pattern[i]) : -1;
+				key = code != -1 ? code : null;
+			} else {
+				key = FactTable.numberKey(types[i], pattern[i]);
+			}
+			if (key == null) {
+				return Relation.cursor(Collections.<Object[]>emptyIterator());
+			}
+			bound[i] = true;
+			keys[i] = key;
+			if (indexed == -1 && indexes[i] != null) {
+				indexed = i;
+			}
+		}
+		return new StoreCursor(bound, keys, indexed);
+	}
+
+	/**
+	 * A cursor over the rows matching the bound arguments of a call.
+	 */
+	private final class StoreCursor extends Cursor {
+
+		/** Whether the columns are bound. */
+		private final boolean[] bound;
+
+		/** The keys of the values of the bound columns. */
+		private final long[] keys;
+
+		/** The index that is read, or <code>null</code> if the rows are scanned. */
+		private final Region index;
+
+		/** The key of the entries read from the index. */
+		private final long key;
+
+		/** The next entry of the index or the next row to be examined. */
+		private long next;
+
+		/** The current row, -1 if there is none. */
+		private long row = -1;
+
+		/**
+		 * Creates a cursor.
+		 * 
+		 * @param bound whether the columns are bound
+		 * @param keys the keys of the values of the bound columns
+		 * @param indexed the bound column whose index is read, or -1 if the
+		 * 		rows are scanned
+		 */
+		StoreCursor(boolean[] bound, long[] keys, int indexed) {
+			this.bound = bound;
+			this.keys = keys;
+			if (indexed == -1) {
+				index = null;
+				key = 0;
+			} else {
+				index = indexes[indexed];
+				key = keys[indexed];
+				next = lowerBound();
+			}
+		}
+
+		/**
+		 * Returns the first entry of the index whose key is not less than the
+		 * key of the cursor.
+		 * 
+		 * @return the number of the entry
+		 */
+		private long lowerBound() {
+			long low = 0;
+			long high = rowCount;
+			while (low < high) {
+				long middle = (low + high) >>> 1;
+				if (index.getLong(middle * ENTRY_SIZE) < key) {
+					low = middle + 1;
+				} else {
+					high = middle;
+				}
+			}
+			return low;
+		}
+
+		@Override
+		public boolean next() {
+			while (next < rowCount) {
+				long candidate;
+				if (index == null) {
+					candidate = next++;
+				} else {
+					if (index.getLong(next * ENTRY_SIZE) != key) {
+						break;
+					}
+					candidate = index.getLong(next++ * ENTRY_SIZE + 8);
+				}
+				if (matches(candidate)) {
+					row = candidate;
+					return true;
+				}
+			}
+			next = rowCount;
+			row = -1;
+			return false;
+		}
+
+		/**
+		 * Decides whether a row has the values of the bound columns.
+		 * 
+		 * @param candidate the number of the row
+		 * @return <code>true</code> if the row matches
+		 */
+		private boolean matches(long candidate) {
+			for (int i = 0; i < bound.length; ++i) {
+				if (bound[i] && keyAt(candidate, i) != keys[i]) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		@Override
+		public Object get(int column) {
+			long position = row * width + offsets[column];
+			switch (types[column]) {
+			case INTEGER:
+				return rows.getInt(position);
+			case LONG:
+				return rows.getLong(position);
+			case DOUBLE:
+				return rows.getDouble(position);
+			default:
+				return atom(rows.getInt(position));
+			}
+		}
+
+		/**
+		 * {@inheritDoc}
+		 * <p>
+		 * The integers and the doubles are built by the term constructors of
+		 * the policy, without boxing them.
+		 */
+		@Override
+		public Object term(int column, ConversionPolicy cp) {
+			long position = row * width + offsets[column];
+			switch (types[column]) {
+			case INTEGER:
+				return cp.term(rows.getInt(position));
+			case DOUBLE:
+				return cp.term(rows.getDouble(position));
+			default:
+				return cp.convertObject(get(column));
+			}
+		}
+
+	}
+
+	/**
+	 * A section of the file, mapped into memory in segments. The size of the
+	 * segments is a multiple of the size of the elements of the section, so
+	 * an element never spans two segments.
+	 */
+	private static final class Region {
+
+		/** The mapped segments. */
+		private final MappedByteBuffer[] segments;
+
+		/** The size of the segments, except the last one. */
+		private final long segmentSize;
+
+		/**
+		 * Maps a section of a file.
+		 * 
+		 * @param channel the channel of the file
+		 * @param offset the offset of the section
+		 * @param length the length of the section
+		 * @param unit the size of the elements of the section
+		 * @throws IOException if the section cannot be mapped
+		 */
+		Region(FileChannel channel, long offset, long length, int unit) throws IOException {
+			segmentSize = SEGMENT_SIZE / unit * unit;
+			segments = new MappedByteBuffer[(int) ((length + segmentSize - 1) / segmentSize)];
+			for (int i = 0; i < segments.length; ++i) {
+				long start = i * segmentSize;
+				segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, offset + start,
+						Math.min(segmentSize, length - start));
+			}
+		}
+
+		/**
+		 * Reads an int.
+		 * 
+		 * @param position the position in the section
+		 * @return the value
+		 */
+		int getInt(long position) {
+			return segments[(int) (position / segmentSize)].getInt((int) (position % segmentSize));
+		}
+
+		/**
+		 * Reads a long.
+		 * 
+		 * @param position the position in the section
+		 * @return the value
+		 */
+		long getLong(long position) {
+			return segments[(int) (position / segmentSize)].getLong((int) (position % segmentSize));
+		}
+
+		/**
+		 * Reads a double.
+		 * 
+		 * @param position the position in the section
+		 * @return the value
+		 */
+		double getDouble(long position) {
+			return segments[(int) (position / segmentSize)].getDouble((int) (position % segmentSize));
+		}
+
+		/**
+		 * Decodes a string. It may span two segments.
+		 * 
+		 * @param position the position in the section
+		 * @param length the number of bytes of the string
+		 * @return the string
+		 */
+		String getString(long position, int length) {
+			if (length == 0) {
+				return "";
+			}
+			int segment = (int) (position / segmentSize);
+			int start = (int) (position % segmentSize);
+			if (start + length <= segments[segment].limit()) {
+				ByteBuffer bytes = segments[segment].duplicate();
+				bytes.limit(start + length).position(start);
+				return UTF8.decode(bytes).toString();
+			}
+			byte[] bytes = new byte[length];
+			for (int i = 0; i < length; ++i) {
+				long p = position + i;
+				bytes[i] = segments[(int) (p / segmentSize)].get((int) (p % segmentSize));
+			}
+			return new String(bytes, UTF8);
+		}
+
+	}
+
+	/**
+	 * Writes a store. The rows are written to a temporary file first, and the
+	 * store is written when the writer is closed. Building an index needs 
+	 * twelve bytes of heap for each row.
+	 */
+	public static final class Writer implements Closeable {
+
+		/** The file of the store. */
+		private final Path file;
+
+		/** The types of the columns. */
+		private final Type[] types;
+
+		/** The temporary file of the rows. */
+		private final Path rowsFile;
+
+		/** Writes the rows to the temporary file. */
+		private final DataOutputStream rows;
+
+		/** The atoms in the order of their first occurrence. */
+		private final List<String> atoms = new ArrayList<String>();
+
+		/** The temporary codes of the atoms. */
+		private final Map<String, Integer> codes = new HashMap<String, Integer>();
+
+		/** The keys of the values of the indexed columns, or <code>null</code>. */
+		private final long[][] keys;
+
+		/** The number of rows written. */
+		private int count;
+
+		/** True if the writer has been closed. */
+		private boolean closed;
+
+		/**
+		 * Creates a writer.
+		 * 
+		 * @param file the file of the store
+		 * @param types the types of the columns
+		 * @throws IOException if the temporary file cannot be created
+		 */
+		private Writer(Path file, Type[] types) throws IOException {
+			this.file = file;
+			this.types = types.clone();
+			this.keys = new long[types.length][];
+			this.rowsFile = Files.createTempFile("prolog4j", ".rows");
+			this.rows = new DataOutputStream(new BufferedOutputStream(
+					Files.newOutputStream(rowsFile), 1 << 16));
+		}
+
+		/**
+		 * Creates an index on a column. It has to be called before the first
+		 * row is added.
+		 * 
+		 * @param column the index of the column, starting from zero
+		 * @return this writer
+		 * @throws IllegalStateException if rows have been added
+		 */
+		public Writer index(int column) {
+			if (count > 0) {
+				throw new IllegalStateException("Rows have been added");
+			}
+			if (keys[column] == null) {
+				keys[column] = new long[16];
+			}
+			return this;
+		}
+
+		/**
+		 * Adds a row.
+		 * 
+		 * @param row the values of the row
+		 * @return this writer
+		 * @throws IOException if the row cannot be written
+		 * @throws IllegalArgumentException if a value does not fit the type of
+		 * 		its column
+		 */
+		public Writer add(Object... row) throws IOException {
+			if (row.length != types.length) {
+				throw new IllegalArgumentException("The arity of the store is " 
+						+ types.length + ", not " + row.length);
+			}
+			long[] values = new long[row.length];
+			for (int i = 0; i < row.length; ++i) {
+				values[i] = encode(i, row[i]);
+			}
+			for (int i = 0; i < values.length; ++i) {
+				if (width(types[i]) == 8) {
+					rows.writeLong(values[i]);
+				} else {
+					rows.writeInt((int) values[i]);
+				}
+				if (keys[i] != null) {
+					if (count == keys[i].length) {
+						keys[i] = Arrays.copyOf(keys[i], count * 2);
+					}
+					keys[i][count] = values[i];
+				}
+			}
+			++count;
+			return this;
+		}
+
+		/**
+		 * Returns the key of a value, with the temporary code of the atoms.
+		 * 
+		 * @param column the index of the column
+		 * @param value the value
+		 * @return the key of the value
+		 * @throws IllegalArgumentException if the value does not fit the type 
+		 * 		of the column
+		 */
+		private long encode(int column, Object value) {
+			if (types[column] == Type.ATOM && value instanceof String) {
+				Integer code = codes.get(value);
+				if (code == null) {
+					code = atoms.size();
+					atoms.add((String) value);
+					codes.put((String) value, code);
+				}
+				return code;
+			}
+			Long key = FactTable.numberKey(types[column], value);
+			if (key == null) {
+				throw new IllegalArgumentException("Not a value of type " 
+						+ types[column] + ": " + value);
+			}
+			return key;
+		}
+
+		/**
+		 * Writes the store and deletes the temporary file.
+		 * 
+		 * @throws IOException if the store cannot be written
+		 */
+		@Override
+		public void close() throws IOException {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			rows.close();
+			try {
+				write();
+			} finally {
+				Files.delete(rowsFile);
+			}
+		}
+
+		/**
+		 * Writes the store from the temporary file of the rows.
+		 * 
+		 * @throws IOException if the store cannot be written
+		 */
+		private void write() throws IOException {
+			String[] sorted = atoms.toArray(new String[atoms.size()]);
+			Arrays.sort(sorted);
+			int[] recode = new int[sorted.length];
+			byte[][] encoded = new byte[sorted.length][];
+			long atomsLength = 0;
+			for (int i = 0; i < sorted.length; ++i) {
+				recode[codes.get(sorted[i])] = i;
+				encoded[i] = sorted[i].getBytes(UTF8);
+				atomsLength += encoded[i].length;
+			}
+			int width = 0;
+			int indexCount = 0;
+			for (int i = 0; i < types.length; ++i) {
+				width += width(types[i]);
+				if (keys[i] != null) {
+					++indexCount;
+				}
+			}
+			long rowsOffset = HEADER_SIZE + indexCount * 16 + types.length;
+			long atomOffsetsOffset = rowsOffset + (long) count * width;
+			long atomsOffset = atomOffsetsOffset + (sorted.length + 1) * 8L;
+			long indexOffset = atomsOffset + atomsLength;
+			try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+					StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+				DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+						Channels.newOutputStream(channel), 1 << 16));
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				out.writeInt(types.length);
+				out.writeInt(indexCount);
+				out.writeLong(count);
+				out.writeLong(sorted.length);
+				out.writeLong(rowsOffset);
+				out.writeLong(atomOffsetsOffset);
+				out.writeLong(atomsOffset);
+				for (int i = 0; i < types.length; ++i) {
+					if (keys[i] != null) {
+						out.writeInt(i);
+						out.writeInt(0);
+						out.writeLong(indexOffset);
+						indexOffset += (long) count * ENTRY_SIZE;
+					}
+				}
+				for (Type type: types) {
+					out.writeByte(type.ordinal());
+				}
+				copyRows(out, recode);
+				long offset = 0;
+				for (byte[] atom: encoded) {
+					out.writeLong(offset);
+					offset += atom.length;
+				}
+				out.writeLong(offset);
+				for (byte[] atom: encoded) {
+					out.write(atom);
+				}
+				for (int i = 0; i < types.length; ++i) {
+					if (keys[i] != null) {
+						writeIndex(out, keys[i], types[i] == Type.ATOM ? recode : null);
+					}
+				}
+				out.flush();
+			}
+		}
+
+		/**
+		 * Copies the rows from the temporary file, with the final codes of 
+		 * the atoms.
+		 * 
+		 * @param out the output of the store
+		 * @param recode the final codes of the atoms by their temporary code
+		 * @throws IOException if the rows cannot be copied
+		 */
+		private void copyRows(DataOutputStream out, int[] recode) throws IOException {
+			try (InputStream input = Files.newInputStream(rowsFile)) {
+				DataInputStream in = new DataInputStream(new BufferedInputStream(input, 1 << 16));
+				for (int row = 0; row < count; ++row) {
+					for (Type type: types) {
+						if (width(type) == 8) {
+							out.writeLong(in.readLong());
+						} else if (type == Type.ATOM) {
+							out.writeInt(recode[in.readInt()]);
+						} else {
+							out.writeInt(in.readInt());
+						}
+					}
+				}
+			}
+		}
+
+		/**
+		 * Writes the entries of an index sorted by their key. The entries 
+		 * with the same key are in the order of the rows.
+		 * 
+		 * @param out the output of the store
+		 * @param columnKeys the keys of the rows in the column
+		 * @param recode the final codes of the atoms, or <code>null</code>
+		 * 		if the column is not of atoms
+		 * @throws IOException if the index cannot be written
+		 */
+		private void writeIndex(DataOutputStream out, long[] columnKeys, int[] recode) 
+				throws IOException {
+			if (recode != null) {
+				for (int row = 0; row < count; ++row) {
+					columnKeys[row] = recode[(int) columnKeys[row]];
+				}
+			}
+			int[] order = new int[count];
+			for (int row = 0; row < count; ++row) {
+				order[row] = row;
+			}
+			sort(order, new int[count], columnKeys);
+			for (int row: order) {
+				out.writeLong(columnKeys[row]);
+				out.writeLong(row);
+			}
+		}
+
+		/**
+		 * Sorts rows by their key, stably, by a bottom-up merge sort.
+		 * 
+		 * @param order the rows to be sorted
+		 * @param buffer a buffer of the same length
+		 * @param columnKeys the keys of the rows
+		 */
+		private static void sort(int[] order, int[] buffer, long[] columnKeys) {
+			int length = order.length;
+			int[] from = order;
+			int[] to = buffer;
+			for (int run = 1; run < length; run *= 2) {
+				for (int start = 0; start < length; start += 2 * run) {
+					int middle = Math.min(start + run, length);
+					int end = Math.min(start + 2 * run, length);
+					int i = start;
+					int j = middle;
+					for (int k = start; k < end; ++k) {
+						if (i < middle && (j >= end || columnKeys[from[i]] <= columnKeys[from[j]])) {
+							to[k] = from[i++];
+						} else {
+							to[k] = from[j++];
+						}
+					}
+				}
+				int[] swap = from;
+				from = to;
+				to = swap;
+			}
+			if (from != order) {
+				System.arraycopy(from, 0, order, 0, length);
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,117 @@
+/* 
+ * Copyright (c) 2010 Miklos Espak
+ * All rights reserved.
+ * 
+ * Permission is hereby granted, free  of charge, to any person obtaining
+ * a  copy  of this  software  and  associated  documentation files  (the
+ * "Software"), to  deal in  the Software without  restriction, including
+ * without limitation  the rights to  use, copy, modify,  merge, publish,
+ * distribute,  sublicense, and/or sell  copies of  the Software,  and to
+ * permit persons to whom the Software  is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The  above  copyright  notice  and  this permission  notice  shall  be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE  SOFTWARE IS  PROVIDED  "AS  IS", WITHOUT  WARRANTY  OF ANY  KIND,
+ * EXPRESS OR  IMPLIED, INCLUDING  BUT NOT LIMITED  TO THE  WARRANTIES OF
+ * MERCHANTABILITY,    FITNESS    FOR    A   PARTICULAR    PURPOSE    AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE,  ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.prolog4j;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads the characters of a file by mapping it into memory region by region.
+ * The file is not copied to the heap, and the regions that have been read
+ * can be unmapped any time.
+ */
+final class MappedFileReader extends Reader {
+
+	/** The maximal size of the regions mapped at once. */
+	private static final long REGION_SIZE = 1 << 28;
+
+	/** The channel of the file. */
+	private final FileChannel channel;
+
+	/** The size of the file. */
+	private final long size;
+
+	/** Decodes the characters of the file. */
+	private final CharsetDecoder decoder;
+
+	/** The position of the mapped region in the file. */
+	private long position;
+
+	/** The mapped region, or <code>null</code> if the next one has to be mapped. */
+	private MappedByteBuffer region;
+
+	/** True if the decoder has been flushed at the end of the file. */
+	private boolean flushed;
+
+	/**
+	 * Opens a file for reading.
+	 * 
+	 * @param file the file
+	 * @param charset the encoding of the file
+	 * @throws IOException if the file cannot be opened
+	 */
+	MappedFileReader(Path file, Charset charset) throws IOException {
+		channel = FileChannel.open(file, StandardOpenOption.READ);
+		size = channel.size();
+		decoder = charset.newDecoder();
+	}
+
+	@Override
+	public int read(char[] cbuf, int off, int len) throws IOException {
+		if (len == 0) {
+			return 0;
+		}
+		CharBuffer out = CharBuffer.wrap(cbuf, off, len);
+		while (out.position() == off && !flushed) {
+			if (region == null) {
+				if (position >= size) {
+					decoder.decode(ByteBuffer.allocate(0), out, true);
+					decoder.flush(out);
+					flushed = true;
+					break;
+				}
+				region = channel.map(FileChannel.MapMode.READ_ONLY, position, 
+						Math.min(REGION_SIZE, size - position));
+			}
+			boolean last = position + region.limit() >= size;
+			CoderResult result = decoder.decode(region, out, last);
+			if (result.isError()) {
+				result.throwException();
+			}
+			if (result.isUnderflow()) {
+				// A character may span the regions, it is decoded from the next.
+				position += region.position();
+				region = null;
+			}
+		}
+		int read = out.position() - off;
+		return read == 0 ? -1 : read;
+	}
+
+	@Override
+	public void close() throws IOException {
+		region = null;
+		channel.close();
+	}
+
+}
@@ -0,0 +1,168 @@
+/* 
+ * Copyright (c) 2010 Miklos Espak
+ * All rights reserved.
+ * 
+ * Permission is hereby granted, free  of charge, to any person obtaining
+ * a  copy  of this  software  and  associated  documentation files  (the
+ * "Software"), to  deal in  the Software without  restriction, including
+ * without limitation  the rights to  use, copy, modify,  merge, publish,
+ * distribute,  sublicense, and/or sell  copies of  the Software,  and to
+ * permit persons to whom the Software  is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The  above  copyright  notice  and  this permission  notice  shall  be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE  SOFTWARE IS  PROVIDED  "AS  IS", WITHOUT  WARRANTY  OF ANY  KIND,
+ * EXPRESS OR  IMPLIED, INCLUDING  BUT NOT LIMITED  TO THE  WARRANTIES OF
+ * MERCHANTABILITY,    FITNESS    FOR    A   PARTICULAR    PURPOSE    AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE,  ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.prolog4j;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Parses a theory on a fork-join pool, and adds the parsed clauses to the 
+ * knowledge base in their original order. The theory is split into chunks at
+ * the clause boundaries, and the chunks are parsed in parallel, while the
+ * parsed chunks are added one by one on the calling thread. Each directive is
+ * parsed and added on its own, and the clauses after it are parsed only then,
+ * so that the operators that it defines apply to them. The loading stops at
+ * the first chunk that cannot be added, like the engines stop at the first
+ * invalid clause.
+ * 
+ * @param <T> the type of the parsed chunks
+ */
+public abstract class ParallelTheoryLoader<T> {
+
+	/** The default number of characters of the chunks. */
+	public static final int DEFAULT_CHUNK_SIZE = 1 << 16;
+
+	/** The pool that parses the chunks. */
+	private final ForkJoinPool pool;
+
+	/** The number of characters of the chunks. */
+	private final int chunkSize;
+
+	/**
+	 * Creates a loader that parses the chunks of the default size on the 
+	 * common pool.
+	 */
+	protected ParallelTheoryLoader() {
+		this(ForkJoinPool.commonPool(), DEFAULT_CHUNK_SIZE);
+	}
+
+	/**
+	 * Creates a loader.
+	 * 
+	 * @param pool the pool that parses the chunks
+	 * @param chunkSize the number of characters of the chunks
+	 */
+	protected ParallelTheoryLoader(ForkJoinPool pool, int chunkSize) {
+		if (chunkSize <= 0) {
+			throw new IllegalArgumentException("chunkSize: " + chunkSize);
+		}
+		this.pool = pool;
+		this.chunkSize = chunkSize;
+	}
+
+	/**
+	 * Parses the text of clauses. It is called on the threads of the pool, so
+	 * it must not modify the knowledge base.
+	 * 
+	 * @param clauses the text of clauses
+	 * @return the parsed clauses
+	 */
+	protected abstract T parse(String clauses);
+
+	/**
+	 * Adds parsed clauses to the knowledge base. It is called on the thread
+	 * that loads the theory, in the order of the chunks.
+	 * 
+	 * @param clauses the parsed clauses
+	 * @return <code>false</code> if the loading has to stop, because the 
+	 * 		chunk is invalid
+	 */
+	protected abstract boolean add(T clauses);
+
+	/**
+	 * Loads a theory. The chunks after an invalid chunk are not added.
+	 * 
+	 * @param theory the Prolog text
+	 * @return <code>true</code> if every chunk has been added
+	 */
+	public final boolean load(String theory) {
+		Queue<ForkJoinTask<T>> parsing = new ArrayDeque<ForkJoinTask<T>>();
+		try {
+			StringBuilder chunk = new StringBuilder();
+			for (String clause: ClauseScanner.split(theory)) {
+				if (ClauseScanner.isDirective(clause)) {
+					submit(parsing, chunk);
+					if (!addAll(parsing, false) || !add(parse(clause))) {
+						return false;
+					}
+					continue;
+				}
+				chunk.append(clause).append('\n');
+				if (chunk.length() >= chunkSize) {
+					submit(parsing, chunk);
+					if (!addAll(parsing, true)) {
+						return false;
+					}
+				}
+			}
+			submit(parsing, chunk);
+			return addAll(parsing, false);
+		} finally {
+			for (ForkJoinTask<T> task: parsing) {
+				task.cancel(false);
+			}
+		}
+	}
+
+	/**
+	 * Submits a chunk to the pool, and empties it.
+	 * 
+	 * @param parsing the chunks being parsed
+	 * @param chunk the text of the chunk
+	 */
+	private void submit(Queue<ForkJoinTask<T>> parsing, StringBuilder chunk) {
+		if (chunk.length() == 0) {
+			return;
+		}
+		final String clauses = chunk.toString();
+		chunk.setLength(0);
+		parsing.add(pool.submit(new Callable<T>() {
+			@Override
+			public T call() {
+				return parse(clauses);
+			}
+		}));
+	}
+
+	/**
+	 * Adds the parsed chunks in their order.
+	 * 
+	 * @param parsing the chunks being parsed
+	 * @param parsed whether only the chunks that have already been parsed 
+	 * 		have to be added
+	 * @return <code>false</code> if a chunk is invalid
+	 */
+	private boolean addAll(Queue<ForkJoinTask<T>> parsing, boolean parsed) {
+		while (!parsing.isEmpty() && (!parsed || parsing.peek().isDone())) {
+			if (!add(parsing.poll().join())) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+}
@@ -25,6 +25,11 @@ package org.prolog4j;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
 
 /**
  * A Prover object represents a Prolog knowledge base, on which you can create
@@ -59,6 +64,51 @@ public interface Prover {
 	 */
 	Query query(String goal);
 
+	/**
+	 * Solves a Prolog goal asynchronously on the executor of the prover. The
+	 * returned future completes when the first solution has been found or 
+	 * the goal has failed. It is equivalent with the following:
+	 * <code>query(goal).solveAsync(actualArgs)</code>
+	 * 
+	 * @param <A>
+	 *            the type of an element of the solutions
+	 * @param goal
+	 *            the Prolog goal
+	 * @param actualArgs
+	 *            the actual arguments of the goal
+	 * @return a future of the object for traversing the solutions
+	 * @see Query#solveAsync(Object...)
+	 */
+	<A> CompletableFuture<Solution<A>> solveAsync(String goal, Object... actualArgs);
+
+	/**
+	 * Creates a Prolog query asynchronously on the executor of the prover.
+	 * 
+	 * @param goal
+	 *            the Prolog goal
+	 * @return a future of the query object
+	 */
+	CompletableFuture<Query> queryAsync(String goal);
+
+	/**
+	 * Returns the executor that runs the asynchronous operations of the
+	 * prover. The Prolog engines are not thread safe, so the operations of a
+	 * prover on a single engine are run one by one, in the order of their
+	 * submission.
+	 * 
+	 * @return the executor of the asynchronous operations
+	 */
+	Executor getExecutor();
+
+	/**
+	 * Sets the executor that runs the asynchronous operations of the prover.
+	 * By default they run on virtual threads if the platform supports them,
+	 * otherwise on a shared pool of daemon threads.
+	 * 
+	 * @param executor the executor to be used
+	 */
+	void setExecutor(Executor executor);
+
 	/**
 	 * Loads in a Prolog library of the specified name.
 	 * 
@@ -75,6 +125,62 @@ public interface Prover {
 	 */
 	void loadTheory(InputStream input) throws IOException;
 
+	/**
+	 * Loads a Prolog theory from a file. The file is read clause by clause 
+	 * and the clauses are added in chunks, so files larger than the heap can
+	 * be loaded as well.
+	 * 
+	 * @param file
+	 *            the file in the default encoding
+	 */
+	void loadTheory(Path file) throws IOException;
+
+	/**
+	 * Loads a theory compiled into a clause image at build time. The clauses
+	 * are not parsed from text.
+	 * 
+	 * @param image
+	 *            the file of the image
+	 * @see ClauseImage
+	 */
+	void loadCompiledTheory(Path image) throws IOException;
+
+	/**
+	 * Loads a theory compiled into a clause image at build time, for example 
+	 * from a resource of a jar. The clauses are not parsed from text.
+	 * 
+	 * @param image
+	 *            the stream of the image
+	 * @see ClauseImage
+	 */
+	void loadCompiledTheory(InputStream image) throws IOException;
+
+	/**
+	 * Writes the clauses of the knowledge base into a file, including the 
+	 * ones asserted at runtime. The file is a clause image, so it can be 
+	 * loaded by {@link #restore(Path)} and 
+	 * {@link #loadCompiledTheory(Path)} as well. Only the tuProlog binding
+	 * can enumerate the clauses of its knowledge base.
+	 * 
+	 * @param file
+	 *            the file of the checkpoint
+	 * @throws UnsupportedOperationException if the engine cannot enumerate
+	 * 		its clauses
+	 */
+	void checkpoint(Path file) throws IOException;
+
+	/**
+	 * Replaces the clauses of the knowledge base with the ones written into a
+	 * file by {@link #checkpoint(Path)}. Only the tuProlog binding supports
+	 * it, like checkpoints.
+	 * 
+	 * @param file
+	 *            the file of the checkpoint
+	 * @throws UnsupportedOperationException if the engine cannot remove its
+	 * 		clauses
+	 */
+	void restore(Path file) throws IOException;
+
 	/**
 	 * Adds a Prolog theory to the knowledge base.
 	 * 
@@ -107,6 +213,154 @@ public interface Prover {
 	 */
 	void retract(String fact);
 
+	/**
+	 * Retracts a Prolog fact or rule from the knowledge base.
+	 * 
+	 * @param fact the Prolog fact
+	 * @param args the arguments of the fact
+	 */
+	void retract(String fact, Object... args);
+
+	/**
+	 * Asserts a Prolog fact that is retracted automatically when a Java 
+	 * object is reclaimed by the garbage collector. The fact is retracted in
+	 * the background, some time after the object has been reclaimed. The 
+	 * arguments of the fact must not refer to the object, otherwise it is 
+	 * never reclaimed.
+	 * 
+	 * @param referent the object whose lifetime bounds the fact
+	 * @param fact the Prolog fact
+	 * @param args the arguments of the fact
+	 */
+	void assertWeak(Object referent, String fact, Object... args);
+
+	/**
+	 * Asserts facts of a predicate. The facts are given by the values of their
+	 * arguments. They are added in batches, without parsing them one by one.
+	 * 
+	 * @param functor the name of the predicate, or its indicator, 
+	 * 		<tt>name/arity</tt>
+	 * @param rows the arguments of each fact
+	 * @throws IllegalArgumentException if the facts have different arity
+	 * @see FactLoader
+	 */
+	void assertAll(String functor, Iterable<Object[]> rows);
+
+	/**
+	 * Creates a loader that asserts the facts of a predicate in batches.
+	 * 
+	 * @param functor the name of the predicate, or its indicator, 
+	 * 		<tt>name/arity</tt>
+	 * @return the fact loader
+	 */
+	FactLoader factLoader(String functor);
+
+	/**
+	 * Defines a predicate by a relation stored outside the knowledge base. 
+	 * The rows of the relation are the facts of the predicate, they are 
+	 * enumerated lazily on backtracking. A relation can be registered on 
+	 * several provers.
+	 * <p>
+	 * Only the tuProlog binding can define predicates by relations, since 
+	 * jTrolog, JLog and SWI-Prolog cannot call Java code from their goals 
+	 * through the bindings. This holds for the other methods that register 
+	 * predicates, and for {@link FactTable}, {@link MappedFactStore} and the 
+	 * other relations as well.
+	 * 
+	 * @param name the name of the predicate
+	 * @param relation the relation, its arity is the arity of the predicate
+	 * @throws UnsupportedOperationException if the engine cannot call Java
+	 * 		code from its goals
+	 * @see FactTable
+	 * @see MappedFactStore
+	 */
+	void registerPredicate(String name, Relation relation);
+
+	/**
+	 * Defines a predicate by the elements of an iterable, which are read
+	 * lazily on every call. It is equivalent with the following:
+	 * <code>registerPredicate(name, Relation.of(arity, rows))</code>
+	 * 
+	 * @param name the name of the predicate
+	 * @param arity the arity of the predicate
+	 * @param rows the elements giving the rows
+	 * @see Relation#of(int, Iterable)
+	 */
+	void registerPredicate(String name, int arity, Iterable<?> rows);
+
+	/**
+	 * Defines a predicate by the entries of a map. The bound keys are looked
+	 * up in the map. It is equivalent with the following:
+	 * <code>registerPredicate(name, Relation.of(arity, map))</code>
+	 * 
+	 * @param name the name of the predicate
+	 * @param arity the arity of the predicate, at least two
+	 * @param map the map
+	 * @see Relation#of(int, Map)
+	 */
+	void registerPredicate(String name, int arity, Map<?, ?> map);
+
+	/**
+	 * Defines a predicate by a lookup function of its first argument. It is
+	 * equivalent with the following:
+	 * <code>registerPredicate(name, Relation.lookup(arity, lookup))</code>
+	 * 
+	 * @param name the name of the predicate
+	 * @param arity the arity of the predicate, at least one
+	 * @param lookup the lookup function
+	 * @see Relation#lookup(int, Function)
+	 */
+	void registerPredicate(String name, int arity, 
+			Function<Object, ? extends Iterable<?>> lookup);
+
+	/**
+	 * Tables a predicate. The answers of the tabled predicates are memoized,
+	 * so their recursive rules terminate even if they are left recursive. The
+	 * tables are recomputed when a predicate that they depend on is modified.
+	 * A predicate can also be tabled by a <tt>:- table name/arity.</tt> 
+	 * directive in a theory. It has to be tabled before its clauses are added.
+	 * 
+	 * @param predicate the indicator of the predicate, <tt>name/arity</tt>
+	 * @throws IllegalArgumentException if the indicator is malformed
+	 * @throws IllegalStateException if the predicate already has clauses
+	 */
+	void table(String predicate);
+
+	/**
+	 * Subscribes to the answers of a goal. The answers are computed once, and
+	 * afterwards the listener is notified of the added and the removed
+	 * answers whenever the knowledge base is modified at a predicate that the
+	 * goal depends on. The changes made by asserting or retracting a single
+	 * fact are derived from the fact if possible, without solving the goal
+	 * again.
+	 *
+	 * @param goal the Prolog goal, without placeholders
+	 * @param listener receives the changes of the answers
+	 * @return the subscription, which can be cancelled
+	 * @see Subscription
+	 */
+	Subscription subscribe(String goal, Subscription.Listener listener);
+
+	/**
+	 * Adds a forward-chaining rule. Its action is fired for the matches of
+	 * its conditions among the facts of the knowledge base, and afterwards
+	 * for every new match, when a fact is asserted. The matches are updated
+	 * incrementally.
+	 *
+	 * @param rule the rule
+	 * @throws IllegalArgumentException if the rule has no action
+	 * @see Rule
+	 */
+	void addRule(Rule rule);
+
+	/**
+	 * Removes a forward-chaining rule. It has no effect if the rule has not
+	 * been added.
+	 *
+	 * @param rule the rule
+	 */
+	void removeRule(Rule rule);
+
 	/**
 	 * Returns the conversion policy used by the prover.
 	 * 
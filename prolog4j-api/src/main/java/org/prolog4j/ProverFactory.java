@@ -237,6 +237,34 @@ public final class ProverFactory {
 		return getProver(clazz.getName());
 	}
 	
+	/**
+	 * Creates a pool of provers with the specified number of replicas, using
+	 * the statically bound {@link IProverFactory} instance. The queries of the
+	 * pool can be solved on several threads at the same time. The bindings 
+	 * whose provers share a single engine support only a single replica.
+	 * 
+	 * @param size
+	 *            the number of replicas
+	 * @return prover pool
+	 * @throws IllegalArgumentException if the size is less than one, or it is
+	 *             more than one and the binding is not replicable
+	 */
+	public static ProverPool createProverPool(int size) {
+		if (size < 1) {
+			throw new IllegalArgumentException("Invalid pool size: " + size);
+		}
+		IProverFactory factory = getIProverFactory();
+		if (size > 1 && !factory.isReplicable()) {
+			throw new IllegalArgumentException("Invalid pool size: " + size 
+					+ ". The provers of the binding share a single engine.");
+		}
+		Prover[] replicas = new Prover[size];
+		for (int i = 0; i < size; ++i) {
+			replicas[i] = factory.getProver();
+		}
+		return new ProverPool(replicas);
+	}
+	
 	/**
 	 * Returns the global conversion policy. Every prover use this policy by
 	 * default.
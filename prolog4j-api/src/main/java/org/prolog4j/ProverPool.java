@@ -0,0 +1,777 @@
+/* 
+ * Copyright (c) 2010 Miklos Espak
+ * All rights reserved.
+ * 
+ * Permission is hereby granted, free  of charge, to any person obtaining
+ * a  copy  of this  software  and  associated  documentation files  (the
+ * "Software"), to  deal in  the Software without  restriction, including
+ * without limitation  the rights to  use, copy, modify,  merge, publish,
+ * distribute,  sublicense, and/or sell  copies of  the Software,  and to
+ * permit persons to whom the Software  is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The  above  copyright  notice  and  this permission  notice  shall  be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE  SOFTWARE IS  PROVIDED  "AS  IS", WITHOUT  WARRANTY  OF ANY  KIND,
+ * EXPRESS OR  IMPLIED, INCLUDING  BUT NOT LIMITED  TO THE  WARRANTIES OF
+ * MERCHANTABILITY,    FITNESS    FOR    A   PARTICULAR    PURPOSE    AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE,  ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.prolog4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A prover that owns several replicas of the same knowledge base, so that
+ * queries can be solved on several threads at the same time. The Prolog
+ * engines are not thread safe, and a single prover serialises every query.
+ * A pool hands out an idle replica for each query instead.
+ * <p>
+ * The methods that modify the knowledge base ({@link #assertz}, 
+ * {@link #retract}, {@link #addTheory}, {@link #loadTheory}, {@link #restore},
+ * {@link #registerPredicate} and {@link #loadLibrary}) wait until every replica is idle, and then they are
+ * performed on all the replicas in the order of the calls. The goals solved
+ * on the pool must not modify the knowledge base, otherwise the replicas
+ * would diverge.
+ * <p>
+ * The replica of a solution is taken back when the solution is closed. It
+ * happens automatically when the goal fails, when the traversal of the
+ * solutions reaches the end, or when a value of the first solution is read
+ * without traversing the solutions (e.g. by {@link Solution#get()}). The 
+ * bindings of the current solution are copied before the replica is given
+ * back, and they are read from the copy afterwards. The solutions cannot be
+ * traversed after a single value has been read, and 
+ * {@link Solution#isSuccess()} alone does not give back the replica. A 
+ * solution that is not read or traversed to the end should be closed 
+ * explicitly, otherwise it keeps its replica until it is reclaimed by the
+ * garbage collector. Alternatively, {@link #execute(Task)} takes back the
+ * replica when the task returns.
+ * <p>
+ * The queries and the modifications wait for the replicas at most for the
+ * time set by {@link #setTimeout(long, TimeUnit)}, and then they throw an
+ * {@link IllegalStateException}. It happens for example if a thread that
+ * keeps an open traversal tries to modify the knowledge base.
+ * <p>
+ * Pools are created by {@link ProverFactory#createProverPool(int)}. The
+ * bindings whose provers share a single engine (like SWI-Prolog) cannot be
+ * replicated, there the pool has a single replica.
+ */
+public class ProverPool extends AbstractProver {
+
+	/** Class version for serialization. */
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * A unit of work that is performed on a replica of the knowledge base.
+	 * 
+	 * @param <T> the type of the result of the task
+	 */
+	public interface Task<T> {
+
+		/**
+		 * Performs the task on a replica. The replica is used exclusively by
+		 * the task until it returns. The task must not modify the knowledge
+		 * base and must not keep a reference to the replica.
+		 * 
+		 * @param replica a replica of the knowledge base
+		 * @return the result of the task
+		 */
+		T run(Prover replica);
+
+	}
+
+	/** The replicas of the knowledge base in the order of their creation. */
+	private final Prover[] replicas;
+
+	/** The replicas that are not used by any query. */
+	private final BlockingQueue<Prover> idleReplicas;
+
+	/** 
+	 * Every use of a replica holds a permit. The modification of the knowledge
+	 * base holds every permit. The semaphore is fair, so the modifications are
+	 * not starved by the queries.
+	 */
+	private final Semaphore permits;
+
+	/** 
+	 * The executor of the asynchronous operations, or <code>null</code> if
+	 * the default executor has to be used.
+	 */
+	private transient volatile Executor executor;
+
+	/** The time that the operations wait for the replicas, in milliseconds. */
+	private volatile long timeout = 60000;
+
+	/**
+	 * Creates a pool of replicas.
+	 * 
+	 * @param replicas the provers that serve as replicas, with empty knowledge
+	 * 		bases
+	 */
+	ProverPool(Prover... replicas) {
+		this.replicas = replicas.clone();
+		this.idleReplicas = new LinkedBlockingQueue<Prover>();
+		for (Prover replica: replicas) {
+			replica.setConversionPolicy(getConversionPolicy());
+			idleReplicas.add(replica);
+		}
+		this.permits = new Semaphore(replicas.length, true);
+	}
+
+	/**
+	 * Returns the number of replicas of the pool.
+	 * 
+	 * @return the number of replicas
+	 */
+	public int getSize() {
+		return replicas.length;
+	}
+
+	/**
+	 * Sets the time that the queries and the modifications wait for the
+	 * replicas. The default is one minute.
+	 * 
+	 * @param timeout the maximum time to wait
+	 * @param unit the unit of <code>timeout</code>
+	 */
+	public void setTimeout(long timeout, TimeUnit unit) {
+		if (timeout < 0) {
+			throw new IllegalArgumentException("Invalid timeout: " + timeout);
+		}
+		this.timeout = unit.toMillis(timeout);
+	}
+
+	/**
+	 * Waits for the given number of permits and takes them.
+	 * 
+	 * @param count the number of permits
+	 * @throws IllegalStateException if the permits are not given back in time,
+	 * 		or the thread is interrupted
+	 */
+	private void acquirePermits(int count) {
+		boolean acquired;
+		try {
+			acquired = permits.tryAcquire(count, timeout, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(
+					"Interrupted while waiting for the replicas.", e);
+		}
+		if (!acquired) {
+			throw new IllegalStateException("The replicas are not given back "
+					+ "in time. Are there solutions left open?");
+		}
+	}
+
+	/**
+	 * Waits for an idle replica and takes it.
+	 * 
+	 * @return the replica
+	 */
+	private Prover acquire() {
+		acquirePermits(1);
+		// There is an idle replica for every free permit.
+		return idleReplicas.poll();
+	}
+
+	/**
+	 * Gives back a replica to the pool.
+	 * 
+	 * @param replica the replica
+	 */
+	private void release(Prover replica) {
+		idleReplicas.add(replica);
+		permits.release();
+	}
+
+	/**
+	 * Performs a task on an idle replica, and gives the replica back when the
+	 * task returns.
+	 * 
+	 * @param <T> the type of the result of the task
+	 * @param task the task to perform
+	 * @return the result of the task
+	 */
+	public <T> T execute(Task<T> task) {
+		Prover replica = acquire();
+		try {
+			return task.run(replica);
+		} finally {
+			release(replica);
+		}
+	}
+
+	/**
+	 * Performs a modification on every replica, when none of them is used.
+	 * 
+	 * @param task the modification
+	 */
+	private void broadcast(Task<?> task) {
+		acquirePermits(replicas.length);
+		try {
+			for (Prover replica: replicas) {
+				task.run(replica);
+			}
+		} finally {
+			permits.release(replicas.length);
+		}
+	}
+
+	@Override
+	public Query query(String goal) {
+		return new PooledQuery(goal);
+	}
+
+	/**
+	 * Returns the executor that runs the asynchronous operations of the pool.
+	 * The pool is thread safe, so its operations are not run one by one,
+	 * they are passed directly to the executor.
+	 * 
+	 * @return the executor of the asynchronous operations
+	 */
+	@Override
+	public Executor getExecutor() {
+		Executor result = executor;
+		return result != null ? result : getDefaultExecutor();
+	}
+
+	@Override
+	public void setExecutor(Executor executor) {
+		if (executor == null) {
+			throw new NullPointerException("executor");
+		}
+		this.executor = executor;
+	}
+
+	@Override
+	public void assertz(final String fact, final Object... args) {
+		broadcast(new Task<Void>() {
+			@Override
+			public Void run(Prover replica) {
+				replica.assertz(fact, args);
+				return null;
+			}
+		});
+		factChanged(fact, args, true);
+	}
+
+	@Override
+	public void retract(final String fact) {
+		broadcast(new Task<Void>() {
+			@Override
+			public Void run(Prover replica) {
+				replica.retract(fact);
+				return null;
+			}
+		});
+		factChanged(fact, new Object[0], false);
+	}
+
+	@Override
+	public void retract(final String fact, final Object... args) {
+		broadcast(new Task<Void>() {
+			@Override
+			public Void run(Prover replica) {
+				replica.retract(fact, args);
+				return null;
+			}
+		});
+		factChanged(fact, args, false);
+	}
+
+	@Override
+	public void addTheory(final String theory) {
+		broadcast(new Task<Void>() {
+			@Override
+			public Void run(Prover replica) {
+				replica.addTheory(theory);
+				return null;
+			}
+		});
+		clausesChanged(theory);
+	}
+
+	@Override
+	public void addTheory(final String... theory) {
+		broadcast(new Task<Void>() {
+			@Override
+			public Void run(Prover replica) {
+				replica.addTheory(theory);
+				return null;
+			}
+		});
+		clausesChanged(String.join("\n", theory));
+	}
+
+	@Override
+	public void loadTheory(InputStream input) throws IOException {
+		// The stream can be read only once, so its chunks are broadcast.
+		loadClauses(new InputStreamReader(input));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The replicas have the same clauses, so one of them is written.
+	 */
+	@Override
+	public void checkpoint(final Path file) throws IOException {
+		final IOException[] error = new IOException[1];
+		execute(new Task<Void>() {
+			@Override
+			public Void run(Prover replica) {
+				try {
+					replica.checkpoint(file);
+				} catch (IOException e) {
+					error[0] = e;
+				}
+				return null;
+			}
+		});
+		if (error[0] != null) {
+			throw error[0];
+		}
+	}
+
+	@Override
+	public void restore(final Path file) throws IOException {
+		final IOException[] error = new IOException[1];
+		broadcast(new Task<Void>() {
+			@Override
+			public Void run(Prover replica) {
+				if (error[0] == null) {
+					try {
+						replica.restore(file);
+					} catch (IOException e) {
+						error[0] = e;
+					}
+				}
+				return null;
+			}
+		});
+		clausesChanged(null);
+		if (error[0] != null) {
+			throw error[0];
+		}
+	}
+
+	@Override
+	protected void addCompiledClauses(final List<Object> clauses) {
+		broadcast(new Task<Void>() {
+			@Override
+			public Void run(Prover replica) {
+				((AbstractProver) replica).addCompiledClauses(clauses);
+				return null;
+			}
+		});
+		compiledClausesChanged(clauses);
+	}
+
+	@Override
+	protected void assertFacts(String name, final List<Object[]> facts) {
+		final String functor = ClauseScanner.quote(name) + '/' + facts.get(0).length;
+		broadcast(new Task<Void>() {
+			@Override
+			public Void run(Prover replica) {
+				replica.assertAll(functor, facts);
+				return null;
+			}
+		});
+	}
+
+	/**
+	 * Registers the relation on every replica. The replicas read the relation
+	 * at the same time, so it has to be safe for concurrent reads.
+	 * 
+	 * @param name the name of the predicate
+	 * @param relation the relation
+	 */
+	@Override
+	protected void addRelation(final String name, final Relation relation) {
+		broadcast(new Task<Void>() {
+			@Override
+			public Void run(Prover replica) {
+				replica.registerPredicate(name, relation);
+				return null;
+			}
+		});
+	}
+
+	@Override
+	public void table(final String predicate) {
+		broadcast(new Task<Void>() {
+			@Override
+			public Void run(Prover replica) {
+				replica.table(predicate);
+				return null;
+			}
+		});
+	}
+
+	@Override
+	public void loadLibrary(final String library) {
+		broadcast(new Task<Void>() {
+			@Override
+			public Void run(Prover replica) {
+				replica.loadLibrary(library);
+				return null;
+			}
+		});
+		clausesChanged(null);
+	}
+
+	@Override
+	public void setConversionPolicy(final ConversionPolicy conversionPolicy) {
+		super.setConversionPolicy(conversionPolicy);
+		broadcast(new Task<Void>() {
+			@Override
+			public Void run(Prover replica) {
+				replica.setConversionPolicy(conversionPolicy);
+				return null;
+			}
+		});
+	}
+
+	/**
+	 * A query of the pool. It is solved by the query prepared for the same
+	 * goal on an idle replica.
+	 */
+	private final class PooledQuery extends Query {
+
+		/** The goal with the placeholders, as the replicas have to prepare it. */
+		private final String goalPattern;
+
+		/**
+		 * Creates a query of the pool.
+		 * 
+		 * @param goalPattern the Prolog goal
+		 */
+		PooledQuery(String goalPattern) {
+			super(ProverPool.this, goalPattern);
+			this.goalPattern = goalPattern;
+		}
+
+		@Override
+		public <A> Solution<A> solve(Object... actualArgs) {
+			Object[] values = getPlaceholderValues(actualArgs);
+			Lease<A> lease = new Lease<A>();
+			lease.take(this, values);
+			return new PooledSolution<A>(lease);
+		}
+
+		/**
+		 * Solves the goal on a replica.
+		 * 
+		 * @param <A> the type of the values of the solutions
+		 * @param replica the replica
+		 * @param values the values of the placeholders
+		 * @return the solutions on the replica
+		 */
+		<A> Solution<A> solve(Prover replica, Object[] values) {
+			Query query;
+			if (replica instanceof AbstractProver) {
+				AbstractProver prover = (AbstractProver) replica;
+				prover.completeTables();
+				query = prover.prepareGoal(goalPattern);
+			} else {
+				query = replica.query(goalPattern);
+			}
+			if (!getLimits().isNone()) {
+				query = query.withLimits(getLimits());
+			}
+			return query.<A>solve(values);
+		}
+
+	}
+
+	/**
+	 * A replica taken for a pooled solution, and the solutions of the goal on
+	 * it. The lease does not refer to the pooled solution, so it can be 
+	 * released when the pooled solution is reclaimed.
+	 * 
+	 * @param <S> the type of the values of the variable that is of special 
+	 * 		interest
+	 */
+	private final class Lease<S> {
+
+		/** The replica, or <code>null</code> if it has been given back. */
+		private Prover replica;
+
+		/** 
+		 * The solutions on the replica. They must not be read after the 
+		 * replica has been given back, another thread may use the replica.
+		 */
+		private Solution<S> solution;
+
+		/**
+		 * Takes an idle replica and solves the goal on it.
+		 * 
+		 * @param query the query of the pool
+		 * @param values the values of the placeholders
+		 */
+		synchronized void take(PooledQuery query, Object[] values) {
+			Prover replica = acquire();
+			try {
+				solution = query.<S>solve(replica, values);
+			} catch (RuntimeException e) {
+				ProverPool.this.release(replica);
+				throw e;
+			}
+			this.replica = replica;
+		}
+
+		/**
+		 * Returns whether the replica is held.
+		 * 
+		 * @return <code>true</code> if the replica has not been given back
+		 */
+		synchronized boolean isHeld() {
+			return replica != null;
+		}
+
+		/**
+		 * Closes the solutions on the replica and gives back the replica.
+		 * Releasing it again has no effect.
+		 */
+		synchronized void release() {
+			if (replica == null) {
+				return;
+			}
+			try {
+				solution.close();
+			} finally {
+				ProverPool.this.release(replica);
+				replica = null;
+			}
+		}
+
+	}
+
+	/**
+	 * The solutions of a query of the pool. It keeps its replica until it is
+	 * closed or the traversal reaches the end, and it is closed when a value 
+	 * of the first solution is read without traversing the solutions. The 
+	 * bindings of the current solution are copied when it is closed, so they
+	 * remain accessible without the replica.
+	 * 
+	 * @param <S> the type of the values of the variable that is of special 
+	 * 		interest
+	 */
+	private final class PooledSolution<S> extends Solution<S> {
+
+		/** Stands in the copied bindings for the variables not bound by the engine. */
+		private final Object unknown = new Object();
+
+		/** The replica and the solutions of the goal on it. */
+		private final Lease<S> lease;
+
+		/** Whether the goal has a solution. */
+		private final boolean success;
+
+		/** Whether there is a current solution, i.e. the traversal has not ended. */
+		private boolean current;
+
+		/** Whether the solutions have been closed by reading a single value. */
+		private boolean answered;
+
+		/** 
+		 * The terms bound by the current solution when the replica has been 
+		 * given back, by the slots of the variables, or <code>null</code>.
+		 */
+		private Object[] answer;
+
+		/** The conversion policy of the copied terms. */
+		private ConversionPolicy answerPolicy;
+
+		/**
+		 * Creates the solutions of a query of the pool.
+		 * 
+		 * @param lease the replica that the goal is solved on
+		 */
+		PooledSolution(Lease<S> lease) {
+			this.lease = lease;
+			Solution<S> solution = lease.solution;
+			this.success = solution.isSuccess();
+			this.current = success;
+			on(solution.getDefaultOutputVariable());
+			setVariables(solution.getVariables());
+			releaseOnClose(lease::release);
+			if (!success) {
+				close();
+			}
+		}
+
+		/**
+		 * Closes the solutions if a value of the first solution is read, and
+		 * the solutions are not traversed. The replica is kept if the bindings
+		 * cannot be copied.
+		 */
+		private void answered() {
+			if (!isTraversed() && !isClosed() && lease.solution.termPolicy() != null) {
+				answered = true;
+				close();
+			}
+		}
+
+		/**
+		 * Copies the bindings of the current solution before the replica is
+		 * given back.
+		 */
+		@Override
+		protected void dispose() {
+			Solution<S> solution = lease.solution;
+			ConversionPolicy policy = solution.termPolicy();
+			if (!current || !lease.isHeld() || policy == null) {
+				return;
+			}
+			Object[] terms = new Object[getVariables().size()];
+			for (int slot = 0; slot < terms.length; ++slot) {
+				try {
+					terms[slot] = solution.term(slot);
+				} catch (UnknownVariableException e) {
+					terms[slot] = unknown;
+				}
+			}
+			answer = terms;
+			answerPolicy = policy;
+		}
+
+		/**
+		 * Returns a copied term of the current solution.
+		 * 
+		 * @param slot the slot of the variable
+		 * @return the term bound to the variable
+		 * @throws UnknownVariableException if the variable is not bound by 
+		 * 		the engine
+		 * @throws NoSuchElementException if there is no current solution
+		 */
+		private Object copiedTerm(int slot) {
+			if (answer == null) {
+				throw new NoSuchElementException();
+			}
+			Object term = answer[slot];
+			if (term == unknown) {
+				throw new UnknownVariableException(getVariables().get(slot));
+			}
+			return term;
+		}
+
+		@Override
+		void beforeTraversal() {
+			if (answered) {
+				throw new IllegalStateException("The solutions cannot be "
+						+ "traversed after a single value has been read.");
+			}
+		}
+
+		@Override
+		public boolean isSuccess() {
+			return success;
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public <A> A get(String variable) {
+			answered();
+			if (lease.isHeld()) {
+				if (clazz == null) {
+					return lease.solution.<A>get(variable);
+				}
+				return (A) lease.solution.get(variable, clazz);
+			}
+			Object term = copiedTerm(slot(variable));
+			if (clazz == null) {
+				return (A) answerPolicy.convertTerm(term);
+			}
+			return (A) answerPolicy.convertTerm(term, clazz);
+		}
+
+		@Override
+		public <A> A get(String variable, Class<A> type) {
+			answered();
+			if (lease.isHeld()) {
+				return lease.solution.get(variable, type);
+			}
+			return answerPolicy.convertTerm(copiedTerm(slot(variable)), type);
+		}
+
+		@Override
+		protected Object term(String variable) {
+			answered();
+			if (lease.isHeld()) {
+				return lease.solution.term(variable);
+			}
+			return copiedTerm(slot(variable));
+		}
+
+		@Override
+		protected Object term(int slot) {
+			answered();
+			if (lease.isHeld()) {
+				return lease.solution.term(slot);
+			}
+			return copiedTerm(slot);
+		}
+
+		@Override
+		protected ConversionPolicy termPolicy() {
+			return answer != null ? answerPolicy : lease.solution.termPolicy();
+		}
+
+		@Override
+		protected boolean fetch() {
+			current = lease.isHeld() && lease.solution.fetch();
+			return current;
+		}
+
+		@SuppressWarnings({"rawtypes", "unchecked"})
+		@Override
+		public void collect(Collection... collections) {
+			beforeTraversal();
+			try {
+				if (lease.isHeld()) {
+					lease.solution.collect(collections);
+				}
+			} finally {
+				current = false;
+				close();
+			}
+		}
+
+		@Override
+		public List<?>[] toLists() {
+			beforeTraversal();
+			try {
+				if (lease.isHeld()) {
+					return lease.solution.toLists();
+				}
+				List<?>[] lists = new List<?>[getVariables().size()];
+				for (int i = 0; i < lists.length; ++i) {
+					lists[i] = new ArrayList<Object>();
+				}
+				return lists;
+			} finally {
+				current = false;
+				close();
+			}
+		}
+
+	}
+
+}
@@ -25,13 +25,34 @@ package org.prolog4j;
 
 //import java.lang.ref.Reference;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 /**
  * Represents a Prolog query. It is supposed to be created by 
  * {@link Prover#query(String)}.
+ * <p>
+ * A query is a prepared template of a goal: it is not modified by solving it,
+ * and the bind methods return a new query that shares the prepared goal with
+ * this one. The values of the placeholders are collected into a new binding
+ * frame for every execution. Therefore a query can be reused any number of
+ * times and it can be shared between threads. (Note that the provers are not
+ * thread safe, so the solutions of the same prover must not be traversed 
+ * concurrently.)
+ * <p>
+ * The bound and the limited copies of a query are created by cloning it, so
+ * the implementations must not modify their state after construction.
  */
-public abstract class Query {
+public abstract class Query implements Cloneable {
+
+	/** Marks the placeholders that are not bound by the bind methods. */
+	private static final Object UNBOUND = new Object();
+
+	/** The prover that processes the query. */
+	private final Prover prover;
 
 	/** The Prolog goal to be solved. */
 	private final String goal;
@@ -39,6 +60,19 @@ public abstract class Query {
 	/** The name of the named placeholders of the goal. */
 	private final ArrayList<String> placeholderNames;
 
+	/** The names of the variables of the goal, in the order of their slots. */
+	private final List<String> variables;
+
+	/**
+	 * The values bound to the placeholders by the bind methods, or 
+	 * <code>null</code> if no placeholder has been bound. The elements of
+	 * unbound placeholders are {@link #UNBOUND}.
+	 */
+	private Object[] boundValues;
+
+	/** The limits of the search for the solutions. */
+	private Limits limits = Limits.NONE;
+
 //	/**
 //	 * Weak references to the objects referred by the query.
 //	 */
@@ -47,9 +81,11 @@ public abstract class Query {
 	/**
 	 * Creates a query object.
 	 * 
+	 * @param prover the prover that processes the query
 	 * @param goalPattern the Prolog goal
 	 */
-	protected Query(final String goalPattern) {
+	protected Query(final Prover prover, final String goalPattern) {
+		this.prover = prover;
 		placeholderNames = new ArrayList<String>();
 		StringBuilder goalB = new StringBuilder(goalPattern);
 		String newVarPrefix = null;
@@ -83,8 +119,29 @@ public abstract class Query {
 		}
 		this.goal = goalB.toString();
 		placeholderNames.trimToSize();
+		variables = Collections.unmodifiableList(ClauseScanner.variables(goal));
 	}
 	
+	/**
+	 * Returns the values of the placeholders for one execution of the goal.
+	 * The placeholders bound by the bind methods get their bound value, the 
+	 * others get the actual arguments in order. The returned array must not be
+	 * modified.
+	 * 
+	 * @param actualArgs the actual arguments of the goal
+	 * @return the values of the placeholders
+	 */
+	protected final Object[] getPlaceholderValues(Object[] actualArgs) {
+		if (boundValues == null) {
+			return actualArgs;
+		}
+		Object[] values = new Object[boundValues.length];
+		for (int i = 0, j = 0; i < values.length; ++i) {
+			values[i] = boundValues[i] != UNBOUND ? boundValues[i] : actualArgs[j++];
+		}
+		return values;
+	}
+
 	/**
 	 * Returns the Prolog goal to be solved. The placeholders are removed from
 	 * it, so it may differ from the original goal passed to the constructor.
@@ -103,6 +160,35 @@ public abstract class Query {
 		return placeholderNames;
 	}
 
+	/**
+	 * Returns the names of the variables of the goal, in the order of their 
+	 * first occurrence. The anonymous variables are omitted, the anonymous 
+	 * placeholders are included. The index of a variable in this list is its
+	 * slot, by which its values can be accessed in the solutions without 
+	 * looking it up by name, see {@link Solution#get(int)}.
+	 * 
+	 * @return the names of the variables
+	 */
+	public final List<String> getVariables() {
+		return variables;
+	}
+
+	/**
+	 * Returns the slot of a variable of the goal, that is, its index in 
+	 * {@link #getVariables()}.
+	 * 
+	 * @param variable the name of the variable
+	 * @return the slot of the variable
+	 * @throws UnknownVariableException if the goal has no such variable
+	 */
+	public final int slot(String variable) {
+		int slot = variables.indexOf(variable);
+		if (slot == -1) {
+			throw new UnknownVariableException(variable);
+		}
+		return slot;
+	}
+
 //	/**
 //	 * Returns a list with the place holders in the query.
 //	 * 
@@ -143,27 +229,117 @@ public abstract class Query {
 	 */
 	public abstract <A> Solution<A> solve(Object... actualArgs);
 
+	/**
+	 * Solves the Prolog goal asynchronously on the executor of the prover. 
+	 * The returned future completes when the first solution has been found or
+	 * the goal has failed. The further solutions can be searched for without
+	 * blocking by {@link Solution#asyncIterator()}.
+	 * <p>
+	 * The operations of a prover on a single engine are run one by one, so
+	 * the dependent stages of the returned future must not wait for another
+	 * asynchronous operation of the same prover.
+	 * 
+	 * @param <A> the type of an element of the solutions
+	 * @param actualArgs the actual arguments of the goal
+	 * @return a future of the object for traversing the solutions
+	 * @see #solve(Object...)
+	 */
+	public <A> CompletableFuture<Solution<A>> solveAsync(final Object... actualArgs) {
+		final Executor executor = prover.getExecutor();
+		return CompletableFuture.supplyAsync(() -> {
+			Solution<A> solution = solve(actualArgs);
+			solution.setExecutor(executor);
+			return solution;
+		}, executor);
+	}
+
+	/**
+	 * Returns the limits of the search for the solutions of the query.
+	 * 
+	 * @return the limits of the query
+	 */
+	public final Limits getLimits() {
+		return limits;
+	}
+
+	/**
+	 * Returns a query that searches for the solutions of the goal within the
+	 * specified limits. This query is not modified, the returned query shares
+	 * the prepared goal and the bound arguments with this query.
+	 * 
+	 * @param limits the limits of the search
+	 * @return a new query with the limits
+	 * @see Limits
+	 */
+	public Query withLimits(Limits limits) {
+		if (limits == null) {
+			throw new NullPointerException("limits");
+		}
+		Query query = copy();
+		query.limits = limits;
+		return query;
+	}
+
+	/**
+	 * Creates a shallow copy of this query.
+	 * 
+	 * @return the copy
+	 */
+	private Query copy() {
+		try {
+			return (Query) clone();
+		} catch (CloneNotSupportedException e) {
+			// Should not happen.
+			throw new IllegalStateException(e);
+		}
+	}
+
 	/**
 	 * Binds a value to the specified argument of the goal. The argument is 
 	 * specified by its position. Numbering starts from zero.
 	 * <p>
-	 * The method returns the same query instance.
+	 * This query is not modified. The method returns a new query that shares
+	 * the prepared goal with this query. The bound argument has to be omitted
+	 * from the actual arguments when solving the new query.
 	 * 
 	 * @param argument the number of the argument of the goal
 	 * @param value the value to be bound to the argument
-	 * @return the same query instance
+	 * @return a new query with the argument bound
 	 */
-	public abstract Query bind(int argument, Object value);
+	public Query bind(int argument, Object value) {
+		if (argument < 0 || argument >= placeholderNames.size()) {
+			throw new IndexOutOfBoundsException("The goal has no argument " + argument);
+		}
+		Query query = copy();
+		if (boundValues == null) {
+			query.boundValues = new Object[placeholderNames.size()];
+			Arrays.fill(query.boundValues, UNBOUND);
+		} else {
+			query.boundValues = boundValues.clone();
+		}
+		query.boundValues[argument] = value;
+		return query;
+	}
 
 	/**
 	 * Binds a value to the specified argument of the goal. The
 	 * argument is specified by its name.
+	 * <p>
+	 * This query is not modified. The method returns a new query that shares
+	 * the prepared goal with this query.
 	 * 
 	 * @param variable the name of the variable of the goal
 	 * @param value the value to be bound to the variable
-	 * @return the same query instance
+	 * @return a new query with the variable bound
+	 * @throws UnknownVariableException if the goal has no such placeholder
 	 */
-	public abstract Query bind(String variable, Object value);
+	public Query bind(String variable, Object value) {
+		int argument = placeholderNames.indexOf(variable);
+		if (argument == -1) {
+			throw new UnknownVariableException(variable);
+		}
+		return bind(argument, value);
+	}
 
 //	public void assertz(Object... args) {
 //		solve("assertz(" + goal.substring(0, goal.lastIndexOf('.')) + ").", args);
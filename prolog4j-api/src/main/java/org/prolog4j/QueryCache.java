@@ -0,0 +1,208 @@
+/* 
+ * Copyright (c) 2010 Miklos Espak
+ * All rights reserved.
+ * 
+ * Permission is hereby granted, free  of charge, to any person obtaining
+ * a  copy  of this  software  and  associated  documentation files  (the
+ * "Software"), to  deal in  the Software without  restriction, including
+ * without limitation  the rights to  use, copy, modify,  merge, publish,
+ * distribute,  sublicense, and/or sell  copies of  the Software,  and to
+ * permit persons to whom the Software  is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The  above  copyright  notice  and  this permission  notice  shall  be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE  SOFTWARE IS  PROVIDED  "AS  IS", WITHOUT  WARRANTY  OF ANY  KIND,
+ * EXPRESS OR  IMPLIED, INCLUDING  BUT NOT LIMITED  TO THE  WARRANTIES OF
+ * MERCHANTABILITY,    FITNESS    FOR    A   PARTICULAR    PURPOSE    AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE,  ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.prolog4j;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded cache of prepared queries, keyed by the goal they have been
+ * created from. {@link AbstractProver#solve(String, Object...)} looks up the
+ * goals with placeholders here first, so solving the same goal again does not
+ * scan it for placeholders and does not parse it again. The literal goals are
+ * not cached, they would evict the reusable queries. When the cache is full,
+ * the least recently used query is evicted.
+ * <p>
+ * The cache can be used from several threads at the same time. It counts the
+ * hits, the misses and the evictions, which helps to tune its capacity.
+ */
+public final class QueryCache {
+
+	/** The default number of queries stored by a cache. */
+	public static final int DEFAULT_CAPACITY = 256;
+
+	/** The maximal number of queries stored by the cache. */
+	private int capacity;
+
+	/** Stores the queries assigned to their goal, in access order. */
+	private final LinkedHashMap<String, Query> queries;
+
+	/** The number of lookups that have found a query. */
+	private final AtomicLong hits = new AtomicLong();
+
+	/** The number of lookups that have not found a query. */
+	private final AtomicLong misses = new AtomicLong();
+
+	/** The number of queries removed because the cache was full. */
+	private final AtomicLong evictions = new AtomicLong();
+
+	/**
+	 * Creates a query cache with the default capacity.
+	 */
+	QueryCache() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Creates a query cache.
+	 * 
+	 * @param capacity the maximal number of queries to store
+	 */
+	QueryCache(int capacity) {
+		if (capacity < 0) {
+			throw new IllegalArgumentException("Negative capacity: " + capacity);
+		}
+		this.capacity = capacity;
+		this.queries = new LinkedHashMap<String, Query>(16, 0.75f, true) {
+			/** Class version for serialization. */
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Query> eldest) {
+				if (size() > QueryCache.this.capacity) {
+					evictions.incrementAndGet();
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * Returns the query prepared for the given goal or <code>null</code> if
+	 * there is no such query in the cache.
+	 * 
+	 * @param goal the Prolog goal
+	 * @return the prepared query or <code>null</code>
+	 */
+	Query get(String goal) {
+		Query query;
+		synchronized (queries) {
+			query = queries.get(goal);
+		}
+		if (query == null) {
+			misses.incrementAndGet();
+		} else {
+			hits.incrementAndGet();
+		}
+		return query;
+	}
+
+	/**
+	 * Stores a prepared query. If the cache is full, the least recently used
+	 * query is evicted.
+	 * 
+	 * @param goal the Prolog goal
+	 * @param query the query prepared for the goal
+	 */
+	void put(String goal, Query query) {
+		synchronized (queries) {
+			queries.put(goal, query);
+		}
+	}
+
+	/**
+	 * Removes every query from the cache. The counters are not reset.
+	 */
+	public void clear() {
+		synchronized (queries) {
+			queries.clear();
+		}
+	}
+
+	/**
+	 * Returns the maximal number of queries stored by the cache.
+	 * 
+	 * @return the capacity of the cache
+	 */
+	public int getCapacity() {
+		synchronized (queries) {
+			return capacity;
+		}
+	}
+
+	/**
+	 * Changes the maximal number of queries stored by the cache. If there are
+	 * more queries in the cache, the least recently used ones are evicted.
+	 * Zero capacity disables caching.
+	 * 
+	 * @param capacity the new capacity
+	 */
+	public void setCapacity(int capacity) {
+		if (capacity < 0) {
+			throw new IllegalArgumentException("Negative capacity: " + capacity);
+		}
+		synchronized (queries) {
+			this.capacity = capacity;
+			Iterator<String> it = queries.keySet().iterator();
+			for (int size = queries.size(); size > capacity; --size) {
+				it.next();
+				it.remove();
+				evictions.incrementAndGet();
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of queries currently stored by the cache.
+	 * 
+	 * @return the number of queries in the cache
+	 */
+	public int size() {
+		synchronized (queries) {
+			return queries.size();
+		}
+	}
+
+	/**
+	 * Returns the number of lookups that have found a prepared query.
+	 * 
+	 * @return the number of hits
+	 */
+	public long getHitCount() {
+		return hits.get();
+	}
+
+	/**
+	 * Returns the number of lookups that have not found a prepared query.
+	 * 
+	 * @return the number of misses
+	 */
+	public long getMissCount() {
+		return misses.get();
+	}
+
+	/**
+	 * Returns the number of queries that have been removed because the cache
+	 * was full.
+	 * 
+	 * @return the number of evictions
+	 */
+	public long getEvictionCount() {
+		return evictions.get();
+	}
+
+}
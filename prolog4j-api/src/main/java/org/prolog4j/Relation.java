@@ -0,0 +1,265 @@
+/* 
+ * Copyright (c) 2010 Miklos Espak
+ * All rights reserved.
+ * 
+ * Permission is hereby granted, free  of charge, to any person obtaining
+ * a  copy  of this  software  and  associated  documentation files  (the
+ * "Software"), to  deal in  the Software without  restriction, including
+ * without limitation  the rights to  use, copy, modify,  merge, publish,
+ * distribute,  sublicense, and/or sell  copies of  the Software,  and to
+ * permit persons to whom the Software  is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The  above  copyright  notice  and  this permission  notice  shall  be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE  SOFTWARE IS  PROVIDED  "AS  IS", WITHOUT  WARRANTY  OF ANY  KIND,
+ * EXPRESS OR  IMPLIED, INCLUDING  BUT NOT LIMITED  TO THE  WARRANTIES OF
+ * MERCHANTABILITY,    FITNESS    FOR    A   PARTICULAR    PURPOSE    AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE,  ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.prolog4j;
+
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+
+/**
+ * A relation whose rows are stored outside the knowledge base, and which is
+ * registered on a prover as a predicate by 
+ * {@link Prover#registerPredicate(String, Relation)}. When the predicate is
+ * called, the values of its bound arguments are passed to 
+ * {@link #select(Object[])}, and the matching rows are enumerated lazily, one
+ * on each backtracking into the call.
+ * <p>
+ * The values of a row are converted to terms only for the arguments that are
+ * not bound to an atom or a number, through 
+ * {@link Cursor#term(int, ConversionPolicy)}. The relations that store their
+ * values in another form than objects can build the terms directly there.
+ * <p>
+ * A relation can be registered on several provers. When its rows change, it
+ * has to call {@link #changed()}, so that the provers drop the answers 
+ * computed from the old rows.
+ */
+public abstract class Relation {
+
+	/** The number of columns of the relation. */
+	private final int arity;
+
+	/** The provers on which the relation is registered, by the predicate name. */
+	private final CopyOnWriteArrayList<Registration> registrations = 
+		new CopyOnWriteArrayList<Registration>();
+
+	/**
+	 * Creates a relation.
+	 * 
+	 * @param arity the number of columns of the relation
+	 */
+	protected Relation(int arity) {
+		if (arity < 0) {
+			throw new IllegalArgumentException("Negative arity: " + arity);
+		}
+		this.arity = arity;
+	}
+
+	/**
+	 * Returns the number of columns of the relation, which is the arity of its
+	 * predicate.
+	 * 
+	 * @return the arity
+	 */
+	public final int getArity() {
+		return arity;
+	}
+
+	/**
+	 * Returns a cursor over the rows that match the bound arguments of a call.
+	 * An element of the pattern is the value of an argument bound to an atom
+	 * or a number, converted by the conversion policy of the prover, or 
+	 * <code>null</code> if the argument is unbound or it is a compound term.
+	 * The rows returned must have equal values in the columns given by the 
+	 * pattern, because those columns are not unified with the arguments 
+	 * again. The other columns are unified, so the relation may return rows
+	 * that do not match there.
+	 * <p>
+	 * The cursor is closed when it is exhausted or the search of the goal 
+	 * ends.
+	 * 
+	 * @param pattern the values of the bound arguments
+	 * @return the cursor over the matching rows
+	 */
+	public abstract Cursor select(Object[] pattern);
+
+	/**
+	 * Notifies the provers on which the relation is registered that its rows
+	 * have changed. The relations that are backed by Java objects modified 
+	 * elsewhere have to be notified from outside.
+	 */
+	public final void changed() {
+		for (Registration registration: registrations) {
+			AbstractProver prover = registration.get();
+			if (prover == null) {
+				registrations.remove(registration);
+			} else {
+				prover.relationChanged(registration.name, arity);
+			}
+		}
+	}
+
+	/**
+	 * Records that the relation is registered on a prover. The prover is 
+	 * referred to weakly, a relation does not keep its provers alive.
+	 * 
+	 * @param prover the prover
+	 * @param name the name of the predicate of the relation
+	 */
+	final void registered(AbstractProver prover, String name) {
+		registrations.add(new Registration(prover, name));
+	}
+
+	/**
+	 * Traverses the rows selected from a relation. The cursor is positioned 
+	 * before the first row, {@link #next()} moves it to the next one. 
+	 */
+	public abstract static class Cursor implements AutoCloseable {
+
+		/**
+		 * Moves the cursor to the next row.
+		 * 
+		 * @return <code>true</code> if there is a next row
+		 */
+		public abstract boolean next();
+
+		/**
+		 * Returns a value of the current row.
+		 * 
+		 * @param column the index of the column, starting from zero
+		 * @return the value
+		 */
+		public abstract Object get(int column);
+
+		/**
+		 * Returns the term of a value of the current row. This implementation
+		 * converts the value returned by {@link #get(int)} by the policy.
+		 * 
+		 * @param column the index of the column, starting from zero
+		 * @param cp the conversion policy of the prover
+		 * @return the term of the value, or <code>null</code> for an unbound
+		 * 		variable
+		 */
+		public Object term(int column, ConversionPolicy cp) {
+			return cp.convertObject(get(column));
+		}
+
+		/**
+		 * Releases the resources of the cursor. This implementation does 
+		 * nothing.
+		 */
+		@Override
+		public void close() {
+		}
+
+	}
+
+	/**
+	 * Returns a relation whose rows are the elements of an iterable. For a 
+	 * single column the elements are the values themselves, otherwise they
+	 * are arrays or lists of the values. The elements are scanned on every 
+	 * call, the ones not matching the bound arguments are skipped.
+	 * 
+	 * @param arity the number of columns
+	 * @param rows the elements giving the rows
+	 * @return the relation
+	 */
+	public static Relation of(int arity, Iterable<?> rows) {
+		return new CollectionRelations.IterableRelation(arity, rows);
+	}
+
+	/**
+	 * Returns a relation whose rows are the entries of a map. The first 
+	 * column is the key. For two columns the second one is the value, 
+	 * otherwise the values are arrays or lists of the other columns. A call
+	 * whose first argument is bound looks up the key in the map, so the keys
+	 * should be strings, integers, longs and doubles, as the atoms and the 
+	 * numbers are converted.
+	 * 
+	 * @param arity the number of columns, at least two
+	 * @param map the map
+	 * @return the relation
+	 */
+	public static Relation of(int arity, Map<?, ?> map) {
+		return new CollectionRelations.MapRelation(arity, map);
+	}
+
+	/**
+	 * Returns a relation computed by a lookup function from the value of its
+	 * first column. The function returns the elements giving the values of 
+	 * the other columns, like for {@link #of(int, Iterable)}, or 
+	 * <code>null</code> if there are none. A call whose first argument is 
+	 * not bound to an atom or a number has no solutions.
+	 * 
+	 * @param arity the number of columns, at least one
+	 * @param lookup the lookup function
+	 * @return the relation
+	 */
+	public static Relation lookup(int arity, Function<Object, ? extends Iterable<?>> lookup) {
+		return new CollectionRelations.LookupRelation(arity, lookup);
+	}
+
+	/**
+	 * Returns a cursor over rows given by arrays.
+	 * 
+	 * @param rows the rows
+	 * @return the cursor
+	 */
+	public static Cursor cursor(final Iterator<Object[]> rows) {
+		return new Cursor() {
+
+			/** The current row. */
+			private Object[] row;
+
+			@Override
+			public boolean next() {
+				if (!rows.hasNext()) {
+					row = null;
+					return false;
+				}
+				row = rows.next();
+				return true;
+			}
+
+			@Override
+			public Object get(int column) {
+				return row[column];
+			}
+
+		};
+	}
+
+	/**
+	 * A registration of the relation on a prover.
+	 */
+	private static final class Registration extends WeakReference<AbstractProver> {
+
+		/** The name of the predicate. */
+		private final String name;
+
+		/**
+		 * Creates a registration.
+		 * 
+		 * @param prover the prover
+		 * @param name the name of the predicate
+		 */
+		Registration(AbstractProver prover, String name) {
+			super(prover);
+			this.name = name;
+		}
+
+	}
+
+}
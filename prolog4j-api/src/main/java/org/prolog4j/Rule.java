@@ -0,0 +1,177 @@
+/* 
+ * Copyright (c) 2010 Miklos Espak
+ * All rights reserved.
+ * 
+ * Permission is hereby granted, free  of charge, to any person obtaining
+ * a  copy  of this  software  and  associated  documentation files  (the
+ * "Software"), to  deal in  the Software without  restriction, including
+ * without limitation  the rights to  use, copy, modify,  merge, publish,
+ * distribute,  sublicense, and/or sell  copies of  the Software,  and to
+ * permit persons to whom the Software  is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The  above  copyright  notice  and  this permission  notice  shall  be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE  SOFTWARE IS  PROVIDED  "AS  IS", WITHOUT  WARRANTY  OF ANY  KIND,
+ * EXPRESS OR  IMPLIED, INCLUDING  BUT NOT LIMITED  TO THE  WARRANTIES OF
+ * MERCHANTABILITY,    FITNESS    FOR    A   PARTICULAR    PURPOSE    AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE,  ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.prolog4j;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A forward-chaining rule: an action that is fired when facts matching its
+ * conditions are added to the knowledge base. The conditions are patterns of
+ * facts, atoms or compound terms that may share variables. A match of the 
+ * rule assigns a fact to every condition so that the shared variables have
+ * the same value, and it satisfies the test of the rule, if the rule has a 
+ * test. The action is fired once for every new match, with the values of the
+ * variables of the conditions.
+ * <p>
+ * Rules are added to a prover by {@link Prover#addRule(Rule)}. The prover 
+ * keeps the facts matching each condition and the partial matches of the 
+ * conditions, and it updates them incrementally when a single fact is 
+ * asserted or retracted, so the cost of a modification depends on the 
+ * matches that it changes, not on the size of the knowledge base. The 
+ * patterns are matched against the fact by the engine, but the knowledge base
+ * is not searched. A retracted fact removes the matches that it has taken 
+ * part in, and these matches fire again if the fact is asserted again. When 
+ * the knowledge base is modified otherwise, or the predicate of a condition
+ * is defined by recursive rules, the facts of the affected conditions are 
+ * solved again, and only the difference is propagated.
+ * <p>
+ * The actions are fired in the thread that has modified the knowledge base, 
+ * after the modification. They may assert and retract facts themselves: the 
+ * matches are fired in order after the modification has been propagated. The
+ * test is checked when the match is fired, by solving it with the variables 
+ * of the conditions bound.
+ * <p>
+ * Rules are immutable, the methods that specify them return new rules.
+ */
+public final class Rule {
+
+	/**
+	 * The action of a rule.
+	 */
+	public interface Action {
+
+		/**
+		 * Performs the action for a new match of a rule.
+		 * 
+		 * @param rule the rule
+		 * @param match the values of the variables of the conditions, 
+		 * 		assigned to their name
+		 */
+		void fire(Rule rule, Map<String, Object> match);
+
+	}
+
+	/** The patterns of the facts that the rule matches. */
+	private final List<String> conditions;
+
+	/** The goal that a match has to satisfy, or <code>null</code>. */
+	private final String test;
+
+	/** The action of the rule, or <code>null</code> if it has not been given. */
+	private final Action action;
+
+	/**
+	 * Creates a rule.
+	 * 
+	 * @param conditions the patterns of the facts
+	 * @param test the goal that a match has to satisfy, or <code>null</code>
+	 * @param action the action of the rule, or <code>null</code>
+	 */
+	private Rule(List<String> conditions, String test, Action action) {
+		this.conditions = conditions;
+		this.test = test;
+		this.action = action;
+	}
+
+	/**
+	 * Creates a rule that matches facts of the given patterns. The rule has
+	 * no test and no action yet.
+	 * 
+	 * @param conditions the patterns of the facts, like <tt>temp(S, T)</tt>
+	 * @return the new rule
+	 * @throws IllegalArgumentException if there are no conditions, or a 
+	 * 		condition is not an atom or a compound term
+	 */
+	public static Rule when(String... conditions) {
+		if (conditions.length == 0) {
+			throw new IllegalArgumentException("The rule has no conditions");
+		}
+		for (String condition: conditions) {
+			if (ClauseScanner.head(condition) == null) {
+				throw new IllegalArgumentException("Not a fact pattern: " + condition);
+			}
+		}
+		return new Rule(Collections.unmodifiableList(Arrays.asList(conditions.clone())), 
+				null, null);
+	}
+
+	/**
+	 * Returns a rule that has the conditions and the action of this rule,
+	 * and the given test.
+	 * 
+	 * @param test the goal that a match has to satisfy, like <tt>T > 25</tt>
+	 * @return the new rule
+	 */
+	public Rule where(String test) {
+		if (test == null) {
+			throw new NullPointerException("test");
+		}
+		return new Rule(conditions, test, action);
+	}
+
+	/**
+	 * Returns a rule that has the conditions and the test of this rule, and
+	 * the given action.
+	 * 
+	 * @param action the action of the rule
+	 * @return the new rule
+	 */
+	public Rule then(Action action) {
+		if (action == null) {
+			throw new NullPointerException("action");
+		}
+		return new Rule(conditions, test, action);
+	}
+
+	/**
+	 * Returns the patterns of the facts that the rule matches.
+	 * 
+	 * @return the conditions of the rule
+	 */
+	public List<String> getConditions() {
+		return conditions;
+	}
+
+	/**
+	 * Returns the goal that the matches have to satisfy.
+	 * 
+	 * @return the test of the rule, or <code>null</code> if it has no test
+	 */
+	public String getTest() {
+		return test;
+	}
+
+	/**
+	 * Returns the action of the rule.
+	 * 
+	 * @return the action, or <code>null</code> if it has not been given
+	 */
+	public Action getAction() {
+		return action;
+	}
+
+}
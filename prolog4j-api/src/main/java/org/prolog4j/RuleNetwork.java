@@ -0,0 +1,598 @@
+/* 
+ * Copyright (c) 2010 Miklos Espak
+ * All rights reserved.
+ * 
+ * Permission is hereby granted, free  of charge, to any person obtaining
+ * a  copy  of this  software  and  associated  documentation files  (the
+ * "Software"), to  deal in  the Software without  restriction, including
+ * without limitation  the rights to  use, copy, modify,  merge, publish,
+ * distribute,  sublicense, and/or sell  copies of  the Software,  and to
+ * permit persons to whom the Software  is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The  above  copyright  notice  and  this permission  notice  shall  be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE  SOFTWARE IS  PROVIDED  "AS  IS", WITHOUT  WARRANTY  OF ANY  KIND,
+ * EXPRESS OR  IMPLIED, INCLUDING  BUT NOT LIMITED  TO THE  WARRANTIES OF
+ * MERCHANTABILITY,    FITNESS    FOR    A   PARTICULAR    PURPOSE    AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE,  ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.prolog4j;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Matches the forward-chaining rules of a prover incrementally, in the way 
+ * of the Rete algorithm. Every condition of a rule keeps the facts that match
+ * it, as the values of its variables, indexed by the variables that it shares
+ * with the previous conditions. The partial matches of the first conditions
+ * of a rule are kept as a tree of tokens, indexed by the variables that they
+ * share with the next condition. A new fact is joined with the partial 
+ * matches of the previous conditions, and the new partial matches are joined
+ * with the facts of the next conditions. A removed fact removes the tokens 
+ * that it has taken part in, with their descendants.
+ * <p>
+ * The complete matches are put on an agenda, and they are fired after the
+ * modification has been propagated, so the actions can modify the knowledge
+ * base.
+ */
+final class RuleNetwork {
+
+	/** The prover whose knowledge base the rules match. */
+	private final AbstractProver prover;
+
+	/** Knows the predicates called by the rules of the knowledge base. */
+	private final DependencyGraph graph;
+
+	/** The networks of the rules. */
+	private final List<Node> nodes = new ArrayList<Node>();
+
+	/** The complete matches that have not been fired yet. */
+	private final Deque<Token> agenda = new ArrayDeque<Token>();
+
+	/** True while the agenda is being fired. */
+	private boolean firing;
+
+	/**
+	 * Creates a network without rules.
+	 * 
+	 * @param prover the prover whose knowledge base the rules match
+	 * @param graph knows the predicates called by the rules of the knowledge
+	 * 		base
+	 */
+	RuleNetwork(AbstractProver prover, DependencyGraph graph) {
+		this.prover = prover;
+		this.graph = graph;
+	}
+
+	/**
+	 * Adds a rule. The facts matching its conditions are collected from the
+	 * knowledge base, and the matches found are fired.
+	 * 
+	 * @param rule the rule
+	 * @throws IllegalArgumentException if the rule has no action
+	 */
+	void add(Rule rule) {
+		if (rule.getAction() == null) {
+			throw new IllegalArgumentException("The rule has no action");
+		}
+		synchronized (this) {
+			Node node = new Node(rule);
+			nodes.add(node);
+			for (Condition condition: node.conditions) {
+				for (Map<String, Object> element: solve(condition)) {
+					node.add(condition.position, element, agenda);
+				}
+			}
+		}
+		fire();
+	}
+
+	/**
+	 * Removes a rule. Its matches that have not been fired yet are dropped.
+	 * 
+	 * @param rule the rule
+	 */
+	synchronized void remove(Rule rule) {
+		for (Iterator<Node> it = nodes.iterator(); it.hasNext(); ) {
+			Node node = it.next();
+			if (node.rule == rule) {
+				node.removed = true;
+				it.remove();
+			}
+		}
+	}
+
+	/**
+	 * Updates the conditions that depend on modified predicates, by solving 
+	 * them again.
+	 * 
+	 * @param heads the names of the modified predicates, or <code>null</code>
+	 * 		if they are not known
+	 */
+	void update(Set<String> heads) {
+		update(heads, null, null, false);
+	}
+
+	/**
+	 * Updates the conditions that depend on modified predicates, and fires 
+	 * the new matches. If a single fact has been asserted or retracted, it is
+	 * matched against the conditions of its predicate.
+	 * 
+	 * @param heads the names of the modified predicates, or <code>null</code>
+	 * 		if they are not known
+	 * @param fact the asserted or retracted fact, or <code>null</code> if the
+	 * 		knowledge base has been modified otherwise
+	 * @param args the arguments of the fact
+	 * @param asserted <code>true</code> if the fact has been asserted, 
+	 * 		<code>false</code> if it has been retracted
+	 */
+	void update(Set<String> heads, String fact, Object[] args, boolean asserted) {
+		synchronized (this) {
+			if (nodes.isEmpty()) {
+				return;
+			}
+			String term = fact == null || heads == null ? null : ClauseScanner.fact(fact);
+			ClauseScanner.Head head = term == null ? null : ClauseScanner.head(term);
+			if (head != null && graph.closure(graph.calls(head.name)).contains(head.name)) {
+				head = null;
+			}
+			for (Node node: nodes) {
+				for (Condition condition: node.conditions) {
+					if (head != null && condition.name.equals(head.name)) {
+						if (condition.arity == head.arity) {
+							match(node, condition, term, args, asserted);
+						}
+					} else if (heads == null || !Collections.disjoint(heads, 
+							graph.closure(Collections.singleton(condition.name)))) {
+						resync(node, condition);
+					}
+				}
+			}
+		}
+		fire();
+	}
+
+	/**
+	 * Matches an asserted or retracted fact against a condition. The facts
+	 * matching the condition are not searched.
+	 * 
+	 * @param node the network of the rule
+	 * @param condition the condition
+	 * @param term the fact without the end token
+	 * @param args the arguments of the fact
+	 * @param asserted <code>true</code> if the fact has been asserted, 
+	 * 		<code>false</code> if it has been retracted
+	 */
+	private void match(Node node, Condition condition, String term, Object[] args, 
+			boolean asserted) {
+		prover.completeTables();
+		Set<Map<String, Object>> matched = Subscriptions.collect(prover.query(
+				'(' + condition.pattern + ") = (" + term + ").").solve(args), 
+				condition.variables);
+		for (Map<String, Object> element: matched) {
+			if (asserted) {
+				node.add(condition.position, element, agenda);
+			} else if (condition.elements.containsKey(element)) {
+				if (element.containsValue(null)) {
+					resync(node, condition);
+				} else if (!holds(condition, element)) {
+					node.remove(condition.position, element);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Solves a condition again, and propagates the difference between its 
+	 * facts and the ones known.
+	 * 
+	 * @param node the network of the rule
+	 * @param condition the condition
+	 */
+	private void resync(Node node, Condition condition) {
+		Set<Map<String, Object>> elements = solve(condition);
+		for (Map<String, Object> element: 
+				new ArrayList<Map<String, Object>>(condition.elements.keySet())) {
+			if (!elements.contains(element)) {
+				node.remove(condition.position, element);
+			}
+		}
+		for (Map<String, Object> element: elements) {
+			node.add(condition.position, element, agenda);
+		}
+	}
+
+	/**
+	 * Returns the facts matching a condition, by solving it.
+	 * 
+	 * @param condition the condition
+	 * @return the values of the variables of the condition in each fact
+	 */
+	private Set<Map<String, Object>> solve(Condition condition) {
+		return Subscriptions.collect(prover.solve(condition.pattern + '.'), 
+				condition.variables);
+	}
+
+	/**
+	 * Checks whether a fact still matches a condition, by solving it with the
+	 * variables bound to the values of the fact.
+	 * 
+	 * @param condition the condition
+	 * @param element the values of the variables of the condition
+	 * @return <code>true</code> if there is such a fact
+	 */
+	private boolean holds(Condition condition, Map<String, Object> element) {
+		if (condition.check == null) {
+			condition.check = prover.query(
+					Subscriptions.check(condition.pattern + '.', condition.variables));
+		}
+		Solution<Object> solution = condition.check.solve(element.values().toArray());
+		try {
+			return solution.isSuccess();
+		} finally {
+			solution.close();
+		}
+	}
+
+	/**
+	 * Fires the matches on the agenda, unless they are being fired by an
+	 * enclosing call.
+	 */
+	private void fire() {
+		synchronized (this) {
+			if (firing) {
+				return;
+			}
+			firing = true;
+		}
+		try {
+			while (true) {
+				Token token;
+				synchronized (this) {
+					token = agenda.poll();
+				}
+				if (token == null) {
+					break;
+				}
+				Node node = token.node;
+				if (!token.deleted && !node.removed && test(node, token.bindings)) {
+					node.rule.getAction().fire(node.rule, 
+							Collections.unmodifiableMap(token.bindings));
+				}
+			}
+		} finally {
+			synchronized (this) {
+				firing = false;
+			}
+		}
+	}
+
+	/**
+	 * Checks whether a match satisfies the test of its rule.
+	 * 
+	 * @param node the network of the rule
+	 * @param bindings the values of the variables of the conditions
+	 * @return <code>true</code> if the rule has no test or the test succeeds
+	 */
+	private boolean test(Node node, Map<String, Object> bindings) {
+		String test = node.rule.getTest();
+		if (test == null) {
+			return true;
+		}
+		if (node.test == null) {
+			node.testVariables = new ArrayList<String>(ClauseScanner.variables(test));
+			node.testVariables.retainAll(bindings.keySet());
+			node.test = prover.query(Subscriptions.check(test, node.testVariables));
+		}
+		Object[] values = new Object[node.testVariables.size()];
+		for (int i = 0; i < values.length; ++i) {
+			values[i] = bindings.get(node.testVariables.get(i));
+		}
+		prover.completeTables();
+		Solution<Object> solution = node.test.solve(values);
+		try {
+			return solution.isSuccess();
+		} finally {
+			solution.close();
+		}
+	}
+
+	/**
+	 * Returns the values of some variables.
+	 * 
+	 * @param variables the names of the variables
+	 * @param bindings the values of the variables
+	 * @return the values in the order of the names
+	 */
+	private static List<Object> key(List<String> variables, Map<String, Object> bindings) {
+		List<Object> key = new ArrayList<Object>(variables.size());
+		for (String variable: variables) {
+			key.add(bindings.get(variable));
+		}
+		return key;
+	}
+
+	/**
+	 * The network of a rule.
+	 */
+	private static final class Node {
+
+		/** The rule. */
+		final Rule rule;
+
+		/** The conditions of the rule. */
+		final Condition[] conditions;
+
+		/** 
+		 * The partial matches of the first conditions, indexed by the values
+		 * of the variables that they share with the next condition.
+		 */
+		final List<Map<List<Object>, Set<Token>>> partialMatches;
+
+		/** The variables of the test bound by the conditions. */
+		List<String> testVariables;
+
+		/** The query checking the test, if it has been prepared. */
+		Query test;
+
+		/** True if the rule has been removed. */
+		boolean removed;
+
+		/**
+		 * Creates the network of a rule.
+		 * 
+		 * @param rule the rule
+		 */
+		Node(Rule rule) {
+			this.rule = rule;
+			List<String> patterns = rule.getConditions();
+			conditions = new Condition[patterns.size()];
+			Set<String> bound = new LinkedHashSet<String>();
+			for (int i = 0; i < conditions.length; ++i) {
+				conditions[i] = new Condition(i, patterns.get(i), bound);
+				bound.addAll(conditions[i].variables);
+			}
+			partialMatches = new ArrayList<Map<List<Object>, Set<Token>>>();
+			for (int i = 1; i < conditions.length; ++i) {
+				partialMatches.add(new HashMap<List<Object>, Set<Token>>());
+			}
+		}
+
+		/**
+		 * Adds a fact to a condition, and propagates the new partial matches.
+		 * 
+		 * @param position the position of the condition
+		 * @param element the values of the variables of the condition
+		 * @param agenda receives the new complete matches
+		 */
+		void add(int position, Map<String, Object> element, Deque<Token> agenda) {
+			Condition condition = conditions[position];
+			if (condition.elements.containsKey(element)) {
+				return;
+			}
+			condition.elements.put(element, new LinkedHashSet<Token>());
+			List<Object> key = key(condition.keys, element);
+			List<Map<String, Object>> bucket = condition.index.get(key);
+			if (bucket == null) {
+				bucket = new ArrayList<Map<String, Object>>();
+				condition.index.put(key, bucket);
+			}
+			bucket.add(element);
+			if (position == 0) {
+				insert(0, new Token(this, null, element), agenda);
+				return;
+			}
+			Set<Token> left = partialMatches.get(position - 1).get(key);
+			if (left != null) {
+				for (Token parent: new ArrayList<Token>(left)) {
+					insert(position, new Token(this, parent, element), agenda);
+				}
+			}
+		}
+
+		/**
+		 * Stores a new partial match, and joins it with the facts of the next
+		 * condition.
+		 * 
+		 * @param position the position of the last condition of the match
+		 * @param token the partial match
+		 * @param agenda receives the new complete matches
+		 */
+		private void insert(int position, Token token, Deque<Token> agenda) {
+			conditions[position].elements.get(token.element).add(token);
+			if (token.parent != null) {
+				token.parent.children.add(token);
+			}
+			if (position == conditions.length - 1) {
+				agenda.add(token);
+				return;
+			}
+			Condition next = conditions[position + 1];
+			List<Object> key = key(next.keys, token.bindings);
+			Map<List<Object>, Set<Token>> memory = partialMatches.get(position);
+			Set<Token> tokens = memory.get(key);
+			if (tokens == null) {
+				tokens = new LinkedHashSet<Token>();
+				memory.put(key, tokens);
+			}
+			tokens.add(token);
+			List<Map<String, Object>> right = next.index.get(key);
+			if (right != null) {
+				for (Map<String, Object> element: new ArrayList<Map<String, Object>>(right)) {
+					insert(position + 1, new Token(this, token, element), agenda);
+				}
+			}
+		}
+
+		/**
+		 * Removes a fact from a condition, with the partial matches that it 
+		 * has taken part in.
+		 * 
+		 * @param position the position of the condition
+		 * @param element the values of the variables of the condition
+		 */
+		void remove(int position, Map<String, Object> element) {
+			Condition condition = conditions[position];
+			Set<Token> tokens = condition.elements.remove(element);
+			if (tokens == null) {
+				return;
+			}
+			List<Object> key = key(condition.keys, element);
+			List<Map<String, Object>> bucket = condition.index.get(key);
+			bucket.remove(element);
+			if (bucket.isEmpty()) {
+				condition.index.remove(key);
+			}
+			for (Token token: tokens) {
+				delete(position, token);
+				if (token.parent != null) {
+					token.parent.children.remove(token);
+				}
+			}
+		}
+
+		/**
+		 * Deletes a partial match with its descendants.
+		 * 
+		 * @param position the position of the last condition of the match
+		 * @param token the partial match
+		 */
+		private void delete(int position, Token token) {
+			token.deleted = true;
+			Set<Token> siblings = conditions[position].elements.get(token.element);
+			if (siblings != null) {
+				siblings.remove(token);
+			}
+			if (position < conditions.length - 1) {
+				List<Object> key = key(conditions[position + 1].keys, token.bindings);
+				Map<List<Object>, Set<Token>> memory = partialMatches.get(position);
+				Set<Token> tokens = memory.get(key);
+				tokens.remove(token);
+				if (tokens.isEmpty()) {
+					memory.remove(key);
+				}
+			}
+			for (Token child: token.children) {
+				delete(position + 1, child);
+			}
+		}
+
+	}
+
+	/**
+	 * A condition of a rule, with the facts that match it.
+	 */
+	private static final class Condition {
+
+		/** The position of the condition in the rule. */
+		final int position;
+
+		/** The pattern of the facts without the end token. */
+		final String pattern;
+
+		/** The name of the predicate of the facts. */
+		final String name;
+
+		/** The arity of the predicate of the facts. */
+		final int arity;
+
+		/** The names of the variables of the pattern. */
+		final List<String> variables;
+
+		/** The variables shared with the previous conditions. */
+		final List<String> keys;
+
+		/** 
+		 * The values of the variables in the matching facts, with the partial
+		 * matches whose last fact they are.
+		 */
+		final Map<Map<String, Object>, Set<Token>> elements = 
+			new HashMap<Map<String, Object>, Set<Token>>();
+
+		/** The matching facts indexed by the values of the shared variables. */
+		final Map<List<Object>, List<Map<String, Object>>> index = 
+			new HashMap<List<Object>, List<Map<String, Object>>>();
+
+		/** The query checking a fact, if it has been prepared. */
+		Query check;
+
+		/**
+		 * Creates a condition.
+		 * 
+		 * @param position the position of the condition in the rule
+		 * @param pattern the pattern of the facts
+		 * @param bound the variables of the previous conditions
+		 */
+		Condition(int position, String pattern, Set<String> bound) {
+			this.position = position;
+			this.pattern = pattern.substring(0, ClauseScanner.end(pattern));
+			ClauseScanner.Head head = ClauseScanner.head(this.pattern);
+			this.name = head.name;
+			this.arity = head.arity;
+			this.variables = ClauseScanner.variables(this.pattern);
+			this.keys = new ArrayList<String>(variables);
+			keys.retainAll(bound);
+		}
+
+	}
+
+	/**
+	 * A partial match of a rule: the facts matching its first conditions.
+	 */
+	private static final class Token {
+
+		/** The network of the rule. */
+		final Node node;
+
+		/** The match of the previous conditions, or <code>null</code>. */
+		final Token parent;
+
+		/** The values of the variables of the last condition. */
+		final Map<String, Object> element;
+
+		/** The values of the variables of the conditions. */
+		final Map<String, Object> bindings;
+
+		/** The partial matches that extend this one. */
+		final List<Token> children = new ArrayList<Token>();
+
+		/** True if the match has been removed. */
+		boolean deleted;
+
+		/**
+		 * Creates a partial match.
+		 * 
+		 * @param node the network of the rule
+		 * @param parent the match of the previous conditions, or 
+		 * 		<code>null</code>
+		 * @param element the values of the variables of the last condition
+		 */
+		Token(Node node, Token parent, Map<String, Object> element) {
+			this.node = node;
+			this.parent = parent;
+			this.element = element;
+			this.bindings = new LinkedHashMap<String, Object>();
+			if (parent != null) {
+				bindings.putAll(parent.bindings);
+			}
+			bindings.putAll(element);
+		}
+
+	}
+
+}
@@ -0,0 +1,94 @@
+/* 
+ * Copyright (c) 2010 Miklos Espak
+ * All rights reserved.
+ * 
+ * Permission is hereby granted, free  of charge, to any person obtaining
+ * a  copy  of this  software  and  associated  documentation files  (the
+ * "Software"), to  deal in  the Software without  restriction, including
+ * without limitation  the rights to  use, copy, modify,  merge, publish,
+ * distribute,  sublicense, and/or sell  copies of  the Software,  and to
+ * permit persons to whom the Software  is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The  above  copyright  notice  and  this permission  notice  shall  be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE  SOFTWARE IS  PROVIDED  "AS  IS", WITHOUT  WARRANTY  OF ANY  KIND,
+ * EXPRESS OR  IMPLIED, INCLUDING  BUT NOT LIMITED  TO THE  WARRANTIES OF
+ * MERCHANTABILITY,    FITNESS    FOR    A   PARTICULAR    PURPOSE    AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE,  ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.prolog4j;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+
+/**
+ * Runs the submitted tasks one by one, in the order of their submission, on
+ * an underlying executor. The Prolog engines are not thread safe, so the
+ * asynchronous operations of a prover are run by such an executor.
+ */
+final class SerialExecutor implements Executor {
+
+	/** The executor that runs the tasks. */
+	private final Executor executor;
+
+	/** The tasks waiting to be run. */
+	private final Queue<Runnable> tasks = new ArrayDeque<Runnable>();
+
+	/** The task being run, or <code>null</code> if no task is running. */
+	private Runnable active;
+
+	/**
+	 * Creates a serial executor.
+	 * 
+	 * @param executor the executor that runs the tasks
+	 */
+	SerialExecutor(Executor executor) {
+		this.executor = executor;
+	}
+
+	/**
+	 * Returns the executor that runs the tasks.
+	 * 
+	 * @return the underlying executor
+	 */
+	Executor getExecutor() {
+		return executor;
+	}
+
+	@Override
+	public synchronized void execute(final Runnable task) {
+		tasks.add(() -> {
+			try {
+				task.run();
+			} finally {
+				scheduleNext();
+			}
+		});
+		if (active == null) {
+			scheduleNext();
+		}
+	}
+
+	/**
+	 * Passes the next waiting task to the underlying executor.
+	 */
+	private synchronized void scheduleNext() {
+		active = tasks.poll();
+		if (active != null) {
+			try {
+				executor.execute(active);
+			} catch (RuntimeException e) {
+				// The rejected task is dropped, the next one can still be run.
+				active = null;
+				throw e;
+			}
+		}
+	}
+
+}
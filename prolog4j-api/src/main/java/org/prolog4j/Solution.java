@@ -24,19 +24,35 @@
 package org.prolog4j;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Represents the solutions of a query.
+ * <p>
+ * The engine keeps the open alternatives of the goal until the solutions are
+ * closed. They are closed automatically when the traversal of the solutions
+ * reaches the end. If the traversal is abandoned earlier, the solutions 
+ * should be closed explicitly, e.g. by a <code>try</code>-with-resources 
+ * statement. The solutions that are reclaimed by the garbage collector 
+ * without being closed are closed by a background thread.
  *
  * @param <S> The type of the values of the variable that is of special
  *            interest
  */
-public abstract class Solution<S> implements Iterable<S> {
+public abstract class Solution<S> implements Iterable<S>, AutoCloseable {
 
 	/**
 	 * The name of the variable that is of special interest.
@@ -48,6 +64,30 @@ public abstract class Solution<S> implements Iterable<S> {
 	 * converted to this type.
 	 */
 	protected Class<S> clazz;
+
+	/** 
+	 * The executor that searches for the solutions asynchronously, or 
+	 * <code>null</code> if the default executor has to be used.
+	 */
+	private volatile Executor executor;
+
+	/** 
+	 * True if the open alternatives of the goal have been released, and no
+	 * more solutions can be fetched.
+	 */
+	private volatile boolean closed;
+
+	/** 
+	 * Runs the release action registered by {@link #releaseOnClose(Runnable)},
+	 * or <code>null</code> if there is no such action.
+	 */
+	private SolutionCleaner.Cleanup cleanup;
+
+	/** True if an iterator has been created over the solutions. */
+	private boolean traversed;
+
+	/** The names of the variables of the goal, in the order of their slots. */
+	private List<String> variables = Collections.emptyList();
 	
 	/**
 	 * Returns whether there exists a solution or not. Does not depend on the
@@ -97,6 +137,15 @@ public abstract class Solution<S> implements Iterable<S> {
 		return (Solution<A>) this;
 	}
 	
+	/**
+	 * Returns the name of the variable that is of special interest.
+	 * 
+	 * @return the name of the variable
+	 */
+	final String getDefaultOutputVariable() {
+		return defaultOutputVariable;
+	}
+	
 	/**
 	 * Returns the value of the variable last occurring in the goal bound to by
 	 * the first solution of the goal.
@@ -149,6 +198,258 @@ public abstract class Solution<S> implements Iterable<S> {
 	 */
 	public abstract <A> A get(String variable, Class<A> type);
 	
+	/**
+	 * Sets the names of the variables of the goal, in the order of their 
+	 * slots. The solutions created by a query receive 
+	 * {@link Query#getVariables()}.
+	 * 
+	 * @param variables the names of the variables
+	 */
+	protected final void setVariables(List<String> variables) {
+		this.variables = variables;
+	}
+
+	/**
+	 * Returns the names of the variables of the goal, in the order of their 
+	 * slots.
+	 * 
+	 * @return the names of the variables
+	 * @see Query#getVariables()
+	 */
+	public final List<String> getVariables() {
+		return variables;
+	}
+
+	/**
+	 * Returns the slot of a variable of the goal. It should be resolved once,
+	 * before traversing the solutions.
+	 * 
+	 * @param variable the name of the variable
+	 * @return the slot of the variable
+	 * @throws UnknownVariableException if the goal has no such variable
+	 */
+	public final int slot(String variable) {
+		int slot = variables.indexOf(variable);
+		if (slot == -1) {
+			throw new UnknownVariableException(variable);
+		}
+		return slot;
+	}
+
+	/**
+	 * Returns the value of the variable of the given slot bound by the current
+	 * solution. Unlike {@link #get(String)}, it does not look up the variable
+	 * by name, if the engine stores the bindings by position. The type set
+	 * by {@link #on(String, Class)} applies only to the slot of the variable
+	 * of special interest.
+	 * 
+	 * @param <A>
+	 *            the type of the value
+	 * @param slot
+	 *            the slot of the variable
+	 * @return the value bound to the variable
+	 * @see #slot(String)
+	 */
+	@SuppressWarnings("unchecked")
+	public <A> A get(int slot) {
+		ConversionPolicy policy = termPolicy();
+		if (policy == null) {
+			return this.<A>get(variables.get(slot));
+		}
+		Object term = term(slot);
+		if (clazz == null || !isDefaultSlot(slot)) {
+			return (A) policy.convertTerm(term);
+		}
+		return (A) policy.convertTerm(term, clazz);
+	}
+
+	/**
+	 * Returns whether a slot belongs to the variable of special interest.
+	 * 
+	 * @param slot the slot of the variable
+	 * @return <code>true</code> if the slot is the one of the variable of
+	 * 		special interest
+	 */
+	protected final boolean isDefaultSlot(int slot) {
+		return variables.get(slot).equals(defaultOutputVariable);
+	}
+
+	/**
+	 * Returns the values of all the variables bound by the current solution,
+	 * in the order of their slots. The values are stored in the given array
+	 * if it is large enough, so that the same array can be reused for every
+	 * solution. Otherwise a new array is allocated.
+	 * 
+	 * @param row the array to store the values in, or <code>null</code>
+	 * @return the array of the values
+	 */
+	public Object[] getRow(Object[] row) {
+		int width = variables.size();
+		if (row == null || row.length < width) {
+			row = new Object[width];
+		}
+		for (int i = 0; i < width; ++i) {
+			row[i] = get(i);
+		}
+		return row;
+	}
+
+	/**
+	 * Returns the term bound to the variable of the given slot by the current
+	 * solution, without converting it. The default implementation looks up
+	 * the variable by name, through {@link #term(String)}.
+	 * 
+	 * @param slot the slot of the variable
+	 * @return the term bound to the variable
+	 * @throws UnknownVariableException if the variable is not bound by the
+	 * 		engine
+	 */
+	protected Object term(int slot) {
+		return term(variables.get(slot));
+	}
+
+	/**
+	 * Returns the term bound to the given variable by the current solution,
+	 * without converting it. The numeric getters read the numbers from it 
+	 * through the conversion policy returned by {@link #termPolicy()}. The
+	 * default implementation throws an exception, the solutions that do not 
+	 * provide terms should not override {@link #termPolicy()}.
+	 * 
+	 * @param variable the name of the variable
+	 * @return the term bound to the variable
+	 * @throws UnknownVariableException if the goal has no such variable
+	 */
+	protected Object term(String variable) {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Returns the conversion policy of the terms returned by 
+	 * {@link #term(String)}, or <code>null</code> if the solution does not 
+	 * provide terms. In the latter case the numeric getters convert the 
+	 * values returned by {@link #get(String)}. The default implementation 
+	 * returns <code>null</code>.
+	 * 
+	 * @return the conversion policy of the terms
+	 */
+	protected ConversionPolicy termPolicy() {
+		return null;
+	}
+
+	/**
+	 * Returns the value of the given variable bound by the current solution
+	 * as an int. The variable has to be bound to an integer. The value is 
+	 * read from the term directly, without converting it to an object.
+	 * 
+	 * @param variable the name of the variable
+	 * @return the value bound to the variable
+	 */
+	public int getInt(String variable) {
+		ConversionPolicy policy = termPolicy();
+		if (policy == null) {
+			return ((Number) get(variable)).intValue();
+		}
+		return policy.intValue(term(variable));
+	}
+
+	/**
+	 * Returns the value of the given variable bound by the current solution
+	 * as a long. The variable has to be bound to an integer. The value is 
+	 * read from the term directly, without converting it to an object.
+	 * 
+	 * @param variable the name of the variable
+	 * @return the value bound to the variable
+	 */
+	public long getLong(String variable) {
+		ConversionPolicy policy = termPolicy();
+		if (policy == null) {
+			return ((Number) get(variable)).longValue();
+		}
+		return policy.longValue(term(variable));
+	}
+
+	/**
+	 * Returns the value of the given variable bound by the current solution
+	 * as a double. The variable has to be bound to a number. The value is 
+	 * read from the term directly, without converting it to an object.
+	 * 
+	 * @param variable the name of the variable
+	 * @return the value bound to the variable
+	 */
+	public double getDouble(String variable) {
+		ConversionPolicy policy = termPolicy();
+		if (policy == null) {
+			return ((Number) get(variable)).doubleValue();
+		}
+		return policy.numberValue(term(variable));
+	}
+
+	/**
+	 * Returns the elements of the list bound to the given variable by the
+	 * current solution as an int array. The elements have to be integers.
+	 * They are read from the list term directly, without converting them to
+	 * objects.
+	 * 
+	 * @param variable the name of the variable
+	 * @return the elements of the list bound to the variable
+	 */
+	public int[] getIntArray(String variable) {
+		ConversionPolicy policy = termPolicy();
+		if (policy == null) {
+			List<?> list = get(variable);
+			int[] values = new int[list.size()];
+			for (int i = 0; i < values.length; ++i) {
+				values[i] = ((Number) list.get(i)).intValue();
+			}
+			return values;
+		}
+		return policy.toIntArray(term(variable));
+	}
+
+	/**
+	 * Returns the elements of the list bound to the given variable by the
+	 * current solution as a long array. The elements have to be integers.
+	 * They are read from the list term directly, without converting them to
+	 * objects.
+	 * 
+	 * @param variable the name of the variable
+	 * @return the elements of the list bound to the variable
+	 */
+	public long[] getLongArray(String variable) {
+		ConversionPolicy policy = termPolicy();
+		if (policy == null) {
+			List<?> list = get(variable);
+			long[] values = new long[list.size()];
+			for (int i = 0; i < values.length; ++i) {
+				values[i] = ((Number) list.get(i)).longValue();
+			}
+			return values;
+		}
+		return policy.toLongArray(term(variable));
+	}
+
+	/**
+	 * Returns the elements of the list bound to the given variable by the
+	 * current solution as a double array. The elements have to be numbers.
+	 * They are read from the list term directly, without converting them to
+	 * objects.
+	 * 
+	 * @param variable the name of the variable
+	 * @return the elements of the list bound to the variable
+	 */
+	public double[] getDoubleArray(String variable) {
+		ConversionPolicy policy = termPolicy();
+		if (policy == null) {
+			List<?> list = get(variable);
+			double[] values = new double[list.size()];
+			for (int i = 0; i < values.length; ++i) {
+				values[i] = ((Number) list.get(i)).doubleValue();
+			}
+			return values;
+		}
+		return policy.toDoubleArray(term(variable));
+	}
+	
 	/**
 	 * Fetches the next solution if there is one.
 	 * 
@@ -157,53 +458,273 @@ public abstract class Solution<S> implements Iterable<S> {
 	 */
 	protected abstract boolean fetch();
 	
+	/**
+	 * Releases the resources held by the engine for the open alternatives of
+	 * the goal, when the caller does not need the further solutions. It is
+	 * called at most once, by {@link #close()}, and {@link #fetch()} is not 
+	 * called afterwards. The default implementation does nothing.
+	 * <p>
+	 * This method is not called for the solutions that are reclaimed without
+	 * being closed. The resources that have to be released in that case too
+	 * should be released by an action registered by 
+	 * {@link #releaseOnClose(Runnable)}.
+	 */
+	protected void dispose() {
+	}
+
+	/**
+	 * Registers an action that releases the resources held by the engine for
+	 * the goal. The action is run when the solutions are closed, or when they
+	 * are reclaimed by the garbage collector without being closed. In the 
+	 * latter case it is run by a background thread, so it has to synchronize
+	 * with the engine. The action must not refer to the solution, otherwise
+	 * it would never be reclaimed.
+	 * 
+	 * @param action the release action
+	 */
+	protected final void releaseOnClose(Runnable action) {
+		cleanup = SolutionCleaner.register(this, action);
+	}
+
+	/**
+	 * Releases the open alternatives of the goal. The solutions cannot be 
+	 * traversed further afterwards, but the bindings of the current solution
+	 * remain accessible. Closing the solutions again has no effect.
+	 */
+	@Override
+	public synchronized void close() {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		try {
+			dispose();
+		} finally {
+			if (cleanup != null) {
+				cleanup.run();
+			}
+		}
+	}
+
+	/**
+	 * Returns whether the solutions have been closed.
+	 * 
+	 * @return <tt>true</tt> if the solutions have been closed, otherwise
+	 *         <tt>false</tt>
+	 */
+	public boolean isClosed() {
+		return closed;
+	}
+
+	/**
+	 * Returns whether the solutions are being traversed. Otherwise the
+	 * bindings read from the solutions belong to the first solution.
+	 * 
+	 * @return <tt>true</tt> if an iterator has been created over the 
+	 *         solutions, otherwise <tt>false</tt>
+	 */
+	final boolean isTraversed() {
+		return traversed;
+	}
+
+	/**
+	 * Called before a traversal of the solutions starts. The solutions that
+	 * cannot be traversed any more throw an exception.
+	 * 
+	 * @throws IllegalStateException if the solutions cannot be traversed
+	 */
+	void beforeTraversal() {
+	}
+
+	/**
+	 * Sets the executor that searches for the solutions asynchronously. It is
+	 * the executor of the prover that has created the solution.
+	 * 
+	 * @param executor the executor
+	 */
+	final void setExecutor(Executor executor) {
+		this.executor = executor;
+	}
+
 	@Override
 	public SolutionIterator<S> iterator() {
-		return new SolutionIterator<S>() {
-			/** Stores whether the next solution has already been fetched or not. */
-			private boolean fetched = true;
-			
-			/** Stores whether there is another solution or not. */
-			private boolean hasNext = isSuccess();
-			
-			@Override
-			public boolean hasNext() {
-				if (!fetched) {
-					hasNext = fetch();
-					fetched = true;
-				}
-				return hasNext;
+		return new SolutionIteratorImpl();
+	}
+
+	/**
+	 * Returns an iterator that can search for the next solution without 
+	 * blocking the calling thread. The search is performed on the executor of
+	 * the prover. (For the solutions not created by the prover or by the
+	 * asynchronous methods of a query, it is performed on the default 
+	 * executor, see {@link AbstractProver#getDefaultExecutor()}.)
+	 * 
+	 * @return an asynchronous iterator over the solutions
+	 */
+	public AsyncSolutionIterator<S> asyncIterator() {
+		return new SolutionIteratorImpl();
+	}
+
+	/**
+	 * Returns a sequential stream of the values of the variable of special
+	 * interest. The solutions are fetched on demand, so short-circuiting
+	 * operations like <code>limit</code>, <code>findFirst</code> or 
+	 * <code>anyMatch</code> do not search for the further solutions. Closing
+	 * the stream closes the solutions.
+	 * 
+	 * @return a stream of the solutions
+	 */
+	public Stream<S> stream() {
+		return StreamSupport.stream(new SolutionSpliterator(), false)
+				.onClose(this::close);
+	}
+
+	/**
+	 * Traverses the solutions in order, fetching them on demand. It cannot be
+	 * split, since the engine can search for only one solution at a time.
+	 */
+	private final class SolutionSpliterator 
+			extends Spliterators.AbstractSpliterator<S> {
+
+		/** The iterator that fetches the solutions. */
+		private final SolutionIterator<S> iterator = iterator();
+
+		/**
+		 * Creates a spliterator over the solutions.
+		 */
+		SolutionSpliterator() {
+			super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+		}
+
+		@Override
+		public boolean tryAdvance(Consumer<? super S> action) {
+			if (!iterator.hasNext()) {
+				return false;
 			}
+			action.accept(iterator.next());
+			return true;
+		}
+
+		@Override
+		public Spliterator<S> trySplit() {
+			return null;
+		}
 
-			@Override
-			public S next() {
-				if (!hasNext()) {
-					throw new NoSuchElementException();
-				}
-				fetched = false;
-				return get(defaultOutputVariable);
+	}
+
+	/**
+	 * Iterates over the solutions, fetching them on demand.
+	 */
+	private final class SolutionIteratorImpl implements AsyncSolutionIterator<S> {
+		
+		/** Stores whether the next solution has already been fetched or not. */
+		private boolean fetched = true;
+		
+		/** Stores whether there is another solution or not. */
+		private boolean hasNext;
+		
+		/**
+		 * Creates an iterator that starts with the first solution.
+		 */
+		SolutionIteratorImpl() {
+			beforeTraversal();
+			traversed = true;
+			hasNext = isSuccess();
+		}
+
+		@Override
+		public boolean hasNext() {
+			if (!fetched) {
+				hasNext = !closed && fetch();
+				fetched = true;
+			}
+			if (!hasNext) {
+				// There are no more alternatives to keep.
+				close();
 			}
+			return hasNext;
+		}
+
+		@Override
+		public void close() {
+			Solution.this.close();
+		}
+
+		@Override
+		public CompletableFuture<Boolean> hasNextAsync() {
+			if (fetched) {
+				return CompletableFuture.completedFuture(hasNext);
+			}
+			Executor searcher = executor;
+			if (searcher == null) {
+				searcher = AbstractProver.getDefaultExecutor();
+			}
+			return CompletableFuture.supplyAsync(this::hasNext, searcher);
+		}
 
-			@Override
-			public void remove() {
-				throw new UnsupportedOperationException();
+		@Override
+		public S next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
 			}
+			fetched = false;
+			return get(defaultOutputVariable);
+		}
 
-			@SuppressWarnings("unchecked")
-			@Override
-			public S get(String variable) {
-				if (clazz == null) {
-					return Solution.this.<S>get(variable);
-				}
-				return Solution.this.get(variable, clazz);
+		/**
+		 * Steps to the next solution, without converting the value of the
+		 * variable of special interest.
+		 */
+		void skip() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
 			}
+			fetched = false;
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
 
-			@Override
-			public <A> A get(String variable, Class<A> type) {
-				return Solution.this.get(variable, type);
+		@SuppressWarnings("unchecked")
+		@Override
+		public S get(String variable) {
+			if (clazz == null) {
+				return Solution.this.<S>get(variable);
 			}
+			return Solution.this.get(variable, clazz);
+		}
+
+		@Override
+		public <A> A get(String variable, Class<A> type) {
+			return Solution.this.get(variable, type);
+		}
+
+		@Override
+		public <A> A get(int slot) {
+			return Solution.this.<A>get(slot);
+		}
+
+		@Override
+		public Object[] getRow(Object[] row) {
+			return Solution.this.getRow(row);
+		}
+
+		@Override
+		public int getInt(String variable) {
+			return Solution.this.getInt(variable);
+		}
+
+		@Override
+		public long getLong(String variable) {
+			return Solution.this.getLong(variable);
+		}
+
+		@Override
+		public double getDouble(String variable) {
+			return Solution.this.getDouble(variable);
+		}
 
-		};
 	}
 
 	/**
@@ -270,6 +791,69 @@ public abstract class Solution<S> implements Iterable<S> {
 		return collect(new ArrayList<S>());
 	}
 
+	/**
+	 * Collects the values of the primary variable into an int array. The 
+	 * values have to be integers. They are read from the terms directly, 
+	 * without converting them to objects.
+	 * 
+	 * @return an array containing the values of the variable of interest
+	 */
+	public int[] toIntArray() {
+		SolutionIteratorImpl it = new SolutionIteratorImpl();
+		int[] values = new int[16];
+		int size = 0;
+		while (it.hasNext()) {
+			it.skip();
+			if (size == values.length) {
+				values = Arrays.copyOf(values, size * 2);
+			}
+			values[size++] = getInt(defaultOutputVariable);
+		}
+		return Arrays.copyOf(values, size);
+	}
+
+	/**
+	 * Collects the values of the primary variable into a long array. The 
+	 * values have to be integers. They are read from the terms directly, 
+	 * without converting them to objects.
+	 * 
+	 * @return an array containing the values of the variable of interest
+	 */
+	public long[] toLongArray() {
+		SolutionIteratorImpl it = new SolutionIteratorImpl();
+		long[] values = new long[16];
+		int size = 0;
+		while (it.hasNext()) {
+			it.skip();
+			if (size == values.length) {
+				values = Arrays.copyOf(values, size * 2);
+			}
+			values[size++] = getLong(defaultOutputVariable);
+		}
+		return Arrays.copyOf(values, size);
+	}
+
+	/**
+	 * Collects the values of the primary variable into a double array. The 
+	 * values have to be numbers. They are read from the terms directly, 
+	 * without converting them to objects.
+	 * 
+	 * @return an array containing the values of the variable of interest
+	 */
+	public double[] toDoubleArray() {
+		SolutionIteratorImpl it = new SolutionIteratorImpl();
+		double[] values = new double[16];
+		int size = 0;
+		while (it.hasNext()) {
+			it.skip();
+			if (size == values.length) {
+				values = Arrays.copyOf(values, size * 2);
+			}
+			values[size++] = getDouble(defaultOutputVariable);
+		}
+		return Arrays.copyOf(values, size);
+	}
+
 	/**
 	 * Collects the values of the variables into a {@link java.util.List List}
 	 * array.
@@ -0,0 +1,129 @@
+/* 
+ * Copyright (c) 2010 Miklos Espak
+ * All rights reserved.
+ * 
+ * Permission is hereby granted, free  of charge, to any person obtaining
+ * a  copy  of this  software  and  associated  documentation files  (the
+ * "Software"), to  deal in  the Software without  restriction, including
+ * without limitation  the rights to  use, copy, modify,  merge, publish,
+ * distribute,  sublicense, and/or sell  copies of  the Software,  and to
+ * permit persons to whom the Software  is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The  above  copyright  notice  and  this permission  notice  shall  be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE  SOFTWARE IS  PROVIDED  "AS  IS", WITHOUT  WARRANTY  OF ANY  KIND,
+ * EXPRESS OR  IMPLIED, INCLUDING  BUT NOT LIMITED  TO THE  WARRANTIES OF
+ * MERCHANTABILITY,    FITNESS    FOR    A   PARTICULAR    PURPOSE    AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE,  ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.prolog4j;
+
+import java.lang.ref.PhantomReference;
+import java.lang.ref.ReferenceQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Closes the solutions that have been reclaimed by the garbage collector
+ * without being closed. The release actions of such solutions are run by a
+ * daemon thread, so that the engines do not keep the alternatives of
+ * abandoned goals until their next goal.
+ * <p>
+ * The release actions must not refer to their solution, otherwise the 
+ * solution would never be reclaimed.
+ */
+final class SolutionCleaner {
+
+	/** The queue of the reclaimed solutions. */
+	private static final ReferenceQueue<Solution<?>> RECLAIMED = 
+		new ReferenceQueue<Solution<?>>();
+
+	/** 
+	 * The cleanups that have not been run yet. It keeps them reachable. The
+	 * cleanups are compared by identity, and they are registered by every
+	 * solve of every prover, so the set is concurrent instead of locked.
+	 */
+	private static final Set<Cleanup> PENDING = ConcurrentHashMap.newKeySet();
+
+	static {
+		Thread cleaner = new Thread("prolog4j-solution-cleaner") {
+			@Override
+			public void run() {
+				while (true) {
+					try {
+						((Cleanup) RECLAIMED.remove()).run();
+					} catch (InterruptedException e) {
+						// The cleaner runs as long as the application.
+					} catch (RuntimeException e) {
+						// The engine could not release the alternatives, but
+						// the other solutions still have to be closed.
+					}
+				}
+			}
+		};
+		cleaner.setDaemon(true);
+		cleaner.start();
+	}
+
+	/**
+	 * Private constructor to prevent instantiation.
+	 */
+	private SolutionCleaner() {
+	}
+
+	/**
+	 * Registers the release action of a solution. The action is run either by
+	 * the returned cleanup when the solution is closed, or by the cleaner
+	 * thread when the solution is reclaimed, whichever happens first.
+	 * 
+	 * @param solution the solution
+	 * @param action the release action, not referring to the solution
+	 * @return the cleanup that runs the action
+	 */
+	static Cleanup register(Solution<?> solution, Runnable action) {
+		Cleanup cleanup = new Cleanup(solution, action);
+		PENDING.add(cleanup);
+		return cleanup;
+	}
+
+	/**
+	 * Runs the release action of a solution at most once.
+	 */
+	static final class Cleanup extends PhantomReference<Solution<?>> 
+			implements Runnable {
+
+		/** The release action of the solution. */
+		private final Runnable action;
+
+		/** True if the action has already been run. */
+		private final AtomicBoolean done = new AtomicBoolean();
+
+		/**
+		 * Creates a cleanup.
+		 * 
+		 * @param solution the solution
+		 * @param action the release action of the solution
+		 */
+		private Cleanup(Solution<?> solution, Runnable action) {
+			super(solution, RECLAIMED);
+			this.action = action;
+		}
+
+		@Override
+		public void run() {
+			if (done.compareAndSet(false, true)) {
+				PENDING.remove(this);
+				clear();
+				action.run();
+			}
+		}
+
+	}
+
+}
@@ -31,11 +31,14 @@ import java.util.Iterator;
  * is the type of the values of the variable that the is of special interest.
  * Its values are returned by <tt>next()</tt>. The values of the other variables
  * can be accessed by the <tt>get()</tt> methods.
+ * <p>
+ * Closing the iterator closes the solutions that it traverses, see 
+ * {@link Solution#close()}.
  * 
  * @param <S>
  *            the type of the values of the variable that is of special interest
  */
-public interface SolutionIterator<S> extends Iterator<S> {
+public interface SolutionIterator<S> extends Iterator<S>, AutoCloseable {
 
 	/**
 	 * Returns the value of the variable bound by the current solution.
@@ -63,4 +66,68 @@ public interface SolutionIterator<S> extends Iterator<S> {
 	 */
 	<A> A get(String variable, Class<A> type);
 
+	/**
+	 * Returns the value of the variable of the given slot bound by the 
+	 * current solution, without looking up the variable by name.
+	 * 
+	 * @param <A>
+	 *            the type of the value
+	 * @param slot
+	 *            the slot of the variable
+	 * @return the value of the variable in the current solution
+	 * @see Solution#get(int)
+	 */
+	<A> A get(int slot);
+
+	/**
+	 * Returns the values of all the variables bound by the current solution,
+	 * in the order of their slots.
+	 * 
+	 * @param row
+	 *            the array to store the values in if it is large enough, or
+	 *            <code>null</code>
+	 * @return the array of the values
+	 * @see Solution#getRow(Object[])
+	 */
+	Object[] getRow(Object[] row);
+
+	/**
+	 * Returns the value of the variable bound by the current solution as an
+	 * int, without converting it to an object.
+	 * 
+	 * @param variable
+	 *            the name of the variable
+	 * @return the value of the variable in the current solution
+	 * @see Solution#getInt(String)
+	 */
+	int getInt(String variable);
+
+	/**
+	 * Returns the value of the variable bound by the current solution as a
+	 * long, without converting it to an object.
+	 * 
+	 * @param variable
+	 *            the name of the variable
+	 * @return the value of the variable in the current solution
+	 * @see Solution#getLong(String)
+	 */
+	long getLong(String variable);
+
+	/**
+	 * Returns the value of the variable bound by the current solution as a
+	 * double, without converting it to an object.
+	 * 
+	 * @param variable
+	 *            the name of the variable
+	 * @return the value of the variable in the current solution
+	 * @see Solution#getDouble(String)
+	 */
+	double getDouble(String variable);
+
+	/**
+	 * Closes the solutions traversed by the iterator.
+	 */
+	@Override
+	void close();
+
 }
@@ -0,0 +1,223 @@
+/* 
+ * Copyright (c) 2010 Miklos Espak
+ * All rights reserved.
+ * 
+ * Permission is hereby granted, free  of charge, to any person obtaining
+ * a  copy  of this  software  and  associated  documentation files  (the
+ * "Software"), to  deal in  the Software without  restriction, including
+ * without limitation  the rights to  use, copy, modify,  merge, publish,
+ * distribute,  sublicense, and/or sell  copies of  the Software,  and to
+ * permit persons to whom the Software  is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The  above  copyright  notice  and  this permission  notice  shall  be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE  SOFTWARE IS  PROVIDED  "AS  IS", WITHOUT  WARRANTY  OF ANY  KIND,
+ * EXPRESS OR  IMPLIED, INCLUDING  BUT NOT LIMITED  TO THE  WARRANTIES OF
+ * MERCHANTABILITY,    FITNESS    FOR    A   PARTICULAR    PURPOSE    AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE,  ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.prolog4j;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A goal whose answers are maintained by a prover. It is created by 
+ * {@link Prover#subscribe(String, Listener)}. The answers are the distinct
+ * values of the variables of the goal in its solutions, in the form of maps
+ * from the names of the variables to their values. They are computed once 
+ * when the subscription is created, and the listener is notified of the 
+ * added and the removed answers whenever the knowledge base is modified at a
+ * predicate that the goal depends on.
+ * <p>
+ * When a single fact is asserted or retracted, the changed answers are 
+ * derived from the fact, without solving the goal again, if the goal is 
+ * a conjunction or disjunction of calls, and the predicate of the fact is 
+ * called only by the goal itself, not by the rules of the predicates that 
+ * the goal calls. The asserted fact yields the solutions of the goal in 
+ * which a call of its predicate is unified with the fact. The answers that 
+ * the retracted fact has taken part in are checked one by one whether they 
+ * still hold. Otherwise the goal is solved again, and its answers are 
+ * compared with the previous ones.
+ * <p>
+ * The goal must not have placeholders, and it must have finitely many 
+ * solutions. The dependencies of the goal are determined as for the 
+ * {@link AnswerCache}, so the knowledge base must be modified through the 
+ * prover.
+ */
+public final class Subscription {
+
+	/**
+	 * Receives the changes of the answers of a subscription.
+	 */
+	public interface Listener {
+
+		/**
+		 * Notifies the listener that answers have been added or removed. It is
+		 * called in the thread that has modified the knowledge base, after the
+		 * modification, and it must not modify the knowledge base itself. The
+		 * initial answers are passed as added answers when the subscription 
+		 * is created, if there are any.
+		 * 
+		 * @param subscription the subscription whose answers have changed
+		 * @param added the new answers
+		 * @param removed the answers that do not hold any more
+		 */
+		void answersChanged(Subscription subscription, 
+				Set<Map<String, Object>> added, Set<Map<String, Object>> removed);
+
+	}
+
+	/** The subscriptions of the prover. */
+	private final Subscriptions subscriptions;
+
+	/** The subscribed goal. */
+	final String goal;
+
+	/** The names of the variables of the goal. */
+	final List<String> variables;
+
+	/** The names in the goal. */
+	final Set<String> names;
+
+	/** Receives the changes of the answers. */
+	private final Listener listener;
+
+	/** The current answers. */
+	private final Set<Map<String, Object>> answers = 
+		new LinkedHashSet<Map<String, Object>>();
+
+	/** The query that checks whether an answer holds, if it has been prepared. */
+	Query check;
+
+	/** Tells whether the subscription has been cancelled. */
+	private volatile boolean cancelled;
+
+	/**
+	 * Creates a subscription without answers.
+	 * 
+	 * @param subscriptions the subscriptions of the prover
+	 * @param goal the subscribed goal
+	 * @param listener receives the changes of the answers
+	 */
+	Subscription(Subscriptions subscriptions, String goal, Listener listener) {
+		this.subscriptions = subscriptions;
+		this.goal = goal;
+		this.variables = Collections.unmodifiableList(ClauseScanner.variables(goal));
+		this.names = ClauseScanner.names(goal);
+		this.listener = listener;
+	}
+
+	/**
+	 * Returns the subscribed goal.
+	 * 
+	 * @return the goal
+	 */
+	public String getGoal() {
+		return goal;
+	}
+
+	/**
+	 * Returns the names of the variables of the goal, in the order of their 
+	 * first occurrence. They are the keys of the answers.
+	 * 
+	 * @return the names of the variables
+	 */
+	public List<String> getVariables() {
+		return variables;
+	}
+
+	/**
+	 * Returns the current answers of the goal.
+	 * 
+	 * @return a snapshot of the answers
+	 */
+	public Set<Map<String, Object>> getAnswers() {
+		synchronized (answers) {
+			return Collections.unmodifiableSet(
+					new LinkedHashSet<Map<String, Object>>(answers));
+		}
+	}
+
+	/**
+	 * Returns whether the subscription has been cancelled.
+	 * 
+	 * @return <code>true</code> if the subscription has been cancelled
+	 */
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	/**
+	 * Cancels the subscription. The listener is not notified any more.
+	 */
+	public void cancel() {
+		cancelled = true;
+		subscriptions.remove(this);
+	}
+
+	/**
+	 * Returns whether the goal had an answer.
+	 * 
+	 * @param answer the answer
+	 * @return <code>true</code> if the answer is among the current answers
+	 */
+	boolean contains(Map<String, Object> answer) {
+		synchronized (answers) {
+			return answers.contains(answer);
+		}
+	}
+
+	/**
+	 * Replaces the answers, and notifies the listener of the difference.
+	 * 
+	 * @param newAnswers the new answers
+	 */
+	void replace(Set<Map<String, Object>> newAnswers) {
+		Set<Map<String, Object>> removed;
+		synchronized (answers) {
+			removed = new LinkedHashSet<Map<String, Object>>(answers);
+			removed.removeAll(newAnswers);
+		}
+		update(newAnswers, removed);
+	}
+
+	/**
+	 * Adds and removes answers, and notifies the listener of the answers 
+	 * that have actually changed.
+	 * 
+	 * @param added the answers to add
+	 * @param removed the answers to remove
+	 */
+	void update(Collection<Map<String, Object>> added, 
+			Collection<Map<String, Object>> removed) {
+		Set<Map<String, Object>> addedAnswers = new LinkedHashSet<Map<String, Object>>();
+		Set<Map<String, Object>> removedAnswers = new LinkedHashSet<Map<String, Object>>();
+		synchronized (answers) {
+			for (Map<String, Object> answer: removed) {
+				if (answers.remove(answer)) {
+					removedAnswers.add(answer);
+				}
+			}
+			for (Map<String, Object> answer: added) {
+				if (answers.add(answer)) {
+					addedAnswers.add(answer);
+				}
+			}
+		}
+		if (!cancelled && (!addedAnswers.isEmpty() || !removedAnswers.isEmpty())) {
+			listener.answersChanged(this, Collections.unmodifiableSet(addedAnswers),
+					Collections.unmodifiableSet(removedAnswers));
+		}
+	}
+
+}
@@ -0,0 +1,262 @@
+/* 
+ * Copyright (c) 2010 Miklos Espak
+ * All rights reserved.
+ * 
+ * Permission is hereby granted, free  of charge, to any person obtaining
+ * a  copy  of this  software  and  associated  documentation files  (the
+ * "Software"), to  deal in  the Software without  restriction, including
+ * without limitation  the rights to  use, copy, modify,  merge, publish,
+ * distribute,  sublicense, and/or sell  copies of  the Software,  and to
+ * permit persons to whom the Software  is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The  above  copyright  notice  and  this permission  notice  shall  be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE  SOFTWARE IS  PROVIDED  "AS  IS", WITHOUT  WARRANTY  OF ANY  KIND,
+ * EXPRESS OR  IMPLIED, INCLUDING  BUT NOT LIMITED  TO THE  WARRANTIES OF
+ * MERCHANTABILITY,    FITNESS    FOR    A   PARTICULAR    PURPOSE    AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE,  ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.prolog4j;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Maintains the answers of the subscriptions of a prover. The prover reports
+ * the modifications of its knowledge base, and the answers of the affected
+ * subscriptions are updated as described at {@link Subscription}.
+ */
+final class Subscriptions {
+
+	/** The prover whose knowledge base the goals are solved against. */
+	private final AbstractProver prover;
+
+	/** Knows the predicates called by the rules of the knowledge base. */
+	private final DependencyGraph graph;
+
+	/** The active subscriptions. */
+	private final List<Subscription> subscriptions = 
+		new CopyOnWriteArrayList<Subscription>();
+
+	/**
+	 * Creates an empty set of subscriptions.
+	 * 
+	 * @param prover the prover whose knowledge base the goals are solved 
+	 * 		against
+	 * @param graph knows the predicates called by the rules of the knowledge
+	 * 		base
+	 */
+	Subscriptions(AbstractProver prover, DependencyGraph graph) {
+		this.prover = prover;
+		this.graph = graph;
+	}
+
+	/**
+	 * Subscribes to the answers of a goal. The initial answers are computed
+	 * and passed to the listener.
+	 * 
+	 * @param goal the Prolog goal
+	 * @param listener receives the changes of the answers
+	 * @return the subscription
+	 */
+	Subscription add(String goal, Subscription.Listener listener) {
+		if (listener == null) {
+			throw new NullPointerException("listener");
+		}
+		Subscription subscription = new Subscription(this, goal, listener);
+		subscription.replace(collect(prover.solve(goal), subscription.variables));
+		subscriptions.add(subscription);
+		return subscription;
+	}
+
+	/**
+	 * Removes a subscription.
+	 * 
+	 * @param subscription the subscription
+	 */
+	void remove(Subscription subscription) {
+		subscriptions.remove(subscription);
+	}
+
+	/**
+	 * Updates the subscriptions that depend on modified predicates, by 
+	 * solving their goal again.
+	 * 
+	 * @param heads the names of the modified predicates, or <code>null</code>
+	 * 		if they are not known
+	 */
+	void update(Set<String> heads) {
+		update(heads, null, null, false);
+	}
+
+	/**
+	 * Updates the subscriptions that depend on modified predicates. If a 
+	 * single fact has been asserted or retracted, the changes are derived 
+	 * from the fact where possible.
+	 * 
+	 * @param heads the names of the modified predicates, or <code>null</code>
+	 * 		if they are not known
+	 * @param fact the asserted or retracted fact, or <code>null</code> if the
+	 * 		knowledge base has been modified otherwise
+	 * @param args the arguments of the fact
+	 * @param asserted <code>true</code> if the fact has been asserted, 
+	 * 		<code>false</code> if it has been retracted
+	 */
+	void update(Set<String> heads, String fact, Object[] args, boolean asserted) {
+		if (subscriptions.isEmpty()) {
+			return;
+		}
+		String term = fact == null || heads == null ? null : ClauseScanner.fact(fact);
+		for (Subscription subscription: subscriptions) {
+			if (heads != null 
+					&& Collections.disjoint(heads, graph.closure(subscription.names))) {
+				continue;
+			}
+			if (term == null || !derive(subscription, term, args, asserted)) {
+				subscription.replace(
+						collect(prover.solve(subscription.goal), subscription.variables));
+			}
+		}
+	}
+
+	/**
+	 * Derives the changes of the answers of a subscription from an asserted
+	 * or retracted fact, if the goal allows it.
+	 * 
+	 * @param subscription the subscription
+	 * @param term the fact without the end token
+	 * @param args the arguments of the fact
+	 * @param asserted <code>true</code> if the fact has been asserted, 
+	 * 		<code>false</code> if it has been retracted
+	 * @return <code>false</code> if the changes cannot be derived from the 
+	 * 		fact, and the goal has to be solved again
+	 */
+	private boolean derive(Subscription subscription, String term, Object[] args, 
+			boolean asserted) {
+		String goal = subscription.goal;
+		if (goal.indexOf('?') != -1) {
+			return false;
+		}
+		ClauseScanner.Head head = ClauseScanner.head(term);
+		List<int[]> calls = ClauseScanner.calls(goal, head.name, head.arity);
+		if (calls == null) {
+			return false;
+		}
+		Set<String> others = new LinkedHashSet<String>(subscription.names);
+		others.remove(head.name);
+		others.addAll(graph.calls(head.name));
+		if (graph.closure(others).contains(head.name)) {
+			return false;
+		}
+		prover.completeTables();
+		Set<Map<String, Object>> matching = new LinkedHashSet<Map<String, Object>>();
+		for (int[] call: calls) {
+			String delta = goal.substring(0, call[0]) + '(' 
+					+ goal.substring(call[0], call[1]) + " = " + term + ')' 
+					+ goal.substring(call[1]);
+			matching.addAll(collect(prover.query(delta).solve(args), 
+					subscription.variables));
+		}
+		if (asserted) {
+			subscription.update(matching, Collections.<Map<String, Object>>emptySet());
+			return true;
+		}
+		List<Map<String, Object>> removed = new ArrayList<Map<String, Object>>();
+		for (Map<String, Object> answer: matching) {
+			if (!subscription.contains(answer)) {
+				continue;
+			}
+			if (answer.containsValue(null)) {
+				return false;
+			}
+			if (!holds(subscription, answer)) {
+				removed.add(answer);
+			}
+		}
+		subscription.update(Collections.<Map<String, Object>>emptySet(), removed);
+		return true;
+	}
+
+	/**
+	 * Checks whether an answer of a subscription still holds, by solving its
+	 * goal with the variables bound to the values of the answer.
+	 * 
+	 * @param subscription the subscription
+	 * @param answer the answer
+	 * @return <code>true</code> if the goal has a solution with the answer
+	 */
+	private boolean holds(Subscription subscription, Map<String, Object> answer) {
+		if (subscription.check == null) {
+			subscription.check = prover.query(check(subscription.goal, subscription.variables));
+		}
+		Solution<Object> solution = subscription.check.solve(answer.values().toArray());
+		try {
+			return solution.isSuccess();
+		} finally {
+			solution.close();
+		}
+	}
+
+	/**
+	 * Returns a goal that checks whether another goal has a solution with 
+	 * given values of its variables. The values are passed as the arguments
+	 * of the placeholders, in the order of the variables.
+	 * 
+	 * @param goal the Prolog goal
+	 * @param variables the names of the bound variables
+	 * @return the checking goal
+	 */
+	static String check(String goal, List<String> variables) {
+		int end = ClauseScanner.end(goal);
+		StringBuilder check = new StringBuilder();
+		for (String variable: variables) {
+			check.append(variable).append(" = ?, ");
+		}
+		check.append('(').append(goal, 0, end).append(')').append(goal.substring(end));
+		return check.toString();
+	}
+
+	/**
+	 * Collects the distinct answers of a goal.
+	 * 
+	 * @param solution the solutions of the goal
+	 * @param variables the names of the variables of the goal
+	 * @return the answers
+	 */
+	static Set<Map<String, Object>> collect(Solution<?> solution, 
+			List<String> variables) {
+		Set<Map<String, Object>> answers = new LinkedHashSet<Map<String, Object>>();
+		try {
+			if (solution.isSuccess()) {
+				do {
+					Map<String, Object> answer = new LinkedHashMap<String, Object>();
+					for (String variable: variables) {
+						Object value;
+						try {
+							value = solution.get(variable);
+						} catch (UnknownVariableException e) {
+							value = null;
+						}
+						answer.put(variable, value);
+					}
+					answers.add(Collections.unmodifiableMap(answer));
+				} while (solution.fetch());
+			}
+		} finally {
+			solution.close();
+		}
+		return answers;
+	}
+
+}
@@ -0,0 +1,553 @@
+/* 
+ * Copyright (c) 2010 Miklos Espak
+ * All rights reserved.
+ * 
+ * Permission is hereby granted, free  of charge, to any person obtaining
+ * a  copy  of this  software  and  associated  documentation files  (the
+ * "Software"), to  deal in  the Software without  restriction, including
+ * without limitation  the rights to  use, copy, modify,  merge, publish,
+ * distribute,  sublicense, and/or sell  copies of  the Software,  and to
+ * permit persons to whom the Software  is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The  above  copyright  notice  and  this permission  notice  shall  be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE  SOFTWARE IS  PROVIDED  "AS  IS", WITHOUT  WARRANTY  OF ANY  KIND,
+ * EXPRESS OR  IMPLIED, INCLUDING  BUT NOT LIMITED  TO THE  WARRANTIES OF
+ * MERCHANTABILITY,    FITNESS    FOR    A   PARTICULAR    PURPOSE    AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE,  ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.prolog4j;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Tables the answers of selected predicates for the engines that do not 
+ * support tabling. The answers are stored in the knowledge base, and they are
+ * computed by a fixpoint iteration driven by the prover, so the recursive 
+ * rules of the tabled predicates terminate even if they are left recursive.
+ * <p>
+ * The rules of a tabled predicate <tt>p</tt> are renamed to 
+ * <tt>'$rule:p'</tt> when they are added to the knowledge base, and 
+ * <tt>p</tt> itself is replaced by a rule that looks up the table, 
+ * <tt>'$answer:p'</tt>. When the table is completed, every rule is evaluated
+ * with unbound arguments, and the new answers are added to the table, until
+ * no rule of any incomplete table yields a new answer. Therefore the tabled
+ * predicates have to be finite relations whose rules can be called with 
+ * unbound arguments, like the transitive closure of a graph.
+ * <p>
+ * The evaluation is semi-naive. The answers found by the last round are also
+ * stored as <tt>'$delta:p'</tt>, and each rule that calls tabled predicates
+ * is added once more as <tt>'$drule:p'</tt> for each such call, with the call 
+ * replaced by the look-up of the delta. After the first round only these 
+ * rules are evaluated, so a round joins only the new answers of the previous
+ * round. The tables fall back to evaluating every rule in each round if a 
+ * rule calls the tabled predicates in other ways than through conjunctions 
+ * and disjunctions, or through other predicates, or if its rules are 
+ * asserted, retracted or added in compiled form. The prover keeps the text
+ * of the answers in a hash set, so the new answers are found without 
+ * scanning the clauses of the table.
+ * <p>
+ * A table is cleared when a predicate that its rules depend on is modified,
+ * and it is completed again before the next goal is solved by the prover.
+ */
+final class Tables {
+
+	/** The predicates that add the new answers to a table and clear a table. */
+	private static final String LIBRARY = 
+		"'$table_store'([], _).\n"
+		+ "'$table_store'([A|As], D) :- "
+		+ "assertz(A), A =.. [_|Args], B =.. [D|Args], assertz(B), "
+		+ "'$table_store'(As, D).\n"
+		+ "'$table_clear'(A) :- retract(A), fail.\n"
+		+ "'$table_clear'(_).\n";
+
+	/** The prover whose knowledge base stores the tables. */
+	private final AbstractProver prover;
+
+	/** Knows the predicates called by the rules of the knowledge base. */
+	private final DependencyGraph graph;
+
+	/** The tables, assigned to the indicator of their predicate. */
+	private final Map<String, Table> tables = new LinkedHashMap<String, Table>();
+
+	/** True if there is a table that has to be completed. */
+	private volatile boolean incomplete;
+
+	/**
+	 * Creates an empty set of tables.
+	 * 
+	 * @param prover the prover whose knowledge base stores the tables
+	 * @param graph knows the predicates called by the rules of the knowledge
+	 * 		base
+	 */
+	Tables(AbstractProver prover, DependencyGraph graph) {
+		this.prover = prover;
+		this.graph = graph;
+	}
+
+	/**
+	 * Tables a predicate. It has no effect if the predicate is already tabled.
+	 * 
+	 * @param predicate the indicator of the predicate, <tt>name/arity</tt>
+	 * @throws IllegalArgumentException if the indicator is malformed
+	 * @throws IllegalStateException if the predicate already has clauses
+	 */
+	synchronized void add(String predicate) {
+		List<String> indicators = ClauseScanner.indicators(predicate);
+		if (indicators == null || indicators.size() != 1) {
+			throw new IllegalArgumentException("Not a predicate indicator: " + predicate);
+		}
+		String indicator = indicators.get(0);
+		if (tables.containsKey(indicator)) {
+			return;
+		}
+		if (graph.isDefined(indicator)) {
+			throw new IllegalStateException(
+					"The predicate has clauses already: " + indicator);
+		}
+		int slash = indicator.lastIndexOf('/');
+		Table table = new Table(indicator.substring(0, slash), 
+				Integer.parseInt(indicator.substring(slash + 1)));
+		if (tables.isEmpty()) {
+			prover.addTheory(LIBRARY);
+		}
+		// The lookup is added before the predicate is tabled, not to be renamed.
+		prover.addTheory(table.lookup);
+		// The delta rules of the other tables have not been made for its calls.
+		for (Table other: tables.values()) {
+			if (other.calls.contains(table.name)) {
+				other.naive = true;
+			}
+		}
+		tables.put(indicator, table);
+		incomplete = true;
+	}
+
+	/**
+	 * Returns whether there is a table that has to be completed.
+	 * 
+	 * @return <code>true</code> if a table is incomplete
+	 */
+	boolean isIncomplete() {
+		return incomplete;
+	}
+
+	/**
+	 * Returns the name that the clauses of a predicate are added by. The
+	 * clauses of the tabled predicates are renamed.
+	 * 
+	 * @param name the name of the predicate
+	 * @param arity the arity of the predicate
+	 * @return the name of the clauses in the knowledge base
+	 */
+	synchronized String clauseName(String name, int arity) {
+		Table table = tables.get(ClauseScanner.indicator(name, arity));
+		return table == null ? name : table.rulesName;
+	}
+
+	/**
+	 * Prepares the text of clauses for being added to the knowledge base. It
+	 * tables the predicates declared by <code>table</code> directives, which
+	 * are removed from the text, and renames the clauses of the tabled 
+	 * predicates. The delta rules of the renamed rules are added after them.
+	 * 
+	 * @param clauses the text of the clauses
+	 * @return the text to be added to the knowledge base
+	 */
+	String rewrite(String clauses) {
+		return rewrite(clauses, true);
+	}
+
+	/**
+	 * Prepares the text of a clause for being asserted or retracted. It 
+	 * renames the clause if it belongs to a tabled predicate, but no delta 
+	 * rule is made, so the table of a rule is evaluated naively.
+	 * 
+	 * @param clause the text of the clause
+	 * @return the text to be asserted or retracted
+	 */
+	String rewriteClause(String clause) {
+		return rewrite(clause, false);
+	}
+
+	/**
+	 * Prepares the text of clauses for being added to the knowledge base or
+	 * for being asserted or retracted.
+	 * 
+	 * @param clauses the text of the clauses
+	 * @param deltas whether the delta rules are added
+	 * @return the text to be added to the knowledge base
+	 */
+	private String rewrite(String clauses, boolean deltas) {
+		synchronized (this) {
+			if (tables.isEmpty() && clauses.indexOf("table") == -1) {
+				return clauses;
+			}
+		}
+		List<String> split = ClauseScanner.split(clauses);
+		boolean rewritten = false;
+		for (int i = 0; i < split.size(); ++i) {
+			List<String> declared = ClauseScanner.tableDirective(split.get(i));
+			if (declared != null) {
+				for (String indicator: declared) {
+					prover.table(indicator);
+				}
+				split.set(i, null);
+				rewritten = true;
+			}
+		}
+		StringBuilder sb = new StringBuilder();
+		for (String clause: split) {
+			if (clause == null) {
+				continue;
+			}
+			ClauseScanner.Head head = ClauseScanner.head(clause);
+			Table table;
+			synchronized (this) {
+				table = head == null ? null : tables.get(head.indicator());
+			}
+			if (table == null) {
+				sb.append(clause).append('\n');
+				continue;
+			}
+			sb.append(clause.substring(0, head.start)).append(table.rules)
+					.append(clause.substring(head.end)).append('\n');
+			Set<String> names = ClauseScanner.bodyNames(clause);
+			if (!names.isEmpty()) {
+				String variants = deltas ? deltaRules(table, clause, head, names) : null;
+				synchronized (this) {
+					table.calls.addAll(names);
+					if (variants == null) {
+						table.naive = true;
+					}
+				}
+				if (variants != null) {
+					sb.append(variants);
+				}
+			}
+			rewritten = true;
+		}
+		return rewritten ? sb.toString() : clauses;
+	}
+
+	/**
+	 * Makes the delta rules of a rule of a tabled predicate. A delta rule is
+	 * made for each call of a tabled predicate in the body of the rule, by 
+	 * replacing the call with the look-up of the delta of its table.
+	 * 
+	 * @param table the table of the rule
+	 * @param clause the text of the rule
+	 * @param head the head of the rule
+	 * @param names the names in the body of the rule
+	 * @return the text of the delta rules, or <code>null</code> if the calls
+	 * 		of the tabled predicates are not known
+	 */
+	private String deltaRules(Table table, String clause, ClauseScanner.Head head, 
+			Set<String> names) {
+		int neck = ClauseScanner.neck(clause);
+		if (neck == -1) {
+			return null;
+		}
+		int end = ClauseScanner.end(clause);
+		String body = clause.substring(neck, end);
+		String prefix = clause.substring(0, head.start) + table.deltaRules 
+				+ clause.substring(head.end, neck);
+		List<Table> called = new ArrayList<Table>();
+		synchronized (this) {
+			for (Table other: tables.values()) {
+				if (names.contains(other.name)) {
+					called.add(other);
+				}
+			}
+		}
+		StringBuilder sb = new StringBuilder();
+		for (Table other: called) {
+			List<int[]> calls = ClauseScanner.calls(body, other.name, other.arity);
+			if (calls == null) {
+				return null;
+			}
+			for (int[] call: calls) {
+				sb.append(prefix).append(body.substring(0, call[0])).append(other.deltas)
+						.append(body.substring(ClauseScanner.tokenEnd(body, call[0])))
+						.append(clause.substring(end)).append('\n');
+			}
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Prepares compiled clauses for being added to the knowledge base, like 
+	 * {@link #rewrite(String)}. No delta rule is made, so the tables of the
+	 * compiled rules are evaluated naively.
+	 * 
+	 * @param clauses the clauses in the form of {@link ClauseImage}
+	 * @return the clauses to be added to the knowledge base
+	 */
+	List<Object> rewrite(List<Object> clauses) {
+		List<Object> rewritten = new ArrayList<Object>(clauses.size());
+		for (Object clause: clauses) {
+			List<String> declared = ClauseImage.tableDirective(clause);
+			if (declared != null) {
+				for (String indicator: declared) {
+					prover.table(indicator);
+				}
+				continue;
+			}
+			Object head = ClauseImage.head(clause);
+			Table table;
+			synchronized (this) {
+				table = head == null ? null : tables.get(ClauseScanner.indicator(
+						ClauseImage.name(head), ClauseImage.arity(head)));
+				if (table != null) {
+					Set<String> names = ClauseImage.bodyNames(clause);
+					if (!names.isEmpty()) {
+						table.calls.addAll(names);
+						table.naive = true;
+					}
+				}
+			}
+			rewritten.add(table == null ? clause : ClauseImage.rename(clause, table.rulesName));
+		}
+		return rewritten;
+	}
+
+	/**
+	 * Marks the tables incomplete whose predicates depend on modified 
+	 * predicates. Their answers are cleared when they are completed.
+	 * 
+	 * @param heads the names of the modified predicates, or <code>null</code>
+	 * 		if they are not known
+	 */
+	synchronized void invalidate(Set<String> heads) {
+		for (Table table: tables.values()) {
+			if (!table.complete) {
+				continue;
+			}
+			if (heads == null || !Collections.disjoint(heads, 
+					graph.closure(Collections.singleton(table.name)))) {
+				table.complete = false;
+				incomplete = true;
+			}
+		}
+	}
+
+	/**
+	 * Marks every table incomplete after the knowledge base has been replaced,
+	 * so the answers are computed again. 
+	 */
+	synchronized void reset() {
+		for (Table table: tables.values()) {
+			table.complete = false;
+		}
+		incomplete = !tables.isEmpty();
+	}
+
+	/**
+	 * Completes the incomplete tables.
+	 */
+	void complete() {
+		if (!incomplete) {
+			return;
+		}
+		synchronized (this) {
+			List<Table> pending = new ArrayList<Table>();
+			for (Table table: tables.values()) {
+				if (!table.complete) {
+					pending.add(table);
+				}
+			}
+			Set<String> tabled = new HashSet<String>();
+			for (Table table: tables.values()) {
+				tabled.add(table.name);
+			}
+			for (Table table: pending) {
+				solve(table.clear);
+				table.answers.clear();
+				// The deltas of the tables are not passed through other predicates.
+				Set<String> others = new HashSet<String>(table.calls);
+				others.removeAll(tabled);
+				table.naive |= !Collections.disjoint(graph.closure(others), tabled);
+			}
+			List<List<Object>> found = new ArrayList<List<Object>>(pending.size());
+			boolean first = true;
+			boolean changed;
+			do {
+				found.clear();
+				for (Table table: pending) {
+					found.add(newAnswers(table, 
+							first || table.naive ? table.round : table.deltaRound));
+				}
+				changed = false;
+				for (int i = 0; i < pending.size(); ++i) {
+					Table table = pending.get(i);
+					solve(table.clearDelta);
+					if (!found.get(i).isEmpty()) {
+						try (Solution<Object> solution = 
+								prover.prepare(table.store).solve(found.get(i))) {
+							solution.isSuccess();
+						}
+						changed = true;
+					}
+				}
+				first = false;
+			} while (changed);
+			for (Table table: pending) {
+				table.complete = true;
+			}
+			incomplete = false;
+		}
+	}
+
+	/**
+	 * Evaluates the rules of a table, and returns the answers that are not in
+	 * the table yet. The answers are told apart by their text.
+	 * 
+	 * @param table the table
+	 * @param goal the goal that collects the answers of the rules into 
+	 * 		<tt>L</tt>
+	 * @return the new answers, as terms of the engine if the solution 
+	 * 		provides them
+	 */
+	private List<Object> newAnswers(Table table, String goal) {
+		List<Object> answers = new ArrayList<Object>();
+		try (Solution<Object> solution = prover.prepare(goal).solve()) {
+			if (!solution.isSuccess()) {
+				return answers;
+			}
+			ConversionPolicy policy = solution.termPolicy();
+			if (policy == null) {
+				for (Object answer: (List<?>) solution.get("L")) {
+					if (table.answers.add(String.valueOf(answer))) {
+						answers.add(answer);
+					}
+				}
+				return answers;
+			}
+			for (Object list = solution.term("L"); policy.isListCell(list); 
+					list = policy.getTail(list)) {
+				Object answer = policy.getHead(list);
+				if (table.answers.add(answer.toString())) {
+					answers.add(answer);
+				}
+			}
+		}
+		return answers;
+	}
+
+	/**
+	 * Solves a goal of the tables, and releases the engine.
+	 * 
+	 * @param goal the goal
+	 * @return <code>true</code> if the goal has a solution
+	 */
+	private boolean solve(String goal) {
+		try (Solution<Object> solution = prover.prepare(goal).solve()) {
+			return solution.isSuccess();
+		}
+	}
+
+	/**
+	 * The table of a predicate.
+	 */
+	private static final class Table {
+
+		/** The name of the predicate. */
+		private final String name;
+
+		/** The arity of the predicate. */
+		private final int arity;
+
+		/** The name of the renamed rules of the predicate. */
+		private final String rulesName;
+
+		/** The quoted name of the renamed rules of the predicate. */
+		private final String rules;
+
+		/** The quoted name of the delta rules of the predicate. */
+		private final String deltaRules;
+
+		/** The quoted name of the answers found by the last round. */
+		private final String deltas;
+
+		/** The clauses that look up the answers in the table. */
+		private final String lookup;
+
+		/** The goal that collects the answers of every rule. */
+		private final String round;
+
+		/** The goal that collects the answers of the delta rules. */
+		private final String deltaRound;
+
+		/** The goal that adds the new answers to the table and to the delta. */
+		private final String store;
+
+		/** The goal that removes the answers from the table. */
+		private final String clear;
+
+		/** The goal that removes the answers of the last round. */
+		private final String clearDelta;
+
+		/** The text of the answers in the table. */
+		private final Set<String> answers = new HashSet<String>();
+
+		/** The names in the bodies of the rules. */
+		private final Set<String> calls = new HashSet<String>();
+
+		/** True if every rule is evaluated in each round. */
+		private boolean naive;
+
+		/** True if the table contains every answer of the predicate. */
+		private boolean complete;
+
+		/**
+		 * Creates the table of a predicate.
+		 * 
+		 * @param name the name of the predicate
+		 * @param arity the arity of the predicate
+		 */
+		Table(String name, int arity) {
+			this.name = name;
+			this.arity = arity;
+			this.rulesName = "$rule:" + name;
+			this.rules = ClauseScanner.quote(rulesName);
+			this.deltaRules = ClauseScanner.quote("$drule:" + name);
+			this.deltas = ClauseScanner.quote("$delta:" + name);
+			StringBuilder args = new StringBuilder();
+			StringBuilder anonymous = new StringBuilder();
+			for (int i = 0; i < arity; ++i) {
+				args.append(i == 0 ? "(" : ", ").append('A').append(i);
+				anonymous.append(i == 0 ? "(" : ", ").append('_');
+			}
+			if (arity > 0) {
+				args.append(')');
+				anonymous.append(')');
+			}
+			String answers = ClauseScanner.quote("$answer:" + name);
+			String answer = answers + args;
+			// The rules and the answers are defined even if there is none.
+			lookup = ClauseScanner.quote(name) + args + " :- " + answer + ".\n" 
+					+ answer + " :- fail.\n"
+					+ deltas + args + " :- fail.\n"
+					+ rules + args + " :- fail.\n"
+					+ deltaRules + args + " :- fail.\n";
+			round = "findall(" + answer + ", " + rules + args + ", L).";
+			deltaRound = "findall(" + answer + ", " + deltaRules + args + ", L).";
+			store = "'$table_store'(?, " + deltas + ").";
+			clear = "'$table_clear'(" + answers + anonymous + ").";
+			clearDelta = "'$table_clear'(" + deltas + anonymous + ").";
+		}
+
+	}
+
+}
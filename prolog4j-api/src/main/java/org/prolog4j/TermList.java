@@ -0,0 +1,123 @@
+/* 
+ * Copyright (c) 2010 Miklos Espak
+ * All rights reserved.
+ * 
+ * Permission is hereby granted, free  of charge, to any person obtaining
+ * a  copy  of this  software  and  associated  documentation files  (the
+ * "Software"), to  deal in  the Software without  restriction, including
+ * without limitation  the rights to  use, copy, modify,  merge, publish,
+ * distribute,  sublicense, and/or sell  copies of  the Software,  and to
+ * permit persons to whom the Software  is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The  above  copyright  notice  and  this permission  notice  shall  be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE  SOFTWARE IS  PROVIDED  "AS  IS", WITHOUT  WARRANTY  OF ANY  KIND,
+ * EXPRESS OR  IMPLIED, INCLUDING  BUT NOT LIMITED  TO THE  WARRANTIES OF
+ * MERCHANTABILITY,    FITNESS    FOR    A   PARTICULAR    PURPOSE    AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE,  ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.prolog4j;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * A read-only view of a Prolog list term. The conversion policies of the
+ * engines return it instead of copying the list term. The list cells are 
+ * accessed through the conversion policy. The elements are 
+ * converted by the conversion policy when they are first accessed, and the
+ * converted elements are kept, so the list term is traversed only once. 
+ * <p>
+ * The view is not safe for concurrent access until all of its elements have
+ * been converted. It can be copied into an <tt>ArrayList</tt> by 
+ * {@link #toArrayList()}.
+ * 
+ * @param <E> the type of the elements
+ */
+public class TermList<E> extends AbstractList<E> {
+
+	/** The conversion policy that converts the elements. */
+	private final ConversionPolicy policy;
+
+	/** The list term of the elements that have not been converted yet. */
+	private Object rest;
+
+	/** The converted elements, or <code>null</code> before the first access. */
+	private Object[] elements;
+
+	/** The number of the converted elements. */
+	private int converted;
+
+	/** The number of the elements, or -1 if it has not been counted yet. */
+	private int size = -1;
+
+	/**
+	 * Creates a view of a Prolog list term.
+	 * 
+	 * @param policy the conversion policy that converts the elements
+	 * @param list the list term, it must be a proper list
+	 */
+	public TermList(ConversionPolicy policy, Object list) {
+		this.policy = policy;
+		this.rest = list;
+	}
+
+	@Override
+	public int size() {
+		if (size == -1) {
+			int count = converted;
+			for (Object list = rest; policy.isListCell(list); list = policy.getTail(list)) {
+				++count;
+			}
+			size = count;
+		}
+		return size;
+	}
+
+	@Override
+	public E get(int index) {
+		if (index < 0 || index >= size()) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+		convert(index + 1);
+		// Safe: the element has been converted by the policy into an E.
+		@SuppressWarnings("unchecked")
+		E element = (E) elements[index];
+		return element;
+	}
+
+	/**
+	 * Copies the elements into an <tt>ArrayList</tt> of the size of the list.
+	 * 
+	 * @return the new list of the elements
+	 */
+	public ArrayList<E> toArrayList() {
+		convert(size());
+		// Safe: the erased array is only read as a collection of the converted elements.
+		@SuppressWarnings("unchecked")
+		E[] converted = (E[]) elements;
+		return new ArrayList<E>(Arrays.asList(converted));
+	}
+
+	/**
+	 * Converts the elements up to the specified number.
+	 * 
+	 * @param count the number of the elements to be converted
+	 */
+	private void convert(int count) {
+		if (elements == null) {
+			elements = new Object[size()];
+		}
+		while (converted < count) {
+			elements[converted++] = policy.convertTerm(policy.getHead(rest));
+			rest = policy.getTail(rest);
+		}
+	}
+
+}
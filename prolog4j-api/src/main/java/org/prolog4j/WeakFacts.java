@@ -0,0 +1,182 @@
+/* 
+ * Copyright (c) 2010 Miklos Espak
+ * All rights reserved.
+ * 
+ * Permission is hereby granted, free  of charge, to any person obtaining
+ * a  copy  of this  software  and  associated  documentation files  (the
+ * "Software"), to  deal in  the Software without  restriction, including
+ * without limitation  the rights to  use, copy, modify,  merge, publish,
+ * distribute,  sublicense, and/or sell  copies of  the Software,  and to
+ * permit persons to whom the Software  is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The  above  copyright  notice  and  this permission  notice  shall  be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE  SOFTWARE IS  PROVIDED  "AS  IS", WITHOUT  WARRANTY  OF ANY  KIND,
+ * EXPRESS OR  IMPLIED, INCLUDING  BUT NOT LIMITED  TO THE  WARRANTIES OF
+ * MERCHANTABILITY,    FITNESS    FOR    A   PARTICULAR    PURPOSE    AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE,  ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.prolog4j;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Stores the weak facts of a prover, which are retracted when their referent
+ * is reclaimed by the garbage collector. The reclaimed referents are 
+ * collected by a daemon thread, and the facts are retracted in batches by the
+ * executor of the prover, so that the goals solved in the meantime are not
+ * slowed down. The executor runs the retractions one by one with the other 
+ * asynchronous operations of the prover, and the engines take their lock for
+ * each retraction.
+ */
+final class WeakFacts {
+
+	/** The queue of the weak facts whose referent has been reclaimed. */
+	private static final ReferenceQueue<Object> RECLAIMED = new ReferenceQueue<Object>();
+
+	static {
+		Thread cleaner = new Thread("prolog4j-weak-fact-cleaner") {
+			@Override
+			public void run() {
+				while (true) {
+					try {
+						WeakFact fact = (WeakFact) RECLAIMED.remove();
+						do {
+							fact.owner.reclaimed(fact);
+							fact = (WeakFact) RECLAIMED.poll();
+						} while (fact != null);
+					} catch (InterruptedException e) {
+						// The cleaner runs as long as the application.
+					}
+				}
+			}
+		};
+		cleaner.setDaemon(true);
+		cleaner.start();
+	}
+
+	/** The prover of the facts. */
+	private final AbstractProver prover;
+
+	/** The facts whose referent is alive. It keeps the references reachable. */
+	private final Set<WeakFact> registered = Collections.synchronizedSet(
+			Collections.newSetFromMap(new IdentityHashMap<WeakFact, Boolean>()));
+
+	/** The facts whose referent has been reclaimed, but are not retracted yet. */
+	private List<WeakFact> obsolete = new ArrayList<WeakFact>();
+
+	/** True if the retraction of the obsolete facts has been scheduled. */
+	private boolean scheduled;
+
+	/**
+	 * Creates the store of the weak facts of a prover.
+	 * 
+	 * @param prover the prover
+	 */
+	WeakFacts(AbstractProver prover) {
+		this.prover = prover;
+	}
+
+	/**
+	 * Registers a fact that has to be retracted when its referent is 
+	 * reclaimed.
+	 * 
+	 * @param referent the object whose lifetime bounds the fact
+	 * @param fact the Prolog fact
+	 * @param args the arguments of the fact, not referring to the referent
+	 */
+	void add(Object referent, String fact, Object[] args) {
+		registered.add(new WeakFact(this, referent, fact, args));
+	}
+
+	/**
+	 * Returns the number of the facts that have not been retracted yet.
+	 * 
+	 * @return the number of the weak facts
+	 */
+	int size() {
+		return registered.size();
+	}
+
+	/**
+	 * Marks a fact obsolete, and schedules the retraction of the obsolete 
+	 * facts if it has not been scheduled yet. It is called by the cleaner.
+	 * 
+	 * @param fact the fact whose referent has been reclaimed
+	 */
+	private void reclaimed(WeakFact fact) {
+		synchronized (this) {
+			obsolete.add(fact);
+			if (scheduled) {
+				return;
+			}
+			scheduled = true;
+		}
+		prover.getExecutor().execute(new Runnable() {
+			@Override
+			public void run() {
+				retractObsolete();
+			}
+		});
+	}
+
+	/**
+	 * Retracts the facts whose referent has been reclaimed.
+	 */
+	void retractObsolete() {
+		List<WeakFact> batch;
+		synchronized (this) {
+			batch = obsolete;
+			obsolete = new ArrayList<WeakFact>();
+			scheduled = false;
+		}
+		for (WeakFact fact: batch) {
+			if (registered.remove(fact)) {
+				prover.retract(fact.fact, fact.args);
+			}
+		}
+	}
+
+	/**
+	 * A fact bound to the lifetime of its referent.
+	 */
+	private static final class WeakFact extends WeakReference<Object> {
+
+		/** The store of the fact. */
+		private final WeakFacts owner;
+
+		/** The Prolog fact. */
+		private final String fact;
+
+		/** The arguments of the fact. */
+		private final Object[] args;
+
+		/**
+		 * Creates a weak fact.
+		 * 
+		 * @param owner the store of the fact
+		 * @param referent the object whose lifetime bounds the fact
+		 * @param fact the Prolog fact
+		 * @param args the arguments of the fact
+		 */
+		private WeakFact(WeakFacts owner, Object referent, String fact, Object[] args) {
+			super(referent, RECLAIMED);
+			this.owner = owner;
+			this.fact = fact;
+			this.args = args;
+		}
+
+	}
+
+}
@@ -0,0 +1,383 @@
+/* 
+ * Copyright (c) 2010 Miklos Espak
+ * All rights reserved.
+ * 
+ * Permission is hereby granted, free  of charge, to any person obtaining
+ * a  copy  of this  software  and  associated  documentation files  (the
+ * "Software"), to  deal in  the Software without  restriction, including
+ * without limitation  the rights to  use, copy, modify,  merge, publish,
+ * distribute,  sublicense, and/or sell  copies of  the Software,  and to
+ * permit persons to whom the Software  is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The  above  copyright  notice  and  this permission  notice  shall  be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE  SOFTWARE IS  PROVIDED  "AS  IS", WITHOUT  WARRANTY  OF ANY  KIND,
+ * EXPRESS OR  IMPLIED, INCLUDING  BUT NOT LIMITED  TO THE  WARRANTIES OF
+ * MERCHANTABILITY,    FITNESS    FOR    A   PARTICULAR    PURPOSE    AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE,  ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.prolog4j.jdbc;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.prolog4j.Relation;
+
+/**
+ * A relation whose rows are read from an SQL table or query through JDBC. It
+ * is registered on a prover by 
+ * {@link org.prolog4j.Prover#registerPredicate(String, Relation)}, and the 
+ * columns given to the relation are the arguments of the predicate.
+ * <p>
+ * The arguments bound to atoms and numbers become the conditions of a 
+ * <tt>WHERE</tt> clause, so the database selects the matching rows. The rows
+ * are read by a forward-only result set as the engine backtracks, the driver
+ * fetches them in batches of {@link #getBatchSize()} rows. The statements 
+ * are prepared once for each combination of bound columns, and they are 
+ * reused by the later calls.
+ * <p>
+ * The values are converted as follows: SQL <tt>NULL</tt> is an unbound 
+ * variable, integral numbers (including the decimals of scale zero) are 
+ * integers, other numbers are floating point numbers, and the other values 
+ * are atoms of their string form. A bound argument is compared to the 
+ * column by the database, so the rows that it finds equal (e.g. 
+ * <tt>1</tt> and <tt>1.0</tt>) are returned.
+ * <p>
+ * The relation uses the connection given to it, which must stay open while
+ * the relation is used. Some drivers stream the results only if the 
+ * connection is not in auto-commit mode. The relation does not know when the
+ * content of the database changes, {@link #changed()} has to be called so 
+ * that the provers drop their cached answers.
+ */
+public final class JdbcRelation extends Relation implements AutoCloseable {
+
+	/** The default number of rows fetched at once. */
+	public static final int DEFAULT_BATCH_SIZE = 1000;
+
+	/** The connection to the database. */
+	private final Connection connection;
+
+	/** The table, or the query in parentheses with an alias. */
+	private final String source;
+
+	/** The names of the columns. */
+	private final String[] columns;
+
+	/** The number of rows fetched at once. */
+	private volatile int batchSize = DEFAULT_BATCH_SIZE;
+
+	/** 
+	 * The prepared statements that are not used by a cursor, by the bound
+	 * columns of their <tt>WHERE</tt> clause.
+	 */
+	private final Map<Long, Deque<PreparedStatement>> statements = 
+		new HashMap<Long, Deque<PreparedStatement>>();
+
+	/** True if the relation has been closed. */
+	private boolean closed;
+
+	/**
+	 * Creates a relation.
+	 * 
+	 * @param connection the connection to the database
+	 * @param source the table, or the query in parentheses with an alias
+	 * @param columns the names of the columns
+	 */
+	private JdbcRelation(Connection connection, String source, String[] columns) {
+		super(columns.length);
+		if (columns.length > Long.SIZE) {
+			throw new IllegalArgumentException("Too many columns: " + columns.length);
+		}
+		this.connection = connection;
+		this.source = source;
+		this.columns = columns.clone();
+	}
+
+	/**
+	 * Creates a relation of the rows of a table.
+	 * 
+	 * @param connection the connection to the database
+	 * @param table the name of the table
+	 * @param columns the names of the columns that are the arguments of the
+	 * 		predicate
+	 * @return the relation
+	 */
+	public static JdbcRelation table(Connection connection, String table, String... columns) {
+		return new JdbcRelation(connection, table, columns);
+	}
+
+	/**
+	 * Creates a relation of the rows of a query. The query is used as a 
+	 * derived table, the bound arguments are compared to its columns in an
+	 * outer <tt>WHERE</tt> clause.
+	 * 
+	 * @param connection the connection to the database
+	 * @param query the SQL query
+	 * @param columns the names of the columns of the query that are the 
+	 * 		arguments of the predicate
+	 * @return the relation
+	 */
+	public static JdbcRelation query(Connection connection, String query, String... columns) {
+		return new JdbcRelation(connection, "(" + query + ") p4j_query", columns);
+	}
+
+	/**
+	 * Returns the number of rows fetched at once.
+	 * 
+	 * @return the batch size
+	 */
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	/**
+	 * Sets the number of rows fetched at once. It applies to the calls made
+	 * afterwards.
+	 * 
+	 * @param batchSize the batch size
+	 */
+	public void setBatchSize(int batchSize) {
+		if (batchSize < 1) {
+			throw new IllegalArgumentException("Non-positive batch size: " + batchSize);
+		}
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * Returns the SQL query selecting the rows for some bound columns.
+	 * 
+	 * @param bound the bound columns, the bits of their index
+	 * @return the query
+	 */
+	String sql(long bound) {
+		StringBuilder sql = new StringBuilder("SELECT ");
+		for (int i = 0; i < columns.length; ++i) {
+			sql.append(i == 0 ? "" : ", ").append(columns[i]);
+		}
+		sql.append(" FROM ").append(source);
+		String separator = " WHERE ";
+		for (int i = 0; i < columns.length; ++i) {
+			if ((bound & 1L << i) != 0) {
+				sql.append(separator).append(columns[i]).append(" = ?");
+				separator = " AND ";
+			}
+		}
+		return sql.toString();
+	}
+
+	/**
+	 * Takes a prepared statement for some bound columns from the cache, or
+	 * prepares a new one if every cached statement is in use.
+	 * 
+	 * @param bound the bound columns
+	 * @return the statement
+	 * @throws SQLException if the statement cannot be prepared
+	 */
+	private PreparedStatement acquire(long bound) throws SQLException {
+		synchronized (statements) {
+			if (closed) {
+				throw new IllegalStateException("The relation has been closed");
+			}
+			Deque<PreparedStatement> idle = statements.get(bound);
+			if (idle != null && !idle.isEmpty()) {
+				return idle.pop();
+			}
+		}
+		return connection.prepareStatement(sql(bound), 
+				ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+	}
+
+	/**
+	 * Gives back a prepared statement to the cache.
+	 * 
+	 * @param bound the bound columns of the statement
+	 * @param statement the statement
+	 */
+	private void release(long bound, PreparedStatement statement) {
+		synchronized (statements) {
+			if (!closed) {
+				Deque<PreparedStatement> idle = statements.get(bound);
+				if (idle == null) {
+					idle = new ArrayDeque<PreparedStatement>();
+					statements.put(bound, idle);
+				}
+				idle.push(statement);
+				return;
+			}
+		}
+		closeQuietly(statement);
+	}
+
+	/**
+	 * Closes the cached statements. The connection is not closed.
+	 */
+	@Override
+	public void close() {
+		synchronized (statements) {
+			closed = true;
+			for (Deque<PreparedStatement> idle: statements.values()) {
+				for (PreparedStatement statement: idle) {
+					closeQuietly(statement);
+				}
+			}
+			statements.clear();
+		}
+	}
+
+	/**
+	 * Closes a statement, ignoring the errors.
+	 * 
+	 * @param statement the statement
+	 */
+	private static void closeQuietly(PreparedStatement statement) {
+		try {
+			statement.close();
+		} catch (SQLException e) {
+			// The statement is not used any more.
+		}
+	}
+
+	@Override
+	public Cursor select(Object[] pattern) {
+		long bound = 0;
+		for (int i = 0; i < pattern.length; ++i) {
+			if (pattern[i] != null) {
+				bound |= 1L << i;
+			}
+		}
+		try {
+			PreparedStatement statement = acquire(bound);
+			try {
+				int parameter = 0;
+				for (Object value: pattern) {
+					if (value != null) {
+						statement.setObject(++parameter, value);
+					}
+				}
+				statement.setFetchSize(batchSize);
+				return new ResultCursor(bound, statement, statement.executeQuery());
+			} catch (SQLException e) {
+				closeQuietly(statement);
+				throw e;
+			}
+		} catch (SQLException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Converts a value read from the database to a value that the conversion
+	 * policies know.
+	 * 
+	 * @param value the value read
+	 * @return the converted value
+	 */
+	static Object value(Object value) {
+		if (value == null || value instanceof String || value instanceof Integer 
+				|| value instanceof Long || value instanceof Double || value instanceof Float) {
+			return value;
+		}
+		if (value instanceof Short || value instanceof Byte) {
+			return ((Number) value).intValue();
+		}
+		if (value instanceof BigInteger) {
+			BigInteger integer = (BigInteger) value;
+			return integer.bitLength() < Long.SIZE ? (Object) integer.longValue() : integer.toString();
+		}
+		if (value instanceof BigDecimal) {
+			BigDecimal decimal = (BigDecimal) value;
+			if (decimal.scale() <= 0 && decimal.toBigInteger().bitLength() < Long.SIZE) {
+				return decimal.longValue();
+			}
+			return decimal.doubleValue();
+		}
+		return value.toString();
+	}
+
+	/**
+	 * A cursor over the rows of a result set. The statement is given back to
+	 * the cache when the cursor is closed.
+	 */
+	private final class ResultCursor extends Cursor {
+
+		/** The bound columns of the statement. */
+		private final long bound;
+
+		/** The statement. */
+		private final PreparedStatement statement;
+
+		/** The result of the statement. */
+		private final ResultSet result;
+
+		/** True if the cursor has been closed. */
+		private boolean done;
+
+		/**
+		 * Creates a cursor.
+		 * 
+		 * @param bound the bound columns of the statement
+		 * @param statement the statement
+		 * @param result the result of the statement
+		 */
+		ResultCursor(long bound, PreparedStatement statement, ResultSet result) {
+			this.bound = bound;
+			this.statement = statement;
+			this.result = result;
+		}
+
+		@Override
+		public boolean next() {
+			if (done) {
+				return false;
+			}
+			try {
+				if (result.next()) {
+					return true;
+				}
+			} catch (SQLException e) {
+				close();
+				throw new RuntimeException(e);
+			}
+			close();
+			return false;
+		}
+
+		@Override
+		public Object get(int column) {
+			try {
+				return value(result.getObject(column + 1));
+			} catch (SQLException e) {
+				throw new RuntimeException(e);
+			}
+		}
+
+		@Override
+		public void close() {
+			if (done) {
+				return;
+			}
+			done = true;
+			try {
+				result.close();
+			} catch (SQLException e) {
+				// The statement is given back anyway.
+			}
+			release(bound, statement);
+		}
+
+	}
+
+}
@@ -0,0 +1,108 @@
+/* 
+ * Copyright (c) 2010 Miklos Espak
+ * All rights reserved.
+ * 
+ * Permission is hereby granted, free  of charge, to any person obtaining
+ * a  copy  of this  software  and  associated  documentation files  (the
+ * "Software"), to  deal in  the Software without  restriction, including
+ * without limitation  the rights to  use, copy, modify,  merge, publish,
+ * distribute,  sublicense, and/or sell  copies of  the Software,  and to
+ * permit persons to whom the Software  is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The  above  copyright  notice  and  this permission  notice  shall  be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE  SOFTWARE IS  PROVIDED  "AS  IS", WITHOUT  WARRANTY  OF ANY  KIND,
+ * EXPRESS OR  IMPLIED, INCLUDING  BUT NOT LIMITED  TO THE  WARRANTIES OF
+ * MERCHANTABILITY,    FITNESS    FOR    A   PARTICULAR    PURPOSE    AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE,  ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.prolog4j.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.prolog4j.Prover;
+import org.prolog4j.ProverFactory;
+
+/**
+ * Tests the predicates backed by an embedded H2 database.
+ */
+public class JdbcRelationTest {
+
+	/** The connection to the in-memory database. */
+	private Connection connection;
+
+	/**
+	 * Creates a table of employees in an in-memory database.
+	 */
+	@Before
+	public void setUp() throws Exception {
+		connection = DriverManager.getConnection("jdbc:h2:mem:");
+		Statement statement = connection.createStatement();
+		statement.execute("CREATE TABLE employee (name VARCHAR(20), boss VARCHAR(20), salary INT)");
+		statement.execute("INSERT INTO employee VALUES ('ann', NULL, 300), "
+				+ "('bob', 'ann', 200), ('cid', 'bob', 100), ('dan', 'bob', 100)");
+		statement.close();
+	}
+
+	/**
+	 * Closes the database.
+	 */
+	@After
+	public void tearDown() throws Exception {
+		connection.close();
+	}
+
+	/**
+	 * Tests calling the predicate of a table with bound and unbound arguments,
+	 * recursively.
+	 */
+	@Test
+	public void testTable() {
+		JdbcRelation employees = JdbcRelation.table(connection, "employee", "name", "boss", "salary");
+		employees.setBatchSize(2);
+		Prover p = ProverFactory.getProver();
+		p.registerPredicate("employee", employees);
+		p.addTheory("under(X, Y) :- employee(X, Y, _).",
+				"under(X, Z) :- employee(X, Y, _), under(Y, Z).");
+		assertEquals(Arrays.asList("ann", "bob", "cid", "dan"), 
+				p.solve("employee(X, _, _).").<String>on("X").toList());
+		assertEquals(Arrays.asList("cid", "dan"), 
+				p.solve("employee(X, bob, 100).").<String>on("X").toList());
+		assertEquals(Arrays.asList("bob", "ann"), 
+				p.solve("under(cid, X).").<String>on("X").toList());
+		assertFalse(p.solve("employee(ann, ann, _).").isSuccess());
+		assertEquals(Arrays.asList((Object) null), 
+				p.solve("employee(ann, X, _).").on("X").toList());
+		employees.close();
+	}
+
+	/**
+	 * Tests a predicate of a query.
+	 */
+	@Test
+	public void testQuery() {
+		JdbcRelation bosses = JdbcRelation.query(connection, 
+				"SELECT boss, COUNT(*) AS staff FROM employee WHERE boss IS NOT NULL GROUP BY boss",
+				"boss", "staff");
+		Prover p = ProverFactory.getProver();
+		p.registerPredicate("staff", bosses);
+		assertEquals(Arrays.asList(2L), p.solve("staff(bob, X).").<Long>on("X").toList());
+		assertEquals(Arrays.asList("ann"), p.solve("staff(X, 1).").<String>on("X").toList());
+		bosses.close();
+	}
+
+}
@@ -340,6 +340,11 @@ public class JLogConversionPolicy extends ConversionPolicy {
 		return ((jInteger) term).getIntegerValue();
 	}
 
+	@Override
+	public long longValue(Object term) {
+		return ((jInteger) term).getIntegerValue();
+	}
+
 	@Override
 	public double doubleValue(Object term) {
 		return ((jReal) term).getRealValue();
@@ -360,6 +365,21 @@ public class JLogConversionPolicy extends ConversionPolicy {
 		return convertTerm(((jPredicate) compound).getArguments().elementAt(index));
 	}
 
+	@Override
+	protected boolean isListCell(Object term) {
+		return term instanceof jListPair;
+	}
+
+	@Override
+	protected Object getHead(Object cell) {
+		return ((jListPair) cell).getHead().getTerm();
+	}
+
+	@Override
+	protected Object getTail(Object cell) {
+		return ((jListPair) cell).getTail().getTerm();
+	}
+
 	@Override
 	public boolean isInteger(Object term) {
 		return term instanceof jInteger;
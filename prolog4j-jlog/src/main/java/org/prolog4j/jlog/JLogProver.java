@@ -23,12 +23,13 @@
  */
 package org.prolog4j.jlog;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.util.List;
 
 import org.prolog4j.AbstractProver;
+import org.prolog4j.ActiveGoal;
 import org.prolog4j.Query;
 
 import ubc.cs.JLog.Foundation.jPrologAPI;
@@ -52,6 +53,13 @@ public class JLogProver extends AbstractProver {
 	 */
 	private final transient jPrologAPI engine;
 
+
+	/** 
+	 * Keeps track of the goal whose alternatives are kept by the engine, or
+	 * <code>null</code> if no goal has been solved yet.
+	 */
+	private transient ActiveGoal activeGoal;
+
 	/**
 	 * Performs no translation at all. For terms it returns the original term as
 	 * represented in JLog. This disables the automatic translation of JLog, so 
@@ -94,6 +102,19 @@ public class JLogProver extends AbstractProver {
 		return engine;
 	}
 
+	/**
+	 * Returns the tracker of the goal whose alternatives are kept by the
+	 * engine. The caller has to hold the lock of the engine.
+	 * 
+	 * @return the active goal of the engine
+	 */
+	ActiveGoal getActiveGoal() {
+		if (activeGoal == null) {
+			activeGoal = new ActiveGoal(engine, engine::stop);
+		}
+		return activeGoal;
+	}
+
 	@Override
 	public Query query(String goal) {
 		return new JLogQuery(this, goal);
@@ -106,18 +127,13 @@ public class JLogProver extends AbstractProver {
 
 	@Override
 	public void loadTheory(InputStream input) throws IOException {
-		StringBuilder sb = new StringBuilder();
-		BufferedReader br = new BufferedReader(new InputStreamReader(input));
-		String line;
-		while ((line = br.readLine()) != null) {
-			sb.append(line).append('\n');
-		}
-		engine.consultSource(sb.toString());
+		loadClauses(new InputStreamReader(input));
 	}
 
 	@Override
 	public void addTheory(String theory) {
-		engine.consultSource(theory);
+		engine.consultSource(prepareClauses(theory));
+		clausesChanged(theory);
 	}
 
 	@Override
@@ -126,7 +142,19 @@ public class JLogProver extends AbstractProver {
 		for (String factOrRule : theory) {
 			sb.append(factOrRule).append('\n');
 		}
-		engine.consultSource(sb.toString());
+		engine.consultSource(prepareClauses(sb.toString()));
+		clausesChanged(sb.toString());
 	}
 
+	/**
+	 * Consults the text of the facts at once. JLog cannot add clauses without
+	 * parsing them.
+	 * 
+	 * @param name the name of the predicate
+	 * @param facts the arguments of each fact
+	 */
+	@Override
+	protected void assertFacts(String name, List<Object[]> facts) {
+		engine.consultSource(factsToText(name, facts));
+	}
 }
@@ -24,6 +24,7 @@
 package org.prolog4j.jlog;
 
 import java.util.Hashtable;
+import java.util.List;
 
 import org.prolog4j.ConversionPolicy;
 import org.prolog4j.Query;
@@ -40,9 +41,6 @@ public class JLogQuery extends Query {
 	/** The conversion policy of the prover that is used for solving this query. */
 	private final ConversionPolicy cp;
 	
-	/** Stores the initial binding of variables. */
-	private Hashtable<String, Object> bindings;
-	
 	/**
 	 * Creates an object that represents a Prolog query in JLog.
 	 * 
@@ -50,33 +48,26 @@ public class JLogQuery extends Query {
 	 * @param goal the Prolog goal
 	 */
 	JLogQuery(JLogProver prover, String goal) {
-		super(goal);
+		super(prover, goal);
 		this.prover = prover;
 		cp = prover.getConversionPolicy();
-		this.bindings = new Hashtable<String, Object>(getPlaceholderNames().size());
 	}
 
 	@Override
 	public <A> Solution<A> solve(Object... actualArgs) {
-		int i = 0;
-		for (String var: getPlaceholderNames()) {
-			if (!bindings.contains(var)) {
-				bindings.put(var, cp.convertObject(actualArgs[i++]));
+		Object[] values = getPlaceholderValues(actualArgs);
+		List<String> placeholderNames = getPlaceholderNames();
+		// The initial binding of variables for this execution.
+		Hashtable<String, Object> bindings = 
+			new Hashtable<String, Object>(placeholderNames.size());
+		for (int i = 0; i < values.length; ++i) {
+			Object value = cp.convertObject(values[i]);
+			if (value != null) {
+				bindings.put(placeholderNames.get(i), value);
 			}
 		}
-		return new JLogSolution<A>(prover, getGoal(), bindings);
-	}
-
-	@Override
-	public Query bind(int argument, Object value) {
-		bindings.put(getPlaceholderNames().get(argument), cp.convertObject(value));
-		return this;
-	}
-
-	@Override
-	public Query bind(String variable, Object value) {
-		bindings.put(variable, cp.convertObject(value));
-		return this;
+		return new JLogSolution<A>(prover, getGoal(), bindings, getVariables(), 
+				getLimits());
 	}
 
 }
@@ -27,9 +27,13 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Hashtable;
 import java.util.List;
+import java.util.concurrent.ScheduledFuture;
 
 import org.prolog4j.ConversionPolicy;
 import org.prolog4j.InvalidQueryException;
+import org.prolog4j.LimitExceededException;
+import org.prolog4j.LimitMonitor;
+import org.prolog4j.Limits;
 import org.prolog4j.SolutionIterator;
 import org.prolog4j.UnknownVariableException;
 
@@ -62,22 +66,48 @@ public class JLogSolution<S> extends org.prolog4j.Solution<S> {
 	/** True if the query has a solution, otherwise false. */
 	private final boolean success;
 
+	/** Enforces the limits of the query, or <code>null</code> if it has none. */
+	private final LimitMonitor monitor;
+
 	/**
 	 * Constructs a JLogSolution instance.
 	 * 
 	 * @param prover the JLog prover, using which the solutions have to be found
 	 * @param goal the Prolog goal to solve
 	 * @param initialBindings the initial bindings of the variables
+	 * @param variables the names of the variables of the goal, in the order
+	 * 		of their slots
+	 * @param limits the limits of the search for the solutions
+	 * @throws UnsupportedOperationException if the query limits the number of
+	 * 		inferences
 	 */
-	JLogSolution(JLogProver prover, String goal, Hashtable<String, Object> initialBindings) {
+	JLogSolution(JLogProver prover, String goal, Hashtable<String, Object> initialBindings,
+			List<String> variables, Limits limits) {
 		super();
+		setVariables(variables);
+		if (limits.getMaxInferences() > 0) {
+			throw new UnsupportedOperationException(
+					"JLog does not report its inferences.");
+		}
 		this.conversionPolicy = prover.getConversionPolicy();
 		this.prolog = prover.getEngine();
+		this.monitor = limits.isNone() ? null : new LimitMonitor(limits);
 		try {
-			solution = prolog.query(goal, initialBindings);
+			Runnable release;
+			synchronized (prolog) {
+				ScheduledFuture<?> watch = startSearch();
+				try {
+					solution = prolog.query(goal, initialBindings);
+				} finally {
+					endSearch(watch);
+				}
+				release = prover.getActiveGoal().replace();
+			}
+			releaseOnClose(release);
 		} catch (SyntaxErrorException e) {
 			throw new InvalidQueryException(goal, e);
 		}
+		checkLimits();
 		success = solution != null;
 		if (!success || solution.size() == 0) {
 			return;
@@ -99,22 +129,28 @@ public class JLogSolution<S> extends org.prolog4j.Solution<S> {
 	@Override
 	public <A> A get(String variable) {
 		if (clazz == null) {
-			Object term = solution.get(variable);
-			if (term == null) {
-				throw new UnknownVariableException(variable);
-			}
-			return (A) conversionPolicy.convertTerm(term);
+			return (A) conversionPolicy.convertTerm(term(variable));
 		}
 		return (A) get(variable, clazz);
 	}
 
 	@Override
 	public <A> A get(String variable, Class<A> type) {
+		return (A) conversionPolicy.convertTerm(term(variable), type);
+	}
+
+	@Override
+	protected Object term(String variable) {
 		Object term = solution.get(variable);
 		if (term == null) {
 			throw new UnknownVariableException(variable);
 		}
-		return (A) conversionPolicy.convertTerm(term, type);
+		return term;
+	}
+
+	@Override
+	protected ConversionPolicy termPolicy() {
+		return conversionPolicy;
 	}
 
 	@Override
@@ -140,8 +176,57 @@ public class JLogSolution<S> extends org.prolog4j.Solution<S> {
 
 	@Override
 	protected boolean fetch() {
-		solution = prolog.retry();
+		ScheduledFuture<?> watch = startSearch();
+		try {
+			solution = prolog.retry();
+		} finally {
+			endSearch(watch);
+		}
+		checkLimits();
 		return solution != null;
 	}
 
+	/**
+	 * Starts watching the search of the engine if the query has limits.
+	 * 
+	 * @return the periodic check of the search, or <code>null</code>
+	 */
+	private ScheduledFuture<?> startSearch() {
+		if (monitor == null) {
+			return null;
+		}
+		monitor.start();
+		final jPrologAPI prolog = this.prolog;
+		return monitor.watch(new Runnable() {
+			@Override
+			public void run() {
+				prolog.stop();
+			}
+		});
+	}
+
+	/**
+	 * Stops watching the search of the engine.
+	 * 
+	 * @param watch the periodic check of the search, or <code>null</code>
+	 */
+	private void endSearch(ScheduledFuture<?> watch) {
+		if (watch != null) {
+			watch.cancel(false);
+		}
+	}
+
+	/**
+	 * Closes the solutions and throws an exception if the last search has 
+	 * exceeded a limit of the query.
+	 * 
+	 * @throws LimitExceededException if a limit has been exceeded
+	 */
+	private void checkLimits() {
+		if (monitor != null && monitor.isExceeded()) {
+			close();
+			monitor.throwIfExceeded();
+		}
+	}
+
 }
@@ -23,6 +23,14 @@
  */
 package org.prolog4j;
 
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+import org.junit.Test;
+
 /**
  * JUnit test for the JLog binding. Inherits the common test class.
  * The test for adding theories is disabled because it is not supported by
@@ -34,5 +42,30 @@ public class JLogProverTest extends ProverTest {
 	public void testAddTheory() {
 		// Temporarily disabled.
 	}
-	
+
+	/**
+	 * Tests that the engine does not support the relations and the 
+	 * checkpoints, since it cannot call Java code from its goals and cannot
+	 * enumerate its clauses.
+	 */
+	@Test
+	public void testRelationsUnsupported() throws IOException {
+		Prover prover = ProverFactory.getProver();
+		try {
+			prover.registerPredicate("planet", 1, Arrays.asList("mars"));
+			fail();
+		} catch (UnsupportedOperationException e) {
+		}
+		try {
+			prover.checkpoint(Paths.get("target", "unsupported.p4j"));
+			fail();
+		} catch (UnsupportedOperationException e) {
+		}
+		try {
+			prover.restore(Paths.get("target", "unsupported.p4j"));
+			fail();
+		} catch (UnsupportedOperationException e) {
+		}
+	}
+
 }
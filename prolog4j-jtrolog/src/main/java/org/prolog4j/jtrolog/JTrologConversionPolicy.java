@@ -348,6 +348,11 @@ public class JTrologConversionPolicy extends ConversionPolicy {
 		return ((jTrolog.terms.Number) term).intValue();
 	}
 
+	@Override
+	public long longValue(Object term) {
+		return ((jTrolog.terms.Number) term).longValue();
+	}
+
 	@Override
 	public double doubleValue(Object term) {
 		return ((jTrolog.terms.Number) term).doubleValue();
@@ -368,6 +373,22 @@ public class JTrologConversionPolicy extends ConversionPolicy {
 		return convertTerm(((Struct) compound).getArg(index));
 	}
 
+	@Override
+	protected boolean isListCell(Object term) {
+		return term instanceof Struct && ((Struct) term).arity == 2
+				&& ".".equals(((Struct) term).name);
+	}
+
+	@Override
+	protected Object getHead(Object cell) {
+		return ((Struct) cell).getArg(0);
+	}
+
+	@Override
+	protected Object getTail(Object cell) {
+		return ((Struct) cell).getArg(1);
+	}
+
 //	@Override
 //	public org.prolog4j.Term pattern(String term) {
 //		// TODO
@@ -23,12 +23,13 @@
  */
 package org.prolog4j.jtrolog;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.util.List;
 
 import org.prolog4j.AbstractProver;
+import org.prolog4j.ActiveGoal;
 import org.prolog4j.ConversionPolicy;
 import org.prolog4j.Query;
 
@@ -64,6 +65,13 @@ public class JTrologProver extends AbstractProver {
 	 */
 	private final Prolog engine;
 
+
+	/** 
+	 * Keeps track of the goal whose alternatives are kept by the engine, or
+	 * <code>null</code> if no goal has been solved yet.
+	 */
+	private transient ActiveGoal activeGoal;
+
 	/**
 	 * Creates a jTrolog prover.
 	 */
@@ -80,6 +88,19 @@ public class JTrologProver extends AbstractProver {
 		return engine;
 	}
 
+	/**
+	 * Returns the tracker of the goal whose alternatives are kept by the
+	 * engine. The caller has to hold the lock of the engine.
+	 * 
+	 * @return the active goal of the engine
+	 */
+	ActiveGoal getActiveGoal() {
+		if (activeGoal == null) {
+			activeGoal = new ActiveGoal(engine, engine::solveEnd);
+		}
+		return activeGoal;
+	}
+
 	@Override
 	public Query query(String goal) {
 		return new JTrologQuery(this, goal);
@@ -92,27 +113,19 @@ public class JTrologProver extends AbstractProver {
 		} catch (InvalidLibraryException e) {
 			throw new RuntimeException(e);
 		}
+		clausesChanged(null);
 	}
 
 	@Override
 	public void loadTheory(InputStream input) throws IOException {
-		try {
-			StringBuilder sb = new StringBuilder();
-			BufferedReader br = new BufferedReader(new InputStreamReader(input));
-			String line;
-			while ((line = br.readLine()) != null) {
-				sb.append(line).append('\n');
-			}
-			engine.addTheory(sb.toString());
-		} catch (PrologException e) {
-			e.printStackTrace();
-		}
+		loadClauses(new InputStreamReader(input));
 	}
 
 	@Override
 	public void addTheory(String theory) {
 		try {
-			engine.addTheory(theory);
+			engine.addTheory(prepareClauses(theory));
+			clausesChanged(theory);
 		} catch (PrologException e) {
 			e.printStackTrace();
 		}
@@ -125,10 +138,26 @@ public class JTrologProver extends AbstractProver {
 			sb.append(factOrRule).append('\n');
 		}
 		try {
-			engine.addTheory(sb.toString());
+			engine.addTheory(prepareClauses(sb.toString()));
+			clausesChanged(sb.toString());
 		} catch (PrologException e) {
 			e.printStackTrace();
 		}
 	}
 
+	/**
+	 * Adds the text of the facts as one theory. jTrolog cannot add clauses
+	 * without parsing them.
+	 * 
+	 * @param name the name of the predicate
+	 * @param facts the arguments of each fact
+	 */
+	@Override
+	protected void assertFacts(String name, List<Object[]> facts) {
+		try {
+			engine.addTheory(factsToText(name, facts));
+		} catch (PrologException e) {
+			e.printStackTrace();
+		}
+	}
 }
@@ -23,8 +23,6 @@
  */
 package org.prolog4j.jtrolog;
 
-import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 
 import jTrolog.errors.InvalidTermException;
@@ -37,7 +35,6 @@ import org.prolog4j.ConversionPolicy;
 import org.prolog4j.InvalidQueryException;
 import org.prolog4j.Query;
 import org.prolog4j.Solution;
-import org.prolog4j.UnknownVariableException;
 
 /**
  * The jTrolog implementation of the Query class.
@@ -45,25 +42,22 @@ import org.prolog4j.UnknownVariableException;
 public class JTrologQuery extends Query {
 
 	/** The jTrolog prover used to process this query. */
-	private JTrologProver prover;
+	private final JTrologProver prover;
 
 	/** The conversion policy of the prover that is used for solving this query. */
 	private final ConversionPolicy cp;
 
 	/** The names of the output variables of the goal. */
-	private String[] outputVarNames;
+	private final String[] outputVarNames;
 
-	/** The jTrolog representation of the goal to be solved. */
-	private Struct sGoal;
-
-	/** The jTrolog variables representing the input variables of the goal. */
-	private Var[] vars;
-	
 	/** 
-	 * This field stores those elements of {@link inputVars} that are still not
-	 * bound.
+	 * The jTrolog representation of the goal to be solved. It is shared by 
+	 * every execution, its variables are never bound.
 	 */
-	private List<Var> unboundVars;
+	private final Struct sGoal;
+
+	/** The jTrolog variables of the placeholders in the order of the placeholders. */
+	private final Var[] inputVars;
 	
 	/** The name of the variable that is of special interest when solving the goal. */
 	private String defaultVarName;
@@ -75,7 +69,7 @@ public class JTrologQuery extends Query {
 	 * @param goal the Prolog goal to be solved
 	 */
 	protected JTrologQuery(JTrologProver prover, String goal) {
-		super(goal);
+		super(prover, goal);
 		this.prover = prover;
 		this.cp = prover.getConversionPolicy();
 		Parser parser = new Parser(getGoal());
@@ -84,11 +78,13 @@ public class JTrologQuery extends Query {
 		} catch (InvalidTermException e) {
 			throw new InvalidQueryException(getGoal());
 		}
-		vars = sGoal.getVarList();
-		unboundVars = new LinkedList<Var>();
+		Var[] vars = sGoal.getVarList();
+		List<String> placeholderNames = getPlaceholderNames();
+		inputVars = new Var[placeholderNames.size()];
 		for (Var var: vars) {
-			if (getPlaceholderNames().contains(var.toString())) {
-				unboundVars.add(var);
+			int index = placeholderNames.indexOf(var.toString());
+			if (index != -1) {
+				inputVars[index] = var;
 			}
 		}
 		outputVarNames = new String[vars.length];
@@ -106,47 +102,17 @@ public class JTrologQuery extends Query {
 
 	@Override
 	public <A> Solution<A> solve(Object... actualArgs) {
-		int i = 0;
+		Object[] values = getPlaceholderValues(actualArgs);
 		Struct g = sGoal;
-		for (Var var: unboundVars) {
-			g = new Struct(
-						",", 
-						new Term[]{
-								new Struct("=", new Term[]{var, 
-										(Term) cp.convertObject(actualArgs[i++])}),
-								g});
-		}
-		return new JTrologSolution<A>(prover, g, defaultVarName, outputVarNames);
-	}
-
-	@Override
-	public Query bind(int argument, Object value) {
-		Var var = vars[argument];
-		sGoal = new Struct(
-					",", 
-					new Term[]{new Struct("=", new Term[]{var, 
-							(Term) cp.convertObject(value)}), sGoal});
-		unboundVars.remove(var);
-		return this;
-	}
-
-	@Override
-	public Query bind(String variable, Object value) {
-		Iterator<Var> it = unboundVars.iterator();
-		while (it.hasNext()) {
-			Var v = it.next();
-			if (v.toString().equals(variable)) {
-				sGoal = new Struct(
-						",", 
-						new Term[]{
-								new Struct("=", 
-										new Term[]{v, 
-										(Term) cp.convertObject(value)}), sGoal});
-				it.remove();
-				return this;
+		for (int i = inputVars.length - 1; i >= 0; --i) {
+			Term value = (Term) cp.convertObject(values[i]);
+			if (value != null) {
+				g = new Struct(",", new Term[]{
+						new Struct("=", new Term[]{inputVars[i], value}), g});
 			}
 		}
-		throw new UnknownVariableException(variable);
+		return new JTrologSolution<A>(prover, g, defaultVarName, outputVarNames,
+				getVariables(), getLimits());
 	}
 
 }
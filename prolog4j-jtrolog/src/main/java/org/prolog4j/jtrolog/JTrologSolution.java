@@ -26,8 +26,12 @@ package org.prolog4j.jtrolog;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.ScheduledFuture;
 
 import org.prolog4j.ConversionPolicy;
+import org.prolog4j.LimitExceededException;
+import org.prolog4j.LimitMonitor;
+import org.prolog4j.Limits;
 import org.prolog4j.SolutionIterator;
 import org.prolog4j.UnknownVariableException;
 
@@ -63,6 +67,9 @@ public class JTrologSolution<S> extends org.prolog4j.Solution<S> {
 	/** True if the query has a solution, otherwise false. */
 	private final boolean success;
 
+	/** Enforces the limits of the query, or <code>null</code> if it has none. */
+	private final LimitMonitor monitor;
+
 	/**
 	 * Creates a <tt>JTrologSolution</tt> object for traversing through the solutions
 	 * for a Prolog query.
@@ -71,19 +78,41 @@ public class JTrologSolution<S> extends org.prolog4j.Solution<S> {
 	 * @param sGoal a Prolog goal
 	 * @param defaultVarName the name of the output variable of special interest
 	 * @param outputVarNames the name of each output variable
+	 * @param variables the names of the variables of the goal, in the order
+	 * 		of their slots
+	 * @param limits the limits of the search for the solutions
+	 * @throws UnsupportedOperationException if the query limits the number of
+	 * 		inferences
 	 */
 	JTrologSolution(JTrologProver prover, Struct sGoal, String defaultVarName, 
-			String[] outputVarNames) {
+			String[] outputVarNames, List<String> variables, Limits limits) {
+		if (limits.getMaxInferences() > 0) {
+			throw new UnsupportedOperationException(
+					"jTrolog does not report its inferences.");
+		}
 		this.cp = prover.getConversionPolicy();
 		this.engine = prover.getEngine();
+		this.monitor = limits.isNone() ? null : new LimitMonitor(limits);
 		// this.defaultOutputVariable = defaultVarName;
 		on(defaultVarName);
 		this.outputVarNames = outputVarNames;
+		setVariables(variables);
 		try {
-			solution = engine.solve(sGoal);
+			Runnable release;
+			synchronized (engine) {
+				ScheduledFuture<?> watch = startSearch();
+				try {
+					solution = engine.solve(sGoal);
+				} finally {
+					endSearch(watch);
+				}
+				release = prover.getActiveGoal().replace();
+			}
+			releaseOnClose(release);
 		} catch (Throwable e) {
 			throw new RuntimeException(e);
 		}
+		checkLimits();
 		success = solution.success();
 	}
 
@@ -95,24 +124,28 @@ public class JTrologSolution<S> extends org.prolog4j.Solution<S> {
 	@Override
 	public <A> A get(String variable) {
 		if (clazz == null) {
-			Term binding = solution.getBinding(variable);
-			if (binding == null) {
-				throw new UnknownVariableException(variable);
-			}
-//			return (A) prover.getConversionPolicy().convertTerm(binding);
-			return (A) cp.convertTerm(binding);
+			return (A) cp.convertTerm(term(variable));
 		}
 		return (A) get(variable, clazz);
 	}
 
 	@Override
 	public <A> A get(String variable, Class<A> type) {
+		return (A) cp.convertTerm(term(variable), type);
+	}
+
+	@Override
+	protected Term term(String variable) {
 		Term binding = solution.getBinding(variable);
 		if (binding == null) {
 			throw new UnknownVariableException(variable);
 		}
-//		return (A) prover.getConversionPolicy().convertTerm(binding, type);
-		return (A) cp.convertTerm(binding, type);
+		return binding;
+	}
+
+	@Override
+	protected ConversionPolicy termPolicy() {
+		return cp;
 	}
 
 	@Override
@@ -138,14 +171,63 @@ public class JTrologSolution<S> extends org.prolog4j.Solution<S> {
 
 	@Override
 	protected boolean fetch() {
+		boolean hasNext;
+		ScheduledFuture<?> watch = startSearch();
 		try {
-			return engine.hasOpenAlternatives()
+			hasNext = engine.hasOpenAlternatives()
 						&& (solution = engine.solveNext()).success();
 		} catch (NoMorePrologSolutions e) {
 			// Should not happen.
 			throw new IllegalStateException(e);
 		} catch (Throwable e) {
 			throw new RuntimeException(e);
+		} finally {
+			endSearch(watch);
+		}
+		checkLimits();
+		return hasNext;
+	}
+
+	/**
+	 * Starts watching the search of the engine if the query has limits.
+	 * 
+	 * @return the periodic check of the search, or <code>null</code>
+	 */
+	private ScheduledFuture<?> startSearch() {
+		if (monitor == null) {
+			return null;
+		}
+		monitor.start();
+		final Prolog engine = this.engine;
+		return monitor.watch(new Runnable() {
+			@Override
+			public void run() {
+				engine.solveHalt();
+			}
+		});
+	}
+
+	/**
+	 * Stops watching the search of the engine.
+	 * 
+	 * @param watch the periodic check of the search, or <code>null</code>
+	 */
+	private void endSearch(ScheduledFuture<?> watch) {
+		if (watch != null) {
+			watch.cancel(false);
+		}
+	}
+
+	/**
+	 * Closes the solutions and throws an exception if the last search has 
+	 * exceeded a limit of the query.
+	 * 
+	 * @throws LimitExceededException if a limit has been exceeded
+	 */
+	private void checkLimits() {
+		if (monitor != null && monitor.isExceeded()) {
+			close();
+			monitor.throwIfExceeded();
 		}
 	}
 
@@ -23,8 +23,42 @@
  */
 package org.prolog4j;
 
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+import org.junit.Test;
+
 /**
  * JUnit test for the jTrolog binding. Inherits the common test class.
  */
 public class JTrologProverTest extends ProverTest {
+
+	/**
+	 * Tests that the engine does not support the relations and the 
+	 * checkpoints, since it cannot call Java code from its goals and cannot
+	 * enumerate its clauses.
+	 */
+	@Test
+	public void testRelationsUnsupported() throws IOException {
+		Prover prover = ProverFactory.getProver();
+		try {
+			prover.registerPredicate("planet", 1, Arrays.asList("mars"));
+			fail();
+		} catch (UnsupportedOperationException e) {
+		}
+		try {
+			prover.checkpoint(Paths.get("target", "unsupported.p4j"));
+			fail();
+		} catch (UnsupportedOperationException e) {
+		}
+		try {
+			prover.restore(Paths.get("target", "unsupported.p4j"));
+			fail();
+		} catch (UnsupportedOperationException e) {
+		}
+	}
+
 }
@@ -0,0 +1,153 @@
+/* 
+ * Copyright (c) 2010 Miklos Espak
+ * All rights reserved.
+ * 
+ * Permission is hereby granted, free  of charge, to any person obtaining
+ * a  copy  of this  software  and  associated  documentation files  (the
+ * "Software"), to  deal in  the Software without  restriction, including
+ * without limitation  the rights to  use, copy, modify,  merge, publish,
+ * distribute,  sublicense, and/or sell  copies of  the Software,  and to
+ * permit persons to whom the Software  is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The  above  copyright  notice  and  this permission  notice  shall  be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE  SOFTWARE IS  PROVIDED  "AS  IS", WITHOUT  WARRANTY  OF ANY  KIND,
+ * EXPRESS OR  IMPLIED, INCLUDING  BUT NOT LIMITED  TO THE  WARRANTIES OF
+ * MERCHANTABILITY,    FITNESS    FOR    A   PARTICULAR    PURPOSE    AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE,  ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.prolog4j.maven;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.prolog4j.ClauseImage;
+import org.prolog4j.tuprolog.TuPrologTheoryCompiler;
+
+import alice.tuprolog.InvalidTermException;
+
+/**
+ * Compiles the Prolog theories of a project into clause images, which are
+ * packaged with the classes. The image of <tt>foo/bar.pl</tt> is 
+ * <tt>foo/bar.pli</tt>, and it can be loaded by 
+ * <code>prover.loadCompiledTheory(getClass().getResourceAsStream("/foo/bar.pli"))</code>.
+ * 
+ * @goal compile-theories
+ * @phase process-resources
+ */
+public class CompileTheoriesMojo extends AbstractMojo {
+
+	/** The extension of the theories. */
+	private static final String THEORY_EXTENSION = ".pl";
+
+	/** The extension of the clause images. */
+	private static final String IMAGE_EXTENSION = ".pli";
+
+	/**
+	 * The directory of the theories.
+	 * 
+	 * @parameter default-value="${basedir}/src/main/prolog"
+	 */
+	private File sourceDirectory;
+
+	/**
+	 * The directory of the clause images.
+	 * 
+	 * @parameter default-value="${project.build.outputDirectory}"
+	 */
+	private File outputDirectory;
+
+	/**
+	 * The encoding of the theories.
+	 * 
+	 * @parameter default-value="${project.build.sourceEncoding}"
+	 */
+	private String encoding;
+
+	@Override
+	public void execute() throws MojoExecutionException, MojoFailureException {
+		if (!sourceDirectory.isDirectory()) {
+			getLog().info("No theories to compile in " + sourceDirectory);
+			return;
+		}
+		Charset charset = encoding == null ? Charset.defaultCharset() : Charset.forName(encoding);
+		compile(sourceDirectory, outputDirectory, charset);
+	}
+
+	/**
+	 * Compiles the theories of a directory and its subdirectories.
+	 * 
+	 * @param source the directory of the theories
+	 * @param output the directory of the images
+	 * @param charset the encoding of the theories
+	 * @throws MojoExecutionException if a theory cannot be read or an image
+	 * 		cannot be written
+	 * @throws MojoFailureException if a theory is invalid
+	 */
+	private void compile(File source, File output, Charset charset) 
+			throws MojoExecutionException, MojoFailureException {
+		File[] files = source.listFiles();
+		if (files == null) {
+			return;
+		}
+		for (File file: files) {
+			String name = file.getName();
+			if (file.isDirectory()) {
+				compile(file, new File(output, name), charset);
+			} else if (name.endsWith(THEORY_EXTENSION)) {
+				String imageName = name.substring(0, name.length() 
+						- THEORY_EXTENSION.length()) + IMAGE_EXTENSION;
+				compileTheory(file, new File(output, imageName), charset);
+			}
+		}
+	}
+
+	/**
+	 * Compiles a theory.
+	 * 
+	 * @param theory the file of the theory
+	 * @param image the file of the image
+	 * @param charset the encoding of the theory
+	 * @throws MojoExecutionException if the theory cannot be read or the 
+	 * 		image cannot be written
+	 * @throws MojoFailureException if the theory is invalid
+	 */
+	private void compileTheory(File theory, File image, Charset charset)
+			throws MojoExecutionException, MojoFailureException {
+		if (image.exists() && image.lastModified() >= theory.lastModified()) {
+			return;
+		}
+		getLog().info("Compiling " + theory);
+		List<Object> clauses;
+		try {
+			String text = new String(Files.readAllBytes(theory.toPath()), charset);
+			clauses = new TuPrologTheoryCompiler().parse(text);
+		} catch (IOException e) {
+			throw new MojoExecutionException("Cannot read " + theory, e);
+		} catch (InvalidTermException e) {
+			throw new MojoFailureException("Invalid theory " + theory + ": " + e.getMessage());
+		}
+		image.getParentFile().mkdirs();
+		try (OutputStream out = new BufferedOutputStream(new FileOutputStream(image))) {
+			ClauseImage.write(clauses, out);
+		} catch (IOException e) {
+			image.delete();
+			throw new MojoExecutionException("Cannot write " + image, e);
+		}
+	}
+
+}
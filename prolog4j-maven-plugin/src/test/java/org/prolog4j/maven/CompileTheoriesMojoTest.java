@@ -0,0 +1,149 @@
+/* 
+ * Copyright (c) 2010 Miklos Espak
+ * All rights reserved.
+ * 
+ * Permission is hereby granted, free  of charge, to any person obtaining
+ * a  copy  of this  software  and  associated  documentation files  (the
+ * "Software"), to  deal in  the Software without  restriction, including
+ * without limitation  the rights to  use, copy, modify,  merge, publish,
+ * distribute,  sublicense, and/or sell  copies of  the Software,  and to
+ * permit persons to whom the Software  is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The  above  copyright  notice  and  this permission  notice  shall  be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE  SOFTWARE IS  PROVIDED  "AS  IS", WITHOUT  WARRANTY  OF ANY  KIND,
+ * EXPRESS OR  IMPLIED, INCLUDING  BUT NOT LIMITED  TO THE  WARRANTIES OF
+ * MERCHANTABILITY,    FITNESS    FOR    A   PARTICULAR    PURPOSE    AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE,  ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.prolog4j.maven;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.apache.maven.plugin.MojoFailureException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.prolog4j.ClauseImage;
+import org.prolog4j.tuprolog.TuPrologTheoryCompiler;
+
+/**
+ * Tests compiling the theories of a project into clause images.
+ */
+public class CompileTheoriesMojoTest {
+
+	/** The theory compiled by the tests. */
+	private static final String THEORY = 
+		"parent(abraham, isaac).\n"
+		+ "parent(isaac, [jacob, esau]).\n"
+		+ "weight(isaac, 72.5).\n"
+		+ "grandparent(X, Z) :- parent(X, Y), parent(Y, Z).\n";
+
+	/** The directory of the theories and the images. */
+	private Path directory;
+
+	/** The directory of the theories. */
+	private File source;
+
+	/** The directory of the images. */
+	private File output;
+
+	/**
+	 * Creates the directories of the theories and the images.
+	 */
+	@Before
+	public void setUp() throws IOException {
+		directory = Files.createTempDirectory("theories");
+		source = directory.resolve("prolog").toFile();
+		output = directory.resolve("classes").toFile();
+		new File(source, "family").mkdirs();
+	}
+
+	/**
+	 * Deletes the directories of the theories and the images.
+	 */
+	@After
+	public void tearDown() throws IOException {
+		try (Stream<Path> files = Files.walk(directory)) {
+			files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+		}
+	}
+
+	/**
+	 * Tests that the image of a theory in a subdirectory has the same clauses
+	 * as the theory.
+	 */
+	@Test
+	public void testCompile() throws Exception {
+		Files.write(new File(source, "family/bible.pl").toPath(), THEORY.getBytes("UTF-8"));
+		mojo().execute();
+		Path image = new File(output, "family/bible.pli").toPath();
+		List<Object> clauses = new ArrayList<Object>();
+		Iterator<Object> it = ClauseImage.read(ByteBuffer.wrap(Files.readAllBytes(image)));
+		while (it.hasNext()) {
+			clauses.add(it.next());
+		}
+		assertEquals(new TuPrologTheoryCompiler().parse(THEORY), clauses);
+	}
+
+	/**
+	 * Tests that an invalid theory fails the build without leaving an image.
+	 */
+	@Test
+	public void testInvalidTheory() throws Exception {
+		Files.write(new File(source, "invalid.pl").toPath(), "parent(abraham.".getBytes("UTF-8"));
+		try {
+			mojo().execute();
+			fail();
+		} catch (MojoFailureException e) {
+		}
+		assertFalse(new File(output, "invalid.pli").exists());
+	}
+
+	/**
+	 * Creates a mojo with the parameters that Maven would inject.
+	 * 
+	 * @return the mojo
+	 */
+	private CompileTheoriesMojo mojo() throws Exception {
+		CompileTheoriesMojo mojo = new CompileTheoriesMojo();
+		set(mojo, "sourceDirectory", source);
+		set(mojo, "outputDirectory", output);
+		set(mojo, "encoding", "UTF-8");
+		return mojo;
+	}
+
+	/**
+	 * Sets a parameter of a mojo.
+	 * 
+	 * @param mojo the mojo
+	 * @param name the name of the parameter
+	 * @param value the value of the parameter
+	 */
+	private static void set(CompileTheoriesMojo mojo, String name, Object value) 
+			throws Exception {
+		Field field = CompileTheoriesMojo.class.getDeclaredField(name);
+		field.setAccessible(true);
+		field.set(mojo, value);
+	}
+
+}
@@ -24,13 +24,13 @@
 package org.prolog4j.swi;
 
 import java.lang.reflect.Array;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.ListIterator;
 
 import org.prolog4j.Compound;
 import org.prolog4j.ConversionPolicy;
 import org.prolog4j.Converter;
+import org.prolog4j.TermList;
 
 import jpl.Atom;
 import jpl.Term;
@@ -92,6 +92,21 @@ public class SWIPrologConversionPolicy extends ConversionPolicy {
 		}
 	};
 
+	/** 
+	 * True while the built-in converters of the integers, the longs, the 
+	 * doubles and the strings are in effect.
+	 */
+	private boolean builtinObjects;
+
+	/** True while the built-in converters of the number terms are in effect. */
+	private boolean builtinNumbers;
+
+	/** 
+	 * True while the built-in converter of the atoms is in effect, and no
+	 * converter has been registered by functor.
+	 */
+	private boolean builtinAtoms;
+
 	/**
 	 * Constructs a conversion policy for SWI-Prolog.
 	 */
@@ -155,13 +170,7 @@ public class SWIPrologConversionPolicy extends ConversionPolicy {
 			@Override
 			public Object convert(jpl.Compound value) {
 				if (Util.listToLength(value) != -1) {
-					Term term = value;
-					List list = new LinkedList();
-					while (term.hasFunctor(".", 2)) {
-						list.add(convertTerm(term.arg(1)));
-						term = term.arg(2);
-					}
-					return list;
+					return new TermList<Object>(SWIPrologConversionPolicy.this, value);
 				}
 				int arity = value.arity();
 				Object[] args = new Object[arity];
@@ -187,6 +196,81 @@ public class SWIPrologConversionPolicy extends ConversionPolicy {
 				return null;
 			}
 		});
+		builtinObjects = true;
+		builtinNumbers = true;
+		builtinAtoms = true;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The integers, the longs, the doubles and the strings are converted
+	 * directly while their built-in converters are in effect.
+	 */
+	@Override
+	public Object convertObject(Object object) {
+		if (builtinObjects && object != null) {
+			Class<?> objectClass = object.getClass();
+			if (objectClass == String.class) {
+				return new Atom((String) object);
+			} else if (objectClass == Integer.class) {
+				return new jpl.Integer((Integer) object);
+			} else if (objectClass == Long.class) {
+				return new jpl.Integer((Long) object);
+			} else if (objectClass == Double.class) {
+				return new jpl.Float((Double) object);
+			}
+		}
+		return super.convertObject(object);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The numbers and the atoms are converted directly while their built-in
+	 * converters are in effect.
+	 */
+	@Override
+	public Object convertTerm(Object term) {
+		if (term != null) {
+			Class<?> termClass = term.getClass();
+			if (builtinNumbers) {
+				if (termClass == jpl.Integer.class) {
+					return ((jpl.Integer) term).intValue();
+				} else if (termClass == jpl.Float.class) {
+					return ((jpl.Float) term).doubleValue();
+				}
+			}
+			if (builtinAtoms && termClass == Atom.class) {
+				return ((Atom) term).name();
+			}
+		}
+		return super.convertTerm(term);
+	}
+
+	@Override
+	public <T> void addObjectConverter(Class<T> class_, Converter<T> converter) {
+		super.addObjectConverter(class_, converter);
+		if (class_ == String.class || class_ == Integer.class 
+				|| class_ == Long.class || class_ == Double.class) {
+			builtinObjects = false;
+		}
+	}
+
+	@Override
+	protected <T> void addTermConverter(Class<T> class_, Converter<T> converter) {
+		super.addTermConverter(class_, converter);
+		if (class_ == jpl.Integer.class || class_ == jpl.Float.class) {
+			builtinNumbers = false;
+		} else if (class_ == Atom.class) {
+			builtinAtoms = false;
+		}
+	}
+
+	@Override
+	public void addTermConverter(String functor, Converter<Object> converter) {
+		super.addTermConverter(functor, converter);
+		builtinAtoms = false;
 	}
 
 	@Override
@@ -228,6 +312,11 @@ public class SWIPrologConversionPolicy extends ConversionPolicy {
 		return ((Term) term).intValue();
 	}
 
+	@Override
+	public long longValue(Object term) {
+		return ((Term) term).longValue();
+	}
+
 	@Override
 	public double doubleValue(Object term) {
 		return ((Term) term).doubleValue();
@@ -250,6 +339,21 @@ public class SWIPrologConversionPolicy extends ConversionPolicy {
 		return convertTerm(((Term) compound).arg(index + 1));
 	}
 
+	@Override
+	protected boolean isListCell(Object term) {
+		return term instanceof Term && ((Term) term).hasFunctor(".", 2);
+	}
+
+	@Override
+	protected Object getHead(Object cell) {
+		return ((Term) cell).arg(1);
+	}
+
+	@Override
+	protected Object getTail(Object cell) {
+		return ((Term) cell).arg(2);
+	}
+
 	@Override
 	public boolean isAtom(Object term) {
 		return ((Term) term).isAtom();
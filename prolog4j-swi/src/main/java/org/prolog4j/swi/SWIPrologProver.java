@@ -25,10 +25,15 @@ package org.prolog4j.swi;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
 
 import jpl.Util;
 
 import org.prolog4j.AbstractProver;
+import org.prolog4j.ConversionPolicy;
 import org.prolog4j.Query;
 
 /**
@@ -40,6 +45,9 @@ public class SWIPrologProver extends AbstractProver {
 	/** Class version for serialization. */
 	private static final long serialVersionUID = 1L;
 
+	/** The names of the predicates tabled by SWI-Prolog. */
+	private final Set<String> tabled = new CopyOnWriteArraySet<String>();
+
 	/**
 	 * Creates an SWI-Prolog prover.
 	 */
@@ -59,7 +67,7 @@ public class SWIPrologProver extends AbstractProver {
 
 	@Override
 	public void loadTheory(InputStream input) throws IOException {
-		throw new UnsupportedOperationException();
+		loadClauses(new InputStreamReader(input));
 	}
 
 	public void loadTheory(String filename) {
@@ -67,18 +75,88 @@ public class SWIPrologProver extends AbstractProver {
 //		new jpl.Query("consult", new jpl.Term[]{new jpl.Atom(filename)});
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The clauses are asserted one by one, and the directives are executed.
+	 */
 	@Override
 	public void addTheory(String theory) {
-		jpl.Query query = new jpl.Query("assertz", new jpl.Term[]{Util.textToTerm(theory)});
-		query.hasSolution();
+		// The table directives are removed.
+		for (String clause: splitClauses(prepareClauses(theory))) {
+			jpl.Term term = Util.textToTerm(clause);
+			jpl.Query query;
+			if (term.hasFunctor(":-", 1)) {
+				query = new jpl.Query(term.arg(1));
+			} else {
+				query = new jpl.Query("assertz", new jpl.Term[]{term});
+			}
+			query.hasSolution();
+		}
+		clausesChanged(theory);
 	}
 
 	@Override
 	public void addTheory(String... theory) {
 		for (String clause: theory) {
-			jpl.Query query = new jpl.Query("assertz", new jpl.Term[]{Util.textToTerm(clause)});
-			query.hasSolution();
+			addTheory(clause);
 		}
 	}
 
+	/**
+	 * Tables a predicate by the tabling of SWI-Prolog. The predicate is 
+	 * declared dynamic first, so that its clauses can be asserted. The tables
+	 * of SWI-Prolog are not updated when the predicates that they depend on
+	 * are modified, so they are abolished by 
+	 * {@link #invalidateEngineTables(Set)}.
+	 * 
+	 * @param predicate the indicator of the predicate, <tt>name/arity</tt>
+	 */
+	@Override
+	public void table(String predicate) {
+		jpl.Term indicator = Util.textToTerm(predicate);
+		new jpl.Query("dynamic", new jpl.Term[]{indicator}).hasSolution();
+		new jpl.Query("table", new jpl.Term[]{indicator}).hasSolution();
+		tabled.add(indicator.arg(1).name());
+	}
+
+	/**
+	 * Abolishes the tables of SWI-Prolog if a tabled predicate depends on the
+	 * modified predicates.
+	 * 
+	 * @param heads the names of the modified predicates, or <code>null</code>
+	 * 		if they are not known
+	 */
+	@Override
+	protected void invalidateEngineTables(Set<String> heads) {
+		if (!tabled.isEmpty() && dependsOn(heads, tabled)) {
+			new jpl.Query("abolish_all_tables").hasSolution();
+		}
+	}
+
+	/**
+	 * Creates the clauses of the facts from the converted arguments, and 
+	 * asserts them by one goal.
+	 * 
+	 * @param name the name of the predicate
+	 * @param facts the arguments of each fact
+	 */
+	@Override
+	protected void assertFacts(String name, List<Object[]> facts) {
+		ConversionPolicy cp = getConversionPolicy();
+		jpl.Term[] clauses = new jpl.Term[facts.size()];
+		int i = 0;
+		for (Object[] args: facts) {
+			jpl.Term[] terms = new jpl.Term[args.length];
+			for (int j = 0; j < args.length; ++j) {
+				jpl.Term term = (jpl.Term) cp.convertObject(args[j]);
+				terms[j] = term != null ? term : new jpl.Variable("_");
+			}
+			clauses[i++] = args.length == 0 
+					? new jpl.Atom(name) : new jpl.Compound(name, terms);
+		}
+		jpl.Query query = new jpl.Query("maplist", new jpl.Term[]{
+				new jpl.Atom("assertz"), Util.termArrayToList(clauses)});
+		query.hasSolution();
+	}
 }
@@ -89,4 +89,15 @@ public final class SWIPrologProverFactory extends AbstractProverFactory {
 		return new SWIPrologConversionPolicy();
 	}
 
+	/**
+	 * Returns <code>false</code>, since the provers share the single engine
+	 * of SWI-Prolog.
+	 * 
+	 * @return <code>false</code>
+	 */
+	@Override
+	public boolean isReplicable() {
+		return false;
+	}
+
 }
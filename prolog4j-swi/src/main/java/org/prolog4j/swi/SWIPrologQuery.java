@@ -23,43 +23,62 @@
  */
 package org.prolog4j.swi;
 
-import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import jpl.PrologException;
 import jpl.Term;
 import jpl.Util;
 import jpl.Variable;
-import jpl.fli.Prolog;
 
 import org.prolog4j.ConversionPolicy;
 import org.prolog4j.InvalidQueryException;
+import org.prolog4j.Limits;
 import org.prolog4j.Query;
 import org.prolog4j.Solution;
-import org.prolog4j.UnknownVariableException;
 
 /**
  * The tuProlog implementation of the Query class.
  */
 public class SWIPrologQuery extends Query {
-	
+
+	/** 
+	 * The variable that <code>call_with_inference_limit/3</code> binds to the
+	 * result of the search. It is not a variable of the goal.
+	 */
+	static final String INFERENCE_RESULT = "Prolog4jInferenceResult";
+
+	/** 
+	 * Calls a goal with a time limit for the search of each solution. The
+	 * alarm is uninstalled while a solution is returned, and installed again
+	 * when the goal is backtracked into. Unlike 
+	 * <code>call_with_time_limit/2</code>, it keeps the alternatives.
+	 */
+	private static final String TIME_LIMIT = "'$prolog4j_time_limit'(T, G) :- "
+			+ "setup_call_cleanup("
+			+ "alarm(T, throw(time_limit_exceeded), Id, [install(false)]), "
+			+ "(install_alarm(Id, T), call(G), "
+			+ "(uninstall_alarm(Id) ; install_alarm(Id, T), fail) "
+			+ "; uninstall_alarm(Id), fail), "
+			+ "remove_alarm(Id))";
+
+	/** True if the time limit predicate has been defined. */
+	private static boolean timeLimitDefined;
+
 	/** The tuProlog prover used to process this query. */
 	private final SWIPrologProver prover;
 	
 	/** The conversion policy of the prover that is used for solving this query. */
 	private final ConversionPolicy cp;
 	
-	/** The SWI-Prolog representation of the goal to be solved. */
-	private jpl.Term sGoal;
-
-	/** The SWI-Prolog variables representing the input variables of the goal. */
-	private Variable[] inputVars;
-	
 	/** 
-	 * This field stores those elements of {@link inputVars} that are still not
-	 * bound.
+	 * The SWI-Prolog representation of the goal to be solved. It is shared by 
+	 * every execution, its variables are never bound.
 	 */
-	private List<Variable> unboundVars;
+	private final jpl.Term sGoal;
+
+	/** The SWI-Prolog variables of the placeholders in the order of the placeholders. */
+	private final Variable[] inputVars;
 	
 	/**
 	 * Creates a SWI-Prolog query object.
@@ -68,67 +87,78 @@ public class SWIPrologQuery extends Query {
 	 * @param goal the SWI-Prolog goal to be solved
 	 */
 	SWIPrologQuery(SWIPrologProver prover, String goal) {
-		super(goal);
+		super(prover, goal);
 		this.prover = prover;
 		this.cp = prover.getConversionPolicy();
-//		List<PlaceHolder> placeholders = getPlaceholders();
 		List<String> placeholderNames = getPlaceholderNames();
 		int placeholderNo = placeholderNames.size();
 		inputVars = new Variable[placeholderNo];
-
 		try {
-		sGoal = Util.textToTerm(getGoal());
+			sGoal = Util.textToTerm(getGoal());
 		} catch (PrologException exc) {
 			throw new InvalidQueryException(getGoal());
 		}
-		for (int i = 0, index = 0; i < placeholderNo; ++i, ++index) {
-			Variable argVar = new Variable(placeholderNames.get(i));
-			Variable arg = new Variable("J__" + argVar.name());
-			sGoal = new jpl.Compound(",", new Term[]{new jpl.Compound("=", new Term[]{argVar, arg}), sGoal});
-			inputVars[index] = arg;
+		for (int i = 0; i < placeholderNo; ++i) {
+			inputVars[i] = new Variable(placeholderNames.get(i));
 		}
-//		sGoal.resolveTerm();
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The limits are enforced by SWI-Prolog itself, for the search of every
+	 * solution. The number of inferences is limited by 
+	 * <code>call_with_inference_limit/3</code>. The time is limited by an 
+	 * alarm that is installed while a solution is searched for.
+	 * 
+	 * @throws UnsupportedOperationException if the query is interruptible but
+	 * 		has neither a timeout nor an inference limit, since the searches of
+	 * 		SWI-Prolog cannot be interrupted from Java
+	 */
 	@Override
 	public <A> Solution<A> solve(Object... actualArgs) {
+		Limits limits = getLimits();
+		long timeout = limits.getTimeout(TimeUnit.NANOSECONDS);
+		long maxInferences = limits.getMaxInferences();
+		if (limits.isInterruptible() && timeout == 0 && maxInferences == 0) {
+			throw new UnsupportedOperationException(
+					"SWI-Prolog queries cannot be interrupted.");
+		}
 //		prover.reclaimObsoleteFacts();
-		int i = 0;
-//		for (Variable var: unboundVars) {
+		Object[] values = getPlaceholderValues(actualArgs);
 		jpl.Term g = sGoal;
-		for (String ph: getPlaceholderNames()) {
-			g = new jpl.Compound(
-						",", 
-						new Term[]{
-								new jpl.Compound("=", new Term[]{new Variable(ph), 
-										(Term) cp.convertObject(actualArgs[i++])}),
-								g});
+		for (int i = inputVars.length - 1; i >= 0; --i) {
+			Term value = (Term) cp.convertObject(values[i]);
+			if (value != null) {
+				g = new jpl.Compound(",", new Term[]{
+						new jpl.Compound("=", new Term[]{inputVars[i], value}), g});
+			}
+		}
+		Variable inferences = null;
+		if (maxInferences > 0) {
+			inferences = new Variable(INFERENCE_RESULT);
+			g = new jpl.Compound("call_with_inference_limit", new Term[]{
+					g, new jpl.Integer(maxInferences), inferences});
+		}
+		if (timeout > 0) {
+			defineTimeLimit();
+			g = new jpl.Compound("$prolog4j_time_limit", new Term[]{
+					new jpl.Float(timeout / 1e9), g});
 		}
-		return new SWIPrologSolution<A>(prover, g);
+		return new SWIPrologSolution<A>(prover, g, getVariables(), 
+				inferences != null ? INFERENCE_RESULT : null);
 	}
 
-	@Override
-	public Query bind(int argument, Object value) {
-		throw new UnsupportedOperationException();
-//		inputVars[argument].free();
-//		engine.unify(inputVars[argument], (Term) cp.convertObject(value));
-//		return this;
-	}
 
-	@Override
-	public Query bind(String variable, Object value) {
-		throw new UnsupportedOperationException();
-//		for (Variable v: inputVars) {
-//			if (v.isBound()) {
-//				continue;
-//			}
-//			if (v.name().equals(variable)) {
-//				v.free();
-//				Prolog.unify(v, (Term) cp.convertObject(value));
-//				return this;
-//			}
-//		}
-//		throw new UnknownVariableException(variable);
+	/**
+	 * Defines the predicate that limits the time of the searches, unless it
+	 * has been defined already.
+	 */
+	private static synchronized void defineTimeLimit() {
+		if (!timeLimitDefined) {
+			new jpl.Query("assertz", new Term[]{Util.textToTerm(TIME_LIMIT)}).hasSolution();
+			timeLimitDefined = true;
+		}
 	}
 
 }
@@ -29,10 +29,12 @@ import java.util.Hashtable;
 import java.util.List;
 import java.util.NoSuchElementException;
 
+import jpl.PrologException;
 import jpl.Term;
 import jpl.Variable;
 
 import org.prolog4j.ConversionPolicy;
+import org.prolog4j.LimitExceededException;
 import org.prolog4j.Prover;
 import org.prolog4j.ProverFactory;
 import org.prolog4j.Solution;
@@ -68,21 +70,33 @@ public class SWIPrologSolution<S> extends Solution<S> {
 	/** True if the query has a solution, otherwise false. */
 	private final boolean success;
 
+	/** 
+	 * The variable bound to the result of the inference limit, or 
+	 * <code>null</code> if the number of inferences is not limited.
+	 */
+	private final String inferenceResult;
+
 	/**
 	 * Creates an object, using which the solutions of a query can be accessed.
 	 * 
 	 * @param prover the SWI-Prolog prover
 	 * @param goal the goal to be solved
+	 * @param variables the names of the variables of the goal, in the order
+	 * 		of their slots
+	 * @param inferenceResult the variable bound to the result of the 
+	 * 		inference limit, or <code>null</code> if there is no such limit
 	 */
-	SWIPrologSolution(Prover prover, Term goal) {
+	SWIPrologSolution(Prover prover, Term goal, List<String> variables, 
+			String inferenceResult) {
 		this.prover = prover;
+		setVariables(variables);
 		this.cp = prover.getConversionPolicy();
+		this.inferenceResult = inferenceResult;
 		query = new jpl.Query(goal);
-		success = query.hasMoreSolutions();
+		success = next();
 		if (!success) {
 			return;
 		}
-		solution = query.nextSolution();
 		vars = new ArrayList(solution.keySet());
 		if (vars.size() > 0) {
 			// defaultOutputVariable = varName(vars.size() - 1);
@@ -108,22 +122,28 @@ public class SWIPrologSolution<S> extends Solution<S> {
 	@Override
 	public <A> A get(String variable) {
 		if (clazz == null) {
-			Term term = solution.get(variable);
-			if (term == null) {
-				throw new UnknownVariableException(variable);
-			}
-			return (A) cp.convertTerm(term);
+			return (A) cp.convertTerm(term(variable));
 		}
 		return (A) get(variable, clazz);
 	}
 
 	@Override
 	public <A> A get(String variable, Class<A> type) {
+		return (A) cp.convertTerm(term(variable), type);
+	}
+
+	@Override
+	protected Term term(String variable) {
 		Term term = solution.get(variable);
 		if (term == null) {
 			throw new UnknownVariableException(variable);
 		}
-		return (A) cp.convertTerm(term, type);
+		return term;
+	}
+
+	@Override
+	protected ConversionPolicy termPolicy() {
+		return cp;
 	}
 
 	@Override
@@ -149,11 +169,43 @@ public class SWIPrologSolution<S> extends Solution<S> {
 
 	@Override
 	protected boolean fetch() {
-		boolean hasNext = query.hasMoreSolutions();
-		if (hasNext) {
-			solution = query.nextSolution();
+		return next();
+	}
+
+	/**
+	 * Searches for the next solution, and closes the solutions if the search
+	 * has exceeded a limit of the query.
+	 * 
+	 * @return <code>true</code> if there was another solution, otherwise
+	 * 		<code>false</code>
+	 * @throws LimitExceededException if a limit has been exceeded
+	 */
+	private boolean next() {
+		try {
+			if (!query.hasMoreSolutions()) {
+				return false;
+			}
+		} catch (PrologException e) {
+			if (e.term().hasFunctor("time_limit_exceeded", 0)) {
+				close();
+				throw new LimitExceededException(LimitExceededException.Reason.TIMEOUT);
+			}
+			throw e;
 		}
-		return hasNext;
+		solution = query.nextSolution();
+		if (inferenceResult != null
+				&& solution.remove(inferenceResult).hasFunctor("inference_limit_exceeded", 0)) {
+			close();
+			throw new LimitExceededException(LimitExceededException.Reason.INFERENCES);
+		}
+		return true;
+	}
+
+	@Override
+	protected void dispose() {
+		// The jpl query is bound to the thread that has opened it, so it is not
+		// released by the background thread when the solution is reclaimed.
+		query.close();
 	}
 
 }
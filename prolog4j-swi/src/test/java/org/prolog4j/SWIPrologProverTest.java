@@ -23,6 +23,15 @@
  */
 package org.prolog4j;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
 import org.junit.Test;
 
 /**
@@ -36,4 +45,65 @@ public class SWIPrologProverTest extends ProverTest {
 		// SWI-Prolog does not need a period at the end of queries.
 	}
 
+	/**
+	 * SWI-Prolog has a single engine, so its pools have a single replica.
+	 */
+	@Override
+	@Test
+	public void testProverPool() {
+		try {
+			ProverFactory.createProverPool(2);
+			fail();
+		} catch (IllegalArgumentException e) {
+		}
+		ProverPool pool = ProverFactory.createProverPool(1);
+		pool.setTimeout(10, TimeUnit.SECONDS);
+		pool.addTheory("moon(phobos).", "moon(deimos).");
+		assertEquals(Arrays.asList("phobos", "deimos"), 
+				pool.<String>solve("moon(X).").toList());
+		// The single replica is given back after a single value.
+		assertEquals("phobos", pool.<String>solve("moon(X).").get());
+		try (Solution<?> deimos = pool.solve("moon(deimos).")) {
+			assertTrue(deimos.isSuccess());
+		}
+		pool.assertz("moon(?).", "luna");
+		pool.retract("moon(luna).");
+		assertEquals(2, pool.solve("moon(X).").toList().size());
+	}
+
+	/**
+	 * Tests that the time limit of a query does not cut its solutions.
+	 */
+	@Test
+	public void testTimeLimitKeepsSolutions() {
+		Query query = ProverFactory.getProver().query("member(X, [1, 2, 3]).")
+				.withLimits(Limits.NONE.withTimeout(1, TimeUnit.SECONDS));
+		assertEquals(Arrays.asList(1, 2, 3), query.<Integer>solve().toList());
+	}
+
+	/**
+	 * Tests that the engine does not support the relations and the 
+	 * checkpoints, since it cannot call Java code from its goals and cannot
+	 * enumerate its clauses.
+	 */
+	@Test
+	public void testRelationsUnsupported() throws IOException {
+		Prover prover = ProverFactory.getProver();
+		try {
+			prover.registerPredicate("planet", 1, Arrays.asList("mars"));
+			fail();
+		} catch (UnsupportedOperationException e) {
+		}
+		try {
+			prover.checkpoint(Paths.get("target", "unsupported.p4j"));
+			fail();
+		} catch (UnsupportedOperationException e) {
+		}
+		try {
+			prover.restore(Paths.get("target", "unsupported.p4j"));
+			fail();
+		} catch (UnsupportedOperationException e) {
+		}
+	}
+
 }
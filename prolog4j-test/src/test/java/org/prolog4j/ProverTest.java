@@ -23,17 +23,26 @@
  */
 package org.prolog4j;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -135,7 +144,7 @@ public class ProverTest {
 
     /**
      * Tests whether the place holders are handled correctly by
-     * {@link Query#Query(String)}.
+     * {@link Query#Query(Prover, String)}.
      */
     @Test
     public void testPlaceHolders() {
@@ -212,9 +221,9 @@ public class ProverTest {
     @Test
     public void testTestGet() {
     	Solution<Object> solve = p.solve("member(X, [2, 3, 4]), member(Y, [5, 6, 7]).");
-    	assertEquals(solve.get("X"), 2);
+    	assertEquals(solve.<Object>get("X"), 2);
     	Solution<Object> solve2 = p.solve("member(X, [2, 3, 4]), member(Y, [5, 6, 7]).");
-    	assertEquals(solve.get("Y"), 5);
+    	assertEquals(solve.<Object>get("Y"), 5);
     }
     
     /**
@@ -284,6 +293,87 @@ public class ProverTest {
         assertEquals(new Compound("functor", "arg1", "arg2"), cVal);
     }
 
+    /**
+     * Tests the numeric getters, which read the numbers from the terms.
+     */
+    @Test
+    public void testNumericGetters() {
+        Solution<Object> solution = p.solve("X = 1, Y = 2.5, L = [1, 2, 3].");
+        assertEquals(1, solution.getInt("X"));
+        assertEquals(1L, solution.getLong("X"));
+        assertEquals(1.0, solution.getDouble("X"), 0.0);
+        assertEquals(2.5, solution.getDouble("Y"), 0.0);
+        assertArrayEquals(new int[] {1, 2, 3}, solution.getIntArray("L"));
+        assertArrayEquals(new long[] {1, 2, 3}, solution.getLongArray("L"));
+        assertArrayEquals(new double[] {1, 2, 3}, solution.getDoubleArray("L"), 0.0);
+
+        StringBuilder theory = new StringBuilder();
+        int[] numbers = new int[100];
+        for (int i = 0; i < numbers.length; ++i) {
+            theory.append("numeric_fact(").append(i).append(").\n");
+            numbers[i] = i;
+        }
+        p.addTheory(theory.toString());
+        assertArrayEquals(numbers, p.solve("numeric_fact(X).").toIntArray());
+        assertEquals(4950L, sum(p.solve("numeric_fact(X).").toLongArray()));
+        SolutionIterator<Object> it = p.solve("numeric_fact(X), Y is X * 0.5.").iterator();
+        it.next();
+        it.next();
+        assertEquals(1, it.getInt("X"));
+        assertEquals(0.5, it.getDouble("Y"), 0.0);
+        it.close();
+    }
+
+    /**
+     * Tests the access of the variables by their slots.
+     */
+    @Test
+    public void testSlots() {
+        p.addTheory("slot_fact(a, 1).", "slot_fact(b, 2).");
+        Query query = p.query("slot_fact(Name, Value).");
+        assertEquals(Arrays.asList("Name", "Value"), query.getVariables());
+        int value = query.slot("Value");
+        assertEquals(1, value);
+        SolutionIterator<Object> it = query.solve().iterator();
+        it.next();
+        assertEquals(Integer.valueOf(1), it.get(value));
+        Object[] row = it.getRow(null);
+        assertArrayEquals(new Object[] {"a", 1}, row);
+        it.next();
+        assertTrue(row == it.getRow(row));
+        assertArrayEquals(new Object[] {"b", 2}, row);
+        assertFalse(it.hasNext());
+    }
+
+    /**
+     * Tests that the type of the variable of special interest is not applied
+     * to the other columns of a row.
+     */
+    @Test
+    public void testRowWithTypedVariable() {
+        p.addTheory("typed_fact(a, 1).");
+        Query query = p.query("typed_fact(Name, Value).");
+        SolutionIterator<String> it = query.solve().on("Name", String.class).iterator();
+        it.next();
+        assertArrayEquals(new Object[] {"a", 1}, it.getRow(null));
+        assertEquals(Integer.valueOf(1), it.get(query.slot("Value")));
+        assertEquals("a", it.get(query.slot("Name")));
+    }
+
+    /**
+     * Returns the sum of the elements of an array.
+     * 
+     * @param values the array
+     * @return the sum of the values
+     */
+    private static long sum(long[] values) {
+        long sum = 0;
+        for (long value: values) {
+            sum += value;
+        }
+        return sum;
+    }
+
     /**
      * Tests the default object converters added to the prover.
      */
@@ -459,6 +549,317 @@ public class ProverTest {
         assertEquals(romansExpected, romans);
     }
 
+    /**
+     * Tests that {@link Prover#solve(String, Object...)} reuses the queries
+     * prepared for the same goal.
+     */
+    @Test
+    public void testQueryCache() {
+        QueryCache cache = ((AbstractProver) p).getQueryCache();
+        long misses = cache.getMissCount();
+        long hits = cache.getHitCount();
+        assertSuccess("member(?, [cached, goal]).", "cached");
+        assertSuccess("member(?, [cached, goal]).", "goal");
+        assertFailure("member(?, [cached, goal]).", "other");
+        assertEquals(misses + 1, cache.getMissCount());
+        assertEquals(hits + 2, cache.getHitCount());
+        // The literal goals are not cached.
+        int size = cache.size();
+        assertSuccess("member(literal, [literal, goal]).");
+        assertSuccess("member(literal, [literal, goal]).");
+        assertEquals(size, cache.size());
+        assertEquals(misses + 1, cache.getMissCount());
+    }
+
+    /**
+     * Tests that the answer cache replays the solutions of a goal until a
+     * predicate that the goal depends on is modified.
+     */
+    @Test
+    public void testAnswerCache() {
+        AnswerCache cache = ((AbstractProver) p).getAnswerCache();
+        p.addTheory("colour(red).", "shade(dark).", "paint(C) :- colour(C).");
+        cache.setCapacity(16);
+        try {
+            long hits = cache.getHitCount();
+            assertEquals(Arrays.asList("red"), p.<String>solve("paint(C).").toList());
+            assertEquals(Arrays.asList("red"), p.<String>solve("paint(C).").toList());
+            assertEquals(hits + 1, cache.getHitCount());
+            p.assertz("shade(?).", "light");
+            assertEquals(1, cache.size());
+            p.assertz("colour(?).", "blue");
+            assertEquals(0, cache.size());
+            assertEquals(Arrays.asList("red", "blue"), p.<String>solve("paint(C).").toList());
+            p.retract("colour(red).");
+            assertEquals(Arrays.asList("blue"), p.<String>solve("paint(C).").toList());
+        } finally {
+            cache.setCapacity(0);
+        }
+    }
+
+    /**
+     * Tests that a left recursive tabled predicate terminates on a cyclic
+     * graph, and that its table is recomputed when the graph changes.
+     */
+    @Test
+    public void testTable() {
+        p.addTheory(
+                ":- table reach/2.",
+                "reach(X, Y) :- reach(X, Z), link(Z, Y).",
+                "reach(X, Y) :- link(X, Y).",
+                "link(a, b).",
+                "link(b, a).");
+        Set<String> reached = p.<String>solve("reach(a, X).").toSet();
+        assertEquals(new HashSet<String>(Arrays.asList("a", "b")), reached);
+        p.assertz("link(b, c).");
+        reached = p.<String>solve("reach(a, X).").toSet();
+        assertEquals(new HashSet<String>(Arrays.asList("a", "b", "c")), reached);
+    }
+
+    /**
+     * Tests that the tables of mutually recursive predicates get every
+     * answer once, when the rules are evaluated on the new answers.
+     */
+    @Test
+    public void testMutuallyRecursiveTables() {
+        p.addTheory(
+                ":- table odd/2, even/2.",
+                "odd(X, Y) :- step(X, Y).",
+                "odd(X, Y) :- even(X, Z), step(Z, Y).",
+                "even(X, Y) :- odd(X, Z), step(Z, Y).",
+                "step(0, 1).",
+                "step(1, 2).",
+                "step(2, 3).",
+                "step(3, 0).");
+        List<Object> odd = p.solve("odd(0, X).").toList();
+        assertEquals(2, odd.size());
+        assertEquals(new HashSet<Object>(Arrays.<Object>asList(1, 3)),
+                new HashSet<Object>(odd));
+        assertEquals(2, p.solve("even(0, X).").toList().size());
+    }
+
+    /**
+     * Tests that the facts added in batches can be queried.
+     */
+    @Test
+    public void testAssertAll() {
+        List<Object[]> rows = new ArrayList<Object[]>();
+        for (int i = 0; i < 100; ++i) {
+            rows.add(new Object[]{"item" + i, i});
+        }
+        p.assertAll("weight/2", rows);
+        assertSuccess("weight(item42, 42).");
+        try (FactLoader loader = p.factLoader("colour")) {
+            loader.add("sky", "blue").add("grass", "green");
+        }
+        assertEquals("green", p.solve("colour(grass, C).").get());
+    }
+
+    /**
+     * Tests that a theory file is loaded clause by clause.
+     */
+    @Test
+    public void testLoadTheoryFile() throws IOException {
+        Path file = Files.createTempFile("theory", ".pl");
+        try {
+            StringBuilder theory = new StringBuilder("% edges. of a path\n");
+            for (int i = 0; i < 1000; ++i) {
+                theory.append("edge(").append(i).append(", ").append(i + 1).append(").\n");
+            }
+            theory.append("/* the end. */ edge_label('a. b').");
+            Files.write(file, theory.toString().getBytes());
+            p.loadTheory(file);
+        } finally {
+            Files.delete(file);
+        }
+        assertSuccess("edge(999, 1000).");
+        assertEquals("a. b", p.solve("edge_label(L).").get());
+    }
+
+    /**
+     * Tests that a long theory keeps the order of its clauses.
+     */
+    @Test
+    public void testLongTheory() {
+        StringBuilder theory = new StringBuilder();
+        List<Integer> numbers = new ArrayList<Integer>();
+        for (int i = 0; i < 20000; ++i) {
+            theory.append("number_fact(").append(i).append(").\n");
+            numbers.add(i);
+        }
+        p.addTheory(theory.toString());
+        assertEquals(numbers, p.<Integer>solve("number_fact(X).").toList());
+    }
+
+    /**
+     * Tests that a theory compiled into a clause image can be loaded.
+     */
+    @Test
+    public void testLoadCompiledTheory() throws IOException {
+        ClauseImage.Variable x = new ClauseImage.Variable(0);
+        ClauseImage.Variable y = new ClauseImage.Variable(1);
+        List<Object> clauses = Arrays.<Object>asList(
+                new Compound("planet_mass", "earth", 5.97),
+                new Compound("planet_mass", "mars", 0.642),
+                new Compound(":-", new Compound("heavier_than_mars", x),
+                        new Compound(",", new Compound("planet_mass", x, y),
+                                new Compound(">", y, 0.642))));
+        ByteArrayOutputStream image = new ByteArrayOutputStream();
+        ClauseImage.write(clauses, image);
+        p.loadCompiledTheory(new ByteArrayInputStream(image.toByteArray()));
+        assertEquals(Arrays.asList("earth"), p.<String>solve("heavier_than_mars(X).").toList());
+    }
+
+    /**
+     * Tests that binding a placeholder yields a new query and leaves the
+     * original query intact.
+     */
+    @Test
+    public void testBind() {
+        Query q = p.query("member(?X, ?L).");
+        Query qb = q.bind("L", Arrays.asList(1, 2));
+        assertTrue(qb != q);
+        assertTrue(qb.solve(1).isSuccess());
+        assertFalse(qb.solve(3).isSuccess());
+        assertTrue(q.solve(3, Arrays.asList(3, 4)).isSuccess());
+        assertTrue(q.bind(0, 2).bind(1, Arrays.asList(1, 2)).solve().isSuccess());
+        assertTrue(q.solve(4, Arrays.asList(3, 4)).isSuccess());
+    }
+
+    /**
+     * Tests the asynchronous solution of goals and the asynchronous iteration
+     * over the solutions.
+     */
+    @Test
+    public void testSolveAsync() throws Exception {
+        assertSuccess(p.solveAsync("mortal(?).", "socrates").get());
+        assertFailure(p.query("mortal(?).").solveAsync("zeus").get());
+        Query q = p.queryAsync("member(X, [1, 2, 3]).").get();
+        AsyncSolutionIterator<Object> it = q.solveAsync().get().asyncIterator();
+        List<Object> list = new ArrayList<Object>();
+        while (it.hasNextAsync().get()) {
+            list.add(it.next());
+        }
+        assertEquals(Arrays.asList(1, 2, 3), list);
+    }
+
+    /**
+     * Tests that the streams of the solutions fetch only the solutions that
+     * are consumed.
+     */
+    @Test
+    public void testStream() {
+        p.addTheory(
+                "natural(0).",
+                "natural(N) :- natural(M), N is M + 1.");
+        List<Object> first = p.solve("natural(X).").stream()
+                .limit(3).collect(Collectors.toList());
+        assertEquals(Arrays.asList(0, 1, 2), first);
+        try (Stream<Object> naturals = p.solve("natural(X).").stream()) {
+            assertTrue(naturals.anyMatch(n -> n.equals(5)));
+        }
+        assertEquals(Arrays.asList(1, 2, 3),
+                p.solve("member(X, [1, 2, 3]).").stream().collect(Collectors.toList()));
+        assertFalse(p.solve("member(X, []).").stream().findFirst().isPresent());
+    }
+
+    /**
+     * Tests closing the solutions before their traversal reaches the end.
+     */
+    @Test
+    public void testClose() {
+        Iterator<Object> it;
+        try (Solution<Object> solution = p.solve("member(X, [1, 2, 3]).")) {
+            it = solution.iterator();
+            assertEquals(1, it.next());
+            assertFalse(solution.isClosed());
+        }
+        assertFalse(it.hasNext());
+        try (SolutionIterator<Object> it2 = p.<Object>solve("member(X, [4, 5]).").iterator()) {
+            assertEquals(4, it2.next());
+        }
+        Solution<Object> solution = p.solve("member(X, [6]).");
+        assertEquals(Arrays.asList(6), solution.toList());
+        assertTrue(solution.isClosed());
+        assertSuccess("member(X, [7, 8]).");
+    }
+
+    /**
+     * Tests that the modifications of a prover pool reach every replica and
+     * that the replicas are given back to the pool.
+     */
+    @Test
+    public void testProverPool() {
+        ProverPool pool = ProverFactory.createProverPool(2);
+        pool.setTimeout(10, TimeUnit.SECONDS);
+        pool.addTheory("planet(mercury).", "planet(venus).");
+        pool.assertz("planet(?).", "earth");
+        for (int i = 0; i < 4; ++i) {
+            List<String> planets = pool.<String>solve("planet(X).").toList();
+            assertEquals(Arrays.asList("mercury", "venus", "earth"), planets);
+        }
+        assertFailure(pool.solve("planet(mars)."));
+        assertFailure(pool.solve("planet(mars)."));
+        // Single values give back their replicas without being closed.
+        for (int i = 0; i < 4; ++i) {
+            assertEquals("mercury", pool.<String>solve("planet(X).").get());
+            try (Solution<?> venus = pool.solve("planet(venus).")) {
+                assertTrue(venus.isSuccess());
+            }
+        }
+        // The value is copied before the replica is given back.
+        Solution<String> first = pool.solve("planet(X).");
+        assertEquals("mercury", first.get());
+        for (int i = 0; i < 2; ++i) {
+            assertEquals(3, pool.solve("planet(X).").toList().size());
+        }
+        assertEquals("mercury", first.get("X"));
+        try {
+            first.toList();
+            fail();
+        } catch (IllegalStateException e) {
+        }
+        Solution<String> solution = pool.solve("planet(X).");
+        assertTrue(solution.isSuccess());
+        assertEquals(Arrays.asList("mercury", "venus", "earth"), solution.toList());
+        Boolean hasEarth = pool.execute(new ProverPool.Task<Boolean>() {
+            @Override
+            public Boolean run(Prover replica) {
+                return replica.solve("planet(earth).").isSuccess();
+            }
+        });
+        assertTrue(hasEarth);
+        pool.retract("planet(earth).");
+        for (int i = 0; i < 2; ++i) {
+            Boolean noEarth = pool.execute(new ProverPool.Task<Boolean>() {
+                @Override
+                public Boolean run(Prover replica) {
+                    return replica.solve("planet(earth).").isSuccess();
+                }
+            });
+            assertFalse(noEarth);
+        }
+    }
+
+    /**
+     * Tests that a search exceeding the time limit of its query is halted and
+     * that the prover can be used afterwards.
+     */
+    @Test
+    public void testLimits() {
+        p.addTheory("runaway :- runaway.");
+        Query query = p.query("runaway.")
+                .withLimits(Limits.NONE.withTimeout(100, TimeUnit.MILLISECONDS));
+        assertTrue(query.getLimits().isInterruptible());
+        try {
+            query.solve();
+            fail();
+        } catch (LimitExceededException e) {
+            assertEquals(LimitExceededException.Reason.TIMEOUT, e.getReason());
+        }
+        assertSuccess("member(X, [1, 2]).");
+    }
+
     /**
      * Tests the format elements.
      */
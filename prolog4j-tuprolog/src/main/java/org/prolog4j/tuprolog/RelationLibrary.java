@@ -0,0 +1,262 @@
+/* 
+ * Copyright (c) 2010 Miklos Espak
+ * All rights reserved.
+ * 
+ * Permission is hereby granted, free  of charge, to any person obtaining
+ * a  copy  of this  software  and  associated  documentation files  (the
+ * "Software"), to  deal in  the Software without  restriction, including
+ * without limitation  the rights to  use, copy, modify,  merge, publish,
+ * distribute,  sublicense, and/or sell  copies of  the Software,  and to
+ * permit persons to whom the Software  is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The  above  copyright  notice  and  this permission  notice  shall  be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE  SOFTWARE IS  PROVIDED  "AS  IS", WITHOUT  WARRANTY  OF ANY  KIND,
+ * EXPRESS OR  IMPLIED, INCLUDING  BUT NOT LIMITED  TO THE  WARRANTIES OF
+ * MERCHANTABILITY,    FITNESS    FOR    A   PARTICULAR    PURPOSE    AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE,  ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.prolog4j.tuprolog;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.prolog4j.ConversionPolicy;
+import org.prolog4j.Relation;
+
+import alice.tuprolog.Int;
+import alice.tuprolog.Library;
+import alice.tuprolog.Struct;
+import alice.tuprolog.Term;
+import alice.tuprolog.Var;
+
+/**
+ * Defines the predicates of the relations registered on a tuProlog prover. 
+ * The predicate of a relation opens a cursor over the rows matching its 
+ * bound arguments, and unifies its arguments with the next row each time
+ * when the search backtracks into it:
+ * <pre>
+ * name(A1, ..., An) :- p4j_relation_open('name/n', '$row'(A1, ..., An), C),
+ *     p4j_relation_rows(C, '$row'(A1, ..., An)).
+ * </pre>
+ * The engine keeps the alternatives of a single goal, so the cursors that 
+ * are still open when a new goal is solved or the search ends are closed.
+ */
+final class RelationLibrary extends Library {
+
+	/** Class version for serialization. */
+	private static final long serialVersionUID = 1L;
+
+	/** The name of the compound terms that hold the arguments of a call. */
+	private static final String ROW = "$row";
+
+	/** The clauses that enumerate the rows of an open cursor. */
+	private static final String ROWS_THEORY = 
+		"p4j_relation_rows(C, R) :- p4j_relation_next(C, R).\n"
+		+ "p4j_relation_rows(C, R) :- p4j_relation_more(C), p4j_relation_rows(C, R).\n";
+
+	/** The prover whose conversion policy converts the values. */
+	private final TuPrologProver prover;
+
+	/** The relations by the indicator of their predicate. */
+	private final Map<String, Relation> relations = new LinkedHashMap<String, Relation>();
+
+	/** The open cursors by their identifier. */
+	private final Map<Integer, Selection> cursors = new HashMap<Integer, Selection>();
+
+	/** The identifier of the last cursor opened. */
+	private int lastCursor;
+
+	/**
+	 * Creates the library of the relations of a prover.
+	 * 
+	 * @param prover the prover
+	 */
+	RelationLibrary(TuPrologProver prover) {
+		this.prover = prover;
+	}
+
+	/**
+	 * Adds a relation. The library has to be loaded again, so that the engine
+	 * learns the clause of its predicate.
+	 * 
+	 * @param name the name of the predicate
+	 * @param relation the relation
+	 */
+	void add(String name, Relation relation) {
+		relations.put(name + '/' + relation.getArity(), relation);
+	}
+
+	@Override
+	public String getTheory() {
+		StringBuilder theory = new StringBuilder(ROWS_THEORY);
+		for (Map.Entry<String, Relation> entry: relations.entrySet()) {
+			String indicator = entry.getKey();
+			String name = indicator.substring(0, indicator.lastIndexOf('/'));
+			StringBuilder args = new StringBuilder();
+			for (int i = 0; i < entry.getValue().getArity(); ++i) {
+				args.append(i == 0 ? "(" : ", ").append('A').append(i);
+			}
+			if (args.length() > 0) {
+				args.append(')');
+			}
+			// The atoms are quoted by tuProlog where it is needed.
+			String row = new Struct(ROW) + args.toString();
+			theory.append(new Struct(name)).append(args).append(" :- p4j_relation_open(")
+					.append(new Struct(indicator)).append(", ").append(row)
+					.append(", C), p4j_relation_rows(C, ").append(row).append(").\n");
+		}
+		return theory.toString();
+	}
+
+	/**
+	 * Opens a cursor over the rows of a relation that match the atomic 
+	 * arguments of a call.
+	 * 
+	 * @param indicator the indicator of the predicate of the relation
+	 * @param args the arguments of the call
+	 * @param cursor unified with the identifier of the cursor
+	 * @return <code>true</code> if the cursor has been opened
+	 */
+	public boolean p4j_relation_open_3(Term indicator, Term args, Term cursor) {
+		Relation relation = relations.get(((Struct) indicator.getTerm()).getName());
+		if (relation == null) {
+			return false;
+		}
+		Struct row = (Struct) args.getTerm();
+		ConversionPolicy cp = prover.getConversionPolicy();
+		Object[] pattern = new Object[row.getArity()];
+		for (int i = 0; i < pattern.length; ++i) {
+			Term arg = row.getArg(i).getTerm();
+			if (arg instanceof alice.tuprolog.Number 
+					|| arg instanceof Struct && ((Struct) arg).isAtom()) {
+				pattern[i] = cp.convertTerm(arg);
+			}
+		}
+		Selection selection = new Selection(relation.select(pattern), pattern);
+		int id;
+		synchronized (cursors) {
+			id = ++lastCursor;
+			cursors.put(id, selection);
+		}
+		return unify(cursor, new Int(id));
+	}
+
+	/**
+	 * Unifies the arguments of a call with the next matching row of a cursor.
+	 * The cursor is closed when it is exhausted.
+	 * 
+	 * @param cursor the identifier of the cursor
+	 * @param args the arguments of the call
+	 * @return <code>true</code> if a matching row has been found
+	 */
+	public boolean p4j_relation_next_2(Term cursor, Term args) {
+		int id = ((Int) cursor.getTerm()).intValue();
+		Selection selection;
+		synchronized (cursors) {
+			selection = cursors.get(id);
+		}
+		if (selection == null) {
+			return false;
+		}
+		Struct row = (Struct) args.getTerm();
+		int arity = row.getArity();
+		ConversionPolicy cp = prover.getConversionPolicy();
+		while (selection.rows.next()) {
+			if (arity == 0) {
+				return true;
+			}
+			// The row is unified at once, so a failure leaves nothing bound.
+			Term[] terms = new Term[arity];
+			for (int i = 0; i < arity; ++i) {
+				if (selection.pattern[i] != null) {
+					terms[i] = row.getArg(i);
+				} else {
+					Term term = (Term) selection.rows.term(i, cp);
+					terms[i] = term != null ? term : new Var();
+				}
+			}
+			if (unify(row, new Struct(ROW, terms))) {
+				return true;
+			}
+		}
+		close(id);
+		return false;
+	}
+
+	/**
+	 * Succeeds if a cursor has not been exhausted.
+	 * 
+	 * @param cursor the identifier of the cursor
+	 * @return <code>true</code> if the cursor is open
+	 */
+	public boolean p4j_relation_more_1(Term cursor) {
+		int id = ((Int) cursor.getTerm()).intValue();
+		synchronized (cursors) {
+			return cursors.containsKey(id);
+		}
+	}
+
+	/**
+	 * Closes a cursor.
+	 * 
+	 * @param id the identifier of the cursor
+	 */
+	private void close(int id) {
+		Selection selection;
+		synchronized (cursors) {
+			selection = cursors.remove(id);
+		}
+		if (selection != null) {
+			selection.rows.close();
+		}
+	}
+
+	/**
+	 * Closes every open cursor.
+	 */
+	void closeAll() {
+		Selection[] open;
+		synchronized (cursors) {
+			if (cursors.isEmpty()) {
+				return;
+			}
+			open = cursors.values().toArray(new Selection[cursors.size()]);
+			cursors.clear();
+		}
+		for (Selection selection: open) {
+			selection.rows.close();
+		}
+	}
+
+	/**
+	 * An open cursor and the pattern that it has been selected by.
+	 */
+	private static final class Selection {
+
+		/** The cursor over the rows. */
+		private final Relation.Cursor rows;
+
+		/** The values of the atomic arguments of the call. */
+		private final Object[] pattern;
+
+		/**
+		 * Creates a selection.
+		 * 
+		 * @param rows the cursor over the rows
+		 * @param pattern the values of the atomic arguments of the call
+		 */
+		Selection(Relation.Cursor rows, Object[] pattern) {
+			this.rows = rows;
+			this.pattern = pattern;
+		}
+
+	}
+
+}
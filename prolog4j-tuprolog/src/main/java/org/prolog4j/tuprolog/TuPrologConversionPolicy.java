@@ -25,7 +25,6 @@ package org.prolog4j.tuprolog;
 
 import java.lang.reflect.Array;
 import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Map;
@@ -34,6 +33,7 @@ import org.prolog4j.Compound;
 import org.prolog4j.ConversionPolicy;
 import org.prolog4j.Converter;
 import org.prolog4j.InvalidQueryException;
+import org.prolog4j.TermList;
 
 import alice.tuprolog.Int;
 import alice.tuprolog.InvalidTermException;
@@ -114,6 +114,21 @@ public class TuPrologConversionPolicy extends ConversionPolicy {
 		}
 	};
 
+	/** 
+	 * True while the built-in converters of the integers, the longs, the 
+	 * doubles and the strings are in effect.
+	 */
+	private boolean builtinObjects;
+
+	/** True while the built-in converters of the number terms are in effect. */
+	private boolean builtinNumbers;
+
+	/** 
+	 * True while the built-in converter of the atoms is in effect, and no
+	 * converter has been registered by functor.
+	 */
+	private boolean builtinAtoms;
+
 	/**
 	 * Constructs a conversion policy for tuProlog.
 	 */
@@ -176,13 +191,7 @@ public class TuPrologConversionPolicy extends ConversionPolicy {
 					return value.getName();
 				}
 				if (value.isList()) {
-					List list = new LinkedList();
-					while (!value.isEmptyList()) {
-						Term t = value.getArg(0);
-						list.add(convertTerm(t.getTerm()));
-						value = (Struct) value.getArg(1).getTerm();
-					}
-					return list;
+					return new TermList<Object>(TuPrologConversionPolicy.this, value);
 				}
 				int arity = value.getArity();
 				Object[] args = new Object[arity];
@@ -210,6 +219,84 @@ public class TuPrologConversionPolicy extends ConversionPolicy {
 				return null;
 			}
 		});
+		builtinObjects = true;
+		builtinNumbers = true;
+		builtinAtoms = true;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The integers, the longs, the doubles and the strings are converted
+	 * directly while their built-in converters are in effect.
+	 */
+	@Override
+	public Object convertObject(Object object) {
+		if (builtinObjects && object != null) {
+			Class<?> objectClass = object.getClass();
+			if (objectClass == String.class) {
+				return new Struct((String) object);
+			} else if (objectClass == Integer.class) {
+				return new Int((Integer) object);
+			} else if (objectClass == Long.class) {
+				return new alice.tuprolog.Long((Long) object);
+			} else if (objectClass == Double.class) {
+				return new alice.tuprolog.Double((Double) object);
+			}
+		}
+		return super.convertObject(object);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The numbers and the atoms are converted directly while their built-in
+	 * converters are in effect.
+	 */
+	@Override
+	public Object convertTerm(Object term) {
+		if (term != null) {
+			Class<?> termClass = term.getClass();
+			if (builtinNumbers) {
+				if (termClass == Int.class) {
+					return ((Int) term).intValue();
+				} else if (termClass == alice.tuprolog.Long.class) {
+					return ((alice.tuprolog.Long) term).longValue();
+				} else if (termClass == alice.tuprolog.Double.class) {
+					return ((alice.tuprolog.Double) term).doubleValue();
+				}
+			}
+			if (builtinAtoms && termClass == Struct.class && ((Struct) term).isAtom()) {
+				return ((Struct) term).getName();
+			}
+		}
+		return super.convertTerm(term);
+	}
+
+	@Override
+	public <T> void addObjectConverter(Class<T> class_, Converter<T> converter) {
+		super.addObjectConverter(class_, converter);
+		if (class_ == String.class || class_ == Integer.class 
+				|| class_ == Long.class || class_ == Double.class) {
+			builtinObjects = false;
+		}
+	}
+
+	@Override
+	protected <T> void addTermConverter(Class<T> class_, Converter<T> converter) {
+		super.addTermConverter(class_, converter);
+		if (class_ == Int.class || class_ == alice.tuprolog.Long.class 
+				|| class_ == alice.tuprolog.Double.class) {
+			builtinNumbers = false;
+		} else if (class_ == Struct.class) {
+			builtinAtoms = false;
+		}
+	}
+
+	@Override
+	public void addTermConverter(String functor, Converter<Object> converter) {
+		super.addTermConverter(functor, converter);
+		builtinAtoms = false;
 	}
 
 	@Override
@@ -301,6 +388,11 @@ public class TuPrologConversionPolicy extends ConversionPolicy {
 		return ((alice.tuprolog.Number) term).intValue();
 	}
 
+	@Override
+	public long longValue(Object term) {
+		return ((alice.tuprolog.Number) term).longValue();
+	}
+
 	@Override
 	public double doubleValue(Object term) {
 		return ((alice.tuprolog.Number) term).doubleValue();
@@ -323,6 +415,22 @@ public class TuPrologConversionPolicy extends ConversionPolicy {
 		return convertTerm(((Struct) compound).getArg(index).getTerm());
 	}
 
+	@Override
+	protected boolean isListCell(Object term) {
+		return term instanceof Struct && ((Struct) term).getArity() == 2
+				&& ".".equals(((Struct) term).getName());
+	}
+
+	@Override
+	protected Object getHead(Object cell) {
+		return ((Struct) cell).getArg(0).getTerm();
+	}
+
+	@Override
+	protected Object getTail(Object cell) {
+		return ((Struct) cell).getArg(1).getTerm();
+	}
+
 	@Override
 	public boolean isAtom(Object term) {
 		return ((Term) term).isAtom();
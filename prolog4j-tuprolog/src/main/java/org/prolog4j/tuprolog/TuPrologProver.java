@@ -25,14 +25,30 @@ package org.prolog4j.tuprolog;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 
 import org.prolog4j.AbstractProver;
+import org.prolog4j.ActiveGoal;
+import org.prolog4j.ClauseImage;
+import org.prolog4j.Compound;
+import org.prolog4j.ConversionPolicy;
+import org.prolog4j.ParallelTheoryLoader;
 import org.prolog4j.Query;
+import org.prolog4j.Relation;
 
+import alice.tuprolog.Int;
 import alice.tuprolog.InvalidLibraryException;
+import alice.tuprolog.InvalidTermException;
 import alice.tuprolog.InvalidTheoryException;
+import alice.tuprolog.Parser;
 import alice.tuprolog.Prolog;
+import alice.tuprolog.Struct;
+import alice.tuprolog.Term;
 import alice.tuprolog.Theory;
+import alice.tuprolog.Var;
 
 /**
  * Represents a Prolog knowledge base and provides methods for solving queries
@@ -56,12 +72,27 @@ public class TuPrologProver extends AbstractProver {
 	/** Class version for serialization. */
 	private static final long serialVersionUID = 1L;
 
+	/** The theories longer than this are parsed in parallel. */
+	private static final int PARALLEL_THRESHOLD = 2 * ParallelTheoryLoader.DEFAULT_CHUNK_SIZE;
+
 	/**
 	 * The tuProlog engine that is used for storing the knowledge base and
 	 * solving queries on it.
 	 */
 	private final Prolog engine;
 
+	/** 
+	 * Keeps track of the goal whose alternatives are kept by the engine, or
+	 * <code>null</code> if no goal has been solved yet.
+	 */
+	private transient ActiveGoal activeGoal;
+
+	/** 
+	 * Defines the predicates of the registered relations, or <code>null</code>
+	 * if no relation has been registered.
+	 */
+	private transient RelationLibrary relations;
+
 	/**
 	 * Creates a tuProlog prover.
 	 */
@@ -79,6 +110,32 @@ public class TuPrologProver extends AbstractProver {
 		return engine;
 	}
 
+	/**
+	 * Returns the tracker of the goal whose alternatives are kept by the
+	 * engine. The caller has to hold the lock of the engine.
+	 * 
+	 * @return the active goal of the engine
+	 */
+	ActiveGoal getActiveGoal() {
+		if (activeGoal == null) {
+			activeGoal = new ActiveGoal(engine, () -> {
+				engine.solveEnd();
+				closeCursors();
+			});
+		}
+		return activeGoal;
+	}
+
+	/**
+	 * Closes the cursors of the relations that are still open. It is called
+	 * when the search for the alternatives of a goal ends.
+	 */
+	void closeCursors() {
+		if (relations != null) {
+			relations.closeAll();
+		}
+	}
+
 	@Override
 	public Query query(String goal) {
 		return new TuPrologQuery(this, goal);
@@ -91,21 +148,19 @@ public class TuPrologProver extends AbstractProver {
 		} catch (InvalidLibraryException e) {
 			throw new RuntimeException(e);
 		}
+		clausesChanged(null);
 	}
 
 	@Override
 	public void loadTheory(InputStream input) throws IOException {
-		try {
-			engine.addTheory(new Theory(input));
-		} catch (InvalidTheoryException e) {
-			e.printStackTrace();
-		}
+		loadClauses(new InputStreamReader(input));
 	}
 
 	@Override
 	public void addTheory(String theory) {
 		try {
-			engine.addTheory(new Theory(theory));
+			addClauses(prepareClauses(theory));
+			clausesChanged(theory);
 		} catch (InvalidTheoryException e) {
 			e.printStackTrace();
 		}
@@ -118,10 +173,251 @@ public class TuPrologProver extends AbstractProver {
 			sb.append(factOrRule).append('\n');
 		}
 		try {
-			engine.addTheory(new Theory(sb.toString()));
+			addClauses(prepareClauses(sb.toString()));
+			clausesChanged(sb.toString());
 		} catch (InvalidTheoryException e) {
 			e.printStackTrace();
 		}
 	}
 
+	/**
+	 * Adds clauses to the knowledge base. The long theories are parsed in 
+	 * parallel by a {@link TheoryLoader}.
+	 * 
+	 * @param clauses the text of the clauses
+	 * @throws InvalidTheoryException if the theory is invalid. The clauses 
+	 * 		before the invalid one are added.
+	 */
+	private void addClauses(String clauses) throws InvalidTheoryException {
+		if (clauses.length() < PARALLEL_THRESHOLD) {
+			engine.addTheory(new Theory(clauses));
+		} else {
+			TheoryLoader loader = new TheoryLoader();
+			if (!loader.load(clauses)) {
+				throw loader.error;
+			}
+		}
+	}
+
+	/**
+	 * The clauses parsed from a chunk of a theory.
+	 */
+	private static final class Chunk {
+
+		/** The clauses before the invalid one, or every clause. */
+		private final List<Term> clauses = new ArrayList<Term>();
+
+		/** The error of the invalid clause, or <code>null</code>. */
+		private InvalidTermException error;
+
+	}
+
+	/**
+	 * Parses the chunks of a theory into tuProlog clauses with the operators 
+	 * of the engine, and adds them as clause lists.
+	 */
+	private class TheoryLoader extends ParallelTheoryLoader<Chunk> {
+
+		/** The error that has stopped the loading, or <code>null</code>. */
+		private InvalidTheoryException error;
+
+		@Override
+		protected Chunk parse(String clauses) {
+			Chunk chunk = new Chunk();
+			Parser parser = new Parser(engine.getOperatorManager(), clauses);
+			try {
+				for (Term term = parser.nextTerm(true); term != null; term = parser.nextTerm(true)) {
+					chunk.clauses.add(term);
+				}
+			} catch (InvalidTermException e) {
+				// The clauses before the invalid one are added, like by the engine.
+				chunk.error = e;
+			}
+			return chunk;
+		}
+
+		@Override
+		protected boolean add(Chunk chunk) {
+			List<Term> clauses = chunk.clauses;
+			try {
+				if (!clauses.isEmpty()) {
+					engine.addTheory(new Theory(new Struct(clauses.toArray(new Term[clauses.size()]))));
+				}
+			} catch (InvalidTheoryException e) {
+				error = e;
+				return false;
+			}
+			if (chunk.error != null) {
+				error = new InvalidTheoryException();
+				error.initCause(chunk.error);
+				return false;
+			}
+			return true;
+		}
+
+	}
+
+	/**
+	 * Returns the clauses of the theory of the engine, including the ones 
+	 * asserted by goals and consulted by libraries. The theory is taken from
+	 * the engine at once, without solving a goal, so the open traversals are
+	 * kept. Its clauses are converted one by one, while they are written.
+	 * 
+	 * @return the clauses in the form of {@link ClauseImage}
+	 */
+	@Override
+	protected Iterable<Object> clauses() {
+		final Theory theory;
+		synchronized (engine) {
+			theory = engine.getTheory();
+		}
+		return new Iterable<Object>() {
+			@Override
+			public Iterator<Object> iterator() {
+				final Iterator<? extends Term> terms = theory.iterator(engine);
+				return new Iterator<Object>() {
+					@Override
+					public boolean hasNext() {
+						return terms.hasNext();
+					}
+
+					@Override
+					public Object next() {
+						return TuPrologTheoryCompiler.toClause(terms.next());
+					}
+
+					@Override
+					public void remove() {
+						throw new UnsupportedOperationException();
+					}
+				};
+			}
+		};
+	}
+
+	@Override
+	protected void clearClauses() {
+		engine.clearTheory();
+	}
+
+	/**
+	 * Adds the relation to the library of the relations, and loads the 
+	 * library again.
+	 * 
+	 * @param name the name of the predicate
+	 * @param relation the relation
+	 */
+	@Override
+	protected void addRelation(String name, Relation relation) {
+		synchronized (engine) {
+			if (relations == null) {
+				relations = new RelationLibrary(this);
+			}
+			relations.add(name, relation);
+			try {
+				if (engine.getLibrary(relations.getName()) != null) {
+					engine.unloadLibrary(relations.getName());
+				}
+				engine.loadLibrary(relations);
+			} catch (InvalidLibraryException e) {
+				throw new RuntimeException(e);
+			}
+		}
+	}
+
+	/**
+	 * Builds the tuProlog clauses of the compiled clauses, and adds them as
+	 * one theory.
+	 * 
+	 * @param clauses the clauses in the form of {@link ClauseImage}
+	 */
+	@Override
+	protected void addCompiledClauses(List<Object> clauses) {
+		List<Object> prepared = prepareCompiledClauses(clauses);
+		Term[] terms = new Term[prepared.size()];
+		for (int i = 0; i < terms.length; ++i) {
+			terms[i] = toTerm(prepared.get(i), new ArrayList<Var>());
+		}
+		try {
+			engine.addTheory(new Theory(new Struct(terms)));
+		} catch (InvalidTheoryException e) {
+			e.printStackTrace();
+		}
+		compiledClausesChanged(clauses);
+	}
+
+	/**
+	 * Builds the tuProlog term of a term of a compiled clause.
+	 * 
+	 * @param term the term in the form of {@link ClauseImage}
+	 * @param variables the variables of the clause by their number
+	 * @return the tuProlog term
+	 */
+	private static Term toTerm(Object term, List<Var> variables) {
+		if (term instanceof String) {
+			return new Struct((String) term);
+		} else if (term instanceof Integer) {
+			return new Int((Integer) term);
+		} else if (term instanceof java.lang.Long) {
+			return new alice.tuprolog.Long((java.lang.Long) term);
+		} else if (term instanceof java.lang.Float) {
+			return new alice.tuprolog.Float((java.lang.Float) term);
+		} else if (term instanceof java.lang.Double) {
+			return new alice.tuprolog.Double((java.lang.Double) term);
+		} else if (term instanceof ClauseImage.Variable) {
+			int index = ((ClauseImage.Variable) term).getIndex();
+			while (variables.size() <= index) {
+				variables.add(new Var("V" + variables.size()));
+			}
+			return variables.get(index);
+		}
+		Compound compound = (Compound) term;
+		if (compound.getFunctor().equals(".") && compound.getArity() == 2) {
+			// The lists are built from their end, so long lists are fine.
+			List<Term> elements = new ArrayList<Term>();
+			Object rest = compound;
+			while (rest instanceof Compound && ((Compound) rest).getArity() == 2
+					&& ((Compound) rest).getFunctor().equals(".")) {
+				elements.add(toTerm(((Compound) rest).getArg(0), variables));
+				rest = ((Compound) rest).getArg(1);
+			}
+			Term list = toTerm(rest, variables);
+			for (int i = elements.size() - 1; i >= 0; --i) {
+				list = new Struct(elements.get(i), list);
+			}
+			return list;
+		}
+		Term[] args = new Term[compound.getArity()];
+		for (int i = 0; i < args.length; ++i) {
+			args[i] = toTerm(compound.getArg(i), variables);
+		}
+		return new Struct(compound.getFunctor(), args);
+	}
+
+	/**
+	 * Creates the clauses of the facts from the converted arguments, and adds
+	 * them as one theory.
+	 * 
+	 * @param name the name of the predicate
+	 * @param facts the arguments of each fact
+	 */
+	@Override
+	protected void assertFacts(String name, List<Object[]> facts) {
+		ConversionPolicy cp = getConversionPolicy();
+		Term[] clauses = new Term[facts.size()];
+		int i = 0;
+		for (Object[] args: facts) {
+			Term[] terms = new Term[args.length];
+			for (int j = 0; j < args.length; ++j) {
+				Term term = (Term) cp.convertObject(args[j]);
+				terms[j] = term != null ? term : new Var();
+			}
+			clauses[i++] = args.length == 0 ? new Struct(name) : new Struct(name, terms);
+		}
+		try {
+			engine.addTheory(new Theory(new Struct(clauses)));
+		} catch (InvalidTheoryException e) {
+			e.printStackTrace();
+		}
+	}
 }
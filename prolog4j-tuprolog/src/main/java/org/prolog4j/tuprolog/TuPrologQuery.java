@@ -23,19 +23,15 @@
  */
 package org.prolog4j.tuprolog;
 
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
 
 import org.prolog4j.ConversionPolicy;
 import org.prolog4j.InvalidQueryException;
 import org.prolog4j.Query;
 import org.prolog4j.Solution;
-import org.prolog4j.UnknownVariableException;
 
 import alice.tuprolog.InvalidTermException;
 import alice.tuprolog.Parser;
-import alice.tuprolog.Prolog;
 import alice.tuprolog.Struct;
 import alice.tuprolog.Term;
 import alice.tuprolog.Var;
@@ -51,17 +47,14 @@ public class TuPrologQuery extends Query {
 	/** The conversion policy of the prover that is used for solving this query. */
 	private final ConversionPolicy cp;
 	
-	/** The tuProlog engine used to process this query. */
-	private final Prolog engine;
-
-	/** The tuProlog representation of the goal to be solved. */
-	private Struct sGoal;
+	/** 
+	 * The tuProlog representation of the goal to be solved. It is shared by 
+	 * every execution, its variables are never bound.
+	 */
+	private final Struct sGoal;
 
-	/** The tuProlog variables representing the input variables of the goal. */
-	private Var[] inputVars;
-	
-	/** Contains the variables explicitly bound through the bind methods. */
-	private Set<Var> explicitlyBoundVars = new HashSet<Var>();
+	/** The tuProlog variables of the placeholders in the order of the placeholders. */
+	private final Var[] inputVars;
 	
 	/**
 	 * Creates a TuProlog query object.
@@ -70,65 +63,62 @@ public class TuPrologQuery extends Query {
 	 * @param goal the Prolog goal to be solved
 	 */
 	TuPrologQuery(TuPrologProver prover, String goal) {
-		super(goal);
+		super(prover, goal);
 		this.prover = prover;
 		this.cp = prover.getConversionPolicy();
-		this.engine = prover.getEngine();
 		List<String> placeholderNames = getPlaceholderNames();
-//		List<PlaceHolder> placeholders = getPlaceholders();
 		int placeholderNo = placeholderNames.size();
 		inputVars = new Var[placeholderNo];
 		try {
 			Parser parser = new Parser(getGoal());
 			sGoal = (Struct) parser.nextTerm(true);
-			for (int i = 0, index = 0; i < placeholderNo; ++i, ++index) {
-				Var argVar = new Var(placeholderNames.get(i));
-				Var arg = new Var("J$" + argVar.getOriginalName());
-				sGoal = new Struct(",", new Struct("=", argVar, arg), sGoal);
-				inputVars[index] = arg;
-			}
 			sGoal.resolveTerm();
 		} catch (InvalidTermException e) {
 			throw new InvalidQueryException(goal, e);
 		}
+		for (int i = 0; i < placeholderNo; ++i) {
+			inputVars[i] = findVar(sGoal, placeholderNames.get(i));
+		}
 	}
 
-	@Override
-	public <A> Solution<A> solve(Object... actualArgs) {
-//		prover.reclaimObsoleteFacts();
-		int i = 0;
-		for (Var var: inputVars) {
-			if (explicitlyBoundVars.contains(var)) {
-				continue;
+	/**
+	 * Looks for a variable by name in a term. After resolving the term, all
+	 * the occurrences of a variable are represented by the same object.
+	 * 
+	 * @param term the term to search in
+	 * @param name the name of the variable
+	 * @return the variable or <code>null</code> if it does not occur in the term
+	 */
+	private static Var findVar(Term term, String name) {
+		if (term instanceof Var) {
+			return name.equals(((Var) term).getOriginalName()) ? (Var) term : null;
+		}
+		if (term instanceof Struct) {
+			Struct struct = (Struct) term;
+			for (int i = 0; i < struct.getArity(); ++i) {
+				Var var = findVar(struct.getArg(i), name);
+				if (var != null) {
+					return var;
+				}
 			}
-			var.free();
-			engine.unify(var, (Term) cp.convertObject(actualArgs[i++]));
 		}
-		return new TuPrologSolution<A>(prover, sGoal);
-	}
-
-	@Override
-	public Query bind(int argument, Object value) {
-		inputVars[argument].free();
-		explicitlyBoundVars.add(inputVars[argument]);
-		engine.unify(inputVars[argument], (Term) cp.convertObject(value));
-		return this;
+		return null;
 	}
 
 	@Override
-	public Query bind(String variable, Object value) {
-		for (Var v: inputVars) {
-//			if (v.isBound()) {
-//				continue;
-//			}
-			if (v.getName().equals(variable)) {
-				v.free();
-				explicitlyBoundVars.add(v);
-				engine.unify(v, (Term) cp.convertObject(value));
-				return this;
+	public <A> Solution<A> solve(Object... actualArgs) {
+//		prover.reclaimObsoleteFacts();
+		// The binding frame of this execution. The shared goal is wrapped into
+		// unifications, tuProlog copies the whole goal before solving it.
+		Object[] values = getPlaceholderValues(actualArgs);
+		Struct goal = sGoal;
+		for (int i = inputVars.length - 1; i >= 0; --i) {
+			Term value = (Term) cp.convertObject(values[i]);
+			if (value != null) {
+				goal = new Struct(",", new Struct("=", inputVars[i], value), goal);
 			}
 		}
-		throw new UnknownVariableException(variable);
+		return new TuPrologSolution<A>(prover, goal, getVariables(), getLimits());
 	}
 
 }
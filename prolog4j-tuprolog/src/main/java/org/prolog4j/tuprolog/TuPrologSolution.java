@@ -29,7 +29,9 @@ import java.util.List;
 import java.util.NoSuchElementException;
 
 import org.prolog4j.ConversionPolicy;
-import org.prolog4j.Prover;
+import org.prolog4j.LimitExceededException;
+import org.prolog4j.LimitMonitor;
+import org.prolog4j.Limits;
 import org.prolog4j.ProverFactory;
 import org.prolog4j.Solution;
 import org.prolog4j.SolutionIterator;
@@ -41,6 +43,8 @@ import alice.tuprolog.Prolog;
 import alice.tuprolog.SolveInfo;
 import alice.tuprolog.Term;
 import alice.tuprolog.Var;
+import alice.tuprolog.event.SpyEvent;
+import alice.tuprolog.event.SpyListener;
 
 /**
  * The <tt>Solution</tt> class is responsible for traversing through the
@@ -52,7 +56,7 @@ import alice.tuprolog.Var;
 public class TuPrologSolution<S> extends Solution<S> {
 
 	/** The tuProlog prover that is used for solving this query. */
-	private Prover prover;
+	private final TuPrologProver prover;
 
 	/** The conversion policy of the tuProlog prover that is used for solving this query. */
 	private final ConversionPolicy cp;
@@ -65,34 +69,87 @@ public class TuPrologSolution<S> extends Solution<S> {
 	/** The tuProlog engine that is used for solving the query. */
 	private final Prolog engine;
 	
-	/** The list of variables occurring in the query. */
+	/** The list of variables occurring in the query, bound by the current solution. */
 	private List<Var> vars;
 
+	/** 
+	 * The index of the variable of each slot in {@link #vars}, or -1 if the
+	 * engine does not bind the variable.
+	 */
+	private int[] positions;
+
 	/** This object provides the bindings for one solution of the query. */
 	private SolveInfo solution;
 	
 	/** True if the query has a solution, otherwise false. */
 	private final boolean success;
 
+	/** Enforces the limits of the query, or <code>null</code> if it has none. */
+	private final LimitMonitor monitor;
+
+	/** Reports the inferences of the engine to the monitor. */
+	private final SpyListener spy;
+
+	/** True if the engine was spying before the current search. */
+	private boolean spying;
+
 	/**
 	 * Creates an object, using which the solutions of a query can be accessed.
 	 * 
 	 * @param prover the tuProlog prover
 	 * @param goal the goal to be solved
+	 * @param variables the names of the variables of the goal, in the order
+	 * 		of their slots
+	 * @param limits the limits of the search for the solutions
 	 */
-	TuPrologSolution(TuPrologProver prover, Term goal) {
+	TuPrologSolution(TuPrologProver prover, Term goal, List<String> variables, 
+			Limits limits) {
 		this.prover = prover;
+		setVariables(variables);
 		this.cp = prover.getConversionPolicy();
 		this.engine = prover.getEngine();
-		solution = engine.solve(goal);
+		if (limits.isNone()) {
+			monitor = null;
+			spy = null;
+		} else {
+			monitor = new LimitMonitor(limits);
+			spy = new SpyListener() {
+				@Override
+				public void onSpy(SpyEvent e) {
+					if (!monitor.inference()) {
+						engine.solveHalt();
+					}
+				}
+			};
+		}
+		Runnable release;
+		synchronized (engine) {
+			// The search of the previous goal ends here.
+			prover.closeCursors();
+			startSearch();
+			try {
+				solution = engine.solve(goal);
+			} finally {
+				endSearch();
+			}
+			release = prover.getActiveGoal().replace();
+		}
+		releaseOnClose(release);
+		checkLimits();
 		success = solution.isSuccess();
 		if (!success) {
 			return;
 		}
-		try {
-			vars = solution.getBindingVars();
-		} catch (NoSolutionException e) {
-			throw new IllegalStateException(e);
+		bindVars();
+		positions = new int[variables.size()];
+		for (int slot = 0; slot < positions.length; ++slot) {
+			positions[slot] = -1;
+			for (int i = 0; i < vars.size(); ++i) {
+				if (varName(i).equals(variables.get(slot))) {
+					positions[slot] = i;
+					break;
+				}
+			}
 		}
 		if (vars.size() > 0) {
 			// defaultOutputVariable = varName(vars.size() - 1);
@@ -117,49 +174,76 @@ public class TuPrologSolution<S> extends Solution<S> {
 
 	@Override
 	public <A> A get(String variable) {
-		try {
-			if (clazz == null) {
-				Term term = solution.getVarValue(variable);
-				if (term == null) {
-					throw new UnknownVariableException(variable);
-				}
-				return (A) cp.convertTerm(term);
-			}
-			return (A) get(variable, clazz);
-		} catch (NoSolutionException e) {
-			throw new NoSuchElementException();
+		if (clazz == null) {
+			return (A) cp.convertTerm(term(variable));
 		}
+		return (A) get(variable, clazz);
 	}
 
 	@Override
 	public <A> A get(String variable, Class<A> type) {
+		return (A) cp.convertTerm(term(variable), type);
+	}
+
+	@Override
+	protected Term term(String variable) {
 		try {
 			Term term = solution.getVarValue(variable);
 			if (term == null) {
 				throw new UnknownVariableException(variable);
 			}
-			return (A) cp.convertTerm(term, type);
+			return term;
 		} catch (NoSolutionException e) {
 			throw new NoSuchElementException();
 		}
 	}
 
+	@Override
+	protected Term term(int slot) {
+		if (!success) {
+			throw new NoSuchElementException();
+		}
+		int position = positions[slot];
+		if (position == -1) {
+			throw new UnknownVariableException(getVariables().get(slot));
+		}
+		return vars.get(position).getTerm();
+	}
+
+	@Override
+	protected ConversionPolicy termPolicy() {
+		return cp;
+	}
+
+	/**
+	 * Stores the variables bound by the current solution.
+	 */
+	private void bindVars() {
+		try {
+			vars = solution.getBindingVars();
+		} catch (NoSolutionException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
 	@Override
 	public void collect(Collection... collections) {
 		SolutionIterator<S> it = iterator();
 		while (it.hasNext()) {
 			it.next();
 			for (int i = 0; i < collections.length; ++i) {
-				collections[i].add(it.get(varName(i)));
+				Term term = term(i);
+				collections[i].add(clazz == null ? cp.convertTerm(term) 
+						: cp.convertTerm(term, clazz));
 			}
 		}
 	}
 
 	@Override
 	public List<?>[] toLists() {
-		List<?>[] lists = new List<?>[vars.size() - 1];
+		List<?>[] lists = new List<?>[getVariables().size()];
 		for (int i = 0; i < lists.length; ++i) {
-			lists[i] = new ArrayList();
+			lists[i] = new ArrayList<Object>();
 		}
 		collect(lists);
 		return lists;
@@ -167,15 +251,58 @@ public class TuPrologSolution<S> extends Solution<S> {
 
 	@Override
 	protected boolean fetch() {
+		boolean hasNext;
+		startSearch();
 		try {
-			boolean hasNext = engine.hasOpenAlternatives()
+			hasNext = engine.hasOpenAlternatives()
 					&& (solution = engine.solveNext()).isSuccess();
+			if (hasNext) {
+				bindVars();
+			}
 //			if (!hasNext)
 //				engine.solveHalt();
-			return hasNext;
 		} catch (NoMoreSolutionException e) {
 			// Should not happen.
 			throw new IllegalStateException(e);
+		} finally {
+			endSearch();
+		}
+		checkLimits();
+		return hasNext;
+	}
+
+	/**
+	 * Starts monitoring the inferences of the engine if the query has limits.
+	 */
+	private void startSearch() {
+		if (monitor != null) {
+			monitor.start();
+			spying = engine.isSpy();
+			engine.addSpyListener(spy);
+			engine.setSpy(true);
+		}
+	}
+
+	/**
+	 * Stops monitoring the inferences of the engine.
+	 */
+	private void endSearch() {
+		if (monitor != null) {
+			engine.removeSpyListener(spy);
+			engine.setSpy(spying);
+		}
+	}
+
+	/**
+	 * Closes the solutions and throws an exception if the last search has 
+	 * exceeded a limit of the query.
+	 * 
+	 * @throws LimitExceededException if a limit has been exceeded
+	 */
+	private void checkLimits() {
+		if (monitor != null && monitor.isExceeded()) {
+			close();
+			monitor.throwIfExceeded();
 		}
 	}
 
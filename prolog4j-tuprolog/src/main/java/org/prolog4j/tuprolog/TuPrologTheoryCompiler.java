@@ -0,0 +1,175 @@
+/* 
+ * Copyright (c) 2010 Miklos Espak
+ * All rights reserved.
+ * 
+ * Permission is hereby granted, free  of charge, to any person obtaining
+ * a  copy  of this  software  and  associated  documentation files  (the
+ * "Software"), to  deal in  the Software without  restriction, including
+ * without limitation  the rights to  use, copy, modify,  merge, publish,
+ * distribute,  sublicense, and/or sell  copies of  the Software,  and to
+ * permit persons to whom the Software  is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The  above  copyright  notice  and  this permission  notice  shall  be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE  SOFTWARE IS  PROVIDED  "AS  IS", WITHOUT  WARRANTY  OF ANY  KIND,
+ * EXPRESS OR  IMPLIED, INCLUDING  BUT NOT LIMITED  TO THE  WARRANTIES OF
+ * MERCHANTABILITY,    FITNESS    FOR    A   PARTICULAR    PURPOSE    AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE,  ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.prolog4j.tuprolog;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.prolog4j.ClauseImage;
+import org.prolog4j.Compound;
+
+import alice.tuprolog.InvalidTermException;
+import alice.tuprolog.Parser;
+import alice.tuprolog.Prolog;
+import alice.tuprolog.Struct;
+import alice.tuprolog.Term;
+import alice.tuprolog.Var;
+
+/**
+ * Compiles theories into clause images by the parser of tuProlog. The 
+ * <code>op/3</code> directives of the theories are executed while they are
+ * parsed, so that the operators that they define apply to the rest of the
+ * theory. The directives are kept in the image as well, so they are 
+ * executed again when the image is loaded.
+ * 
+ * @see ClauseImage
+ */
+public final class TuPrologTheoryCompiler {
+
+	/** The engine whose operators are used by the parser. */
+	private final Prolog engine = new Prolog();
+
+	/**
+	 * Parses a theory into clauses in the form of {@link ClauseImage}.
+	 * 
+	 * @param theory the Prolog text
+	 * @return the clauses of the theory
+	 * @throws InvalidTermException if the theory is invalid
+	 */
+	public List<Object> parse(String theory) throws InvalidTermException {
+		List<Object> clauses = new ArrayList<Object>();
+		Parser parser = new Parser(engine.getOperatorManager(), theory);
+		for (Term term = parser.nextTerm(true); term != null; term = parser.nextTerm(true)) {
+			if (term instanceof Struct && isOpDirective((Struct) term)) {
+				engine.solve(((Struct) term).getArg(0));
+			}
+			clauses.add(toObject(term, new IdentityHashMap<Var, ClauseImage.Variable>()));
+		}
+		return clauses;
+	}
+
+	/**
+	 * Compiles a theory into a clause image.
+	 * 
+	 * @param theory the Prolog text
+	 * @param out the stream to write the image to, which is not closed
+	 * @throws InvalidTermException if the theory is invalid
+	 * @throws IOException if the image cannot be written
+	 */
+	public void compile(String theory, OutputStream out) throws InvalidTermException, IOException {
+		ClauseImage.write(parse(theory), out);
+	}
+
+	/**
+	 * Returns a tuProlog clause in the form of {@link ClauseImage}. The facts
+	 * stored by the engine as rules with the body <tt>true</tt> are returned
+	 * as facts.
+	 * 
+	 * @param clause the tuProlog clause
+	 * @return the clause in the form of {@link ClauseImage}
+	 */
+	static Object toClause(Term clause) {
+		Object object = toObject(clause, new IdentityHashMap<Var, ClauseImage.Variable>());
+		if (object instanceof Compound) {
+			Compound compound = (Compound) object;
+			if (compound.getFunctor().equals(":-") && compound.getArity() == 2
+					&& "true".equals(compound.getArg(1))) {
+				return compound.getArg(0);
+			}
+		}
+		return object;
+	}
+
+	/**
+	 * Tells whether a clause is an <code>op/3</code> directive.
+	 * 
+	 * @param clause the clause
+	 * @return <code>true</code> if the clause is an <code>op/3</code> 
+	 * 		directive
+	 */
+	private static boolean isOpDirective(Struct clause) {
+		if (!clause.getName().equals(":-") || clause.getArity() != 1 
+				|| !(clause.getArg(0) instanceof Struct)) {
+			return false;
+		}
+		Struct goal = (Struct) clause.getArg(0);
+		return goal.getName().equals("op") && goal.getArity() == 3;
+	}
+
+	/**
+	 * Returns the term of a clause in the form of {@link ClauseImage}.
+	 * 
+	 * @param term the tuProlog term
+	 * @param variables the variables of the clause by their term
+	 * @return the term in the form of {@link ClauseImage}
+	 */
+	private static Object toObject(Term term, Map<Var, ClauseImage.Variable> variables) {
+		if (term instanceof Var) {
+			Var var = (Var) term;
+			ClauseImage.Variable variable = variables.get(var);
+			if (variable == null) {
+				variable = new ClauseImage.Variable(variables.size());
+				variables.put(var, variable);
+			}
+			return variable;
+		} else if (term instanceof alice.tuprolog.Int) {
+			return ((alice.tuprolog.Int) term).intValue();
+		} else if (term instanceof alice.tuprolog.Long) {
+			return ((alice.tuprolog.Long) term).longValue();
+		} else if (term instanceof alice.tuprolog.Float) {
+			return ((alice.tuprolog.Float) term).floatValue();
+		} else if (term instanceof alice.tuprolog.Double) {
+			return ((alice.tuprolog.Double) term).doubleValue();
+		}
+		Struct struct = (Struct) term;
+		if (struct.getArity() == 0) {
+			return struct.getName();
+		}
+		if (struct.getName().equals(".") && struct.getArity() == 2) {
+			// The lists are built from their end, so long lists are fine.
+			List<Object> elements = new ArrayList<Object>();
+			Term rest = struct;
+			while (rest instanceof Struct && ((Struct) rest).getArity() == 2 
+					&& ((Struct) rest).getName().equals(".")) {
+				elements.add(toObject(((Struct) rest).getArg(0), variables));
+				rest = ((Struct) rest).getArg(1);
+			}
+			Object list = toObject(rest, variables);
+			for (int i = elements.size() - 1; i >= 0; --i) {
+				list = new Compound(".", elements.get(i), list);
+			}
+			return list;
+		}
+		Object[] args = new Object[struct.getArity()];
+		for (int i = 0; i < args.length; ++i) {
+			args[i] = toObject(struct.getArg(i), variables);
+		}
+		return new Compound(struct.getName(), args);
+	}
+
+}
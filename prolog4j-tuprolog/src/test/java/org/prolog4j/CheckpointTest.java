@@ -0,0 +1,91 @@
+/* 
+ * Copyright (c) 2010 Miklos Espak
+ * All rights reserved.
+ * 
+ * Permission is hereby granted, free  of charge, to any person obtaining
+ * a  copy  of this  software  and  associated  documentation files  (the
+ * "Software"), to  deal in  the Software without  restriction, including
+ * without limitation  the rights to  use, copy, modify,  merge, publish,
+ * distribute,  sublicense, and/or sell  copies of  the Software,  and to
+ * permit persons to whom the Software  is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The  above  copyright  notice  and  this permission  notice  shall  be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE  SOFTWARE IS  PROVIDED  "AS  IS", WITHOUT  WARRANTY  OF ANY  KIND,
+ * EXPRESS OR  IMPLIED, INCLUDING  BUT NOT LIMITED  TO THE  WARRANTIES OF
+ * MERCHANTABILITY,    FITNESS    FOR    A   PARTICULAR    PURPOSE    AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE,  ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.prolog4j;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+/**
+ * Tests writing the knowledge base of a tuProlog prover into a checkpoint and
+ * restoring it.
+ */
+public class CheckpointTest {
+
+	/**
+	 * Tests that the clauses asserted at runtime are restored, and the 
+	 * clauses added after the checkpoint are removed.
+	 */
+	@Test
+	public void testCheckpoint() throws Exception {
+		Prover p = ProverFactory.getProver();
+		p.addTheory("grandparent(X, Z) :- parent(X, Y), parent(Y, Z).");
+		p.assertz("parent(?, ?).", "abraham", "isaac");
+		p.assertz("parent(?, ?).", "isaac", Arrays.asList("jacob", "esau"));
+		Path file = Files.createTempFile("checkpoint", ".pli");
+		try {
+			p.checkpoint(file);
+			p.assertz("parent(jacob, joseph).");
+			p.restore(file);
+			assertEquals(Arrays.asList(Arrays.asList("jacob", "esau")), 
+					p.solve("grandparent(abraham, X).").toList());
+			assertEquals(0, p.solve("parent(jacob, X).").toList().size());
+
+			Prover restored = ProverFactory.getProver();
+			restored.restore(file);
+			assertEquals(Arrays.asList("isaac"), restored.<String>solve("parent(abraham, X).").toList());
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	/**
+	 * Tests that the facts asserted by goals are written into the checkpoint,
+	 * and that taking a checkpoint keeps the open traversals.
+	 */
+	@Test
+	public void testGoalAssertedFact() throws Exception {
+		Prover p = ProverFactory.getProver();
+		p.solve("assertz(moon(phobos)).");
+		SolutionIterator<Integer> it = p.<Integer>solve("member(X, [1, 2, 3]).").iterator();
+		assertEquals(Integer.valueOf(1), it.next());
+		Path file = Files.createTempFile("checkpoint", ".pli");
+		try {
+			p.checkpoint(file);
+			assertEquals(Integer.valueOf(2), it.next());
+			assertEquals(Integer.valueOf(3), it.next());
+
+			Prover restored = ProverFactory.getProver();
+			restored.restore(file);
+			assertEquals(Arrays.asList("phobos"), restored.<String>solve("moon(X).").toList());
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+}
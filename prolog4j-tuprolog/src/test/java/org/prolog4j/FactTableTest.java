@@ -0,0 +1,82 @@
+/* 
+ * Copyright (c) 2010 Miklos Espak
+ * All rights reserved.
+ * 
+ * Permission is hereby granted, free  of charge, to any person obtaining
+ * a  copy  of this  software  and  associated  documentation files  (the
+ * "Software"), to  deal in  the Software without  restriction, including
+ * without limitation  the rights to  use, copy, modify,  merge, publish,
+ * distribute,  sublicense, and/or sell  copies of  the Software,  and to
+ * permit persons to whom the Software  is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The  above  copyright  notice  and  this permission  notice  shall  be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE  SOFTWARE IS  PROVIDED  "AS  IS", WITHOUT  WARRANTY  OF ANY  KIND,
+ * EXPRESS OR  IMPLIED, INCLUDING  BUT NOT LIMITED  TO THE  WARRANTIES OF
+ * MERCHANTABILITY,    FITNESS    FOR    A   PARTICULAR    PURPOSE    AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE,  ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.prolog4j;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+/**
+ * Tests the fact tables registered on a tuProlog prover as predicates.
+ */
+public class FactTableTest {
+
+	/**
+	 * Tests calling the predicate of a table with bound and unbound arguments.
+	 */
+	@Test
+	public void testFactTable() {
+		FactTable table = new FactTable(FactTable.Type.ATOM, FactTable.Type.ATOM, 
+				FactTable.Type.INTEGER).index(0);
+		table.add("abraham", "isaac", 100);
+		table.add("isaac", "jacob", 60);
+		table.add("isaac", "esau", 60);
+		Prover p = ProverFactory.getProver();
+		p.registerPredicate("parent", table);
+		p.addTheory("grandparent(X, Z) :- parent(X, Y, _), parent(Y, Z, _).");
+
+		assertEquals(Arrays.asList("jacob", "esau"), 
+				p.solve("grandparent(abraham, X).").<String>on("X").toList());
+		assertEquals(Arrays.asList("isaac"), p.solve("parent(X, jacob, 60).").<String>on("X").toList());
+		assertEquals(Arrays.asList(100), p.solve("parent(abraham, _, X).").<Integer>on("X").toList());
+		assertTrue(p.solve("parent(isaac, esau, _).").isSuccess());
+		assertFalse(p.solve("parent(jacob, _, _).").isSuccess());
+		assertFalse(p.solve("parent(abraham, isaac, 100.0).").isSuccess());
+
+		table.add("jacob", "joseph", 91);
+		assertEquals(Arrays.asList("joseph"), p.solve("grandparent(isaac, X).").<String>on("X").toList());
+	}
+
+	/**
+	 * Tests that the solutions of a goal abandoned early are released.
+	 */
+	@Test
+	public void testAbandonedCall() {
+		FactTable table = new FactTable(FactTable.Type.INTEGER);
+		for (int i = 0; i < 1000; ++i) {
+			table.add(i);
+		}
+		Prover p = ProverFactory.getProver();
+		p.registerPredicate("item", table);
+		SolutionIterator<Integer> it = p.<Integer>solve("item(X).").iterator();
+		assertEquals(Integer.valueOf(0), it.next());
+		assertEquals(Integer.valueOf(1), it.next());
+		assertEquals(1000, p.solve("item(X).").toList().size());
+	}
+
+}
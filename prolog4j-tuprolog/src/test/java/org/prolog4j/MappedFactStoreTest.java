@@ -0,0 +1,72 @@
+/* 
+ * Copyright (c) 2010 Miklos Espak
+ * All rights reserved.
+ * 
+ * Permission is hereby granted, free  of charge, to any person obtaining
+ * a  copy  of this  software  and  associated  documentation files  (the
+ * "Software"), to  deal in  the Software without  restriction, including
+ * without limitation  the rights to  use, copy, modify,  merge, publish,
+ * distribute,  sublicense, and/or sell  copies of  the Software,  and to
+ * permit persons to whom the Software  is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The  above  copyright  notice  and  this permission  notice  shall  be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE  SOFTWARE IS  PROVIDED  "AS  IS", WITHOUT  WARRANTY  OF ANY  KIND,
+ * EXPRESS OR  IMPLIED, INCLUDING  BUT NOT LIMITED  TO THE  WARRANTIES OF
+ * MERCHANTABILITY,    FITNESS    FOR    A   PARTICULAR    PURPOSE    AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE,  ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.prolog4j;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+/**
+ * Tests the memory-mapped fact stores registered on a tuProlog prover.
+ */
+public class MappedFactStoreTest {
+
+	/**
+	 * Tests writing a store and calling its predicate with bound and unbound
+	 * arguments.
+	 */
+	@Test
+	public void testMappedFactStore() throws Exception {
+		Path file = Files.createTempFile("facts", ".p4jf");
+		try {
+			try (MappedFactStore.Writer writer = MappedFactStore.create(file, 
+					FactTable.Type.ATOM, FactTable.Type.LONG, FactTable.Type.DOUBLE).index(0)) {
+				for (int i = 0; i < 1000; ++i) {
+					writer.add("city" + i % 10, (long) i, i / 2.0);
+				}
+			}
+			try (MappedFactStore store = MappedFactStore.open(file)) {
+				assertEquals(1000, store.size());
+				Prover p = ProverFactory.getProver();
+				p.registerPredicate("population", store);
+				assertEquals(100, p.solve("population(city3, _, _).").toList().size());
+				assertEquals(Arrays.asList(3L, 13L), 
+						p.solve("population(city3, X, _), X < 20.").<Long>on("X").toList());
+				assertEquals(Arrays.asList("city7"), 
+						p.solve("population(X, _, 3.5).").<String>on("X").toList());
+				assertEquals(Arrays.asList(21.0), 
+						p.solve("population(city2, 42, X).").<Double>on("X").toList());
+				assertFalse(p.solve("population(nowhere, _, _).").isSuccess());
+			}
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+}
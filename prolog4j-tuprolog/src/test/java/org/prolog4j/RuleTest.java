@@ -0,0 +1,106 @@
+/* 
+ * Copyright (c) 2010 Miklos Espak
+ * All rights reserved.
+ * 
+ * Permission is hereby granted, free  of charge, to any person obtaining
+ * a  copy  of this  software  and  associated  documentation files  (the
+ * "Software"), to  deal in  the Software without  restriction, including
+ * without limitation  the rights to  use, copy, modify,  merge, publish,
+ * distribute,  sublicense, and/or sell  copies of  the Software,  and to
+ * permit persons to whom the Software  is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The  above  copyright  notice  and  this permission  notice  shall  be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE  SOFTWARE IS  PROVIDED  "AS  IS", WITHOUT  WARRANTY  OF ANY  KIND,
+ * EXPRESS OR  IMPLIED, INCLUDING  BUT NOT LIMITED  TO THE  WARRANTIES OF
+ * MERCHANTABILITY,    FITNESS    FOR    A   PARTICULAR    PURPOSE    AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE,  ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.prolog4j;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * Tests the forward-chaining rules on a tuProlog prover.
+ */
+public class RuleTest {
+
+	/**
+	 * Creates a match from the names and the values of the variables.
+	 * 
+	 * @param bindings the names and the values of the variables, alternately
+	 * @return the match
+	 */
+	private static Map<String, Object> match(Object... bindings) {
+		Map<String, Object> match = new LinkedHashMap<String, Object>();
+		for (int i = 0; i < bindings.length; i += 2) {
+			match.put((String) bindings[i], bindings[i + 1]);
+		}
+		return match;
+	}
+
+	/**
+	 * Tests a rule joining two conditions, with a test.
+	 */
+	@Test
+	public void testJoin() {
+		Prover p = ProverFactory.getProver();
+		p.addTheory("threshold(a, 25).", "temp(c, 50).", "threshold(c, 45).");
+		final List<Map<String, Object>> fired = new ArrayList<Map<String, Object>>();
+		Rule rule = Rule.when("temp(S, T)", "threshold(S, Max)").where("T > Max")
+				.then((r, match) -> fired.add(match));
+		p.addRule(rule);
+		assertEquals(Arrays.asList(match("S", "c", "T", 50, "Max", 45)), fired);
+		p.assertz("temp(a, ?).", 30);
+		p.assertz("temp(a, 20).");
+		p.assertz("temp(b, 40).");
+		assertEquals(2, fired.size());
+		assertEquals(match("S", "a", "T", 30, "Max", 25), fired.get(1));
+		p.assertz("threshold(b, 35).");
+		assertEquals(match("S", "b", "T", 40, "Max", 35), fired.get(2));
+		p.assertz("temp(a, 30).");
+		assertEquals(3, fired.size());
+		p.retract("temp(a, 30).");
+		assertEquals(3, fired.size());
+		p.retract("temp(a, 30).");
+		p.assertz("temp(a, 30).");
+		assertEquals(4, fired.size());
+		p.removeRule(rule);
+		p.assertz("temp(b, 60).");
+		assertEquals(4, fired.size());
+	}
+
+	/**
+	 * Tests rules whose actions assert the facts matched by the rules.
+	 */
+	@Test
+	public void testChaining() {
+		final Prover p = ProverFactory.getProver();
+		Rule.Action path = (r, match) -> {
+			if (!p.solve("path(?, ?).", match.get("X"), match.get("Z")).isSuccess()) {
+				p.assertz("path(?, ?).", match.get("X"), match.get("Z"));
+			}
+		};
+		p.addRule(Rule.when("edge(X, Z)").then(path));
+		p.addRule(Rule.when("edge(X, Y)", "path(Y, Z)").then(path));
+		p.assertz("edge(b, c).");
+		p.assertz("edge(a, b).");
+		p.assertz("edge(c, d).");
+		assertEquals(Arrays.asList("b", "c", "d"), 
+				p.solve("path(a, X).").<String>on("X").toList());
+	}
+
+}
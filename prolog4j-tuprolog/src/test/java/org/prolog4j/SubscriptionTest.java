@@ -0,0 +1,154 @@
+/* 
+ * Copyright (c) 2010 Miklos Espak
+ * All rights reserved.
+ * 
+ * Permission is hereby granted, free  of charge, to any person obtaining
+ * a  copy  of this  software  and  associated  documentation files  (the
+ * "Software"), to  deal in  the Software without  restriction, including
+ * without limitation  the rights to  use, copy, modify,  merge, publish,
+ * distribute,  sublicense, and/or sell  copies of  the Software,  and to
+ * permit persons to whom the Software  is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The  above  copyright  notice  and  this permission  notice  shall  be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE  SOFTWARE IS  PROVIDED  "AS  IS", WITHOUT  WARRANTY  OF ANY  KIND,
+ * EXPRESS OR  IMPLIED, INCLUDING  BUT NOT LIMITED  TO THE  WARRANTIES OF
+ * MERCHANTABILITY,    FITNESS    FOR    A   PARTICULAR    PURPOSE    AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE,  ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.prolog4j;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+
+/**
+ * Tests the subscriptions to the answers of goals on a tuProlog prover.
+ */
+public class SubscriptionTest {
+
+	/**
+	 * Records the changes of the answers of a subscription.
+	 */
+	private static final class Recorder implements Subscription.Listener {
+
+		/** The added answers of each notification. */
+		final List<Set<Map<String, Object>>> added = new ArrayList<Set<Map<String, Object>>>();
+
+		/** The removed answers of each notification. */
+		final List<Set<Map<String, Object>>> removed = new ArrayList<Set<Map<String, Object>>>();
+
+		@Override
+		public void answersChanged(Subscription subscription,
+				Set<Map<String, Object>> added, Set<Map<String, Object>> removed) {
+			this.added.add(added);
+			this.removed.add(removed);
+		}
+
+	}
+
+	/**
+	 * Creates an answer from the names and the values of the variables.
+	 * 
+	 * @param bindings the names and the values of the variables, alternately
+	 * @return the answer
+	 */
+	private static Map<String, Object> answer(Object... bindings) {
+		Map<String, Object> answer = new LinkedHashMap<String, Object>();
+		for (int i = 0; i < bindings.length; i += 2) {
+			answer.put((String) bindings[i], bindings[i + 1]);
+		}
+		return answer;
+	}
+
+	/**
+	 * Tests the changes derived from the asserted and the retracted facts.
+	 */
+	@Test
+	public void testFacts() {
+		Prover p = ProverFactory.getProver();
+		p.addTheory("temp(a, 20).", "temp(b, 30).");
+		Recorder recorder = new Recorder();
+		Subscription s = p.subscribe("temp(S, T), T > 25.", recorder);
+		assertEquals(Arrays.asList("S", "T"), s.getVariables());
+		assertEquals(1, recorder.added.size());
+		assertEquals(Arrays.asList(answer("S", "b", "T", 30)), 
+				new ArrayList<Object>(recorder.added.get(0)));
+		p.assertz("temp(c, ?).", 40);
+		p.assertz("temp(d, 10).");
+		assertEquals(2, recorder.added.size());
+		assertEquals(Arrays.asList(answer("S", "c", "T", 40)), 
+				new ArrayList<Object>(recorder.added.get(1)));
+		p.retract("temp(b, 30).");
+		assertEquals(3, recorder.added.size());
+		assertTrue(recorder.added.get(2).isEmpty());
+		assertEquals(Arrays.asList(answer("S", "b", "T", 30)), 
+				new ArrayList<Object>(recorder.removed.get(2)));
+		assertEquals(Arrays.asList(answer("S", "c", "T", 40)), 
+				new ArrayList<Object>(s.getAnswers()));
+		s.cancel();
+		p.retract("temp(c, 40).");
+		assertEquals(3, recorder.added.size());
+	}
+
+	/**
+	 * Tests a goal that calls the modified predicate twice, and an answer 
+	 * that holds after one of its facts has been retracted.
+	 */
+	@Test
+	public void testJoin() {
+		Prover p = ProverFactory.getProver();
+		p.addTheory("edge(a, b).", "edge(c, d).", "edge(c, d).");
+		Recorder recorder = new Recorder();
+		Subscription s = p.subscribe("edge(X, Y), edge(Y, Z).", recorder);
+		assertTrue(recorder.added.isEmpty());
+		p.assertz("edge(b, c).");
+		assertEquals(Arrays.asList(answer("X", "b", "Y", "c", "Z", "d"), 
+				answer("X", "a", "Y", "b", "Z", "c")), 
+				new ArrayList<Object>(recorder.added.get(0)));
+		p.retract("edge(c, d).");
+		assertEquals(1, recorder.added.size());
+		p.retract("edge(c, d).");
+		assertEquals(Arrays.asList(answer("X", "b", "Y", "c", "Z", "d")), 
+				new ArrayList<Object>(recorder.removed.get(1)));
+		assertEquals(1, s.getAnswers().size());
+	}
+
+	/**
+	 * Tests a goal whose predicate depends on the modified facts through a
+	 * rule, so it is solved again.
+	 */
+	@Test
+	public void testRules() {
+		Prover p = ProverFactory.getProver();
+		p.addTheory("temp(a, 20).", "hot(S) :- temp(S, T), T > 25.");
+		Recorder recorder = new Recorder();
+		p.subscribe("hot(S).", recorder);
+		assertTrue(recorder.added.isEmpty());
+		p.assertz("temp(b, 30).");
+		assertEquals(Arrays.asList(answer("S", "b")), 
+				new ArrayList<Object>(recorder.added.get(0)));
+		p.addTheory("hot(S) :- temp(S, 20).");
+		assertEquals(Arrays.asList(answer("S", "a")), 
+				new ArrayList<Object>(recorder.added.get(1)));
+		p.retract("temp(b, 30).");
+		assertEquals(Arrays.asList(answer("S", "b")), 
+				new ArrayList<Object>(recorder.removed.get(2)));
+		p.assertz("other(x).");
+		assertEquals(3, recorder.added.size());
+	}
+
+}
@@ -0,0 +1,77 @@
+/* 
+ * Copyright (c) 2010 Miklos Espak
+ * All rights reserved.
+ * 
+ * Permission is hereby granted, free  of charge, to any person obtaining
+ * a  copy  of this  software  and  associated  documentation files  (the
+ * "Software"), to  deal in  the Software without  restriction, including
+ * without limitation  the rights to  use, copy, modify,  merge, publish,
+ * distribute,  sublicense, and/or sell  copies of  the Software,  and to
+ * permit persons to whom the Software  is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The  above  copyright  notice  and  this permission  notice  shall  be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE  SOFTWARE IS  PROVIDED  "AS  IS", WITHOUT  WARRANTY  OF ANY  KIND,
+ * EXPRESS OR  IMPLIED, INCLUDING  BUT NOT LIMITED  TO THE  WARRANTIES OF
+ * MERCHANTABILITY,    FITNESS    FOR    A   PARTICULAR    PURPOSE    AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE,  ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.prolog4j;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Tests the lists converted from the list terms of a tuProlog prover.
+ */
+public class TermListTest {
+
+	/**
+	 * Tests that the elements of a list are converted when they are accessed.
+	 */
+	@Test
+	public void testLazyConversion() {
+		Prover p = ProverFactory.getProver();
+		final int[] conversions = new int[1];
+		p.getConversionPolicy().addTermConverter("f", new Converter<Object>() {
+			@Override
+			public Object convert(Object term) {
+				return "f" + ++conversions[0];
+			}
+		});
+		List<String> list = p.<List<String>>solve("X = [f(a), f(b), f(c)].").get();
+		assertTrue(list instanceof TermList);
+		assertEquals(3, list.size());
+		assertEquals(0, conversions[0]);
+		assertEquals("f1", list.get(0));
+		assertEquals(1, conversions[0]);
+		assertEquals("f1", list.get(0));
+		assertEquals(1, conversions[0]);
+		assertEquals("f3", list.get(2));
+		assertEquals(3, conversions[0]);
+	}
+
+	/**
+	 * Tests the copying of a list into an <tt>ArrayList</tt>.
+	 */
+	@Test
+	public void testToArrayList() {
+		Prover p = ProverFactory.getProver();
+		List<Object> list = p.<List<Object>>solve("X = [1, [a, b], 2.5].").get();
+		ArrayList<Object> copy = ((TermList<Object>) list).toArrayList();
+		assertEquals(Arrays.<Object>asList(1, Arrays.asList("a", "b"), 2.5), copy);
+		assertEquals(copy, list);
+	}
+
+}
@@ -0,0 +1,98 @@
+/* 
+ * Copyright (c) 2010 Miklos Espak
+ * All rights reserved.
+ * 
+ * Permission is hereby granted, free  of charge, to any person obtaining
+ * a  copy  of this  software  and  associated  documentation files  (the
+ * "Software"), to  deal in  the Software without  restriction, including
+ * without limitation  the rights to  use, copy, modify,  merge, publish,
+ * distribute,  sublicense, and/or sell  copies of  the Software,  and to
+ * permit persons to whom the Software  is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The  above  copyright  notice  and  this permission  notice  shall  be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE  SOFTWARE IS  PROVIDED  "AS  IS", WITHOUT  WARRANTY  OF ANY  KIND,
+ * EXPRESS OR  IMPLIED, INCLUDING  BUT NOT LIMITED  TO THE  WARRANTIES OF
+ * MERCHANTABILITY,    FITNESS    FOR    A   PARTICULAR    PURPOSE    AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE,  ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.prolog4j;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * Tests the predicates backed by Java collections on a tuProlog prover.
+ */
+public class VirtualPredicateTest {
+
+	/**
+	 * Tests a predicate backed by a list, which is read on every call.
+	 */
+	@Test
+	public void testIterable() {
+		List<Object[]> edges = new ArrayList<Object[]>();
+		edges.add(new Object[] {"a", "b"});
+		edges.add(new Object[] {"b", "c"});
+		Prover p = ProverFactory.getProver();
+		p.registerPredicate("edge", 2, edges);
+		p.addTheory("path(X, Y) :- edge(X, Y).", 
+				"path(X, Z) :- edge(X, Y), path(Y, Z).");
+		assertEquals(Arrays.asList("b", "c"), p.solve("path(a, X).").<String>on("X").toList());
+		edges.add(new Object[] {"c", "d"});
+		assertEquals(Arrays.asList("b", "c", "d"), p.solve("path(a, X).").<String>on("X").toList());
+	}
+
+	/**
+	 * Tests a predicate backed by a map, with the key bound and unbound.
+	 */
+	@Test
+	public void testMap() {
+		Map<String, Object> ages = new HashMap<String, Object>();
+		ages.put("socrates", 70);
+		ages.put("plato", Arrays.asList(80, 81));
+		Prover p = ProverFactory.getProver();
+		p.registerPredicate("age", 2, ages);
+		assertEquals(Arrays.asList(70), p.solve("age(socrates, X).").<Integer>on("X").toList());
+		assertEquals(Arrays.asList("socrates"), p.solve("age(X, 70).").<String>on("X").toList());
+		assertEquals(Arrays.asList(81), p.solve("age(plato, [_, X]).").<Integer>on("X").toList());
+		assertFalse(p.solve("age(aristotle, _).").isSuccess());
+	}
+
+	/**
+	 * Tests a predicate computed by a lookup function.
+	 */
+	@Test
+	public void testLookup() {
+		Prover p = ProverFactory.getProver();
+		p.registerPredicate("divisor", 2, n -> {
+			List<Integer> divisors = new ArrayList<Integer>();
+			for (int i = 1; i <= (Integer) n; ++i) {
+				if ((Integer) n % i == 0) {
+					divisors.add(i);
+				}
+			}
+			return divisors;
+		});
+		assertEquals(Arrays.asList(1, 2, 3, 6), p.solve("divisor(6, X).").<Integer>on("X").toList());
+		assertFalse(p.solve("divisor(7, 2).").isSuccess());
+		assertFalse(p.solve("divisor(X, 1).").isSuccess());
+		p.registerPredicate("empty", 1, n -> Collections.emptyList());
+		assertFalse(p.solve("empty(1).").isSuccess());
+	}
+
+}
@@ -23,69 +23,47 @@
  */
 package org.prolog4j;
 
-import static org.junit.Assert.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
 
-import java.lang.ref.Reference;
-import java.lang.ref.ReferenceQueue;
-import java.lang.ref.WeakReference;
+import java.util.Arrays;
 
 import org.junit.Test;
-import org.prolog4j.tuprolog.TuPrologProver;
-
-import alice.tuprolog.Prolog;
-import alice.tuprolog.SolveInfo;
-import alice.tuprolog.Struct;
-import alice.tuprolog.lib.JavaLibrary;
 
+/**
+ * Tests the facts that are retracted when their referent is reclaimed by the
+ * garbage collector.
+ */
 public class WeakRuleTest {
 
+	/**
+	 * A Java object that the facts are about.
+	 */
+	private static class Human {
+	}
+
 	@Test
 	public void testWeakRule() throws Exception {
-//		Prover p = ProverFactory.getProver(WeakRuleTest.class);
-//		class Human {
-//			String name;
-//			Human(String name) {
-//				this.name = name;
-//			}
-//		}
-//		Human socrates = new Human("socrates");
-//		Prolog engine = ((TuPrologProver) p).getEngine();
-//		JavaLibrary lib = (JavaLibrary) engine.loadLibrary("alice.tuprolog.lib.JavaLibrary");
-////		engine.loadLibrary(new PrintLibrary());
-//		engine.solve("assertz(human(aristotle)).");
-//		engine.solve("assertz(human(demokritos)).");
-////		engine.addTheory(new Theory("human(plato).\n"));
-////		engine.solve(new Struct("assertz", new Struct("human", register)));
-//		ReferenceQueue<Human> queue = new ReferenceQueue<Human>();
-//		WeakReference<Human> weakSocrates = new WeakReference<Human>(socrates, queue);
-//		Struct tWeakSocrates = lib.register(weakSocrates);
-//		Struct socratesFact = new Struct("human", tWeakSocrates);
-//		engine.solve(new Struct("assertz", socratesFact));
-//
-//		SolveInfo si = engine.solve("human(X).");
-//		while (si.isSuccess()) {
-//			System.out.println(si.getVarValue("X"));
-//			if (!si.hasOpenAlternatives()) {
-//				break;
-//			}
-//			si = engine.solveNext();
-//		}
-//
-//		socrates = null;
-//		System.gc();
-//		Reference r = queue.poll();
-//		if (r == null) {
-//			engine.solve(new Struct("retract", socratesFact));
-//		}
-//		
-//		si = engine.solve("human(X).");
-//		while (si.isSuccess()) {
-//			System.out.println(si.getVarValue("X"));
-//			if (!si.hasOpenAlternatives()) {
-//				break;
-//			}
-//			si = engine.solveNext();
-//		}
+		AbstractProver p = (AbstractProver) ProverFactory.getProver(WeakRuleTest.class);
+		p.assertz("human(aristotle).");
+		Human socrates = new Human();
+		Human plato = new Human();
+		p.assertWeak(socrates, "human(?).", "socrates");
+		p.assertWeak(plato, "human(?).", "plato");
+		assertEquals(Arrays.asList("aristotle", "socrates", "plato"), 
+				p.<String>solve("human(X).").toList());
+
+		socrates = null;
+		for (int i = 0; i < 100 && p.getWeakFactCount() > 1; ++i) {
+			System.gc();
+			Thread.sleep(20);
+		}
+		p.reclaimObsoleteFacts();
+		assertEquals(1, p.getWeakFactCount());
+		assertEquals(Arrays.asList("aristotle", "plato"), 
+				p.<String>solve("human(X).").toList());
+		// The referent of the other fact has to be alive until this point.
+		assertNotNull(plato);
 	}
 
 }